@@ -0,0 +1,39 @@
+package com.villavredestein.config;
+
+import io.prometheus.metrics.tracer.common.SpanContext;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets the Prometheus registry attach exemplars without a tracing setup.
+ * The "trace id" is the current request id or job run id from the MDC, the "span id" says which of the two it is.
+ * Exemplars are only visible in the OpenMetrics format ({@code Accept: application/openmetrics-text}).
+ */
+@Component
+public class CorrelationSpanContext implements SpanContext {
+
+    public static final String JOB_RUN_MDC_KEY = "jobRunId";
+
+    @Override
+    public String getCurrentTraceId() {
+        String requestId = MDC.get(RequestIdFilter.MDC_KEY);
+        return requestId != null ? requestId : MDC.get(JOB_RUN_MDC_KEY);
+    }
+
+    @Override
+    public String getCurrentSpanId() {
+        if (MDC.get(RequestIdFilter.MDC_KEY) != null) {
+            return "request";
+        }
+        return MDC.get(JOB_RUN_MDC_KEY) != null ? "job" : null;
+    }
+
+    @Override
+    public boolean isCurrentSpanSampled() {
+        return getCurrentTraceId() != null;
+    }
+
+    @Override
+    public void markCurrentSpanAsExemplar() {
+    }
+}
@@ -1,5 +1,6 @@
 package com.villavredestein.config;
 
+import com.villavredestein.service.StudentImportService;
 import jakarta.mail.MessagingException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +8,7 @@ import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -130,6 +132,15 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, msg, request);
     }
 
+    @ExceptionHandler(StudentImportService.InvalidImportException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidImport(StudentImportService.InvalidImportException ex, HttpServletRequest request) {
+        Map<String, Object> body = baseBody(HttpStatus.BAD_REQUEST, ex.getMessage(), request);
+        body.put("rowErrors", ex.getErrors());
+
+        log.warn("Invalid import: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException ex, HttpServletRequest request) {
         log.warn("Bad request: {}", ex.getMessage());
@@ -157,6 +168,12 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.CONFLICT, "Request conflicts with existing data.", request);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLock(OptimisticLockingFailureException ex, HttpServletRequest request) {
+        log.warn("Concurrent modification: {}", ex.getMessage());
+        return buildResponse(HttpStatus.CONFLICT, "This item was changed by someone else in the meantime. Reload it and try again.", request);
+    }
+
     @ExceptionHandler(IllegalStateException.class)
     public ResponseEntity<Map<String, Object>> handleConflict(IllegalStateException ex, HttpServletRequest request) {
         log.warn("Conflict: {}", ex.getMessage());
@@ -0,0 +1,81 @@
+package com.villavredestein.config;
+
+/**
+ * JPA statistics for the current request: statements executed, entities loaded, collections fetched
+ * and time spent in JDBC. Filled by the Hibernate hooks in {@link QueryStatsHibernateConfig},
+ * collected per request by {@link QueryStatsInterceptor}.
+ * Outside a request (jobs, startup) nothing is collected. Slow statements are logged by Hibernate itself,
+ * see {@link QueryStatsHibernateConfig}.
+ */
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private int queries;
+    private int entityLoads;
+    private int collectionFetches;
+    private long jdbcNanos;
+
+    private QueryStats() {
+    }
+
+    public static QueryStats begin() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    static void statementExecuted(long nanos) {
+        QueryStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.queries++;
+            stats.jdbcNanos += nanos;
+        }
+    }
+
+    static void entityLoaded() {
+        QueryStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.entityLoads++;
+        }
+    }
+
+    static void collectionFetched() {
+        QueryStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.collectionFetches++;
+        }
+    }
+
+    public int queries() {
+        return queries;
+    }
+
+    public int entityLoads() {
+        return entityLoads;
+    }
+
+    public int collectionFetches() {
+        return collectionFetches;
+    }
+
+    public long jdbcNanos() {
+        return jdbcNanos;
+    }
+
+    /** Compact form used for the dev response header. */
+    public String toHeaderValue() {
+        return "queries=" + queries
+                + ";entityLoads=" + entityLoads
+                + ";collectionFetches=" + collectionFetches
+                + ";jdbcMs=" + jdbcNanos / 1_000_000;
+    }
+}
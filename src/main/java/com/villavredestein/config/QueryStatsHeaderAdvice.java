@@ -0,0 +1,37 @@
+package com.villavredestein.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds {@code X-Query-Stats} to every response body written by a controller, e.g.
+ * {@code queries=12;entityLoads=40;collectionFetches=3;jdbcMs=18}. Meant for development only.
+ */
+@RestControllerAdvice
+@ConditionalOnProperty(value = "app.jpa.query-stats-header", havingValue = "true")
+public class QueryStatsHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER = "X-Query-Stats";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            response.getHeaders().set(HEADER, stats.toHeaderValue());
+        }
+        return body;
+    }
+}
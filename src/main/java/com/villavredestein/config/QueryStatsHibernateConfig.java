@@ -0,0 +1,87 @@
+package com.villavredestein.config;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Registers the Hibernate hooks that feed {@link QueryStats}:
+ * a session listener for statement count and JDBC time, and load/collection listeners for entity loads
+ * and collection fetches. Statements slower than {@code app.jpa.slow-query-threshold} are logged with
+ * their SQL by Hibernate's own slow-query log ({@code org.hibernate.SQL_SLOW}).
+ */
+@Configuration
+public class QueryStatsHibernateConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer queryStatsHibernateProperties(
+            @Value("${app.jpa.slow-query-threshold:200ms}") Duration slowQueryThreshold) {
+        return properties -> {
+            properties.put("hibernate.session.events.auto", TimingSessionListener.class.getName());
+            properties.put(JdbcSettings.LOG_SLOW_QUERY, slowQueryThreshold.toMillis());
+            properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(new LoadListenerIntegrator()));
+        };
+    }
+
+    /** Instantiated by Hibernate for every session; sessions are single-threaded. */
+    public static class TimingSessionListener implements SessionEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private long executeStart;
+        private long batchStart;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executeStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            QueryStats.statementExecuted(System.nanoTime() - executeStart);
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            batchStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            QueryStats.statementExecuted(System.nanoTime() - batchStart);
+        }
+    }
+
+    static class LoadListenerIntegrator implements Integrator {
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+            EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+            registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) (PostLoadEvent event) -> QueryStats.entityLoaded());
+            registry.appendListeners(EventType.INIT_COLLECTION,
+                    (InitializeCollectionEventListener) (InitializeCollectionEvent event) -> QueryStats.collectionFetched());
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.villavredestein.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a {@link QueryStats} scope per controller call and publishes it as Micrometer metrics
+ * tagged with the handler ({@code UserController.getAllUsers}):
+ * {@code http.server.requests.queries}, {@code .entity.loads}, {@code .collection.fetches} and {@code .jdbc}.
+ *
+ * <p>A handler that returns a {@code StreamingResponseBody} or another async result is measured up to the
+ * point where it hands over: the scope is published and cleared when async handling starts, so nothing is
+ * left on the worker thread. The later async dispatch is not measured again.
+ */
+@Component
+public class QueryStatsInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryStatsInterceptor.class);
+
+    private final MeterRegistry registry;
+
+    public QueryStatsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && request.getDispatcherType() != DispatcherType.ASYNC) {
+            QueryStats.begin();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        publish(handler);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getDispatcherType() != DispatcherType.ASYNC) {
+            publish(handler);
+        }
+    }
+
+    private void publish(Object handler) {
+        if (!(handler instanceof HandlerMethod method)) {
+            return;
+        }
+        QueryStats stats = QueryStats.current();
+        QueryStats.end();
+        if (stats == null) {
+            return;
+        }
+
+        String handlerName = handlerName(method);
+        summary("http.server.requests.queries", "JDBC statements per request", handlerName).record(stats.queries());
+        summary("http.server.requests.entity.loads", "Entities loaded per request", handlerName).record(stats.entityLoads());
+        summary("http.server.requests.collection.fetches", "Collections fetched per request", handlerName)
+                .record(stats.collectionFetches());
+        Timer.builder("http.server.requests.jdbc")
+                .description("Time spent executing JDBC statements per request")
+                .tag("handler", handlerName)
+                .register(registry)
+                .record(stats.jdbcNanos(), TimeUnit.NANOSECONDS);
+
+        log.debug("{} {}", handlerName, stats.toHeaderValue());
+    }
+
+    private DistributionSummary summary(String name, String description, String handler) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tag("handler", handler)
+                .register(registry);
+    }
+
+    static String handlerName(HandlerMethod method) {
+        return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+    }
+}
@@ -0,0 +1,58 @@
+package com.villavredestein.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Gives every request a correlation id: the incoming {@code X-Request-Id} when present, otherwise a new UUID.
+ * The id is echoed in the response, stored as request attribute for {@link GlobalExceptionHandler}
+ * and put in the MDC for logs and metric exemplars.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Request-Id";
+    public static final String MDC_KEY = "requestId";
+
+    private static final int MAX_LENGTH = 64;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = sanitize(request.getHeader(HEADER));
+        if (requestId == null) {
+            requestId = UUID.randomUUID().toString();
+        }
+
+        request.setAttribute(MDC_KEY, requestId);
+        response.setHeader(HEADER, requestId);
+        MDC.put(MDC_KEY, requestId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    private static String sanitize(String header) {
+        if (header == null) {
+            return null;
+        }
+        String trimmed = header.trim();
+        if (trimmed.isEmpty() || trimmed.length() > MAX_LENGTH || !trimmed.matches("[A-Za-z0-9._-]+")) {
+            return null;
+        }
+        return trimmed;
+    }
+}
@@ -1,6 +1,7 @@
 package com.villavredestein.config;
 
 import com.villavredestein.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -101,6 +102,8 @@ public class SecurityConfig {
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // A streamed download finishes in an async dispatch; the request itself was checked already.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers(HttpMethod.POST,
                                 "/api/auth/login",
@@ -113,6 +116,7 @@ public class SecurityConfig {
                                 "/error",
                                 "/uploads/**"
                         ).permitAll()
+                        .requestMatchers("/actuator/metrics/**", "/actuator/prometheus").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/users/me").hasAnyRole(USER_ROLES)
                         .requestMatchers(HttpMethod.PUT, "/api/users/me/profile").hasAnyRole(USER_ROLES)
                         .requestMatchers(HttpMethod.PATCH, "/api/users/me/password").hasAnyRole(USER_ROLES)
@@ -0,0 +1,92 @@
+package com.villavredestein.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Watches for virtual threads that pin their carrier thread (blocking inside {@code synchronized} or native code)
+ * longer than {@code app.virtual-threads.pinned-threshold}. Each occurrence is counted in the
+ * {@code jvm.threads.virtual.pinned} timer, tagged with the first application frame, and logged with its stack.
+ * Only active when {@code spring.threads.virtual.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(value = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String APP_PACKAGE = "com.villavredestein.";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final MeterRegistry registry;
+    private final Duration threshold;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry registry,
+                                       @Value("${app.virtual-threads.pinned-threshold:20ms}") Duration threshold) {
+        this.registry = registry;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        stream.startAsync();
+        log.info("Virtual threads enabled; reporting carrier pinning longer than {} ms", threshold.toMillis());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void record(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        String site = site(frames);
+
+        Timer.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier thread")
+                .tag("site", site)
+                .register(registry)
+                .record(event.getDuration());
+
+        StringBuilder stack = new StringBuilder();
+        frames.stream().limit(LOGGED_FRAMES).forEach(frame -> stack.append("\n\tat ").append(frameName(frame)));
+        log.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), site, stack);
+    }
+
+    static String site(List<RecordedFrame> frames) {
+        return frames.stream()
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APP_PACKAGE))
+                .findFirst()
+                .map(VirtualThreadPinningMonitor::shortName)
+                .orElse("other");
+    }
+
+    private static String shortName(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName();
+    }
+
+    private static String frameName(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
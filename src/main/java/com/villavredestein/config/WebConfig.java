@@ -2,6 +2,7 @@ package com.villavredestein.config;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -11,9 +12,17 @@ import java.nio.file.Paths;
 public class WebConfig implements WebMvcConfigurer {
 
     private final String uploadDir;
+    private final QueryStatsInterceptor queryStatsInterceptor;
 
-    public WebConfig(@Value("${app.upload-dir:uploads}") String uploadDir) {
+    public WebConfig(@Value("${app.upload-dir:uploads}") String uploadDir,
+                     QueryStatsInterceptor queryStatsInterceptor) {
         this.uploadDir = uploadDir;
+        this.queryStatsInterceptor = queryStatsInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(queryStatsInterceptor).addPathPatterns("/api/**");
     }
 
     @Override
@@ -90,8 +90,10 @@ public class AdminEmailController {
         String naam = student.getUsername();
         String subject, body;
         if (template != null) {
-            subject = template.renderSubject(naam, bedrag, maand, betaalLink, vervaldatum);
-            body    = template.renderBody(naam, bedrag, maand, betaalLink, vervaldatum);
+            EmailTemplateService.RenderedEmail rendered = emailTemplateService.render(template,
+                    EmailTemplateService.rentVariables(naam, bedrag, maand, betaalLink, vervaldatum));
+            subject = rendered.subject();
+            body    = rendered.body();
         } else {
             subject = "Herinnering huur " + maand + " voor Villa Vredestein";
             body    = "Beste " + naam + ",\n\nJe huur van " + bedrag + " voor " + maand
@@ -111,9 +113,10 @@ public class AdminEmailController {
             whatsAppService.send(phone, waMsg);
         }
 
-        invoice.setReminderCount(invoice.getReminderCount() + 1);
-        invoice.setLastReminderSentAt(LocalDateTime.now());
-        invoiceService.saveReminderMeta(invoice);
+        if (!invoiceService.recordReminderSent(invoice, LocalDateTime.now())) {
+            log.warn("Manual reminder for invoiceId={} sent, but the invoice was deleted meanwhile; reminder not counted",
+                    invoice.getId());
+        }
 
         log.info("Admin manual reminder ({}) sent to {} for invoiceId={}",
                 templateType, maskEmail(student.getEmail()), invoice.getId());
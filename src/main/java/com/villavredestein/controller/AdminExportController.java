@@ -0,0 +1,103 @@
+package com.villavredestein.controller;
+
+import com.villavredestein.repository.ExportRepository.Dataset;
+import com.villavredestein.service.ExportService;
+import com.villavredestein.service.ExportService.Format;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Full exports for the bookkeeping as CSV or JSON lines ({@code ?format=ndjson}), streamed while they are read.
+ * {@code from} and {@code to} are inclusive days: invoices are filtered on their issue date, payments on the day
+ * they were paid (or created, when not paid), shifts on their date and supply reports on the day they were reported.
+ * When {@code app.export.max-concurrent} exports are already streaming, the request is answered with 503.
+ */
+@RestController
+@RequestMapping("/api/admin/exports")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminExportController {
+
+    private static final Map<String, Dataset> DATASETS = Map.of(
+            "invoices", Dataset.INVOICES,
+            "payments", Dataset.PAYMENTS,
+            "shifts", Dataset.SHIFTS,
+            "supply-reports", Dataset.SUPPLY_REPORTS
+    );
+
+    private static final String SLOT_INTERCEPTOR = AdminExportController.class.getName() + ".slot";
+
+    private final ExportService exportService;
+
+    public AdminExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/{dataset}")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable String dataset,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletRequest request
+    ) {
+        Dataset selected = DATASETS.get(dataset);
+        if (selected == null) {
+            throw new IllegalArgumentException("Onbekende export: " + dataset + ". Toegestaan: " + DATASETS.keySet());
+        }
+        Format selectedFormat = parseFormat(format);
+        exportService.validateRange(from, to);
+
+        String filename = selected.fileName()
+                + (from != null ? "-vanaf-" + from : "")
+                + (to != null ? "-tot-en-met-" + to : "")
+                + "." + selectedFormat.extension();
+
+        ExportService.Slot slot = exportService.reserve();
+        // The body frees the slot when it is done. When it never runs, because the async task is rejected or the
+        // request fails before it starts, the slot is freed when the async request completes.
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(SLOT_INTERCEPTOR,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        slot.close();
+                    }
+                });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(selectedFormat.contentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> {
+                    try (slot) {
+                        exportService.export(selected, selectedFormat, from, to, out);
+                    }
+                });
+    }
+
+    private static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Ongeldig formaat: " + format + ". Toegestaan: csv, ndjson");
+        }
+    }
+}
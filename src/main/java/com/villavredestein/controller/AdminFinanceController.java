@@ -0,0 +1,40 @@
+package com.villavredestein.controller;
+
+import com.villavredestein.dto.FinanceDashboardDTO;
+import com.villavredestein.service.FinanceAnalyticsService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Outstanding and overdue totals, monthly figures and per-student totals for the admin dashboard,
+ * read from the finance rollup rather than from every invoice and payment.
+ */
+@Validated
+@RestController
+@RequestMapping(value = "/api/admin/finance", produces = MediaType.APPLICATION_JSON_VALUE)
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminFinanceController {
+
+    private final FinanceAnalyticsService financeAnalyticsService;
+
+    public AdminFinanceController(FinanceAnalyticsService financeAnalyticsService) {
+        this.financeAnalyticsService = financeAnalyticsService;
+    }
+
+    /**
+     * @param months the number of months, this month included, in the monthly and per-student figures
+     */
+    @GetMapping("/dashboard")
+    public ResponseEntity<FinanceDashboardDTO> getDashboard(
+            @RequestParam(defaultValue = "12") @Min(1) @Max(120) int months) {
+        return ResponseEntity.ok(financeAnalyticsService.getDashboard(months));
+    }
+}
@@ -1,20 +1,45 @@
 package com.villavredestein.controller;
 
+import com.villavredestein.dto.JobHistoryRunDTO;
+import com.villavredestein.dto.JobItemDTO;
+import com.villavredestein.dto.JobRunResponseDTO;
+import com.villavredestein.jobs.BankReconciliationJob;
 import com.villavredestein.jobs.InvoiceReminderJob;
+import com.villavredestein.jobs.JobHistory;
+import com.villavredestein.jobs.JobRun;
+import com.villavredestein.jobs.JobRunner;
 import com.villavredestein.jobs.MissedCleaningTaskJob;
 import com.villavredestein.jobs.MonthlyRentInvoiceJob;
 import com.villavredestein.jobs.MonthlyRentReminderJob;
 import com.villavredestein.jobs.OverdueInvoiceJob;
 import com.villavredestein.jobs.PaymentReminderJob;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Map;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Triggers run in the background: they answer {@code 202 Accepted} with a run id right away,
+ * and {@code GET /api/admin/jobs/runs/{id}} reports the progress.
+ * {@code /api/admin/jobs/history} lists the persisted runs of the reminder jobs with their per-invoice outcomes.
+ */
+@Validated
 @RestController
 @RequestMapping(value = "/api/admin/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
 @PreAuthorize("hasRole('ADMIN')")
@@ -26,57 +51,126 @@ public class AdminJobController {
     private final MonthlyRentReminderJob monthlyRentReminderJob;
     private final MonthlyRentInvoiceJob monthlyRentInvoiceJob;
     private final PaymentReminderJob paymentReminderJob;
+    private final BankReconciliationJob bankReconciliationJob;
+    private final JobRunner jobRunner;
+    private final JobHistory jobHistory;
 
     public AdminJobController(InvoiceReminderJob invoiceReminderJob, OverdueInvoiceJob overdueInvoiceJob,
                               MissedCleaningTaskJob missedCleaningTaskJob, MonthlyRentReminderJob monthlyRentReminderJob,
-                              MonthlyRentInvoiceJob monthlyRentInvoiceJob, PaymentReminderJob paymentReminderJob) {
+                              MonthlyRentInvoiceJob monthlyRentInvoiceJob, PaymentReminderJob paymentReminderJob,
+                              BankReconciliationJob bankReconciliationJob, JobRunner jobRunner, JobHistory jobHistory) {
         this.invoiceReminderJob = invoiceReminderJob;
         this.overdueInvoiceJob = overdueInvoiceJob;
         this.missedCleaningTaskJob = missedCleaningTaskJob;
         this.monthlyRentReminderJob = monthlyRentReminderJob;
         this.monthlyRentInvoiceJob = monthlyRentInvoiceJob;
         this.paymentReminderJob = paymentReminderJob;
+        this.bankReconciliationJob = bankReconciliationJob;
+        this.jobRunner = jobRunner;
+        this.jobHistory = jobHistory;
     }
 
     @PostMapping("/reminders/trigger")
-    public ResponseEntity<Map<String, String>> triggerReminders() {
-        invoiceReminderJob.sendReminders();
-        return ResponseEntity.ok(Map.of("message", "Factuurherinneringen zijn verstuurd"));
+    public ResponseEntity<JobRunResponseDTO> triggerReminders() {
+        return submit(InvoiceReminderJob.JOB, invoiceReminderJob::sendReminders,
+                "Factuurherinneringen worden verstuurd");
     }
 
     @PostMapping("/overdue/trigger")
-    public ResponseEntity<Map<String, String>> triggerOverdue() {
-        overdueInvoiceJob.sendOverdueReminders();
-        return ResponseEntity.ok(Map.of("message", "Vervallen facturen zijn verwerkt"));
+    public ResponseEntity<JobRunResponseDTO> triggerOverdue() {
+        return submit(OverdueInvoiceJob.JOB, overdueInvoiceJob::sendOverdueReminders,
+                "Vervallen facturen worden verwerkt");
     }
 
     @PostMapping("/cleaning/missed/trigger")
-    public ResponseEntity<Map<String, String>> triggerMissedCleaning() {
-        missedCleaningTaskJob.sendMissedTaskNotifications();
-        return ResponseEntity.ok(Map.of("message", "Meldingen voor gemiste schoonmaaktaken zijn verstuurd"));
+    public ResponseEntity<JobRunResponseDTO> triggerMissedCleaning() {
+        return submit(MissedCleaningTaskJob.JOB, missedCleaningTaskJob::sendMissedTaskNotifications,
+                "Meldingen voor gemiste schoonmaaktaken worden verstuurd");
     }
 
     @PostMapping("/rent-reminder/trigger")
-    public ResponseEntity<Map<String, String>> triggerRentReminder() {
-        monthlyRentReminderJob.sendRentReminders();
-        return ResponseEntity.ok(Map.of("message", "Huurherinneringen zijn verstuurd naar alle studenten"));
+    public ResponseEntity<JobRunResponseDTO> triggerRentReminder() {
+        return submit(MonthlyRentReminderJob.JOB, monthlyRentReminderJob::sendRentReminders,
+                "Huurherinneringen worden verstuurd naar alle studenten");
     }
 
     @PostMapping("/monthly-invoices/trigger")
-    public ResponseEntity<Map<String, String>> triggerMonthlyInvoices() {
-        monthlyRentInvoiceJob.run();
-        return ResponseEntity.ok(Map.of("message", "Maandelijkse facturen zijn aangemaakt"));
+    public ResponseEntity<JobRunResponseDTO> triggerMonthlyInvoices() {
+        return submit(MonthlyRentInvoiceJob.JOB, monthlyRentInvoiceJob::run,
+                "Maandelijkse facturen worden aangemaakt");
     }
 
     @PostMapping("/payment-reminder-1/trigger")
-    public ResponseEntity<Map<String, String>> triggerPaymentReminder1() {
-        paymentReminderJob.triggerFirstReminder();
-        return ResponseEntity.ok(Map.of("message", "Eerste betalingsherinnering is verstuurd"));
+    public ResponseEntity<JobRunResponseDTO> triggerPaymentReminder1() {
+        return submit(PaymentReminderJob.JOB_PREFIX + 1, paymentReminderJob::triggerFirstReminder,
+                "Eerste betalingsherinnering wordt verstuurd");
     }
 
     @PostMapping("/payment-reminder-2/trigger")
-    public ResponseEntity<Map<String, String>> triggerPaymentReminder2() {
-        paymentReminderJob.triggerSecondReminder();
-        return ResponseEntity.ok(Map.of("message", "Tweede betalingsherinnering is verstuurd"));
+    public ResponseEntity<JobRunResponseDTO> triggerPaymentReminder2() {
+        return submit(PaymentReminderJob.JOB_PREFIX + 2, paymentReminderJob::triggerSecondReminder,
+                "Tweede betalingsherinnering wordt verstuurd");
     }
-}
\ No newline at end of file
+
+    /**
+     * @param full read every statement again and retry unmatched lines, instead of only the new statements
+     */
+    @PostMapping("/reconciliation/trigger")
+    public ResponseEntity<JobRunResponseDTO> triggerReconciliation(@RequestParam(defaultValue = "false") boolean full) {
+        if (!bankReconciliationJob.isConfigured()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Er is geen map voor bankafschriften ingesteld (RECONCILIATION_DIR)");
+        }
+        return full
+                ? submit(BankReconciliationJob.JOB, bankReconciliationJob::reconcileAllStatements,
+                "Alle bankafschriften worden opnieuw afgeletterd")
+                : submit(BankReconciliationJob.JOB, bankReconciliationJob::reconcileNewStatements,
+                "Nieuwe bankafschriften worden afgeletterd");
+    }
+
+    @GetMapping("/runs/{id}")
+    public ResponseEntity<JobRunResponseDTO> getRun(@PathVariable String id) {
+        JobRun run = jobRunner.find(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job-run niet gevonden"));
+        return ResponseEntity.ok(JobRunResponseDTO.from(run, false, null, Instant.now()));
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<List<JobHistoryRunDTO>> getHistory(
+            @RequestParam(required = false) String job,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit
+    ) {
+        return ResponseEntity.ok(jobHistory.findRuns(job, limit));
+    }
+
+    @GetMapping("/history/{id}/items")
+    public ResponseEntity<List<JobItemDTO>> getHistoryItems(
+            @PathVariable @Positive Long id,
+            @RequestParam(required = false) String outcome
+    ) {
+        if (jobHistory.findRun(id).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job-run niet gevonden");
+        }
+        return ResponseEntity.ok(jobHistory.findItems(id, parseOutcome(outcome)));
+    }
+
+    private JobHistory.Outcome parseOutcome(String outcome) {
+        if (outcome == null || outcome.isBlank()) {
+            return null;
+        }
+        try {
+            return JobHistory.Outcome.valueOf(outcome.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ongeldige uitkomst: " + outcome);
+        }
+    }
+
+    private ResponseEntity<JobRunResponseDTO> submit(String job, BooleanSupplier task, String message) {
+        JobRunner.Submission submission = jobRunner.submit(job, task);
+        JobRun run = submission.run();
+        String text = submission.deduplicated() ? "Deze job staat al in de wachtrij of draait al" : message;
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/admin/jobs/runs/" + run.getId()))
+                .body(JobRunResponseDTO.from(run, submission.deduplicated(), text, Instant.now()));
+    }
+}
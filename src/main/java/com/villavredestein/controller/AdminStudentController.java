@@ -1,7 +1,7 @@
 package com.villavredestein.controller;
 
-import com.villavredestein.dto.InvoiceRequestDTO;
-import com.villavredestein.dto.InvoiceResponseDTO;
+import com.villavredestein.dto.StudentImportResultDTO;
+import com.villavredestein.dto.StudentImportRowDTO;
 import com.villavredestein.dto.UserResponseDTO;
 import com.villavredestein.model.Invoice;
 import com.villavredestein.model.Room;
@@ -11,6 +11,7 @@ import com.villavredestein.repository.UserRepository;
 import com.villavredestein.service.CleaningScheduleService;
 import com.villavredestein.service.InvoiceService;
 import com.villavredestein.service.MailService;
+import com.villavredestein.service.StudentImportService;
 import com.villavredestein.service.UserService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
@@ -51,6 +52,7 @@ public class AdminStudentController {
     private final MailService mailService;
     private final CleaningScheduleService cleaningScheduleService;
     private final PasswordEncoder passwordEncoder;
+    private final StudentImportService studentImportService;
 
     @Value("${app.frontend-url:https://villa-vredestein.netlify.app}")
     private String frontendUrl;
@@ -64,7 +66,8 @@ public class AdminStudentController {
                                   InvoiceService invoiceService,
                                   MailService mailService,
                                   CleaningScheduleService cleaningScheduleService,
-                                  PasswordEncoder passwordEncoder) {
+                                  PasswordEncoder passwordEncoder,
+                                  StudentImportService studentImportService) {
         this.userService              = userService;
         this.userRepository           = userRepository;
         this.roomRepository           = roomRepository;
@@ -72,6 +75,7 @@ public class AdminStudentController {
         this.mailService              = mailService;
         this.cleaningScheduleService  = cleaningScheduleService;
         this.passwordEncoder          = passwordEncoder;
+        this.studentImportService     = studentImportService;
     }
 
     @GetMapping("/rooms/available")
@@ -156,15 +160,10 @@ public class AdminStudentController {
             LocalDate dueDate  = today.plusDays(7);
             String maand       = today.withDayOfMonth(1).format(MONTH_NL);
 
-            InvoiceRequestDTO invoiceDto = new InvoiceRequestDTO();
-            invoiceDto.setTitle("Huur " + maand + " - " + naam);
-            invoiceDto.setDescription("Maandelijkse huur - " + naam);
-            invoiceDto.setAmount(req.getRentAmount());
-            invoiceDto.setIssueDate(today);
-            invoiceDto.setDueDate(dueDate);
-            invoiceDto.setStudentEmail(email);
-
-            InvoiceResponseDTO invoice = invoiceService.createInvoice(invoiceDto);
+            Invoice invoice = new Invoice("Huur " + maand + " - " + naam, "Maandelijkse huur - " + naam,
+                    req.getRentAmount(), today, dueDate, today.getMonthValue(), today.getYear(),
+                    Invoice.InvoiceStatus.OPEN, student);
+            invoiceService.createInvoicesIfAbsent(List.of(invoice));
 
         } catch (Exception e) {
             log.error("Invoice creation failed for new student {}: {}", maskEmail(email), e.getMessage());
@@ -191,6 +190,22 @@ public class AdminStudentController {
         return ResponseEntity.ok(finalDto);
     }
 
+    /**
+     * Onboards a whole cohort: all rows are checked first and either all students are created or, with a 400
+     * listing every bad row, none. The welcome mails are sent in the background; poll the returned run id at
+     * {@code /api/admin/jobs/runs/{id}}.
+     */
+    @PostMapping(value = "/students/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StudentImportResultDTO> importStudents(@RequestBody List<StudentImportRowDTO> rows) {
+        return ResponseEntity.ok(studentImportService.importStudents(rows));
+    }
+
+    /** The same import as CSV with a header row; see {@link StudentImportService#parseCsv(String)} for the columns. */
+    @PostMapping(value = "/students/import", consumes = "text/csv")
+    public ResponseEntity<StudentImportResultDTO> importStudentsCsv(@RequestBody String csv) {
+        return ResponseEntity.ok(studentImportService.importStudents(studentImportService.parseCsv(csv)));
+    }
+
     @PatchMapping(value = "/students/{id}/password", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Void> resetStudentPassword(
             @PathVariable @NotNull Long id,
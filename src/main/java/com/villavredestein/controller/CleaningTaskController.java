@@ -3,6 +3,7 @@ package com.villavredestein.controller;
 import com.villavredestein.dto.CleaningTaskRequestDTO;
 import com.villavredestein.dto.CleaningTaskResponseDTO;
 import com.villavredestein.service.CleaningTaskService;
+import com.villavredestein.service.ConflictRetry;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
@@ -23,9 +24,11 @@ import java.util.LinkedHashMap;
 public class CleaningTaskController {
 
     private final CleaningTaskService cleaningService;
+    private final ConflictRetry conflictRetry;
 
-    public CleaningTaskController(CleaningTaskService cleaningService) {
+    public CleaningTaskController(CleaningTaskService cleaningService, ConflictRetry conflictRetry) {
         this.cleaningService = cleaningService;
+        this.conflictRetry = conflictRetry;
     }
 
     @GetMapping("/schedule/info")
@@ -94,7 +97,7 @@ public class CleaningTaskController {
             @PathVariable @Positive Long taskId,
             @RequestParam @NotBlank String comment
     ) {
-        return ResponseEntity.ok(cleaningService.addComment(taskId, comment));
+        return ResponseEntity.ok(conflictRetry.run("task-comment", () -> cleaningService.addComment(taskId, comment)));
     }
 
     @PutMapping("/tasks/{taskId}/incident")
@@ -103,7 +106,7 @@ public class CleaningTaskController {
             @PathVariable @Positive Long taskId,
             @RequestParam @NotBlank String incident
     ) {
-        return ResponseEntity.ok(cleaningService.addIncident(taskId, incident));
+        return ResponseEntity.ok(conflictRetry.run("task-incident", () -> cleaningService.addIncident(taskId, incident)));
     }
 
     @DeleteMapping("/tasks/{taskId}")
@@ -2,10 +2,18 @@ package com.villavredestein.controller;
 
 import com.villavredestein.dto.InvoiceRequestDTO;
 import com.villavredestein.dto.InvoiceResponseDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.service.ConflictRetry;
+import com.villavredestein.service.InvoiceExportService;
+import com.villavredestein.service.InvoicePdfCache;
+import com.villavredestein.service.InvoicePdfService;
 import com.villavredestein.service.InvoiceService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -15,6 +23,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -24,9 +33,18 @@ import java.util.List;
 public class InvoiceController {
 
     private final InvoiceService invoiceService;
+    private final InvoiceExportService invoiceExportService;
+    private final InvoicePdfService invoicePdfService;
+    private final ConflictRetry conflictRetry;
 
-    public InvoiceController(InvoiceService invoiceService) {
+    public InvoiceController(InvoiceService invoiceService,
+                             InvoiceExportService invoiceExportService,
+                             InvoicePdfService invoicePdfService,
+                             ConflictRetry conflictRetry) {
         this.invoiceService = invoiceService;
+        this.invoiceExportService = invoiceExportService;
+        this.invoicePdfService = invoicePdfService;
+        this.conflictRetry = conflictRetry;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -54,20 +72,51 @@ public class InvoiceController {
 
     @PreAuthorize("hasAnyRole('STUDENT','ADMIN')")
     @GetMapping("/{id}/pdf")
-    public ResponseEntity<byte[]> downloadInvoicePdf(
+    public ResponseEntity<?> downloadInvoicePdf(
             @PathVariable @Positive Long id,
             Authentication authentication
     ) {
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        byte[] pdf = invoiceService.generatePdf(id, authentication.getName(), isAdmin);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDisposition(
                 ContentDisposition.attachment().filename("factuur-" + id + ".pdf").build()
         );
-        return ResponseEntity.ok().headers(headers).body(pdf);
+
+        // Without a cache there is nothing to keep, so render straight into the response.
+        if (!invoiceService.isPdfCacheEnabled()) {
+            Invoice invoice = invoiceService.getInvoiceForPdf(id, authentication.getName(), isAdmin);
+            StreamingResponseBody body = out -> invoicePdfService.generate(invoice, out);
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .cacheControl(CacheControl.noStore())
+                    .body(body);
+        }
+
+        InvoicePdfCache.CachedPdf pdf = invoiceService.generatePdf(id, authentication.getName(), isAdmin);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .eTag(pdf.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(pdf.content());
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/export", produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> exportMonth(
+            @RequestParam @Min(1) @Max(12) int month,
+            @RequestParam @Min(2000) @Max(2100) int year
+    ) {
+        List<Invoice> invoices = invoiceExportService.findForMonth(month, year);
+        String filename = String.format("facturen-%d-%02d.zip", year, month);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> invoiceExportService.writeZip(invoices, out));
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -84,7 +133,8 @@ public class InvoiceController {
             @RequestParam @NotBlank String status
     ) {
         String normalizedStatus = status.trim().toUpperCase();
-        return ResponseEntity.ok(invoiceService.updateStatus(id, normalizedStatus));
+        return ResponseEntity.ok(conflictRetry.run("invoice-status",
+                () -> invoiceService.updateStatus(id, normalizedStatus)));
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -0,0 +1,58 @@
+package com.villavredestein.controller;
+
+import com.villavredestein.dto.LedgerEntryDTO;
+import com.villavredestein.dto.StudentBalanceDTO;
+import com.villavredestein.service.LedgerService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * A student's balance and the ledger entries behind it. Students only see their own; the admin sees everyone's.
+ * The ledger is paged newest first: pass the id of the last entry of a page as {@code before} for the next page.
+ */
+@Validated
+@RestController
+@RequestMapping(value = "/api/students", produces = MediaType.APPLICATION_JSON_VALUE)
+@PreAuthorize("hasAnyRole('STUDENT','ADMIN')")
+public class StudentLedgerController {
+
+    private final LedgerService ledgerService;
+
+    public StudentLedgerController(LedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<StudentBalanceDTO> getBalance(@PathVariable @Positive Long id, Authentication authentication) {
+        return ResponseEntity.ok(ledgerService.getBalance(id, authentication.getName(), isAdmin(authentication)));
+    }
+
+    @GetMapping("/{id}/ledger")
+    public ResponseEntity<List<LedgerEntryDTO>> getLedger(
+            @PathVariable @Positive Long id,
+            @RequestParam(required = false) @Positive Long before,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit,
+            Authentication authentication
+    ) {
+        return ResponseEntity.ok(ledgerService.getEntries(id, before, limit, authentication.getName(),
+                isAdmin(authentication)));
+    }
+
+    private boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    }
+}
@@ -0,0 +1,19 @@
+package com.villavredestein.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record FinanceDashboardDTO(
+        LocalDateTime generatedAt,
+        LocalDate from,
+        BigDecimal outstandingAmount,
+        long outstandingCount,
+        BigDecimal overdueAmount,
+        long overdueCount,
+        BigDecimal receivedThisMonth,
+        long paymentsThisMonth,
+        List<FinanceMonthDTO> months,
+        List<FinanceStudentDTO> students
+) {}
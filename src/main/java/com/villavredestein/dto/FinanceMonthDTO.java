@@ -0,0 +1,13 @@
+package com.villavredestein.dto;
+
+import java.math.BigDecimal;
+
+public record FinanceMonthDTO(
+        int year,
+        int month,
+        long invoiceCount,
+        BigDecimal billed,
+        BigDecimal paid,
+        BigDecimal outstanding,
+        BigDecimal received
+) {}
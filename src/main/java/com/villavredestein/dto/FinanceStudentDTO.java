@@ -0,0 +1,12 @@
+package com.villavredestein.dto;
+
+import java.math.BigDecimal;
+
+public record FinanceStudentDTO(
+        Long studentId,
+        String username,
+        String roomName,
+        BigDecimal paid,
+        BigDecimal outstanding,
+        long overdueCount
+) {}
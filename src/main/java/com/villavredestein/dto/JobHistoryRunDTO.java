@@ -0,0 +1,17 @@
+package com.villavredestein.dto;
+
+import java.time.Instant;
+
+public record JobHistoryRunDTO(
+        Long id,
+        String job,
+        String runKey,
+        String status,
+        int attempts,
+        Instant startedAt,
+        Instant finishedAt,
+        int processed,
+        int sent,
+        int failed,
+        int skipped
+) {}
@@ -0,0 +1,10 @@
+package com.villavredestein.dto;
+
+import java.time.Instant;
+
+public record JobItemDTO(
+        Long itemId,
+        String outcome,
+        String reason,
+        Instant recordedAt
+) {}
@@ -0,0 +1,45 @@
+package com.villavredestein.dto;
+
+import com.villavredestein.jobs.JobRun;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+public record JobRunResponseDTO(
+        String runId,
+        String job,
+        String status,
+        boolean deduplicated,
+        String message,
+        Instant submittedAt,
+        Instant startedAt,
+        Instant finishedAt,
+        Long durationMs,
+        int processed,
+        int sent,
+        int failed,
+        Map<String, Integer> skipped,
+        String error
+) {
+
+    public static JobRunResponseDTO from(JobRun run, boolean deduplicated, String message, Instant now) {
+        Duration duration = run.getDuration(now);
+        return new JobRunResponseDTO(
+                run.getId(),
+                run.getJob(),
+                run.getStatus().name(),
+                deduplicated,
+                message,
+                run.getSubmittedAt(),
+                run.getStartedAt(),
+                run.getFinishedAt(),
+                duration != null ? duration.toMillis() : null,
+                run.getProcessed(),
+                run.getSent(),
+                run.getFailed(),
+                run.getSkipped(),
+                run.getError()
+        );
+    }
+}
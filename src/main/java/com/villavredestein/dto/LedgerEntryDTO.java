@@ -0,0 +1,14 @@
+package com.villavredestein.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record LedgerEntryDTO(
+        Long id,
+        String type,
+        BigDecimal amount,
+        Long invoiceId,
+        Long paymentId,
+        String description,
+        LocalDateTime createdAt
+) {}
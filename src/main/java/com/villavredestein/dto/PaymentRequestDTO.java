@@ -26,6 +26,9 @@ public class PaymentRequestDTO {
     @Email(message = "Invalid email address")
     private String studentEmail;
 
+    @Positive(message = "Invoice id must be positive")
+    private Long invoiceId;
+
     public BigDecimal getAmount() {
         return amount;
     }
@@ -65,4 +68,12 @@ public class PaymentRequestDTO {
     public void setStudentEmail(String studentEmail) {
         this.studentEmail = studentEmail == null ? null : studentEmail.trim().toLowerCase();
     }
+
+    public Long getInvoiceId() {
+        return invoiceId;
+    }
+
+    public void setInvoiceId(Long invoiceId) {
+        this.invoiceId = invoiceId;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.villavredestein.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** What a student owes: positive is still to be paid, negative is paid in advance. */
+public record StudentBalanceDTO(
+        Long studentId,
+        BigDecimal balance,
+        long entryCount,
+        LocalDateTime updatedAt
+) {}
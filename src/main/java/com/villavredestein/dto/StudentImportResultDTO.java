@@ -0,0 +1,18 @@
+package com.villavredestein.dto;
+
+import java.util.List;
+
+/**
+ * @param welcomeMailRunId the background run sending the welcome mails, polled at
+ *                         {@code /api/admin/jobs/runs/{id}}; null when no mail was queued
+ */
+public record StudentImportResultDTO(
+        int imported,
+        int invoicesCreated,
+        int welcomeMailsQueued,
+        String welcomeMailRunId,
+        List<ImportedStudent> students
+) {
+
+    public record ImportedStudent(Long id, String username, String email, String roomName) {}
+}
@@ -0,0 +1,40 @@
+package com.villavredestein.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+
+/**
+ * One student of a bulk import; the same rules as a single new student.
+ *
+ * @param room             optional; the room must exist and be free
+ * @param sendWelcomeEmail {@code null} counts as yes
+ */
+public record StudentImportRowDTO(
+
+        @NotBlank(message = "Naam is verplicht")
+        @Size(min = 2, max = 50, message = "Naam moet tussen 2 en 50 tekens zijn")
+        String username,
+
+        @NotBlank(message = "E-mail is verplicht")
+        @Email(message = "E-mail moet geldig zijn")
+        @Size(max = 100, message = "E-mail mag maximaal 100 tekens zijn")
+        String email,
+
+        @NotBlank(message = "Wachtwoord is verplicht")
+        @Size(min = 8, max = 72, message = "Wachtwoord moet minimaal 8 tekens zijn")
+        String password,
+
+        @Size(max = 50, message = "Kamer mag maximaal 50 tekens zijn")
+        String room,
+
+        @NotNull(message = "Huurbedrag is verplicht")
+        @DecimalMin(value = "1.00", message = "Huurbedrag moet minimaal €1 zijn")
+        BigDecimal rentAmount,
+
+        Boolean sendWelcomeEmail
+) {}
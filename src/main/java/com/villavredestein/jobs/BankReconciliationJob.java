@@ -0,0 +1,72 @@
+package com.villavredestein.jobs;
+
+import com.villavredestein.service.ReconciliationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+@Component
+@ConditionalOnProperty(value = "spring.task.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class BankReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BankReconciliationJob.class);
+    public static final String JOB = "bank-reconciliation";
+
+    private final ReconciliationService reconciliationService;
+    private final JobMetrics jobMetrics;
+    private final JobLock jobLock;
+
+    public BankReconciliationJob(ReconciliationService reconciliationService, JobMetrics jobMetrics, JobLock jobLock) {
+        this.reconciliationService = reconciliationService;
+        this.jobMetrics = jobMetrics;
+        this.jobLock = jobLock;
+    }
+
+    public boolean isConfigured() {
+        return reconciliationService.isConfigured();
+    }
+
+    /**
+     * Imports the statements added since the last run. Does nothing when no statement directory is configured.
+     *
+     * @return false when the job did not run because another run holds its lock
+     */
+    @Scheduled(cron = "${app.reconciliation.cron:0 30 7 * * *}", zone = "Europe/Amsterdam")
+    public boolean reconcileNewStatements() {
+        if (!isConfigured()) {
+            log.debug("BankReconciliationJob skipped: no statement directory configured");
+            return true;
+        }
+        return jobLock.runExclusively(JOB, () -> reconcile(true));
+    }
+
+    /**
+     * Reads every statement again and retries the lines that are still unmatched.
+     *
+     * @return false when the job did not run because another run holds its lock
+     */
+    public boolean reconcileAllStatements() {
+        return jobLock.runExclusively(JOB, () -> reconcile(false));
+    }
+
+    private void reconcile(boolean incremental) {
+        try (JobMetrics.Run run = jobMetrics.start(JOB)) {
+            ReconciliationService.Result result = reconciliationService.reconcile(incremental, outcome -> {
+                run.processed();
+                if (outcome == ReconciliationService.Outcome.MATCHED) {
+                    run.sent();
+                } else {
+                    run.skipped(outcome.name().toLowerCase(Locale.ROOT));
+                }
+            });
+            for (int i = 0; i < result.failedFiles(); i++) {
+                run.failed();
+            }
+            run.succeeded();
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.villavredestein.jobs;
 
 import com.villavredestein.model.Invoice;
-import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.service.InvoiceService;
+import com.villavredestein.service.ReminderPolicy;
 import com.villavredestein.service.WhatsAppService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +15,8 @@ import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
-import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
@@ -24,74 +26,100 @@ import java.util.Locale;
 public class BunqPaymentReminderJob {
 
     private static final Logger log = LoggerFactory.getLogger(BunqPaymentReminderJob.class);
+    public static final String JOB = "bunq-payment-reminder";
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final DateTimeFormatter MONTH_NL = DateTimeFormatter.ofPattern("MMMM yyyy", NL);
     private static final DateTimeFormatter DATE_NL = DateTimeFormatter.ofPattern("d MMMM yyyy", NL);
 
-    private final InvoiceRepository invoiceRepository;
+    private final InvoiceService invoiceService;
     private final WhatsAppService whatsAppService;
+    private final JobHistory jobHistory;
+    private final JobLock jobLock;
 
     @Value("${bunq.me.username:MaximStaal}")
     private String bunqMeUsername;
 
-    public BunqPaymentReminderJob(InvoiceRepository invoiceRepository,
-                                  WhatsAppService whatsAppService) {
-        this.invoiceRepository = invoiceRepository;
+    public BunqPaymentReminderJob(InvoiceService invoiceService,
+                                  WhatsAppService whatsAppService,
+                                  JobHistory jobHistory,
+                                  JobLock jobLock) {
+        this.invoiceService = invoiceService;
         this.whatsAppService = whatsAppService;
+        this.jobHistory = jobHistory;
+        this.jobLock = jobLock;
     }
 
     @Scheduled(cron = "0 0 9 6 * *", zone = "Europe/Amsterdam")
-    public void sendFirstReminder() {
-        sendReminders(1);
+    public boolean sendFirstReminder() {
+        return sendReminders(1);
     }
 
     @Scheduled(cron = "0 0 9 11 * *", zone = "Europe/Amsterdam")
-    public void sendSecondReminder() {
-        sendReminders(2);
+    public boolean sendSecondReminder() {
+        return sendReminders(2);
     }
 
-    private void sendReminders(int reminderNumber) {
-        LocalDate today = LocalDate.now();
-        int month = today.getMonthValue();
-        int year = today.getYear();
-        String maand = today.withDayOfMonth(1).format(MONTH_NL);
-
-        List<Invoice> openInvoices = invoiceRepository.findByInvoiceMonthAndInvoiceYearAndStatusNotIn(
-                month, year, List.of(Invoice.InvoiceStatus.PAID));
-
-        log.info("BunqPaymentReminderJob reminder={} maand={} openInvoices={}", reminderNumber, maand, openInvoices.size());
-
-        for (Invoice invoice : openInvoices) {
-            try {
-                var student = invoice.getStudent();
-                if (student == null) continue;
-
-                String phone = student.getPhoneNumber();
-                if (phone == null || phone.isBlank()) continue;
-
-                String naam = student.getUsername();
-                String bedrag = formatBedrag(invoice.getAmount());
-                String vervaldatum = invoice.getDueDate() != null
-                        ? invoice.getDueDate().format(DATE_NL)
-                        : "zo snel mogelijk";
-
-                String bunqLink = buildBunqLink(invoice.getAmount(), maand);
-                String waMsg = String.format(
-                        "Hallo %s! Dit is herinnering %d voor je huur van %s voor %s. " +
-                        "De betaling staat nog open. Maak het bedrag over vóór %s naar " +
-                        "NL94 INGB 0660 8510 83 ten name van M. Staal.%s " +
-                        "Heb je al betaald? Dan kun je dit bericht negeren.",
-                        naam, reminderNumber, bedrag, maand, vervaldatum,
-                        bunqLink.isEmpty() ? "" : " Of betaal direct via bunq: " + bunqLink + ".");
-
-                whatsAppService.send(phone, waMsg);
-                whatsAppService.sendToAdmins("Bunq herinnering " + reminderNumber + " verstuurd aan "
-                        + naam + " voor huur " + maand + " (" + bedrag + ").");
-
-                log.info("BunqPaymentReminderJob reminder={} sent to student={}", reminderNumber, student.getId());
-            } catch (Exception e) {
-                log.error("BunqPaymentReminderJob failed for invoiceId={}: {}", invoice.getId(), e.getMessage());
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
+    private boolean sendReminders(int reminderNumber) {
+        return jobLock.runExclusively(JOB, () -> remind(reminderNumber));
+    }
+
+    private void remind(int reminderNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        YearMonth period = YearMonth.from(now);
+        String maand = period.atDay(1).format(MONTH_NL);
+        ReminderPolicy policy = ReminderPolicy.unpaidFor(period, ReminderPolicy.Contact.PHONE);
+
+        try (JobHistory.Recording run = jobHistory.start(JOB, period + "/" + reminderNumber)) {
+            List<Invoice> openInvoices = invoiceService.findReminderCandidates(policy, now);
+
+            log.info("BunqPaymentReminderJob reminder={} maand={} openInvoices={}", reminderNumber, maand, openInvoices.size());
+
+            for (Invoice invoice : openInvoices) {
+                if (jobLock.leaseLost()) {
+                    return;
+                }
+                run.processed();
+                if (run.alreadySent(invoice.getId())) {
+                    run.skipped("already_sent");
+                    continue;
+                }
+                sendReminder(invoice, reminderNumber, maand, run);
             }
+            run.succeeded();
+        }
+    }
+
+    private void sendReminder(Invoice invoice, int reminderNumber, String maand, JobHistory.Recording run) {
+        try {
+            var student = invoice.getStudent();
+            String phone = student.getPhoneNumber();
+            String naam = student.getUsername();
+            String bedrag = formatBedrag(invoice.getAmount());
+            String vervaldatum = invoice.getDueDate() != null
+                    ? invoice.getDueDate().format(DATE_NL)
+                    : "zo snel mogelijk";
+
+            String bunqLink = buildBunqLink(invoice.getAmount(), maand);
+            String waMsg = String.format(
+                    "Hallo %s! Dit is herinnering %d voor je huur van %s voor %s. " +
+                    "De betaling staat nog open. Maak het bedrag over vóór %s naar " +
+                    "NL94 INGB 0660 8510 83 ten name van M. Staal.%s " +
+                    "Heb je al betaald? Dan kun je dit bericht negeren.",
+                    naam, reminderNumber, bedrag, maand, vervaldatum,
+                    bunqLink.isEmpty() ? "" : " Of betaal direct via bunq: " + bunqLink + ".");
+
+            whatsAppService.send(phone, waMsg);
+            whatsAppService.sendToAdmins("Bunq herinnering " + reminderNumber + " verstuurd aan "
+                    + naam + " voor huur " + maand + " (" + bedrag + ").");
+
+            run.sent(invoice.getId());
+            log.info("BunqPaymentReminderJob reminder={} sent to student={}", reminderNumber, student.getId());
+        } catch (Exception e) {
+            run.failed(invoice.getId(), "send_failed");
+            log.error("BunqPaymentReminderJob failed for invoiceId={}: {}", invoice.getId(), e.getMessage());
         }
     }
 
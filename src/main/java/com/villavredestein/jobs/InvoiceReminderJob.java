@@ -4,6 +4,8 @@ import com.villavredestein.model.Invoice;
 import com.villavredestein.model.User;
 import com.villavredestein.service.InvoiceService;
 import com.villavredestein.service.MailService;
+import com.villavredestein.service.ReminderPolicy;
+import com.villavredestein.service.ReminderStateWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,10 +15,8 @@ import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Locale;
 
@@ -25,6 +25,7 @@ import java.util.Locale;
 public class InvoiceReminderJob {
 
     private static final Logger log = LoggerFactory.getLogger(InvoiceReminderJob.class);
+    public static final String JOB = "invoice-reminder";
 
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final NumberFormat EUR = NumberFormat.getCurrencyInstance(NL);
@@ -41,108 +42,53 @@ public class InvoiceReminderJob {
 
     private final InvoiceService invoiceService;
     private final MailService mailService;
+    private final JobMetrics jobMetrics;
+    private final JobLock jobLock;
 
-    public InvoiceReminderJob(InvoiceService invoiceService, MailService mailService) {
+    public InvoiceReminderJob(InvoiceService invoiceService, MailService mailService, JobMetrics jobMetrics, JobLock jobLock) {
         this.invoiceService = invoiceService;
         this.mailService = mailService;
+        this.jobMetrics = jobMetrics;
+        this.jobLock = jobLock;
     }
 
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
     @Scheduled(cron = "0 0 9 * * *", zone = "Europe/Amsterdam")
-    public void sendReminders() {
-        LocalDate today = LocalDate.now();
+    public boolean sendReminders() {
+        return jobLock.runExclusively(JOB, this::remindUpcomingInvoices);
+    }
+
+    private void remindUpcomingInvoices() {
         LocalDateTime now = LocalDateTime.now();
+        ReminderPolicy policy = ReminderPolicy.upcoming(daysBeforeDue, maxReminders, minHoursBetween);
 
         log.info("InvoiceReminderJob started (daysBeforeDue={}, maxReminders={}, minHoursBetween={})",
                 daysBeforeDue, maxReminders, minHoursBetween);
 
-        List<Invoice> candidates = invoiceService.getUpcomingInvoices();
-        log.info("Candidates received: {} invoices", candidates.size());
-
-        for (Invoice invoice : candidates) {
-            processInvoice(invoice, today, now);
+        try (JobMetrics.Run run = jobMetrics.start(JOB);
+             ReminderStateWriter reminderState = invoiceService.reminderStateWriter(now, false)) {
+            List<Invoice> candidates = invoiceService.findReminderCandidates(policy, now);
+            log.info("Candidates received: {} invoices", candidates.size());
+
+            for (Invoice invoice : candidates) {
+                if (jobLock.leaseLost()) {
+                    return;
+                }
+                run.processed();
+                User student = invoice.getStudent();
+                sendReminderMail(invoice, student, student.getEmail(), run, reminderState);
+            }
+            reminderState.flush();
+            run.succeeded();
         }
 
         log.info("InvoiceReminderJob finished");
     }
 
-    private void processInvoice(Invoice invoice, LocalDate today, LocalDateTime now) {
-        if (invoice == null) {
-            log.warn("Skip: invoice is null");
-            return;
-        }
-
-        Long invoiceId = invoice.getId();
-
-        if (invoice.getStatus() != null && invoice.getStatus() != Invoice.InvoiceStatus.OPEN) {
-            log.info("Skip: invoice not OPEN (invoiceId={}, status={})", invoiceId, invoice.getStatus());
-            return;
-        }
-
-        User student = invoice.getStudent();
-        if (student == null) {
-            log.warn("Skip: student missing (invoiceId={})", invoiceId);
-            return;
-        }
-
-        if (invoice.getDueDate() == null) {
-            log.warn("Skip: dueDate missing (invoiceId={})", invoiceId);
-            return;
-        }
-
-        if (!passesAntiSpamRules(invoice, now)) {
-            return;
-        }
-
-        if (!withinDueWindow(invoice, today)) {
-            return;
-        }
-
-        String to = student.getEmail();
-        if (to == null || to.isBlank()) {
-            log.warn("Skip: invalid email (invoiceId={}, student={})", invoiceId, safeName(student));
-            return;
-        }
-
-        sendReminderMail(invoice, student, to, now);
-    }
-
-    private boolean passesAntiSpamRules(Invoice invoice, LocalDateTime now) {
-        Long invoiceId = invoice.getId();
-
-        if (invoice.getReminderCount() >= maxReminders) {
-            log.info("Skip: maxReminders reached (invoiceId={}, reminderCount={})",
-                    invoiceId, invoice.getReminderCount());
-            return false;
-        }
-
-        LocalDateTime last = invoice.getLastReminderSentAt();
-        if (last == null) {
-            return true;
-        }
-
-        long hoursSinceLast = ChronoUnit.HOURS.between(last, now);
-        if (hoursSinceLast < minHoursBetween) {
-            log.info("Skip: last reminder {} hours ago (invoiceId={})", hoursSinceLast, invoiceId);
-            return false;
-        }
-
-        return true;
-    }
-
-    private boolean withinDueWindow(Invoice invoice, LocalDate today) {
-        Long invoiceId = invoice.getId();
-
-        long daysToDue = ChronoUnit.DAYS.between(today, invoice.getDueDate());
-        if (daysToDue < 0 || daysToDue > daysBeforeDue) {
-            log.info("Skip: dueDate outside window (invoiceId={}, daysToDue={}, window={})",
-                    invoiceId, daysToDue, daysBeforeDue);
-            return false;
-        }
-
-        return true;
-    }
-
-    private void sendReminderMail(Invoice invoice, User student, String to, LocalDateTime now) {
+    private void sendReminderMail(Invoice invoice, User student, String to, JobMetrics.Run run,
+                                  ReminderStateWriter reminderState) {
         Long invoiceId = invoice.getId();
 
         String amount = formatAmount(invoice.getAmount());
@@ -168,13 +114,14 @@ public class InvoiceReminderJob {
         try {
             mailService.sendInvoiceReminderMail(to, subject, body);
 
-            invoice.markReminderSentNow();
-            invoiceService.saveReminderMeta(invoice);
+            reminderState.sent(invoice);
+            run.sent();
 
             log.info("Reminder sent (invoiceId={}, to={}, reminderCount={})",
-                    invoiceId, maskEmail(to), invoice.getReminderCount());
+                    invoiceId, maskEmail(to), invoice.getReminderCount() + 1);
 
         } catch (Exception e) {
+            run.failed();
             log.error("Sending failed (invoiceId={}, to={}): {}", invoiceId, maskEmail(to), e.getMessage());
         }
     }
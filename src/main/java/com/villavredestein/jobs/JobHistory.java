@@ -0,0 +1,250 @@
+package com.villavredestein.jobs;
+
+import com.villavredestein.dto.JobHistoryRunDTO;
+import com.villavredestein.dto.JobItemDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Persistent history of job runs in {@code job_run} and {@code job_item}.
+ * A run is identified by its job and a run key, the period it is for (a month, a day). Starting a run whose key
+ * already exists resumes it: {@link Recording#alreadySent(long)} tells the job which invoices were handled
+ * by an earlier attempt, so a rerun after a crash does not send them again.
+ * Outcomes are written in their own transactions, so they also survive a rollback of the job's transaction.
+ * A SENT outcome is written before the job moves on to the next item; SKIPPED and FAILED outcomes are buffered
+ * and written in batches. A crash therefore loses only skips and failures, which a resumed run simply tries again.
+ */
+@Component
+public class JobHistory {
+
+    private static final Logger log = LoggerFactory.getLogger(JobHistory.class);
+
+    public enum Outcome { SENT, SKIPPED, FAILED }
+
+    private static final String START = """
+            INSERT INTO job_run (job, run_key, status, attempts, started_at)
+            VALUES (?, ?, 'RUNNING', 1, now())
+            ON CONFLICT (job, run_key) DO UPDATE
+            SET status = 'RUNNING', attempts = job_run.attempts + 1, started_at = now(), finished_at = NULL
+            RETURNING id, attempts
+            """;
+    private static final String SENT_ITEMS = "SELECT item_id FROM job_item WHERE run_id = ? AND outcome = 'SENT'";
+    private static final String RECORD_ITEM = """
+            INSERT INTO job_item (run_id, item_id, outcome, reason, recorded_at)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (run_id, item_id) DO UPDATE
+            SET outcome = EXCLUDED.outcome, reason = EXCLUDED.reason, recorded_at = EXCLUDED.recorded_at
+            WHERE job_item.outcome <> 'SENT'
+            """;
+    private static final String FINISH = "UPDATE job_run SET status = ?, finished_at = now() WHERE id = ?";
+    private static final String SELECT_RUNS = """
+            SELECT r.id, r.job, r.run_key, r.status, r.attempts, r.started_at, r.finished_at,
+                   c.processed, c.sent, c.failed, c.skipped
+            FROM job_run r
+            CROSS JOIN LATERAL (
+                SELECT count(*) AS processed,
+                       count(*) FILTER (WHERE i.outcome = 'SENT') AS sent,
+                       count(*) FILTER (WHERE i.outcome = 'FAILED') AS failed,
+                       count(*) FILTER (WHERE i.outcome = 'SKIPPED') AS skipped
+                FROM job_item i WHERE i.run_id = r.id
+            ) c
+            """;
+
+    private static final RowMapper<JobHistoryRunDTO> RUN_MAPPER = (rs, rowNum) -> new JobHistoryRunDTO(
+            rs.getLong("id"),
+            rs.getString("job"),
+            rs.getString("run_key"),
+            rs.getString("status"),
+            rs.getInt("attempts"),
+            toInstant(rs.getTimestamp("started_at")),
+            toInstant(rs.getTimestamp("finished_at")),
+            rs.getInt("processed"),
+            rs.getInt("sent"),
+            rs.getInt("failed"),
+            rs.getInt("skipped"));
+
+    private static final RowMapper<JobItemDTO> ITEM_MAPPER = (rs, rowNum) -> new JobItemDTO(
+            rs.getLong("item_id"),
+            rs.getString("outcome"),
+            rs.getString("reason"),
+            toInstant(rs.getTimestamp("recorded_at")));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobMetrics jobMetrics;
+    private final int batchSize;
+
+    public JobHistory(JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager,
+                      JobMetrics jobMetrics,
+                      @Value("${app.jobs.history.batch-size:25}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("app.jobs.history.batch-size moet minimaal 1 zijn");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jobMetrics = jobMetrics;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts, or resumes, the run of the job for the given key. The recording also reports to {@link JobMetrics}.
+     */
+    public Recording start(String job, String runKey) {
+        Map<String, Object> row = transactionTemplate.execute(status -> jdbcTemplate.queryForMap(START, job, runKey));
+        long runId = ((Number) row.get("id")).longValue();
+        int attempt = ((Number) row.get("attempts")).intValue();
+        Set<Long> sentBefore = attempt > 1
+                ? new HashSet<>(jdbcTemplate.queryForList(SENT_ITEMS, Long.class, runId))
+                : Set.of();
+        if (attempt > 1) {
+            log.info("Job {} [{}]: resuming run {} (attempt {}, {} items already sent)",
+                    job, runKey, runId, attempt, sentBefore.size());
+        }
+        return new Recording(jobMetrics.start(job), runId, attempt, sentBefore);
+    }
+
+    /** Most recent runs first, optionally for one job. */
+    public List<JobHistoryRunDTO> findRuns(String job, int limit) {
+        if (job == null || job.isBlank()) {
+            return jdbcTemplate.query(SELECT_RUNS + " ORDER BY r.started_at DESC LIMIT ?", RUN_MAPPER, limit);
+        }
+        return jdbcTemplate.query(SELECT_RUNS + " WHERE r.job = ? ORDER BY r.started_at DESC LIMIT ?",
+                RUN_MAPPER, job, limit);
+    }
+
+    public Optional<JobHistoryRunDTO> findRun(long runId) {
+        return jdbcTemplate.query(SELECT_RUNS + " WHERE r.id = ?", RUN_MAPPER, runId).stream().findFirst();
+    }
+
+    public List<JobItemDTO> findItems(long runId, Outcome outcome) {
+        String sql = "SELECT item_id, outcome, reason, recorded_at FROM job_item WHERE run_id = ?";
+        if (outcome == null) {
+            return jdbcTemplate.query(sql + " ORDER BY item_id", ITEM_MAPPER, runId);
+        }
+        return jdbcTemplate.query(sql + " AND outcome = ? ORDER BY item_id", ITEM_MAPPER, runId, outcome.name());
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    /**
+     * One attempt of a run. Closing it writes the remaining outcomes and marks the run
+     * succeeded or failed, depending on whether {@link #succeeded()} was called.
+     */
+    public final class Recording implements AutoCloseable {
+
+        private final JobMetrics.Run metrics;
+        private final long runId;
+        private final int attempt;
+        private final Set<Long> sentBefore;
+        private final List<Object[]> pending = new ArrayList<>();
+        private boolean success;
+
+        private Recording(JobMetrics.Run metrics, long runId, int attempt, Set<Long> sentBefore) {
+            this.metrics = metrics;
+            this.runId = runId;
+            this.attempt = attempt;
+            this.sentBefore = sentBefore;
+        }
+
+        public long runId() {
+            return runId;
+        }
+
+        public int attempt() {
+            return attempt;
+        }
+
+        /** True when an earlier attempt of this run already sent to the item. */
+        public boolean alreadySent(long itemId) {
+            return sentBefore.contains(itemId);
+        }
+
+        public void processed() {
+            metrics.processed();
+        }
+
+        /** Writes the outcome, with any buffered ones, before returning. */
+        public void sent(long itemId) {
+            metrics.sent();
+            record(itemId, Outcome.SENT, null);
+            flush();
+        }
+
+        public void skipped(long itemId, String reason) {
+            metrics.skipped(reason);
+            record(itemId, Outcome.SKIPPED, reason);
+        }
+
+        /** Counts a skip that has no item to record, such as an item that was already sent. */
+        public void skipped(String reason) {
+            metrics.skipped(reason);
+        }
+
+        public void failed(long itemId, String reason) {
+            metrics.failed();
+            record(itemId, Outcome.FAILED, reason);
+        }
+
+        public void succeeded() {
+            success = true;
+            metrics.succeeded();
+        }
+
+        private void record(long itemId, Outcome outcome, String reason) {
+            pending.add(new Object[]{runId, itemId, outcome.name(), reason, Timestamp.from(Instant.now())});
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(RECORD_ITEM, pending));
+                pending.clear();
+            } catch (DataAccessException e) {
+                log.warn("Job run {}: writing {} item outcomes failed, retrying with the next batch: {}",
+                        runId, pending.size(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                flush();
+                if (!pending.isEmpty()) {
+                    log.error("Job run {}: {} item outcomes could not be written", runId, pending.size());
+                }
+                String status = success ? "SUCCEEDED" : "FAILED";
+                transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.update(FINISH, status, runId));
+            } catch (DataAccessException e) {
+                log.error("Job run {}: marking the run finished failed: {}", runId, e.getMessage());
+            } finally {
+                metrics.close();
+            }
+        }
+    }
+}
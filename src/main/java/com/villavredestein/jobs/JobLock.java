@@ -0,0 +1,219 @@
+package com.villavredestein.jobs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease-based lock in {@code job_locks}, so each job runs on one instance at a time.
+ * The holder renews its lease with a heartbeat; when an instance dies mid-run its lease expires
+ * and the next instance to try takes the lock over. Lease times use the database clock.
+ * Lock statements run in their own transaction, so they are visible to other instances immediately,
+ * also when the job itself is {@code @Transactional}.
+ *
+ * <p>Releasing keeps the row and holds the lock until at least {@code app.jobs.lock.hold-at-least} after the run
+ * started. Another instance whose scheduler fires the same slot a little later then finds the lock held and skips,
+ * instead of finding it free and running the job a second time. The hold must stay shorter than the time between
+ * two slots of a job.
+ *
+ * <ul>
+ *     <li>{@code jobs.lock.acquired} counter per job</li>
+ *     <li>{@code jobs.lock.contended} counter per job: the lock was held by another run, the job was skipped</li>
+ *     <li>{@code jobs.lock.handover} counter per job: acquired a lease its holder never released</li>
+ *     <li>{@code jobs.lock.lost} counter per job: a heartbeat found the lease taken over</li>
+ * </ul>
+ */
+@Component
+public class JobLock {
+
+    private static final Logger log = LoggerFactory.getLogger(JobLock.class);
+
+    private static final String INSERT = """
+            INSERT INTO job_locks (name, locked_by, locked_at, lease_until)
+            VALUES (?, ?, now(), now() + ? * INTERVAL '1 millisecond')
+            ON CONFLICT (name) DO NOTHING
+            """;
+    private static final String ACQUIRE_RELEASED = """
+            UPDATE job_locks SET locked_by = ?, locked_at = now(), lease_until = now() + ? * INTERVAL '1 millisecond',
+                                 released_at = NULL
+            WHERE name = ? AND released_at IS NOT NULL AND lease_until <= now()
+            """;
+    private static final String TAKE_OVER = """
+            UPDATE job_locks SET locked_by = ?, locked_at = now(), lease_until = now() + ? * INTERVAL '1 millisecond'
+            WHERE name = ? AND released_at IS NULL AND lease_until < now()
+            """;
+    private static final String RENEW = """
+            UPDATE job_locks SET lease_until = now() + ? * INTERVAL '1 millisecond'
+            WHERE name = ? AND locked_by = ?
+            """;
+    private static final String RELEASE = """
+            UPDATE job_locks SET lease_until = GREATEST(now(), locked_at + ? * INTERVAL '1 millisecond'), released_at = now()
+            WHERE name = ? AND locked_by = ?
+            """;
+
+    private enum Attempt { ACQUIRED, TAKEN_OVER, HELD }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry registry;
+    private final long leaseMillis;
+    private final long holdMillis;
+    private final String instanceId;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-lock-heartbeat").daemon().factory());
+    private final ThreadLocal<Lease> running = new ThreadLocal<>();
+
+    public JobLock(JdbcTemplate jdbcTemplate,
+                   PlatformTransactionManager transactionManager,
+                   MeterRegistry registry,
+                   @Value("${app.jobs.lock.lease:2m}") Duration lease,
+                   @Value("${app.jobs.lock.hold-at-least:15m}") Duration holdAtLeast,
+                   @Value("${app.jobs.lock.instance-id:}") String instanceId) {
+        if (lease.isNegative() || lease.isZero()) {
+            throw new IllegalArgumentException("app.jobs.lock.lease moet groter zijn dan 0");
+        }
+        if (holdAtLeast.isNegative()) {
+            throw new IllegalArgumentException("app.jobs.lock.hold-at-least mag niet negatief zijn");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.registry = registry;
+        this.leaseMillis = lease.toMillis();
+        this.holdMillis = holdAtLeast.toMillis();
+        this.instanceId = instanceId == null || instanceId.isBlank()
+                ? ManagementFactory.getRuntimeMXBean().getName()
+                : instanceId;
+    }
+
+    /**
+     * Runs the task while holding the lock for the job.
+     *
+     * @return false, without running the task, when another run holds the lock
+     */
+    public boolean runExclusively(String job, Runnable task) {
+        Optional<Lease> lease = tryAcquire(job);
+        if (lease.isEmpty()) {
+            return false;
+        }
+        try (Lease held = lease.get()) {
+            running.set(held);
+            task.run();
+        } finally {
+            running.remove();
+        }
+        return true;
+    }
+
+    /**
+     * True when the current thread runs a job through {@link #runExclusively} and its lease was taken over by
+     * another run. Jobs check this before each recipient and stop, so the two runs do not both send.
+     */
+    public boolean leaseLost() {
+        Lease held = running.get();
+        return held != null && held.isLost();
+    }
+
+    public Optional<Lease> tryAcquire(String job) {
+        String owner = instanceId + "#" + UUID.randomUUID().toString().substring(0, 8);
+        Attempt attempt = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(INSERT, job, owner, leaseMillis) == 1
+                    || jdbcTemplate.update(ACQUIRE_RELEASED, owner, leaseMillis, job) == 1) {
+                return Attempt.ACQUIRED;
+            }
+            return jdbcTemplate.update(TAKE_OVER, owner, leaseMillis, job) == 1 ? Attempt.TAKEN_OVER : Attempt.HELD;
+        });
+
+        if (attempt == Attempt.HELD) {
+            counter("jobs.lock.contended", "Job runs skipped because another run held the lock", job).increment();
+            log.info("Job {} skipped: lock is held by another run", job);
+            return Optional.empty();
+        }
+        counter("jobs.lock.acquired", "Job locks acquired", job).increment();
+        if (attempt == Attempt.TAKEN_OVER) {
+            counter("jobs.lock.handover", "Job locks taken over after the previous lease expired", job).increment();
+            log.warn("Job {}: took over an expired lock, the previous run did not release it", job);
+        }
+        return Optional.of(new Lease(job, owner));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    private Counter counter(String name, String description, String job) {
+        return Counter.builder(name).description(description).tag("job", job).register(registry);
+    }
+
+    /** A held lock. Closing it stops the heartbeat and releases the lock once the minimum hold has passed. */
+    public final class Lease implements AutoCloseable {
+
+        private final String job;
+        private final String owner;
+        private final ScheduledFuture<?> renewal;
+        private volatile boolean lost;
+
+        private Lease(String job, String owner) {
+            this.job = job;
+            this.owner = owner;
+            long interval = Math.max(1, leaseMillis / 3);
+            this.renewal = heartbeat.scheduleAtFixedRate(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        public String owner() {
+            return owner;
+        }
+
+        /** True when the lease expired and another run took the lock over. */
+        public boolean isLost() {
+            return lost;
+        }
+
+        private void renew() {
+            if (lost) {
+                return;
+            }
+            try {
+                Integer renewed = transactionTemplate.execute(status -> jdbcTemplate.update(RENEW, leaseMillis, job, owner));
+                if (renewed == null || renewed == 0) {
+                    lost = true;
+                    counter("jobs.lock.lost", "Job locks lost because the lease expired during the run", job).increment();
+                    log.error("Job {}: lock lost, another run may be executing the same job", job);
+                }
+            } catch (Exception e) {
+                log.warn("Job {}: lock heartbeat failed: {}", job, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            renewal.cancel(false);
+            if (lost) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(RELEASE, holdMillis, job, owner));
+            } catch (Exception e) {
+                log.warn("Job {}: releasing the lock failed, it expires by itself: {}", job, e.getMessage());
+            }
+        }
+    }
+}
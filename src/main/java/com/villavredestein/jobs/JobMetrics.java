@@ -0,0 +1,152 @@
+package com.villavredestein.jobs;
+
+import com.villavredestein.config.CorrelationSpanContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer metrics shared by all scheduled jobs.
+ * While a run is open its id is in the MDC ({@value CorrelationSpanContext#JOB_RUN_MDC_KEY}),
+ * so outbound calls made by the job carry it as exemplar.
+ * When the job was submitted through {@link JobRunner}, the counts also go to its {@link JobRun}.
+ *
+ * <ul>
+ *     <li>{@code jobs.run} timer per job and outcome (success/failure)</li>
+ *     <li>{@code jobs.items.processed}, {@code jobs.items.sent}, {@code jobs.items.failed} counters per job</li>
+ *     <li>{@code jobs.items.skipped} counter per job and skip reason</li>
+ *     <li>{@code jobs.last.success} gauge with the epoch seconds of the last successful run</li>
+ * </ul>
+ */
+@Component
+public class JobMetrics {
+
+    private final MeterRegistry registry;
+    private final Clock clock;
+    private final Map<String, AtomicLong> lastSuccess = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JobMetrics(MeterRegistry registry) {
+        this(registry, Clock.systemUTC());
+    }
+
+    JobMetrics(MeterRegistry registry, Clock clock) {
+        this.registry = registry;
+        this.clock = clock;
+    }
+
+    public Run start(String job) {
+        lastSuccessHolder(job);
+        return new Run(job);
+    }
+
+    private AtomicLong lastSuccessHolder(String job) {
+        return lastSuccess.computeIfAbsent(job, name -> {
+            AtomicLong holder = new AtomicLong();
+            Gauge.builder("jobs.last.success", holder, AtomicLong::get)
+                    .description("Epoch seconds of the last successful job run (0 = none since startup)")
+                    .baseUnit("seconds")
+                    .tag("job", name)
+                    .register(registry);
+            return holder;
+        });
+    }
+
+    /**
+     * One job run. Closing the run records its duration; it counts as a failure
+     * unless {@link #succeeded()} was called first.
+     */
+    public final class Run implements AutoCloseable {
+
+        private final String job;
+        private final Timer.Sample sample;
+        private final Counter processed;
+        private final Counter sent;
+        private final Counter failed;
+        private final String previousRunId;
+        private final JobRun progress;
+        private boolean success;
+
+        private Run(String job) {
+            this.job = job;
+            this.previousRunId = MDC.get(CorrelationSpanContext.JOB_RUN_MDC_KEY);
+            MDC.put(CorrelationSpanContext.JOB_RUN_MDC_KEY, job + "-" + UUID.randomUUID().toString().substring(0, 8));
+            this.sample = Timer.start(registry);
+            this.processed = itemCounter("jobs.items.processed", "Items the job looked at");
+            this.sent = itemCounter("jobs.items.sent", "Notifications sent by the job");
+            this.failed = itemCounter("jobs.items.failed", "Items that failed with an error");
+            this.progress = JobRun.current();
+        }
+
+        private Counter itemCounter(String name, String description) {
+            return Counter.builder(name).description(description).tag("job", job).register(registry);
+        }
+
+        public void processed() {
+            processed.increment();
+            if (progress != null) {
+                progress.processed();
+            }
+        }
+
+        public void skipped(String reason) {
+            Counter.builder("jobs.items.skipped")
+                    .description("Items the job skipped, by reason")
+                    .tag("job", job)
+                    .tag("reason", reason)
+                    .register(registry)
+                    .increment();
+            if (progress != null) {
+                progress.skipped(reason);
+            }
+        }
+
+        public void sent() {
+            sent.increment();
+            if (progress != null) {
+                progress.sent();
+            }
+        }
+
+        public void failed() {
+            failed.increment();
+            if (progress != null) {
+                progress.failed();
+            }
+        }
+
+        public void succeeded() {
+            this.success = true;
+        }
+
+        @Override
+        public void close() {
+            sample.stop(Timer.builder("jobs.run")
+                    .description("Duration of scheduled and manually triggered job runs")
+                    .tag("job", job)
+                    .tag("outcome", success ? "success" : "failure")
+                    .register(registry));
+            if (success) {
+                lastSuccessHolder(job).set(clock.instant().getEpochSecond());
+            }
+            if (progress != null) {
+                progress.completed(success);
+            }
+            if (previousRunId != null) {
+                MDC.put(CorrelationSpanContext.JOB_RUN_MDC_KEY, previousRunId);
+            } else {
+                MDC.remove(CorrelationSpanContext.JOB_RUN_MDC_KEY);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.villavredestein.jobs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of one job run submitted through {@link JobRunner}.
+ * The job reports into it through {@link JobMetrics.Run}, which finds it on the thread the runner executes the job on.
+ */
+public final class JobRun {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, SKIPPED }
+
+    private static final ThreadLocal<JobRun> CURRENT = new ThreadLocal<>();
+
+    private final String id = UUID.randomUUID().toString();
+    private final String job;
+    private final Instant submittedAt;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final Map<String, AtomicInteger> skipped = new ConcurrentHashMap<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Boolean succeeded;
+    private volatile String error;
+
+    JobRun(String job, Instant submittedAt) {
+        this.job = job;
+        this.submittedAt = submittedAt;
+    }
+
+    static JobRun current() {
+        return CURRENT.get();
+    }
+
+    void started(Instant now) {
+        status = Status.RUNNING;
+        startedAt = now;
+        CURRENT.set(this);
+    }
+
+    /** Called by {@link JobMetrics.Run#close()} with the outcome the job reported. */
+    void completed(boolean success) {
+        succeeded = success;
+    }
+
+    /**
+     * @param ran false when the job lock was held elsewhere and the job did not run
+     */
+    void finished(Instant now, boolean ran, Exception failure) {
+        CURRENT.remove();
+        if (failure != null) {
+            error = failure.getMessage();
+            status = Status.FAILED;
+        } else if (!ran) {
+            status = Status.SKIPPED;
+        } else {
+            status = Boolean.TRUE.equals(succeeded) ? Status.SUCCEEDED : Status.FAILED;
+        }
+        finishedAt = now;
+    }
+
+    void processed() {
+        processed.incrementAndGet();
+    }
+
+    void sent() {
+        sent.incrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    void skipped(String reason) {
+        skipped.computeIfAbsent(reason, r -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public String getId() { return id; }
+    public String getJob() { return job; }
+    public Status getStatus() { return status; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public String getError() { return error; }
+    public int getProcessed() { return processed.get(); }
+    public int getSent() { return sent.get(); }
+    public int getFailed() { return failed.get(); }
+
+    public Map<String, Integer> getSkipped() {
+        Map<String, Integer> counts = new TreeMap<>();
+        skipped.forEach((reason, count) -> counts.put(reason, count.get()));
+        return counts;
+    }
+
+    /** Run time so far, or the total once finished; null while queued. */
+    public Duration getDuration(Instant now) {
+        Instant start = startedAt;
+        if (start == null) {
+            return null;
+        }
+        Instant end = finishedAt;
+        return Duration.between(start, end != null ? end : now);
+    }
+}
@@ -0,0 +1,133 @@
+package com.villavredestein.jobs;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs manually triggered jobs in the background, so a trigger returns a run id instead of waiting for
+ * every mail and WhatsApp message. The pool and its queue are bounded; a full queue rejects the trigger.
+ * A job that is already queued or running on this instance is not started twice: the trigger gets the existing run.
+ * The most recent runs are kept in memory for polling.
+ */
+@Component
+public class JobRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(JobRunner.class);
+
+    public record Submission(JobRun run, boolean deduplicated) {}
+
+    private final ThreadPoolExecutor executor;
+    private final Clock clock;
+    private final Map<String, JobRun> active = new HashMap<>();
+    private final Map<String, JobRun> runs;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Autowired
+    public JobRunner(@Value("${app.jobs.runner.threads:2}") int threads,
+                     @Value("${app.jobs.runner.queue-capacity:10}") int queueCapacity,
+                     @Value("${app.jobs.runner.retained-runs:200}") int retainedRuns) {
+        this(threads, queueCapacity, retainedRuns, Clock.systemUTC());
+    }
+
+    JobRunner(int threads, int queueCapacity, int retainedRuns, Clock clock) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "admin-job-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.clock = clock;
+        this.runs = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JobRun> eldest) {
+                return size() > retainedRuns;
+            }
+        };
+    }
+
+    /**
+     * Queues the job, unless it is already queued or running here.
+     *
+     * @param task the job's entry point; returns false when the job lock was held by another instance
+     */
+    public Submission submit(String job, BooleanSupplier task) {
+        lock.lock();
+        try {
+            JobRun existing = active.get(job);
+            if (existing != null) {
+                log.info("Job {} already {} (run {}), trigger ignored", job, existing.getStatus(), existing.getId());
+                return new Submission(existing, true);
+            }
+
+            JobRun run = new JobRun(job, clock.instant());
+            active.put(job, run);
+            runs.put(run.getId(), run);
+            try {
+                executor.execute(() -> execute(run, task));
+            } catch (RejectedExecutionException e) {
+                active.remove(job);
+                runs.remove(run.getId());
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Er staan al te veel jobs in de wachtrij; probeer het later opnieuw");
+            }
+            log.info("Job {} queued (run {})", job, run.getId());
+            return new Submission(run, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Optional<JobRun> find(String runId) {
+        lock.lock();
+        try {
+            return Optional.ofNullable(runs.get(runId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void execute(JobRun run, BooleanSupplier task) {
+        run.started(clock.instant());
+        boolean ran = false;
+        Exception failure = null;
+        try {
+            ran = task.getAsBoolean();
+        } catch (Exception e) {
+            failure = e;
+            log.error("Job {} (run {}) failed: {}", run.getJob(), run.getId(), e.getMessage(), e);
+        } finally {
+            run.finished(clock.instant(), ran, failure);
+            lock.lock();
+            try {
+                active.remove(run.getJob(), run);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
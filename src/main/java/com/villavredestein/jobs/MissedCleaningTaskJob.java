@@ -21,41 +21,65 @@ import java.util.Locale;
 public class MissedCleaningTaskJob {
 
     private static final Logger log = LoggerFactory.getLogger(MissedCleaningTaskJob.class);
+    public static final String JOB = "missed-cleaning-task";
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final DateTimeFormatter DATE_NL = DateTimeFormatter.ofPattern("d MMMM yyyy", NL);
 
     private final CleaningTaskRepository taskRepository;
     private final MailService mailService;
     private final WhatsAppService whatsAppService;
+    private final JobMetrics jobMetrics;
+    private final JobLock jobLock;
 
-    public MissedCleaningTaskJob(CleaningTaskRepository taskRepository, MailService mailService, WhatsAppService whatsAppService) {
+    public MissedCleaningTaskJob(CleaningTaskRepository taskRepository, MailService mailService,
+                                 WhatsAppService whatsAppService, JobMetrics jobMetrics, JobLock jobLock) {
         this.taskRepository = taskRepository;
         this.mailService = mailService;
         this.whatsAppService = whatsAppService;
+        this.jobMetrics = jobMetrics;
+        this.jobLock = jobLock;
     }
 
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
     @Scheduled(cron = "0 30 9 * * *", zone = "Europe/Amsterdam")
-    public void sendMissedTaskNotifications() {
+    public boolean sendMissedTaskNotifications() {
+        return jobLock.runExclusively(JOB, this::notifyMissedTasks);
+    }
+
+    private void notifyMissedTasks() {
         LocalDate today = LocalDate.now();
         log.info("MissedCleaningTaskJob started (today={})", today);
 
-        List<CleaningTask> overdueTasks = taskRepository.findOverdueTasks(today);
-        log.info("Overdue cleaning tasks found: {}", overdueTasks.size());
-
-        for (CleaningTask task : overdueTasks) {
-            processTask(task);
+        try (JobMetrics.Run run = jobMetrics.start(JOB)) {
+            List<CleaningTask> overdueTasks = taskRepository.findOverdueTasks(today);
+            log.info("Overdue cleaning tasks found: {}", overdueTasks.size());
+
+            for (CleaningTask task : overdueTasks) {
+                if (jobLock.leaseLost()) {
+                    return;
+                }
+                processTask(task, run);
+            }
+            run.succeeded();
         }
 
         log.info("MissedCleaningTaskJob finished");
     }
 
-    private void processTask(CleaningTask task) {
+    private void processTask(CleaningTask task, JobMetrics.Run run) {
+        run.processed();
         User assignedTo = task.getAssignedTo();
-        if (assignedTo == null) return;
+        if (assignedTo == null) {
+            run.skipped("unassigned");
+            return;
+        }
 
         String email = assignedTo.getEmail();
         if (email == null || email.isBlank()) {
             log.warn("Skip: no email for assignee of task {}", task.getId());
+            run.skipped("invalid_email");
             return;
         }
 
@@ -85,8 +109,10 @@ public class MissedCleaningTaskJob {
 
         try {
             mailService.sendMailWithRole("ADMIN", email, subject, body);
+            run.sent();
             log.info("Missed task notification sent (taskId={}, to={})", task.getId(), maskEmail(email));
         } catch (Exception e) {
+            run.failed();
             log.error("Failed to send missed task notification (taskId={}, to={}): {}", task.getId(), maskEmail(email), e.getMessage());
         }
 
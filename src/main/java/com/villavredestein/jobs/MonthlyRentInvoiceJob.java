@@ -1,6 +1,7 @@
 package com.villavredestein.jobs;
 
 import com.villavredestein.model.EmailTemplate;
+import com.villavredestein.model.Invoice;
 import com.villavredestein.model.User;
 import com.villavredestein.repository.UserRepository;
 import com.villavredestein.service.EmailTemplateService;
@@ -18,14 +19,17 @@ import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 @Component
 @ConditionalOnProperty(value = "spring.task.scheduling.enabled", havingValue = "true", matchIfMissing = true)
 public class MonthlyRentInvoiceJob {
 
     private static final Logger log = LoggerFactory.getLogger(MonthlyRentInvoiceJob.class);
+    public static final String JOB = "monthly-rent-invoice";
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final DateTimeFormatter MONTH_NL = DateTimeFormatter.ofPattern("MMMM yyyy", NL);
     private static final DateTimeFormatter DATE_NL = DateTimeFormatter.ofPattern("d MMMM yyyy", NL);
@@ -33,8 +37,9 @@ public class MonthlyRentInvoiceJob {
     private final UserRepository userRepository;
     private final InvoiceService invoiceService;
     private final MailService mailService;
-    private final EmailTemplateService emailTemplateService;
     private final WhatsAppService whatsAppService;
+    private final JobMetrics jobMetrics;
+    private final JobLock jobLock;
 
     @Value("${app.rent.amount:350.00}")
     private BigDecimal rentAmount;
@@ -45,17 +50,26 @@ public class MonthlyRentInvoiceJob {
     public MonthlyRentInvoiceJob(UserRepository userRepository,
                                  InvoiceService invoiceService,
                                  MailService mailService,
-                                 EmailTemplateService emailTemplateService,
-                                 WhatsAppService whatsAppService) {
+                                 WhatsAppService whatsAppService,
+                                 JobMetrics jobMetrics,
+                                 JobLock jobLock) {
         this.userRepository = userRepository;
         this.invoiceService = invoiceService;
         this.mailService = mailService;
-        this.emailTemplateService = emailTemplateService;
         this.whatsAppService = whatsAppService;
+        this.jobMetrics = jobMetrics;
+        this.jobLock = jobLock;
     }
 
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
     @Scheduled(cron = "0 0 8 1 * *", zone = "Europe/Amsterdam")
-    public void createMonthlyInvoices() {
+    public boolean createMonthlyInvoices() {
+        return jobLock.runExclusively(JOB, this::invoiceStudents);
+    }
+
+    private void invoiceStudents() {
         LocalDate today = LocalDate.now();
         int month = today.getMonthValue();
         int year = today.getYear();
@@ -65,58 +79,64 @@ public class MonthlyRentInvoiceJob {
         String vervaldatum = dueDate.format(DATE_NL);
         log.info("MonthlyRentInvoiceJob started (maand={})", maand);
 
-        List<User> students = userRepository.findByRole(User.Role.STUDENT);
-        log.info("Creating invoices for {} students", students.size());
+        try (JobMetrics.Run run = jobMetrics.start(JOB)) {
+            List<User> students = userRepository.findByRole(User.Role.STUDENT);
+            log.info("Creating invoices for {} students", students.size());
+
+            List<Invoice> invoices = new ArrayList<>(students.size());
+            for (User student : students) {
+                invoices.add(new Invoice("Huur " + maand, "Maandelijkse huur voor " + maand, rentFor(student),
+                        today, dueDate, month, year, Invoice.InvoiceStatus.OPEN, student));
+            }
+            // One statement; students invoiced by an earlier or concurrent run are left out.
+            Map<Long, Long> created = invoiceService.createInvoicesIfAbsent(invoices);
 
-        EmailTemplate template = loadTemplate();
+            List<MailService.MergeRecipient> mailRecipients = new ArrayList<>(created.size());
 
-        for (User student : students) {
-            BigDecimal studentRent = student.getRentAmount() != null ? student.getRentAmount() : rentAmount;
-            String studentBedrag = formatBedrag(studentRent);
-            processStudent(student, month, year, dueDate, maand, vervaldatum, studentBedrag, studentRent, template);
+            for (User student : students) {
+                run.processed();
+                if (!created.containsKey(student.getId())) {
+                    log.info("Invoice already exists for student={} month={}/{}", maskEmail(student.getEmail()), month, year);
+                    run.skipped("invoice_exists");
+                    continue;
+                }
+                BigDecimal studentRent = rentFor(student);
+                MailService.MergeRecipient recipient =
+                        notifyStudent(student, month, year, maand, vervaldatum, formatBedrag(studentRent), studentRent, run);
+                if (recipient != null) {
+                    mailRecipients.add(recipient);
+                }
+            }
+
+            sendInvoiceMails(mailRecipients, run);
+            run.succeeded();
         }
 
         log.info("MonthlyRentInvoiceJob finished");
     }
 
-    public void run() {
-        createMonthlyInvoices();
+    public boolean run() {
+        return createMonthlyInvoices();
     }
 
 
-    private void processStudent(User student, int month, int year, LocalDate dueDate,
-                                String maand, String vervaldatum, String bedragFormatted,
-                                BigDecimal studentRent, EmailTemplate template) {
-        try {
-            var dto = new com.villavredestein.dto.InvoiceRequestDTO();
-            dto.setStudentEmail(student.getEmail());
-            dto.setTitle("Huur " + maand);
-            dto.setDescription("Maandelijkse huur voor " + maand);
-            dto.setAmount(studentRent);
-            dto.setIssueDate(LocalDate.now());
-            dto.setDueDate(dueDate);
-
-            com.villavredestein.dto.InvoiceResponseDTO invoiceDTO;
-            try {
-                invoiceDTO = invoiceService.createInvoice(dto);
-            } catch (org.springframework.web.server.ResponseStatusException e) {
-                if (e.getStatusCode().value() == 409) {
-                    log.info("Invoice already exists for student={} month={}/{}", student.getEmail(), month, year);
-                    return;
-                }
-                throw e;
-            }
+    private BigDecimal rentFor(User student) {
+        return student.getRentAmount() != null ? student.getRentAmount() : rentAmount;
+    }
 
-            Long invoiceId = invoiceDTO.getId();
+    /**
+     * Sends the WhatsApp messages for one newly invoiced student.
+     * Returns the PAYMENT_NEW mail-merge recipient, or null when that failed.
+     */
+    private MailService.MergeRecipient notifyStudent(User student, int month, int year,
+                                                     String maand, String vervaldatum, String bedragFormatted,
+                                                     BigDecimal studentRent, JobMetrics.Run run) {
+        try {
             String betaalLink = "";
 
             String naam = student.getUsername();
-            if (template != null) {
-                String subject = template.renderSubject(naam, bedragFormatted, maand, betaalLink, vervaldatum);
-                String body = template.renderBody(naam, bedragFormatted, maand, betaalLink, vervaldatum);
-                mailService.sendInvoiceReminderMail(student.getEmail(), subject, body);
-                log.info("PAYMENT_NEW email sent to {}", maskEmail(student.getEmail()));
-            }
+            MailService.MergeRecipient recipient = new MailService.MergeRecipient(student.getEmail(),
+                    EmailTemplateService.rentVariables(naam, bedragFormatted, maand, betaalLink, vervaldatum));
 
             String bunqLink = buildBunqLink(studentRent, maand);
             String waMsg = String.format(
@@ -125,26 +145,50 @@ public class MonthlyRentInvoiceJob {
                     " Heb je vragen? Neem dan gerust contact op.",
                     naam, bedragFormatted, maand, vervaldatum,
                     bunqLink.isEmpty() ? "" : " Of betaal via bunq: " + bunqLink + ".");
-            if (student.getPhoneNumber() != null && !student.getPhoneNumber().isBlank()) {
-                whatsAppService.send(student.getPhoneNumber(), waMsg);
+            try {
+                if (student.getPhoneNumber() != null && !student.getPhoneNumber().isBlank()) {
+                    whatsAppService.send(student.getPhoneNumber(), waMsg);
+                }
+                whatsAppService.sendToAdmins("Huur " + maand + " factuur aangemaakt voor " + naam + " (" + bedragFormatted + ").");
+            } catch (Exception e) {
+                log.error("WhatsApp failed for student {}: {}", maskEmail(student.getEmail()), e.getMessage());
             }
-            whatsAppService.sendToAdmins("Huur " + maand + " factuur aangemaakt voor " + naam + " (" + bedragFormatted + ").");
+
+            return recipient;
 
         } catch (Exception e) {
+            run.failed();
             log.error("Error processing student {} for month={}/{}: {}", maskEmail(student.getEmail()), month, year, e.getMessage(), e);
+            return null;
         }
     }
 
-
-    private EmailTemplate loadTemplate() {
+    private void sendInvoiceMails(List<MailService.MergeRecipient> recipients, JobMetrics.Run run) {
+        if (recipients.isEmpty()) {
+            return;
+        }
         try {
-            return emailTemplateService.getByType(EmailTemplate.TemplateType.PAYMENT_NEW);
+            for (MailService.MergeOutcome outcome : mailService.sendMailMerge(EmailTemplate.TemplateType.PAYMENT_NEW, recipients)) {
+                switch (outcome.status()) {
+                    case SENT -> {
+                        run.sent();
+                        log.info("PAYMENT_NEW email sent to {}", maskEmail(outcome.to()));
+                    }
+                    case FAILED -> {
+                        run.failed();
+                        log.warn("PAYMENT_NEW email failed for {}: {}", maskEmail(outcome.to()), outcome.error());
+                    }
+                    case SKIPPED -> run.skipped("mail_disabled");
+                    case INVALID_RECIPIENT -> run.skipped("invalid_email");
+                }
+            }
         } catch (Exception e) {
-            log.error("Could not load PAYMENT_NEW template: {}", e.getMessage());
-            return null;
+            recipients.forEach(r -> run.failed());
+            log.error("PAYMENT_NEW mail merge failed: {}", e.getMessage());
         }
     }
 
+
     private String formatBedrag(BigDecimal amount) {
         NumberFormat nf = NumberFormat.getCurrencyInstance(NL);
         return nf.format(amount);
@@ -20,19 +20,31 @@ import java.util.Locale;
 public class MonthlyRentReminderJob {
 
     private static final Logger log = LoggerFactory.getLogger(MonthlyRentReminderJob.class);
+    public static final String JOB = "monthly-rent-reminder";
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final DateTimeFormatter MONTH_NL = DateTimeFormatter.ofPattern("MMMM yyyy", NL);
 
     private final UserRepository userRepository;
     private final MailService mailService;
+    private final JobMetrics jobMetrics;
+    private final JobLock jobLock;
 
-    public MonthlyRentReminderJob(UserRepository userRepository, MailService mailService) {
+    public MonthlyRentReminderJob(UserRepository userRepository, MailService mailService, JobMetrics jobMetrics, JobLock jobLock) {
         this.userRepository = userRepository;
         this.mailService = mailService;
+        this.jobMetrics = jobMetrics;
+        this.jobLock = jobLock;
     }
 
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
     @Scheduled(cron = "0 0 9 28 * *", zone = "Europe/Amsterdam")
-    public void sendRentReminders() {
+    public boolean sendRentReminders() {
+        return jobLock.runExclusively(JOB, this::remindStudents);
+    }
+
+    private void remindStudents() {
         LocalDate today = LocalDate.now();
         LocalDate dueDate = today.withDayOfMonth(1).plusMonths(1);
         String monthLabel = today.format(MONTH_NL);
@@ -40,20 +52,28 @@ public class MonthlyRentReminderJob {
 
         log.info("MonthlyRentReminderJob started (month={})", monthLabel);
 
-        List<User> students = userRepository.findByRole(User.Role.STUDENT);
-        log.info("Sending rent reminders to {} students", students.size());
+        try (JobMetrics.Run run = jobMetrics.start(JOB)) {
+            List<User> students = userRepository.findByRole(User.Role.STUDENT);
+            log.info("Sending rent reminders to {} students", students.size());
 
-        for (User student : students) {
-            sendToStudent(student, monthLabel, dueDateFormatted);
-        }
+            for (User student : students) {
+                if (jobLock.leaseLost()) {
+                    return;
+                }
+                sendToStudent(student, monthLabel, dueDateFormatted, run);
+            }
+            run.succeeded();
 
-        log.info("MonthlyRentReminderJob finished ({} students)", students.size());
+            log.info("MonthlyRentReminderJob finished ({} students)", students.size());
+        }
     }
 
-    private void sendToStudent(User student, String monthLabel, String dueDateFormatted) {
+    private void sendToStudent(User student, String monthLabel, String dueDateFormatted, JobMetrics.Run run) {
+        run.processed();
         String to = student.getEmail();
         if (to == null || to.isBlank()) {
             log.warn("Skip: no email for student {}", student.getId());
+            run.skipped("invalid_email");
             return;
         }
 
@@ -72,8 +92,10 @@ public class MonthlyRentReminderJob {
 
         try {
             mailService.sendInvoiceReminderMail(to, subject, body);
+            run.sent();
             log.info("Rent reminder sent to {}", maskEmail(to));
         } catch (Exception e) {
+            run.failed();
             log.error("Failed to send rent reminder to {}: {}", maskEmail(to), e.getMessage());
         }
     }
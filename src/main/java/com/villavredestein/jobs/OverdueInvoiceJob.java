@@ -4,6 +4,8 @@ import com.villavredestein.model.Invoice;
 import com.villavredestein.model.User;
 import com.villavredestein.service.InvoiceService;
 import com.villavredestein.service.MailService;
+import com.villavredestein.service.ReminderPolicy;
+import com.villavredestein.service.ReminderStateWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,10 +16,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Locale;
 
@@ -26,6 +26,7 @@ import java.util.Locale;
 public class OverdueInvoiceJob {
 
     private static final Logger log = LoggerFactory.getLogger(OverdueInvoiceJob.class);
+    public static final String JOB = "overdue-invoice";
 
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final NumberFormat EUR = NumberFormat.getCurrencyInstance(NL);
@@ -39,98 +40,61 @@ public class OverdueInvoiceJob {
 
     private final InvoiceService invoiceService;
     private final MailService mailService;
+    private final JobHistory jobHistory;
+    private final JobLock jobLock;
 
-    public OverdueInvoiceJob(InvoiceService invoiceService, MailService mailService) {
+    public OverdueInvoiceJob(InvoiceService invoiceService, MailService mailService, JobHistory jobHistory, JobLock jobLock) {
         this.invoiceService = invoiceService;
         this.mailService = mailService;
+        this.jobHistory = jobHistory;
+        this.jobLock = jobLock;
     }
 
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
     @Transactional
     @Scheduled(cron = "${app.invoice.overdue.cron:0 15 9 * * *}", zone = "Europe/Amsterdam")
-    public void sendOverdueReminders() {
-        LocalDate today = LocalDate.now();
-        LocalDateTime now = LocalDateTime.now();
-
-        List<Invoice> candidates = invoiceService.getAllOpenInvoices();
-        log.info("OverdueInvoiceJob started (candidates={}, maxReminders={}, minHoursBetween={})",
-                candidates.size(), maxReminders, minHoursBetween);
+    public boolean sendOverdueReminders() {
+        return jobLock.runExclusively(JOB, this::remindOverdueInvoices);
+    }
 
-        for (Invoice invoice : candidates) {
-            processInvoice(invoice, today, now);
+    private void remindOverdueInvoices() {
+        LocalDateTime now = LocalDateTime.now();
+        ReminderPolicy policy = ReminderPolicy.overdue(maxReminders, minHoursBetween);
+
+        try (JobHistory.Recording run = jobHistory.start(JOB, now.toLocalDate().toString());
+             ReminderStateWriter reminderState = invoiceService.reminderStateWriter(now, true)) {
+            List<Invoice> candidates = invoiceService.findReminderCandidates(policy, now);
+            log.info("OverdueInvoiceJob started (candidates={}, maxReminders={}, minHoursBetween={})",
+                    candidates.size(), maxReminders, minHoursBetween);
+
+            for (Invoice invoice : candidates) {
+                if (jobLock.leaseLost()) {
+                    return;
+                }
+                processInvoice(invoice, run, reminderState);
+            }
+            reminderState.flush();
+            run.succeeded();
         }
 
         log.info("OverdueInvoiceJob finished");
     }
 
-    private void processInvoice(Invoice invoice, LocalDate today, LocalDateTime now) {
-        if (invoice == null) {
-            log.warn("Skip: invoice is null");
+    private void processInvoice(Invoice invoice, JobHistory.Recording run, ReminderStateWriter reminderState) {
+        run.processed();
+        if (run.alreadySent(invoice.getId())) {
+            run.skipped("already_sent");
             return;
         }
 
-        Long invoiceId = invoice.getId();
-
         User student = invoice.getStudent();
-        if (student == null) {
-            log.warn("Skip: student missing (invoiceId={})", invoiceId);
-            return;
-        }
-
-        if (invoice.getDueDate() == null) {
-            log.warn("Skip: dueDate missing (invoiceId={})", invoiceId);
-            return;
-        }
-
-        if (!invoice.getDueDate().isBefore(today)) {
-            return;
-        }
-
-        Invoice.InvoiceStatus status = invoice.getStatus();
-        if (status != Invoice.InvoiceStatus.OPEN && status != Invoice.InvoiceStatus.OVERDUE) {
-            return;
-        }
-
-        if (!passesAntiSpamRules(invoice, now)) {
-            return;
-        }
-
-        String to = student.getEmail();
-        if (to == null || to.isBlank()) {
-            log.warn("Skip: invalid email (invoiceId={}, student={})", invoiceId, safeName(student));
-            return;
-        }
-
-        if (status != Invoice.InvoiceStatus.OVERDUE) {
-            invoice.setStatus(Invoice.InvoiceStatus.OVERDUE);
-        }
-
-        sendOverdueMail(invoice, student, to);
-    }
-
-    private boolean passesAntiSpamRules(Invoice invoice, LocalDateTime now) {
-        Long invoiceId = invoice.getId();
-
-        if (invoice.getReminderCount() >= maxReminders) {
-            log.info("Skip: maxReminders reached (invoiceId={}, reminderCount={})",
-                    invoiceId, invoice.getReminderCount());
-            return false;
-        }
-
-        LocalDateTime last = invoice.getLastReminderSentAt();
-        if (last == null) {
-            return true;
-        }
-
-        long hoursSinceLast = ChronoUnit.HOURS.between(last, now);
-        if (hoursSinceLast < minHoursBetween) {
-            log.info("Skip: last reminder {} hours ago (invoiceId={})", hoursSinceLast, invoiceId);
-            return false;
-        }
-
-        return true;
+        sendOverdueMail(invoice, student, student.getEmail(), run, reminderState);
     }
 
-    private void sendOverdueMail(Invoice invoice, User student, String to) {
+    private void sendOverdueMail(Invoice invoice, User student, String to, JobHistory.Recording run,
+                                 ReminderStateWriter reminderState) {
         Long invoiceId = invoice.getId();
 
         String amount = formatAmount(invoice.getAmount());
@@ -150,13 +114,14 @@ public class OverdueInvoiceJob {
         try {
             mailService.sendInvoiceReminderMail(to, subject, body);
 
-            invoice.markReminderSentNow();
-            invoiceService.saveReminderMeta(invoice);
+            reminderState.sent(invoice);
+            run.sent(invoiceId);
 
             log.info("Overdue reminder sent (invoiceId={}, to={}, reminderCount={})",
-                    invoiceId, maskEmail(to), invoice.getReminderCount());
+                    invoiceId, maskEmail(to), invoice.getReminderCount() + 1);
 
         } catch (Exception e) {
+            run.failed(invoiceId, "send_failed");
             log.error("Sending failed (invoiceId={}, to={}): {}",
                     invoiceId, maskEmail(to), e.getMessage());
         }
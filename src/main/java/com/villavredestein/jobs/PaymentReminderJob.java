@@ -5,6 +5,8 @@ import com.villavredestein.model.Invoice;
 import com.villavredestein.service.EmailTemplateService;
 import com.villavredestein.service.InvoiceService;
 import com.villavredestein.service.MailService;
+import com.villavredestein.service.ReminderPolicy;
+import com.villavredestein.service.ReminderStateWriter;
 import com.villavredestein.service.WhatsAppService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
@@ -25,6 +28,7 @@ import java.util.Locale;
 public class PaymentReminderJob {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentReminderJob.class);
+    public static final String JOB_PREFIX = "payment-reminder-";
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
     private static final DateTimeFormatter MONTH_NL = DateTimeFormatter.ofPattern("MMMM yyyy", NL);
     private static final DateTimeFormatter DATE_NL = DateTimeFormatter.ofPattern("d MMMM yyyy", NL);
@@ -33,62 +37,90 @@ public class PaymentReminderJob {
     private final MailService mailService;
     private final EmailTemplateService emailTemplateService;
     private final WhatsAppService whatsAppService;
+    private final JobHistory jobHistory;
+    private final JobLock jobLock;
 
     public PaymentReminderJob(InvoiceService invoiceService,
                               MailService mailService,
                               EmailTemplateService emailTemplateService,
-                              WhatsAppService whatsAppService) {
+                              WhatsAppService whatsAppService,
+                              JobHistory jobHistory,
+                              JobLock jobLock) {
         this.invoiceService = invoiceService;
         this.mailService = mailService;
         this.emailTemplateService = emailTemplateService;
         this.whatsAppService = whatsAppService;
+        this.jobHistory = jobHistory;
+        this.jobLock = jobLock;
     }
 
 
     @Transactional
     @Scheduled(cron = "0 0 9 3 * *", zone = "Europe/Amsterdam")
-    public void sendFirstReminders() {
-        sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_1, 1);
+    public boolean sendFirstReminders() {
+        return sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_1, 1);
     }
 
     @Transactional
-    public void triggerFirstReminder() {
-        sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_1, 1);
+    public boolean triggerFirstReminder() {
+        return sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_1, 1);
     }
 
 
     @Transactional
     @Scheduled(cron = "0 0 9 7 * *", zone = "Europe/Amsterdam")
-    public void sendSecondReminders() {
-        sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_2, 2);
+    public boolean sendSecondReminders() {
+        return sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_2, 2);
     }
 
     @Transactional
-    public void triggerSecondReminder() {
-        sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_2, 2);
+    public boolean triggerSecondReminder() {
+        return sendReminders(EmailTemplate.TemplateType.PAYMENT_REMINDER_2, 2);
     }
 
 
-    private void sendReminders(EmailTemplate.TemplateType templateType, int reminderNumber) {
-        LocalDate today = LocalDate.now();
-        int month = today.getMonthValue();
-        int year = today.getYear();
-
-        log.info("PaymentReminderJob [{}] started (month={}/{})", templateType, month, year);
-
-        List<Invoice> unpaid = invoiceService.getUnpaidForMonth(month, year);
-        log.info("Found {} unpaid invoices for {}/{}", unpaid.size(), month, year);
+    /**
+     * @return false when the job did not run because another run holds its lock
+     */
+    private boolean sendReminders(EmailTemplate.TemplateType templateType, int reminderNumber) {
+        String job = JOB_PREFIX + reminderNumber;
+        return jobLock.runExclusively(job, () -> remind(job, templateType, reminderNumber));
+    }
 
-        EmailTemplate template = loadTemplate(templateType);
+    private void remind(String job, EmailTemplate.TemplateType templateType, int reminderNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        YearMonth period = YearMonth.from(now);
+        ReminderPolicy policy = ReminderPolicy.unpaidFor(period, ReminderPolicy.Contact.EMAIL);
+
+        log.info("PaymentReminderJob [{}] started (month={})", templateType, period);
+
+        try (JobHistory.Recording run = jobHistory.start(job, period.toString());
+             ReminderStateWriter reminderState = invoiceService.reminderStateWriter(now, false)) {
+            List<Invoice> unpaid = invoiceService.findReminderCandidates(policy, now);
+            log.info("Found {} unpaid invoices for {}", unpaid.size(), period);
+
+            EmailTemplate template = loadTemplate(templateType);
+
+            for (Invoice invoice : unpaid) {
+                if (jobLock.leaseLost()) {
+                    return;
+                }
+                run.processed();
+                if (run.alreadySent(invoice.getId())) {
+                    run.skipped("already_sent");
+                    continue;
+                }
+                sendReminder(invoice, template, reminderNumber, run, reminderState);
+            }
+            reminderState.flush();
+            run.succeeded();
 
-        for (Invoice invoice : unpaid) {
-            sendReminder(invoice, template, reminderNumber);
+            log.info("PaymentReminderJob [{}] finished ({} invoices processed)", templateType, unpaid.size());
         }
-
-        log.info("PaymentReminderJob [{}] finished ({} invoices processed)", templateType, unpaid.size());
     }
 
-    private void sendReminder(Invoice invoice, EmailTemplate template, int reminderNumber) {
+    private void sendReminder(Invoice invoice, EmailTemplate template, int reminderNumber, JobHistory.Recording run,
+                              ReminderStateWriter reminderState) {
         try {
             String email = invoice.getStudent().getEmail();
             String naam = invoice.getStudent().getUsername();
@@ -99,8 +131,10 @@ public class PaymentReminderJob {
 
             String subject, body;
             if (template != null) {
-                subject = template.renderSubject(naam, bedrag, maand, betaalLink, vervaldatum);
-                body = template.renderBody(naam, bedrag, maand, betaalLink, vervaldatum);
+                EmailTemplateService.RenderedEmail rendered = emailTemplateService.render(template,
+                        EmailTemplateService.rentVariables(naam, bedrag, maand, betaalLink, vervaldatum));
+                subject = rendered.subject();
+                body = rendered.body();
             } else {
                 subject = "Herinnering huur " + maand + " voor Villa Vredestein";
                 body = "Beste " + naam + ",\n\nJe huur van " + bedrag + " voor " + maand + " is nog niet betaald.\n\nMet vriendelijke groet,\nVilla Vredestein";
@@ -119,13 +153,13 @@ public class PaymentReminderJob {
             }
             whatsAppService.sendToAdmins("🔔 Herinnering " + reminderNumber + " verstuurd aan " + naam + " voor huur " + maand + " (" + bedrag + ").");
 
-            invoice.setReminderCount(invoice.getReminderCount() + 1);
-            invoice.setLastReminderSentAt(LocalDateTime.now());
-            invoiceService.saveReminderMeta(invoice);
+            reminderState.sent(invoice);
+            run.sent(invoice.getId());
 
             log.info("Reminder {} sent for invoiceId={} to {}", reminderNumber, invoice.getId(), maskEmail(email));
 
         } catch (Exception e) {
+            run.failed(invoice.getId(), "send_failed");
             log.error("Failed to send reminder {} for invoiceId={}: {}", reminderNumber, invoice.getId(), e.getMessage());
         }
     }
@@ -25,7 +25,8 @@ public class CleaningTask {
     public static final String LEGACY_ALL = "ALL";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cleaning_tasks_seq")
+    @SequenceGenerator(name = "cleaning_tasks_seq", sequenceName = "cleaning_tasks_seq", allocationSize = 50)
     private Long id;
 
     @Min(value = 1, message = "Weeknummer moet minimaal 1 zijn")
@@ -60,6 +61,10 @@ public class CleaningTask {
     @JsonIgnoreProperties({"password", "hibernateLazyInitializer", "handler"})
     private User assignedTo;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public CleaningTask() {
     }
 
@@ -109,6 +114,10 @@ public class CleaningTask {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public int getWeekNumber() {
         return weekNumber;
     }
@@ -58,24 +58,4 @@ public class EmailTemplate {
 
     public void setSubject(String subject) { this.subject = subject; }
     public void setBody(String body) { this.body = body; }
-
-    public String renderBody(String naam, String bedrag, String maand, String betaalLink, String vervaldatum) {
-        return body
-                .replace("{{naam}}", safe(naam))
-                .replace("{{bedrag}}", safe(bedrag))
-                .replace("{{maand}}", safe(maand))
-                .replace("{{betaalLink}}", safe(betaalLink))
-                .replace("{{vervaldatum}}", safe(vervaldatum));
-    }
-
-    public String renderSubject(String naam, String bedrag, String maand, String betaalLink, String vervaldatum) {
-        return subject
-                .replace("{{naam}}", safe(naam))
-                .replace("{{bedrag}}", safe(bedrag))
-                .replace("{{maand}}", safe(maand))
-                .replace("{{betaalLink}}", safe(betaalLink))
-                .replace("{{vervaldatum}}", safe(vervaldatum));
-    }
-
-    private static String safe(String s) { return s != null ? s : ""; }
 }
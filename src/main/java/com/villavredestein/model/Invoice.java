@@ -15,7 +15,11 @@ import java.util.Locale;
                 @Index(name = "idx_invoice_student", columnList = "student_id"),
                 @Index(name = "idx_invoice_status", columnList = "status"),
                 @Index(name = "idx_invoice_due_date", columnList = "due_date"),
+                @Index(name = "idx_invoice_status_due_date", columnList = "status, due_date"),
                 @Index(name = "idx_invoice_year_month", columnList = "invoice_year, invoice_month")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_invoice_student_period", columnNames = {"student_id", "invoice_month", "invoice_year"})
         }
 )
 public class Invoice {
@@ -28,7 +32,8 @@ public class Invoice {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoices_seq")
+    @SequenceGenerator(name = "invoices_seq", sequenceName = "invoices_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Titel is verplicht")
@@ -89,6 +94,10 @@ public class Invoice {
     @JoinColumn(name = "student_id", nullable = false)
     private User student;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     protected Invoice() {
     }
 
@@ -198,6 +207,10 @@ public class Invoice {
         return student;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public void setTitle(String title) {
         this.title = (title == null) ? null : title.trim();
     }
@@ -270,11 +283,6 @@ public class Invoice {
         this.paidAt = LocalDateTime.now();
     }
 
-    public void markReminderSentNow() {
-        this.lastReminderSentAt = LocalDateTime.now();
-        this.reminderCount = this.reminderCount + 1;
-    }
-
     public void clearLastReminderSentAt() {
         this.lastReminderSentAt = null;
     }
@@ -14,7 +14,9 @@ import java.util.Locale;
         indexes = {
                 @Index(name = "idx_payment_student", columnList = "student_id"),
                 @Index(name = "idx_payment_status", columnList = "status"),
-                @Index(name = "idx_payment_paid_at", columnList = "paid_at")
+                @Index(name = "idx_payment_paid_at", columnList = "paid_at"),
+                @Index(name = "idx_payment_student_status", columnList = "student_id, status"),
+                @Index(name = "idx_payment_invoice", columnList = "invoice_id")
         }
 )
 public class Payment {
@@ -28,7 +30,8 @@ public class Payment {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Bedrag is verplicht")
@@ -57,6 +60,19 @@ public class Payment {
     @JoinColumn(name = "student_id", nullable = false)
     private User student;
 
+    /**
+     * The invoice this payment settled; set when the payment was booked from a bank statement, when it was recorded
+     * for an invoice, or when a manually recorded payment and the paid invoice of the same student and amount for
+     * the month it was paid in are matched.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "invoice_id")
+    private Invoice invoice;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     protected Payment() {
     }
 
@@ -115,6 +131,10 @@ public class Payment {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public BigDecimal getAmount() {
         return amount;
     }
@@ -139,6 +159,14 @@ public class Payment {
         return student;
     }
 
+    public Invoice getInvoice() {
+        return invoice;
+    }
+
+    public void setInvoice(Invoice invoice) {
+        this.invoice = invoice;
+    }
+
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
     }
@@ -7,11 +7,15 @@ import java.time.LocalDate;
 
 @Entity
 @Table(name = "shifts",
-        indexes = @Index(name = "idx_shifts_cleaner_date", columnList = "cleaner_id, shift_date"))
+        indexes = {
+                @Index(name = "idx_shifts_cleaner_date", columnList = "cleaner_id, shift_date"),
+                @Index(name = "idx_shifts_cleaner_checkout", columnList = "cleaner_id, check_out_at")
+        })
 public class Shift {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "shifts_seq")
+    @SequenceGenerator(name = "shifts_seq", sequenceName = "shifts_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -6,7 +6,8 @@ import jakarta.validation.constraints.NotBlank;
 import java.time.Instant;
 
 @Entity
-@Table(name = "supply_reports")
+@Table(name = "supply_reports",
+        indexes = @Index(name = "idx_supply_reports_reported_at", columnList = "reported_at"))
 public class SupplyReport {
 
     public enum Status { PENDING, ORDERED, RECEIVED }
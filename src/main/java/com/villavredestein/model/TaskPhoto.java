@@ -6,11 +6,15 @@ import java.time.Instant;
 
 @Entity
 @Table(name = "task_photos",
-        indexes = @Index(name = "idx_task_photos_task", columnList = "task_id"))
+        indexes = {
+                @Index(name = "idx_task_photos_task", columnList = "task_id"),
+                @Index(name = "idx_task_photos_task_uploaded", columnList = "task_id, uploaded_at")
+        })
 public class TaskPhoto {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_photos_seq")
+    @SequenceGenerator(name = "task_photos_seq", sequenceName = "task_photos_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
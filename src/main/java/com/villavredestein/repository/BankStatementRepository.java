@@ -0,0 +1,281 @@
+package com.villavredestein.repository;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Native SQL for bank reconciliation ({@code bank_statement_file}, {@code bank_statement_line}). The writes take
+ * whole chunks as parallel arrays, one statement per chunk; call them inside a transaction.
+ */
+@Repository
+public class BankStatementRepository {
+
+    /** Only lines that are new; a line imported before, from this or an overlapping statement, is left out. */
+    private static final String INSERT_NEW_LINES = """
+            INSERT INTO bank_statement_line (entry_ref, booking_date, amount, counterparty_name, counterparty_iban,
+                                             remittance, status)
+            SELECT t.*, 'UNMATCHED'
+            FROM unnest(CAST(:refs AS varchar[]), CAST(:dates AS date[]), CAST(:amounts AS numeric[]),
+                        CAST(:names AS varchar[]), CAST(:ibans AS varchar[]), CAST(:remittances AS varchar[])) AS t
+            ON CONFLICT (entry_ref) DO NOTHING
+            RETURNING id, entry_ref
+            """;
+
+    /** New lines plus earlier lines that are still unmatched; the no-op update makes RETURNING include the latter. */
+    private static final String INSERT_OR_RETRY_LINES = """
+            INSERT INTO bank_statement_line (entry_ref, booking_date, amount, counterparty_name, counterparty_iban,
+                                             remittance, status)
+            SELECT t.*, 'UNMATCHED'
+            FROM unnest(CAST(:refs AS varchar[]), CAST(:dates AS date[]), CAST(:amounts AS numeric[]),
+                        CAST(:names AS varchar[]), CAST(:ibans AS varchar[]), CAST(:remittances AS varchar[])) AS t
+            ON CONFLICT (entry_ref) DO UPDATE SET status = bank_statement_line.status
+            WHERE bank_statement_line.status = 'UNMATCHED'
+            RETURNING id, entry_ref
+            """;
+
+    /**
+     * Marks the matched invoices PAID, books a PAID payment linked to each and marks the lines MATCHED, in one statement.
+     * An invoice that was paid or cancelled in the meantime is skipped, and its line stays unmatched.
+     * Payment ids come from payments_seq the way Hibernate's pooled optimizer hands them out.
+     */
+    private static final String SETTLE = """
+            WITH matched AS (
+                SELECT *
+                FROM unnest(CAST(:lineIds AS bigint[]), CAST(:invoiceIds AS bigint[]), CAST(:matchedBy AS varchar[]))
+                     AS m(line_id, invoice_id, matched_by)
+            ),
+            paid AS (
+                UPDATE invoices i
+                SET status = 'PAID', paid_at = l.booking_date, version = i.version + 1
+                FROM matched m JOIN bank_statement_line l ON l.id = m.line_id
+                WHERE i.id = m.invoice_id AND i.status IN ('OPEN', 'OVERDUE')
+                RETURNING i.id AS invoice_id, i.student_id, i.amount, i.title, m.line_id, m.matched_by, l.booking_date,
+                          l.remittance
+            ),
+            numbered AS (
+                SELECT paid.*, row_number() OVER (ORDER BY paid.invoice_id) AS n
+                FROM paid
+            ),
+            id_blocks AS (
+                SELECT array_agg(nextval('payments_seq')) AS hi
+                FROM generate_series(1, (SELECT (count(*) + 49) / 50 FROM numbered))
+            ),
+            booked AS (
+                INSERT INTO payments (id, amount, created_at, paid_at, status, description, student_id, invoice_id, version)
+                SELECT id_blocks.hi[(p.n - 1) / 50 + 1] - 49 + (p.n - 1) % 50, p.amount, now(), p.booking_date, 'PAID',
+                       left(coalesce(p.remittance, 'Bankbetaling'), 500), p.student_id, p.invoice_id, 0
+                FROM numbered p, id_blocks
+            )
+            UPDATE bank_statement_line l
+            SET status = 'MATCHED', matched_by = p.matched_by, invoice_id = p.invoice_id
+            FROM numbered p
+            WHERE l.id = p.line_id
+            RETURNING p.invoice_id, p.student_id, p.amount, p.title
+            """;
+
+    /**
+     * Links a manually recorded payment to each invoice the bank statement paid: the student's newest PAID payment
+     * of the same amount, paid in the invoice's month, that is not linked to an invoice yet. The invoice being PAID
+     * now covers it, like {@code InvoiceService} does when an invoice is marked paid by hand.
+     */
+    private static final String LINK_RECORDED_PAYMENTS = """
+            WITH recorded AS (
+                SELECT DISTINCT ON (i.id) i.id AS invoice_id, p.id AS payment_id
+                FROM invoices i
+                JOIN payments p ON p.student_id = i.student_id AND p.amount = i.amount
+                WHERE i.id = ANY(CAST(:invoiceIds AS bigint[]))
+                  AND p.status = 'PAID' AND p.invoice_id IS NULL
+                  AND p.paid_at >= make_date(i.invoice_year, i.invoice_month, 1)
+                  AND p.paid_at < make_date(i.invoice_year, i.invoice_month, 1) + interval '1 month'
+                ORDER BY i.id, p.id DESC
+            )
+            UPDATE payments p
+            SET invoice_id = r.invoice_id, version = p.version + 1
+            FROM recorded r
+            WHERE p.id = r.payment_id
+            RETURNING p.id, p.student_id, p.amount, p.description
+            """;
+
+    public record OpenInvoice(long id, long studentId, BigDecimal amount, LocalDate dueDate) {
+    }
+
+    public record Student(long id, String username, String fullName) {
+    }
+
+    public record NewLine(String entryRef, LocalDate bookingDate, BigDecimal amount,
+                          String counterpartyName, String counterpartyIban, String remittance) {
+    }
+
+    /** A line and the invoice it pays; {@code matchedBy} is stored as the reason of the match. */
+    public record Settlement(long lineId, long invoiceId, String matchedBy) {
+    }
+
+    public record SettledInvoice(long invoiceId, long studentId, BigDecimal amount, String title) {
+    }
+
+    public record RecordedPayment(long paymentId, long studentId, BigDecimal amount, String description) {
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public boolean isFileImported(String fileName, String fingerprint) {
+        return !entityManager.createNativeQuery(
+                        "SELECT 1 FROM bank_statement_file WHERE file_name = :name AND fingerprint = :fingerprint")
+                .setParameter("name", fileName)
+                .setParameter("fingerprint", fingerprint)
+                .getResultList()
+                .isEmpty();
+    }
+
+    public void recordFile(String fileName, String fingerprint, int entries) {
+        entityManager.createNativeQuery("""
+                        INSERT INTO bank_statement_file (file_name, fingerprint, entry_count)
+                        VALUES (:name, :fingerprint, :entries)
+                        ON CONFLICT ON CONSTRAINT uk_bank_statement_file DO NOTHING
+                        """)
+                .setParameter("name", fileName)
+                .setParameter("fingerprint", fingerprint)
+                .setParameter("entries", entries)
+                .executeUpdate();
+    }
+
+    public List<OpenInvoice> findOpenInvoices() {
+        return entityManager.createQuery("""
+                        SELECT i.id, i.student.id, i.amount, i.dueDate
+                        FROM Invoice i
+                        WHERE i.status IN :statuses
+                        """, Object[].class)
+                .setParameter("statuses", EnumSet.of(Invoice.InvoiceStatus.OPEN, Invoice.InvoiceStatus.OVERDUE))
+                .getResultStream()
+                .map(row -> new OpenInvoice((Long) row[0], (Long) row[1], (BigDecimal) row[2], (LocalDate) row[3]))
+                .toList();
+    }
+
+    public List<Student> findStudents() {
+        return entityManager.createQuery("SELECT u.id, u.username, u.fullName FROM User u WHERE u.role = :role", Object[].class)
+                .setParameter("role", User.Role.STUDENT)
+                .getResultStream()
+                .map(row -> new Student((Long) row[0], (String) row[1], (String) row[2]))
+                .toList();
+    }
+
+    /** Counterparty accounts of matched lines, with the student whose invoice they paid. */
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> findKnownIbans() {
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT DISTINCT l.counterparty_iban, i.student_id
+                        FROM bank_statement_line l JOIN invoices i ON i.id = l.invoice_id
+                        WHERE l.status = 'MATCHED' AND l.counterparty_iban IS NOT NULL
+                        """)
+                .getResultList();
+        Map<String, Long> ibans = new HashMap<>();
+        for (Object[] row : rows) {
+            // An account that paid for several students is shared and identifies none of them.
+            ibans.merge((String) row[0], ((Number) row[1]).longValue(), (a, b) -> a.equals(b) ? a : -1L);
+        }
+        ibans.values().removeIf(studentId -> studentId < 0);
+        return ibans;
+    }
+
+    /**
+     * Stores one chunk of incoming payments; entry refs must be unique within the chunk.
+     *
+     * @param retryUnmatched also return lines imported before that are still unmatched
+     * @return the line id per entry ref of the lines to match
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> insertLines(List<NewLine> lines, boolean retryUnmatched) {
+        int size = lines.size();
+        String[] refs = new String[size];
+        LocalDate[] dates = new LocalDate[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        String[] names = new String[size];
+        String[] ibans = new String[size];
+        String[] remittances = new String[size];
+        for (int i = 0; i < size; i++) {
+            NewLine line = lines.get(i);
+            refs[i] = line.entryRef();
+            dates[i] = line.bookingDate();
+            amounts[i] = line.amount();
+            names[i] = truncate(line.counterpartyName(), 140);
+            ibans[i] = truncate(line.counterpartyIban(), 34);
+            remittances[i] = truncate(line.remittance(), 500);
+        }
+
+        List<Object[]> rows = entityManager.createNativeQuery(retryUnmatched ? INSERT_OR_RETRY_LINES : INSERT_NEW_LINES)
+                .setParameter("refs", refs)
+                .setParameter("dates", dates)
+                .setParameter("amounts", amounts)
+                .setParameter("names", names)
+                .setParameter("ibans", ibans)
+                .setParameter("remittances", remittances)
+                .getResultList();
+
+        Map<String, Long> lineIds = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            lineIds.put((String) row[1], ((Number) row[0]).longValue());
+        }
+        return lineIds;
+    }
+
+    /**
+     * @return the invoices that were marked PAID
+     */
+    @SuppressWarnings("unchecked")
+    public List<SettledInvoice> settle(List<Settlement> settlements) {
+        if (settlements.isEmpty()) {
+            return List.of();
+        }
+        int size = settlements.size();
+        Long[] lineIds = new Long[size];
+        Long[] invoiceIds = new Long[size];
+        String[] matchedBy = new String[size];
+        for (int i = 0; i < size; i++) {
+            lineIds[i] = settlements.get(i).lineId();
+            invoiceIds[i] = settlements.get(i).invoiceId();
+            matchedBy[i] = settlements.get(i).matchedBy();
+        }
+
+        List<Object[]> rows = entityManager.createNativeQuery(SETTLE)
+                .setParameter("lineIds", lineIds)
+                .setParameter("invoiceIds", invoiceIds)
+                .setParameter("matchedBy", matchedBy)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new SettledInvoice(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                        (BigDecimal) row[2], (String) row[3]))
+                .toList();
+    }
+
+    /**
+     * @return the recorded payments that were linked to one of these settled invoices
+     */
+    @SuppressWarnings("unchecked")
+    public List<RecordedPayment> linkRecordedPayments(List<Long> invoiceIds) {
+        if (invoiceIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object[]> rows = entityManager.createNativeQuery(LINK_RECORDED_PAYMENTS)
+                .setParameter("invoiceIds", invoiceIds.toArray(Long[]::new))
+                .getResultList();
+        return rows.stream()
+                .map(row -> new RecordedPayment(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                        (BigDecimal) row[2], (String) row[3]))
+                .toList();
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max);
+    }
+}
@@ -66,6 +66,21 @@ public interface CleaningTaskRepository extends JpaRepository<CleaningTask, Long
     @Query("UPDATE CleaningTask t SET t.assignedTo = NULL WHERE t.assignedTo = :user")
     void unassignAllForUser(@Param("user") User user);
 
+    /**
+     * Flips {@code completed} in the database, so concurrent toggles are applied one after the other
+     * instead of overwriting each other.
+     *
+     * @return 0 when the task does not exist
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE CleaningTask t
+            SET t.completed = CASE WHEN t.completed = true THEN false ELSE true END,
+                t.version = t.version + 1
+            WHERE t.id = :id
+            """)
+    int toggleCompleted(@Param("id") Long id);
+
     @Modifying
     @Query("DELETE FROM CleaningTask t")
     void deleteAllTasks();
@@ -0,0 +1,123 @@
+package com.villavredestein.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Streams the rows of the bookkeeping exports. Every dataset selects plain columns, never entities, so the
+ * persistence context stays empty however many rows pass; with a fetch size inside a transaction the
+ * PostgreSQL driver reads them through a cursor, {@code fetchSize} rows at a time.
+ */
+@Repository
+public class ExportRepository {
+
+    private enum DateKind { DATE, TIMESTAMP, INSTANT }
+
+    public enum Dataset {
+        INVOICES("facturen", "i", "i.issueDate", DateKind.DATE,
+                List.of("id", "title", "amount", "issueDate", "dueDate", "invoiceMonth", "invoiceYear", "status",
+                        "paidAt", "reminderCount", "studentId", "studentUsername", "studentEmail"),
+                """
+                SELECT i.id, i.title, i.amount, i.issueDate, i.dueDate, i.invoiceMonth, i.invoiceYear, i.status,
+                       i.paidAt, i.reminderCount, s.id, s.username, s.email
+                FROM Invoice i JOIN i.student s
+                """),
+        PAYMENTS("betalingen", "p", "coalesce(p.paidAt, p.createdAt)", DateKind.TIMESTAMP,
+                List.of("id", "amount", "status", "createdAt", "paidAt", "description", "invoiceId", "studentId",
+                        "studentUsername", "studentEmail"),
+                """
+                SELECT p.id, p.amount, p.status, p.createdAt, p.paidAt, p.description, p.invoice.id, s.id,
+                       s.username, s.email
+                FROM Payment p JOIN p.student s
+                """),
+        SHIFTS("diensten", "sh", "sh.shiftDate", DateKind.DATE,
+                List.of("id", "shiftDate", "checkInAt", "checkOutAt", "notes", "cleanerId", "cleanerUsername"),
+                """
+                SELECT sh.id, sh.shiftDate, sh.checkInAt, sh.checkOutAt, sh.notes, c.id, c.username
+                FROM Shift sh JOIN sh.cleaner c
+                """),
+        SUPPLY_REPORTS("voorraadmeldingen", "r", "r.reportedAt", DateKind.INSTANT,
+                List.of("id", "itemName", "urgency", "status", "notes", "reportedAt", "updatedAt", "reportedById",
+                        "reportedByUsername"),
+                """
+                SELECT r.id, r.itemName, r.urgency, r.status, r.notes, r.reportedAt, r.updatedAt, u.id, u.username
+                FROM SupplyReport r JOIN r.reportedBy u
+                """);
+
+        private final String fileName;
+        private final String alias;
+        private final String dateExpression;
+        private final DateKind dateKind;
+        private final List<String> columns;
+        private final String select;
+
+        Dataset(String fileName, String alias, String dateExpression, DateKind dateKind, List<String> columns,
+                String select) {
+            this.fileName = fileName;
+            this.alias = alias;
+            this.dateExpression = dateExpression;
+            this.dateKind = dateKind;
+            this.columns = columns;
+            this.select = select;
+        }
+
+        /** The base of the file name, in Dutch like the other downloads. */
+        public String fileName() {
+            return fileName;
+        }
+
+        /** The names of the values in every row, in order. */
+        public List<String> columns() {
+            return columns;
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * The rows of a dataset in id order; close the stream when done. Call inside a (read-only) transaction.
+     *
+     * @param from the first day to include; {@code null} for no lower bound
+     * @param to   the last day to include; {@code null} for no upper bound
+     */
+    public Stream<Object[]> stream(Dataset dataset, LocalDate from, LocalDate to, int fetchSize) {
+        StringBuilder jpql = new StringBuilder(dataset.select);
+        String where = " WHERE ";
+        if (from != null) {
+            jpql.append(where).append(dataset.dateExpression).append(" >= :from");
+            where = " AND ";
+        }
+        if (to != null) {
+            jpql.append(where).append(dataset.dateExpression).append(" < :to");
+        }
+        jpql.append(" ORDER BY ").append(dataset.alias).append(".id");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (from != null) {
+            query.setParameter("from", bound(dataset.dateKind, from));
+        }
+        if (to != null) {
+            query.setParameter("to", bound(dataset.dateKind, to.plusDays(1)));
+        }
+        return query.getResultStream();
+    }
+
+    private static Object bound(DateKind kind, LocalDate day) {
+        return switch (kind) {
+            case DATE -> day;
+            case TIMESTAMP -> day.atStartOfDay();
+            case INSTANT -> day.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        };
+    }
+}
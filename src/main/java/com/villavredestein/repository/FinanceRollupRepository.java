@@ -0,0 +1,93 @@
+package com.villavredestein.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Reads {@code finance_rollup}: invoice and payment counts and totals per month, student and status,
+ * kept up to date by triggers on {@code invoices} and {@code payments}. Every query groups a few thousand
+ * rollup rows at most, whatever the number of invoices.
+ */
+@Repository
+public class FinanceRollupRepository {
+
+    /** Count and total of the invoices or payments with one status. */
+    public record StatusTotal(String source, String status, long count, BigDecimal amount) {
+    }
+
+    public record MonthTotal(String source, LocalDate period, String status, long count, BigDecimal amount) {
+    }
+
+    /** Invoice totals of one student; {@code roomName} is {@code null} for a student without a room. */
+    public record StudentTotal(long studentId, String username, String roomName, String status, long count,
+                               BigDecimal amount) {
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @SuppressWarnings("unchecked")
+    public List<StatusTotal> totalsByStatus() {
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT source, status, sum(item_count), sum(amount)
+                        FROM finance_rollup
+                        GROUP BY source, status
+                        """)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new StatusTotal((String) row[0], (String) row[1], ((Number) row[2]).longValue(),
+                        (BigDecimal) row[3]))
+                .toList();
+    }
+
+    /** Per month from {@code from} (the first of a month) on, oldest first. */
+    @SuppressWarnings("unchecked")
+    public List<MonthTotal> totalsByMonth(LocalDate from) {
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT source, period, status, sum(item_count), sum(amount)
+                        FROM finance_rollup
+                        WHERE period >= :from
+                        GROUP BY source, period, status
+                        ORDER BY period
+                        """)
+                .setParameter("from", from)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new MonthTotal((String) row[0], toLocalDate(row[1]), (String) row[2],
+                        ((Number) row[3]).longValue(), (BigDecimal) row[4]))
+                .toList();
+    }
+
+    /** Invoice totals per student billed from {@code from} on, with the room they occupy now. */
+    @SuppressWarnings("unchecked")
+    public List<StudentTotal> invoiceTotalsByStudent(LocalDate from) {
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT r.student_id, u.username, rm.name, r.status, sum(r.item_count), sum(r.amount)
+                        FROM finance_rollup r
+                        JOIN users u ON u.id = r.student_id
+                        LEFT JOIN rooms rm ON rm.occupant_id = r.student_id
+                        WHERE r.source = 'INVOICE' AND r.period >= :from
+                        GROUP BY r.student_id, u.username, rm.name, r.status
+                        ORDER BY rm.name NULLS LAST, u.username
+                        """)
+                .setParameter("from", from)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new StudentTotal(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        (String) row[3], ((Number) row[4]).longValue(), (BigDecimal) row[5]))
+                .toList();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) {
+            return date.toLocalDate();
+        }
+        return (LocalDate) value;
+    }
+}
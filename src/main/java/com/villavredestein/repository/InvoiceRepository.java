@@ -2,34 +2,46 @@ package com.villavredestein.repository;
 
 import com.villavredestein.model.Invoice;
 import com.villavredestein.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
+public interface InvoiceRepository extends JpaRepository<Invoice, Long>, JpaSpecificationExecutor<Invoice>,
+        InvoiceRepositoryCustom {
 
     List<Invoice> findAllByOrderByIdDesc();
 
+    @EntityGraph(attributePaths = "student")
+    Optional<Invoice> findWithStudentById(Long id);
+
     List<Invoice> findByStudentOrderByIdDesc(User student);
 
     List<Invoice> findByStudent_EmailIgnoreCaseOrderByIdDesc(String email);
 
-    List<Invoice> findByStatusOrderByIdDesc(Invoice.InvoiceStatus status);
-
     List<Invoice> findByStatusAndDueDateBeforeOrderByDueDateAsc(Invoice.InvoiceStatus status, LocalDate date);
 
-    List<Invoice> findByStatusAndDueDateBetweenOrderByDueDateAsc(Invoice.InvoiceStatus status, LocalDate start, LocalDate end);
-
-    boolean existsByStudentAndInvoiceMonthAndInvoiceYear(User student, int invoiceMonth, int invoiceYear);
-
-    List<Invoice> findByInvoiceMonthAndInvoiceYearAndStatusNotIn(
-            int invoiceMonth, int invoiceYear, List<Invoice.InvoiceStatus> excludedStatuses);
-
+    @EntityGraph(attributePaths = "student")
     List<Invoice> findByInvoiceMonthAndInvoiceYearOrderByStudentUsernameAsc(int invoiceMonth, int invoiceYear);
 
     List<Invoice> findByStudentAndInvoiceMonthAndInvoiceYear(User student, int invoiceMonth, int invoiceYear);
+
+    /** The student's invoice for this month with this status and amount, when no payment is linked to it. */
+    @Query("""
+            SELECT i FROM Invoice i
+            WHERE i.student = :student AND i.status = :status AND i.amount = :amount
+              AND i.invoiceMonth = :month AND i.invoiceYear = :year
+              AND NOT EXISTS (SELECT p FROM Payment p WHERE p.invoice = i)
+            """)
+    Optional<Invoice> findWithoutPayment(@Param("student") User student, @Param("status") Invoice.InvoiceStatus status,
+                                         @Param("amount") BigDecimal amount, @Param("month") int month,
+                                         @Param("year") int year);
 }
@@ -0,0 +1,43 @@
+package com.villavredestein.repository;
+
+import com.villavredestein.model.Invoice;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface InvoiceRepositoryCustom {
+
+    /**
+     * Inserts new invoices with one {@code INSERT ... ON CONFLICT DO NOTHING} per chunk.
+     * An invoice whose student already has one for that month and year is skipped, also when a
+     * concurrent transaction inserted it first (unique key {@code uk_invoice_student_period}).
+     *
+     * @return the invoices that were actually inserted
+     */
+    List<InsertedInvoice> insertIfAbsent(List<Invoice> invoices);
+
+    /**
+     * Records a sent reminder on each invoice ({@code reminder_count + 1}, {@code last_reminder_sent_at}) with one
+     * UPDATE per chunk. An invoice is only updated while it still has the given version; one that changed since
+     * it was read is left as the other writer left it.
+     *
+     * @param versionsById the version of each invoice when the reminder was decided on
+     * @param markOverdue  also move OPEN invoices to OVERDUE
+     * @return the ids of the invoices that were updated
+     */
+    List<Long> markRemindersSent(Map<Long, Long> versionsById, LocalDateTime sentAt, boolean markOverdue);
+
+    /**
+     * Records a sent reminder like {@link #markRemindersSent}, whatever version the invoices have now. For invoices
+     * that changed after they were read: the reminder went out, so it is counted on top of the other write.
+     * {@code last_reminder_sent_at} only moves forward.
+     *
+     * @return the ids of the invoices that were updated; an id is missing when its invoice was deleted
+     */
+    List<Long> addRemindersSent(Collection<Long> ids, LocalDateTime sentAt, boolean markOverdue);
+
+    record InsertedInvoice(Long id, Long studentId) {
+    }
+}
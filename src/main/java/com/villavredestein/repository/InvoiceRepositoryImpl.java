@@ -0,0 +1,166 @@
+package com.villavredestein.repository;
+
+import com.villavredestein.model.Invoice;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+class InvoiceRepositoryImpl implements InvoiceRepositoryCustom {
+
+    static final int CHUNK_SIZE = 500;
+
+    /**
+     * The rows arrive as parallel arrays, so a chunk is one statement whatever its size.
+     * Ids come from invoices_seq the way Hibernate's pooled optimizer hands them out:
+     * every nextval reserves the 50 ids up to and including the returned value.
+     */
+    private static final String INSERT_IF_ABSENT = """
+            WITH input AS (
+                SELECT *
+                FROM unnest(CAST(:studentIds AS bigint[]), CAST(:titles AS varchar[]), CAST(:descriptions AS varchar[]),
+                            CAST(:amounts AS numeric[]), CAST(:issueDates AS date[]), CAST(:dueDates AS date[]),
+                            CAST(:months AS integer[]), CAST(:years AS integer[]))
+                     WITH ORDINALITY AS t(student_id, title, description, amount, issue_date, due_date,
+                                          invoice_month, invoice_year, n)
+            ),
+            id_blocks AS (
+                SELECT array_agg(nextval('invoices_seq')) AS hi
+                FROM generate_series(1, (SELECT (count(*) + 49) / 50 FROM input))
+            )
+            INSERT INTO invoices (id, title, description, amount, issue_date, due_date, invoice_month, invoice_year,
+                                  reminder_count, status, student_id)
+            SELECT id_blocks.hi[(input.n - 1) / 50 + 1] - 49 + (input.n - 1) % 50,
+                   input.title, input.description, input.amount, input.issue_date, input.due_date,
+                   input.invoice_month, input.invoice_year, 0, 'OPEN', input.student_id
+            FROM input, id_blocks
+            ON CONFLICT ON CONSTRAINT uk_invoice_student_period DO NOTHING
+            RETURNING id, student_id
+            """;
+
+    /** Bumps the version too, so an entity read before this update can no longer overwrite it. */
+    private static final String MARK_REMINDERS_SENT = """
+            UPDATE invoices i
+            SET reminder_count = i.reminder_count + 1,
+                last_reminder_sent_at = :sentAt,
+                status = CASE WHEN CAST(:markOverdue AS boolean) AND i.status = 'OPEN' THEN 'OVERDUE' ELSE i.status END,
+                version = i.version + 1
+            FROM unnest(CAST(:ids AS bigint[]), CAST(:versions AS bigint[])) AS v(id, version)
+            WHERE i.id = v.id AND i.version = v.version
+            RETURNING i.id
+            """;
+    private static final String ADD_REMINDERS_SENT = """
+            UPDATE invoices i
+            SET reminder_count = i.reminder_count + 1,
+                last_reminder_sent_at = GREATEST(i.last_reminder_sent_at, :sentAt),
+                status = CASE WHEN CAST(:markOverdue AS boolean) AND i.status = 'OPEN' THEN 'OVERDUE' ELSE i.status END,
+                version = i.version + 1
+            WHERE i.id = ANY(CAST(:ids AS bigint[]))
+            RETURNING i.id
+            """;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<InsertedInvoice> insertIfAbsent(List<Invoice> invoices) {
+        List<InsertedInvoice> inserted = new ArrayList<>(invoices.size());
+        for (int from = 0; from < invoices.size(); from += CHUNK_SIZE) {
+            inserted.addAll(insertChunk(invoices.subList(from, Math.min(from + CHUNK_SIZE, invoices.size()))));
+        }
+        return inserted;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> markRemindersSent(Map<Long, Long> versionsById, LocalDateTime sentAt, boolean markOverdue) {
+        List<Map.Entry<Long, Long>> entries = List.copyOf(versionsById.entrySet());
+        List<Long> updated = new ArrayList<>(entries.size());
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            updated.addAll(markChunk(entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size())), sentAt, markOverdue));
+        }
+        return updated;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> markChunk(List<Map.Entry<Long, Long>> chunk, LocalDateTime sentAt, boolean markOverdue) {
+        Long[] ids = new Long[chunk.size()];
+        Long[] versions = new Long[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            ids[i] = chunk.get(i).getKey();
+            versions[i] = chunk.get(i).getValue();
+        }
+
+        List<Number> rows = entityManager.createNativeQuery(MARK_REMINDERS_SENT)
+                .setParameter("sentAt", sentAt)
+                .setParameter("markOverdue", markOverdue)
+                .setParameter("ids", ids)
+                .setParameter("versions", versions)
+                .getResultList();
+
+        return rows.stream().map(Number::longValue).toList();
+    }
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<Long> addRemindersSent(Collection<Long> ids, LocalDateTime sentAt, boolean markOverdue) {
+        List<Long> all = List.copyOf(ids);
+        List<Long> updated = new ArrayList<>(all.size());
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            List<Number> rows = entityManager.createNativeQuery(ADD_REMINDERS_SENT)
+                    .setParameter("sentAt", sentAt)
+                    .setParameter("markOverdue", markOverdue)
+                    .setParameter("ids", all.subList(from, Math.min(from + CHUNK_SIZE, all.size())).toArray(Long[]::new))
+                    .getResultList();
+            rows.forEach(row -> updated.add(row.longValue()));
+        }
+        return updated;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InsertedInvoice> insertChunk(List<Invoice> chunk) {
+        int size = chunk.size();
+        Long[] studentIds = new Long[size];
+        String[] titles = new String[size];
+        String[] descriptions = new String[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        LocalDate[] issueDates = new LocalDate[size];
+        LocalDate[] dueDates = new LocalDate[size];
+        Integer[] months = new Integer[size];
+        Integer[] years = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            Invoice invoice = chunk.get(i);
+            studentIds[i] = invoice.getStudent().getId();
+            titles[i] = invoice.getTitle();
+            descriptions[i] = invoice.getDescription();
+            amounts[i] = invoice.getAmount();
+            issueDates[i] = invoice.getIssueDate();
+            dueDates[i] = invoice.getDueDate();
+            months[i] = invoice.getInvoiceMonth();
+            years[i] = invoice.getInvoiceYear();
+        }
+
+        List<Object[]> rows = entityManager.createNativeQuery(INSERT_IF_ABSENT)
+                .setParameter("studentIds", studentIds)
+                .setParameter("titles", titles)
+                .setParameter("descriptions", descriptions)
+                .setParameter("amounts", amounts)
+                .setParameter("issueDates", issueDates)
+                .setParameter("dueDates", dueDates)
+                .setParameter("months", months)
+                .setParameter("years", years)
+                .getResultList();
+
+        return rows.stream()
+                .map(row -> new InsertedInvoice(((Number) row[0]).longValue(), ((Number) row[1]).longValue()))
+                .toList();
+    }
+}
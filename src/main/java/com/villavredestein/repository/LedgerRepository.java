@@ -0,0 +1,149 @@
+package com.villavredestein.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Native SQL for the student ledger ({@code ledger_entries}, {@code student_balances}).
+ * Postings are written a chunk at a time; call {@link #post} inside the transaction that made the change,
+ * so the entries and the balance commit or roll back with it.
+ */
+@Repository
+public class LedgerRepository {
+
+    static final int CHUNK_SIZE = 500;
+
+    /**
+     * Appends the entries and adds them to the balances in one statement. The balance rows are upserted in
+     * student order, so concurrent postings for the same students lock them in the same order.
+     */
+    private static final String POST = """
+            WITH posted AS (
+                INSERT INTO ledger_entries (student_id, entry_type, amount, invoice_id, payment_id, description)
+                SELECT *
+                FROM unnest(CAST(:studentIds AS bigint[]), CAST(:types AS varchar[]), CAST(:amounts AS numeric[]),
+                            CAST(:invoiceIds AS bigint[]), CAST(:paymentIds AS bigint[]), CAST(:descriptions AS varchar[]))
+                RETURNING id, student_id, amount
+            )
+            INSERT INTO student_balances (student_id, balance, entry_count, last_entry_id, updated_at)
+            SELECT student_id, sum(amount), count(*), max(id), localtimestamp
+            FROM posted
+            GROUP BY student_id
+            ORDER BY student_id
+            ON CONFLICT (student_id) DO UPDATE
+            SET balance = student_balances.balance + EXCLUDED.balance,
+                entry_count = student_balances.entry_count + EXCLUDED.entry_count,
+                last_entry_id = greatest(student_balances.last_entry_id, EXCLUDED.last_entry_id),
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    /** One change to what a student owes; {@code amount} is positive when the student owes more. */
+    public record Posting(long studentId, String type, BigDecimal amount, Long invoiceId, Long paymentId,
+                          String description) {
+    }
+
+    public record Balance(long studentId, BigDecimal balance, long entryCount, LocalDateTime updatedAt) {
+    }
+
+    public record Entry(long id, String type, BigDecimal amount, Long invoiceId, Long paymentId, String description,
+                        LocalDateTime createdAt) {
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public void post(List<Posting> postings) {
+        for (int from = 0; from < postings.size(); from += CHUNK_SIZE) {
+            postChunk(postings.subList(from, Math.min(from + CHUNK_SIZE, postings.size())));
+        }
+    }
+
+    private void postChunk(List<Posting> chunk) {
+        int size = chunk.size();
+        Long[] studentIds = new Long[size];
+        String[] types = new String[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        Long[] invoiceIds = new Long[size];
+        Long[] paymentIds = new Long[size];
+        String[] descriptions = new String[size];
+        for (int i = 0; i < size; i++) {
+            Posting posting = chunk.get(i);
+            studentIds[i] = posting.studentId();
+            types[i] = posting.type();
+            amounts[i] = posting.amount();
+            invoiceIds[i] = posting.invoiceId();
+            paymentIds[i] = posting.paymentId();
+            descriptions[i] = truncate(posting.description(), 255);
+        }
+
+        entityManager.createNativeQuery(POST)
+                .setParameter("studentIds", studentIds)
+                .setParameter("types", types)
+                .setParameter("amounts", amounts)
+                .setParameter("invoiceIds", invoiceIds)
+                .setParameter("paymentIds", paymentIds)
+                .setParameter("descriptions", descriptions)
+                .executeUpdate();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<Balance> findBalance(long studentId) {
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT balance, entry_count, updated_at
+                        FROM student_balances
+                        WHERE student_id = :studentId
+                        """)
+                .setParameter("studentId", studentId)
+                .getResultList();
+        return rows.stream()
+                .findFirst()
+                .map(row -> new Balance(studentId, (BigDecimal) row[0], ((Number) row[1]).longValue(),
+                        toLocalDateTime(row[2])));
+    }
+
+    /**
+     * A page of a student's entries, newest first, read from the {@code (student_id, id)} index.
+     *
+     * @param beforeId only entries older than this one; {@code null} for the newest
+     */
+    @SuppressWarnings("unchecked")
+    public List<Entry> findEntries(long studentId, Long beforeId, int limit) {
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT id, entry_type, amount, invoice_id, payment_id, description, created_at
+                        FROM ledger_entries
+                        WHERE student_id = :studentId AND id < :beforeId
+                        ORDER BY id DESC
+                        LIMIT :limit
+                        """)
+                .setParameter("studentId", studentId)
+                .setParameter("beforeId", beforeId != null ? beforeId : Long.MAX_VALUE)
+                .setParameter("limit", limit)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new Entry(((Number) row[0]).longValue(), (String) row[1], (BigDecimal) row[2],
+                        toLong(row[3]), toLong(row[4]), (String) row[5], toLocalDateTime(row[6])))
+                .toList();
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max);
+    }
+}
@@ -1,12 +1,16 @@
 package com.villavredestein.repository;
 
+import com.villavredestein.model.Invoice;
 import com.villavredestein.model.Payment;
 import com.villavredestein.model.Payment.PaymentStatus;
 import com.villavredestein.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
@@ -20,4 +24,13 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByStatusOrderByIdDesc(PaymentStatus status);
 
     List<Payment> findByStudent(User student);
+
+    boolean existsByInvoice(Invoice invoice);
+
+    /**
+     * The newest payment of the student with this status and amount, paid from {@code from} until {@code until},
+     * that is not linked to an invoice.
+     */
+    Optional<Payment> findFirstByStudentAndStatusAndAmountAndInvoiceIsNullAndPaidAtGreaterThanEqualAndPaidAtLessThanOrderByIdDesc(
+            User student, PaymentStatus status, BigDecimal amount, LocalDateTime from, LocalDateTime until);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.villavredestein.repository;
 
 import com.villavredestein.model.Shift;
 import com.villavredestein.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
@@ -10,7 +11,9 @@ import java.util.Optional;
 
 @Repository
 public interface ShiftRepository extends JpaRepository<Shift, Long> {
+    @EntityGraph(attributePaths = "cleaner")
     List<Shift> findByCleanerOrderByShiftDateDescCheckInAtDesc(User cleaner);
+    @EntityGraph(attributePaths = "cleaner")
     List<Shift> findAllByOrderByShiftDateDescCheckInAtDesc();
     Optional<Shift> findFirstByCleanerAndCheckOutAtIsNullOrderByCheckInAtDesc(User cleaner);
     boolean existsByCleanerAndShiftDate(User cleaner, LocalDate date);
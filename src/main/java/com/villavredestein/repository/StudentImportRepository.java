@@ -0,0 +1,138 @@
+package com.villavredestein.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Native SQL for the bulk student import. The checks take all names of an import at once; the writes take the
+ * rows as parallel arrays, one statement per chunk. Call the writes inside a transaction.
+ */
+@Repository
+public class StudentImportRepository {
+
+    static final int CHUNK_SIZE = 500;
+
+    private static final String INSERT_STUDENTS = """
+            INSERT INTO users (username, email, password, role, status_toggle, rent_amount)
+            SELECT t.username, t.email, t.password, 'STUDENT', true, t.rent_amount
+            FROM unnest(CAST(:usernames AS varchar[]), CAST(:emails AS varchar[]), CAST(:passwords AS varchar[]),
+                        CAST(:rentAmounts AS numeric[])) AS t(username, email, password, rent_amount)
+            RETURNING id, email
+            """;
+
+    /** Only free rooms are taken, so a room assigned in the meantime shows as a missing row. */
+    private static final String ASSIGN_ROOMS = """
+            UPDATE rooms r
+            SET occupant_id = t.student_id
+            FROM unnest(CAST(:roomIds AS bigint[]), CAST(:studentIds AS bigint[])) AS t(room_id, student_id)
+            WHERE r.id = t.room_id AND r.occupant_id IS NULL
+            """;
+
+    /** An email, username and BCrypt hash; the email is lower case. */
+    public record NewStudent(String username, String email, String passwordHash, BigDecimal rentAmount) {
+    }
+
+    public record RoomState(long id, String name, boolean occupied) {
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** @return the given emails (lower case) that already have an account */
+    public Set<String> findExistingEmails(List<String> emails) {
+        return new HashSet<>(entityManager.createQuery(
+                        "SELECT lower(u.email) FROM User u WHERE lower(u.email) IN :emails", String.class)
+                .setParameter("emails", emails)
+                .getResultList());
+    }
+
+    /** @return the given usernames that are taken */
+    public Set<String> findExistingUsernames(List<String> usernames) {
+        return new HashSet<>(entityManager.createQuery(
+                        "SELECT u.username FROM User u WHERE u.username IN :usernames", String.class)
+                .setParameter("usernames", usernames)
+                .getResultList());
+    }
+
+    /** @return the rooms found, by lower-case name */
+    public Map<String, RoomState> findRooms(List<String> names) {
+        List<Object[]> rows = entityManager.createQuery("""
+                        SELECT r.id, r.name, r.occupant.id
+                        FROM Room r LEFT JOIN r.occupant
+                        WHERE lower(r.name) IN :names
+                        """, Object[].class)
+                .setParameter("names", names.stream().map(name -> name.toLowerCase(Locale.ROOT)).toList())
+                .getResultList();
+        Map<String, RoomState> rooms = new HashMap<>();
+        for (Object[] row : rows) {
+            String name = (String) row[1];
+            rooms.put(name.toLowerCase(Locale.ROOT), new RoomState((Long) row[0], name, row[2] != null));
+        }
+        return rooms;
+    }
+
+    /** @return the new user id by email */
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> insertStudents(List<NewStudent> students) {
+        Map<String, Long> ids = new HashMap<>(students.size() * 2);
+        for (int from = 0; from < students.size(); from += CHUNK_SIZE) {
+            List<NewStudent> chunk = students.subList(from, Math.min(from + CHUNK_SIZE, students.size()));
+            int size = chunk.size();
+            String[] usernames = new String[size];
+            String[] emails = new String[size];
+            String[] passwords = new String[size];
+            BigDecimal[] rentAmounts = new BigDecimal[size];
+            for (int i = 0; i < size; i++) {
+                NewStudent student = chunk.get(i);
+                usernames[i] = student.username();
+                emails[i] = student.email();
+                passwords[i] = student.passwordHash();
+                rentAmounts[i] = student.rentAmount();
+            }
+
+            List<Object[]> rows = entityManager.createNativeQuery(INSERT_STUDENTS)
+                    .setParameter("usernames", usernames)
+                    .setParameter("emails", emails)
+                    .setParameter("passwords", passwords)
+                    .setParameter("rentAmounts", rentAmounts)
+                    .getResultList();
+            for (Object[] row : rows) {
+                ids.put((String) row[1], ((Number) row[0]).longValue());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @param studentByRoom the student id per room id
+     * @return the number of rooms assigned; fewer than given when a room was taken in the meantime
+     */
+    public int assignRooms(Map<Long, Long> studentByRoom) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(studentByRoom.entrySet());
+        int assigned = 0;
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<Long, Long>> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            Long[] roomIds = new Long[chunk.size()];
+            Long[] studentIds = new Long[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                roomIds[i] = chunk.get(i).getKey();
+                studentIds[i] = chunk.get(i).getValue();
+            }
+            assigned += entityManager.createNativeQuery(ASSIGN_ROOMS)
+                    .setParameter("roomIds", roomIds)
+                    .setParameter("studentIds", studentIds)
+                    .executeUpdate();
+        }
+        return assigned;
+    }
+}
@@ -0,0 +1,345 @@
+package com.villavredestein.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads bank statement files one entry at a time, so a file of any size is read in constant memory.
+ * Supported are CAMT.053 ({@code .xml}) and CSV exports ({@code .csv}) with a header row; the CSV columns are found
+ * by their header (Dutch and English names of the common banks), the separator ({@code ;} or {@code ,}) from the header.
+ * <p>
+ * Every entry gets a stable {@link Entry#entryRef()}: the bank's own reference (CAMT {@code AcctSvcrRef}) when present,
+ * otherwise a hash of the entry's content and how often that content occurred before in the file. Overlapping
+ * statements therefore produce the same refs for the same entries.
+ */
+public final class BankStatementReader {
+
+    private static final DateTimeFormatter COMPACT_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter DUTCH_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    public record Entry(String entryRef,
+                        LocalDate bookingDate,
+                        BigDecimal amount,
+                        boolean credit,
+                        String counterpartyName,
+                        String counterpartyIban,
+                        String remittance) {
+    }
+
+    private BankStatementReader() {
+    }
+
+    public static boolean supports(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".xml") || name.endsWith(".csv");
+    }
+
+    public static void read(Path file, Consumer<Entry> sink) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xml")) {
+            try (InputStream in = Files.newInputStream(file)) {
+                readCamt(in, sink);
+            }
+        } else if (name.endsWith(".csv")) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                readCsv(in, sink);
+            }
+        } else {
+            throw new IllegalArgumentException("Onbekend bestandstype: " + file.getFileName());
+        }
+    }
+
+    // CAMT.053
+
+    static void readCamt(InputStream in, Consumer<Entry> sink) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        RefGenerator refs = new RefGenerator("camt");
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            Deque<String> path = new ArrayDeque<>();
+            CamtEntry entry = null;
+            StringBuilder text = new StringBuilder();
+
+            while (xml.hasNext()) {
+                switch (xml.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        String element = xml.getLocalName();
+                        if (element.equals("Ntry")) {
+                            entry = new CamtEntry();
+                        }
+                        path.push(element);
+                        text.setLength(0);
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                        if (entry != null) {
+                            text.append(xml.getText());
+                        }
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        String element = path.pop();
+                        if (entry != null) {
+                            if (element.equals("Ntry")) {
+                                sink.accept(entry.toEntry(refs));
+                                entry = null;
+                            } else {
+                                entry.field(element, path, text.toString().trim());
+                            }
+                        }
+                        text.setLength(0);
+                    }
+                    default -> {
+                    }
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Ongeldig CAMT.053-bestand: " + e.getMessage(), e);
+        }
+    }
+
+    /** The fields of one {@code Ntry}; batch bookings with several transactions are read as one entry. */
+    private static final class CamtEntry {
+        private String amount;
+        private String direction;
+        private String bookingDate;
+        private String bankRef;
+        private String name;
+        private String iban;
+        private final List<String> remittance = new ArrayList<>();
+
+        void field(String element, Deque<String> parents, String value) {
+            if (value.isEmpty()) {
+                return;
+            }
+            String parent = parents.peek();
+            switch (element) {
+                case "Amt" -> {
+                    if ("Ntry".equals(parent)) amount = value;
+                }
+                case "CdtDbtInd" -> {
+                    if ("Ntry".equals(parent)) direction = value;
+                }
+                case "Dt", "DtTm" -> {
+                    if ("BookgDt".equals(parent) && bookingDate == null) bookingDate = value.substring(0, Math.min(10, value.length()));
+                }
+                case "AcctSvcrRef" -> {
+                    if (bankRef == null && ("Ntry".equals(parent) || "Refs".equals(parent))) bankRef = value;
+                }
+                case "Nm" -> {
+                    if (name == null && parents.contains("Dbtr")) name = value;
+                }
+                case "IBAN" -> {
+                    if (iban == null && parents.contains("DbtrAcct")) iban = value;
+                }
+                case "Ustrd", "Ref" -> {
+                    if (parents.contains("RmtInf")) remittance.add(value);
+                }
+                default -> {
+                }
+            }
+        }
+
+        Entry toEntry(RefGenerator refs) {
+            if (amount == null || bookingDate == null) {
+                throw new IllegalArgumentException("CAMT-boeking zonder bedrag of boekdatum");
+            }
+            BigDecimal value = new BigDecimal(amount);
+            LocalDate date = LocalDate.parse(bookingDate);
+            String text = String.join(" ", remittance);
+            String ref = bankRef != null
+                    ? refs.fromBankRef(bankRef)
+                    : refs.fromContent(String.join("|", date.toString(), value.toPlainString(), String.valueOf(direction),
+                    String.valueOf(iban), String.valueOf(name), text));
+            return new Entry(ref, date, value, !"DBIT".equals(direction), name, iban, text.isEmpty() ? null : text);
+        }
+    }
+
+    // CSV
+
+    static void readCsv(BufferedReader in, Consumer<Entry> sink) throws IOException {
+        String header = in.readLine();
+        if (header == null) {
+            return;
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        char separator = header.chars().filter(c -> c == ';').count() > header.chars().filter(c -> c == ',').count() ? ';' : ',';
+        CsvColumns columns = CsvColumns.of(splitCsv(header, separator));
+
+        RefGenerator refs = new RefGenerator("csv");
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitCsv(line, separator);
+            BigDecimal amount = parseAmount(columns.get(fields, columns.amount));
+            boolean credit = columns.direction >= 0
+                    ? isCredit(columns.get(fields, columns.direction))
+                    : amount.signum() >= 0;
+            sink.accept(new Entry(
+                    refs.fromContent(String.join("|", fields)),
+                    parseDate(columns.get(fields, columns.date)),
+                    amount.abs(),
+                    credit,
+                    blankToNull(columns.get(fields, columns.name)),
+                    blankToNull(columns.get(fields, columns.iban)),
+                    blankToNull(columns.get(fields, columns.remittance))));
+        }
+    }
+
+    private record CsvColumns(int date, int amount, int direction, int name, int iban, int remittance) {
+
+        static CsvColumns of(List<String> header) {
+            int date = find(header, "datum", "boekingsdatum", "date", "booking date");
+            int amount = find(header, "bedrag (eur)", "bedrag", "amount", "amount (eur)");
+            if (date < 0 || amount < 0) {
+                throw new IllegalArgumentException("CSV mist een datum- of bedragkolom: " + header);
+            }
+            return new CsvColumns(date, amount,
+                    find(header, "af bij", "af/bij", "debet/credit", "debit/credit"),
+                    find(header, "naam tegenpartij", "naam / omschrijving", "naam", "tegenpartij", "counterparty", "name"),
+                    find(header, "tegenrekening", "iban tegenpartij", "tegenrekening iban/bban", "counterparty iban", "iban"),
+                    find(header, "mededelingen", "omschrijving", "description", "remittance"));
+        }
+
+        private static int find(List<String> header, String... names) {
+            for (String name : names) {
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).trim().equalsIgnoreCase(name)) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        String get(List<String> fields, int column) {
+            return column >= 0 && column < fields.size() ? fields.get(column).trim() : "";
+        }
+    }
+
+    /** Splits one CSV line; fields may be quoted, with {@code ""} for a quote inside. */
+    static List<String> splitCsv(String line, char separator) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isCredit(String direction) {
+        String d = direction.trim().toLowerCase(Locale.ROOT);
+        return d.equals("bij") || d.equals("credit") || d.equals("c") || d.equals("crdt");
+    }
+
+    /** Accepts {@code 1.234,56}, {@code 1234,56} and {@code 1234.56}, with an optional sign. */
+    static BigDecimal parseAmount(String value) {
+        String v = value.replace("€", "").replace(" ", "");
+        if (v.isEmpty()) {
+            throw new IllegalArgumentException("Bedrag ontbreekt");
+        }
+        int comma = v.lastIndexOf(',');
+        int dot = v.lastIndexOf('.');
+        if (comma > dot) {
+            v = v.replace(".", "").replace(',', '.');
+        } else {
+            v = v.replace(",", "");
+        }
+        return new BigDecimal(v);
+    }
+
+    static LocalDate parseDate(String value) {
+        try {
+            if (value.length() == 8 && value.chars().allMatch(Character::isDigit)) {
+                return LocalDate.parse(value, COMPACT_DATE);
+            }
+            if (value.length() >= 10 && value.charAt(4) == '-') {
+                return LocalDate.parse(value.substring(0, 10));
+            }
+            return LocalDate.parse(value, DUTCH_DATE);
+        } catch (DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Ongeldige datum: " + value);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    /** SHA-256 refs; identical content within one file is told apart by its occurrence number. */
+    private static final class RefGenerator {
+        private final String format;
+        private final Map<String, Integer> occurrences = new HashMap<>();
+        private final MessageDigest digest;
+
+        RefGenerator(String format) {
+            this.format = format;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        String fromBankRef(String bankRef) {
+            return hash(format + ":ref:" + bankRef);
+        }
+
+        String fromContent(String content) {
+            int occurrence = occurrences.merge(content, 1, Integer::sum);
+            return hash(format + ":content:" + content + "#" + occurrence);
+        }
+
+        private String hash(String value) {
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
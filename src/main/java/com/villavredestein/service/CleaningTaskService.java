@@ -132,9 +132,10 @@ public class CleaningTaskService {
     }
 
     public CleaningTaskResponseDTO toggleTask(Long id) {
-        CleaningTask task = findTaskOrThrow(id);
-        task.setCompleted(!task.isCompleted());
-        return toResponseDTO(task);
+        if (taskRepository.toggleCompleted(id) == 0) {
+            throw new EntityNotFoundException("Taak niet gevonden: " + id);
+        }
+        return toResponseDTO(findTaskOrThrow(id));
     }
 
     public CleaningTaskResponseDTO addComment(Long id, String comment) {
@@ -0,0 +1,86 @@
+package com.villavredestein.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mail template parsed once into literal text and {@code {{naam}}}-style variables.
+ * Rendering is a single pass over the segments. A variable that is not in the map is kept as it was written,
+ * like the old chained {@code String.replace} left it, so a typo in an admin-edited template stays visible;
+ * a variable that is in the map with a null value renders as empty text. An unterminated {@code {{} is kept
+ * as literal text.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    /** Headroom per variable when pre-sizing the output; most values are names, amounts and dates. */
+    private static final int EXPECTED_VARIABLE_LENGTH = 16;
+
+    /** For a variable, {@code text} is the trimmed name and {@code source} the placeholder as written. */
+    private record Segment(String text, boolean variable, String source) {}
+
+    private final Segment[] segments;
+    private final int literalLength;
+    private final int variableCount;
+
+    private CompiledTemplate(Segment[] segments, int literalLength, int variableCount) {
+        this.segments = segments;
+        this.literalLength = literalLength;
+        this.variableCount = variableCount;
+    }
+
+    public static CompiledTemplate compile(String source) {
+        List<Segment> segments = new ArrayList<>();
+        int literalLength = 0;
+        int variableCount = 0;
+
+        if (source != null) {
+            int pos = 0;
+            while (pos < source.length()) {
+                int open = source.indexOf(OPEN, pos);
+                int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+                if (close < 0) {
+                    segments.add(new Segment(source.substring(pos), false, null));
+                    literalLength += source.length() - pos;
+                    break;
+                }
+                if (open > pos) {
+                    segments.add(new Segment(source.substring(pos, open), false, null));
+                    literalLength += open - pos;
+                }
+                segments.add(new Segment(source.substring(open + OPEN.length(), close).trim(), true,
+                        source.substring(open, close + CLOSE.length())));
+                variableCount++;
+                pos = close + CLOSE.length();
+            }
+        }
+
+        return new CompiledTemplate(segments.toArray(new Segment[0]), literalLength, variableCount);
+    }
+
+    public String render(Map<String, ?> variables) {
+        StringBuilder sb = new StringBuilder(literalLength + variableCount * EXPECTED_VARIABLE_LENGTH);
+        for (Segment segment : segments) {
+            if (!segment.variable()) {
+                sb.append(segment.text());
+                continue;
+            }
+            if (variables == null || !variables.containsKey(segment.text())) {
+                sb.append(segment.source());
+                continue;
+            }
+            Object value = variables.get(segment.text());
+            if (value != null) {
+                sb.append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    public int variableCount() {
+        return variableCount;
+    }
+}
@@ -0,0 +1,81 @@
+package com.villavredestein.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Retries an update that lost an optimistic-lock race, for updates that are safe to apply again on fresh data,
+ * such as setting a status. Call it outside a transaction with a {@code @Transactional} service method as the
+ * update, so every attempt reads the current row in a new transaction. When the last attempt also conflicts,
+ * the exception propagates and is answered with 409.
+ *
+ * <ul>
+ *     <li>{@code db.conflicts.retried} counter per operation</li>
+ *     <li>{@code db.conflicts.exhausted} counter per operation: still conflicting after the last attempt</li>
+ * </ul>
+ */
+@Component
+public class ConflictRetry {
+
+    private static final Logger log = LoggerFactory.getLogger(ConflictRetry.class);
+
+    private final MeterRegistry registry;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public ConflictRetry(MeterRegistry registry,
+                         @Value("${app.conflicts.max-attempts:3}") int maxAttempts,
+                         @Value("${app.conflicts.backoff:25ms}") Duration backoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("app.conflicts.max-attempts moet minimaal 1 zijn");
+        }
+        this.registry = registry;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = Math.max(0, backoff.toMillis());
+    }
+
+    public <T> T run(String operation, Supplier<T> update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return update.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    counter("db.conflicts.exhausted", "Updates still conflicting after the last attempt", operation).increment();
+                    log.warn("Update {} conflicted {} times, giving up", operation, attempt);
+                    throw e;
+                }
+                counter("db.conflicts.retried", "Updates retried after a concurrent change", operation).increment();
+                log.info("Update {} conflicted with a concurrent change, retrying (attempt {}/{})",
+                        operation, attempt + 1, maxAttempts);
+                pause(attempt);
+            }
+        }
+    }
+
+    /** Grows with the attempt and is jittered, so writers that collided once do not collide again in lockstep. */
+    private void pause(int attempt) {
+        if (backoffMillis == 0) {
+            return;
+        }
+        long millis = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Onderbroken tijdens opnieuw proberen", e);
+        }
+    }
+
+    private Counter counter(String name, String description, String operation) {
+        return Counter.builder(name).description(description).tag("operation", operation).register(registry);
+    }
+}
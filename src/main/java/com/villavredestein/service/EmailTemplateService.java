@@ -9,7 +9,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Transactional
@@ -17,7 +22,12 @@ public class EmailTemplateService {
 
     private static final Logger log = LoggerFactory.getLogger(EmailTemplateService.class);
 
+    public record RenderedEmail(String subject, String body) {}
+
+    private record CompiledEmail(LocalDateTime updatedAt, CompiledTemplate subject, CompiledTemplate body) {}
+
     private final EmailTemplateRepository repo;
+    private final Map<TemplateType, CompiledEmail> compiled = new ConcurrentHashMap<>();
 
     public EmailTemplateService(EmailTemplateRepository repo) {
         this.repo = repo;
@@ -97,7 +107,46 @@ public class EmailTemplateService {
         EmailTemplate template = getByType(type);
         template.setSubject(subject);
         template.setBody(body);
+        compiled.remove(type);
         log.info("Email template updated for type={}", type);
         return repo.save(template);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Renders subject and body with the given variables. Templates are parsed once per
+     * type and re-parsed only when {@code updatedAt} changes. Rendering reads no data, so it runs without a
+     * transaction; the mail merge calls it from several threads and must not borrow a connection per mail.
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public RenderedEmail render(EmailTemplate template, Map<String, ?> variables) {
+        CompiledEmail email = compile(template);
+        return new RenderedEmail(email.subject().render(variables), email.body().render(variables));
+    }
+
+    private CompiledEmail compile(EmailTemplate template) {
+        CompiledEmail cached = compiled.get(template.getType());
+        if (cached != null && Objects.equals(cached.updatedAt(), template.getUpdatedAt())) {
+            return cached;
+        }
+
+        CompiledEmail fresh = new CompiledEmail(template.getUpdatedAt(),
+                CompiledTemplate.compile(template.getSubject()),
+                CompiledTemplate.compile(template.getBody()));
+        compiled.put(template.getType(), fresh);
+        log.debug("Email template compiled for type={}", template.getType());
+        return fresh;
+    }
+
+    /** Variables used by the rent invoice and reminder templates. */
+    public static Map<String, String> rentVariables(String naam, String bedrag, String maand,
+                                                    String betaalLink, String vervaldatum) {
+        Map<String, String> variables = new HashMap<>(8);
+        variables.put("naam", naam);
+        variables.put("bedrag", bedrag);
+        variables.put("maand", maand);
+        variables.put("betaalLink", betaalLink);
+        variables.put("vervaldatum", vervaldatum);
+        return variables;
+    }
+}
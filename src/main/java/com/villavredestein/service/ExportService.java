@@ -0,0 +1,241 @@
+package com.villavredestein.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.villavredestein.repository.ExportRepository;
+import com.villavredestein.repository.ExportRepository.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Full exports for the bookkeeping, written row by row while the rows are read from the database, so memory
+ * stays the same whether an export holds ten rows or a million. Rows are read {@code app.export.fetch-size}
+ * at a time in one read-only transaction that lasts as long as the download.
+ * <p>
+ * That transaction keeps a pooled connection for the whole download, which may take up to the async request
+ * timeout. At most {@code app.export.max-concurrent} exports run at once, so the rest of the application keeps
+ * the remainder of the pool; a further export is refused with 503 rather than queued for a connection.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    private static final String FORMULA_START = "=+-@\t\r";
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    private interface RowWriter {
+        void write(Object[] row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private final ExportRepository exportRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final Semaphore slots;
+
+    public ExportService(ExportRepository exportRepository,
+                         PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper,
+                         @Value("${app.export.fetch-size:1000}") int fetchSize,
+                         @Value("${app.export.max-concurrent:2}") int maxConcurrent) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("app.export.fetch-size moet minimaal 1 zijn");
+        }
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("app.export.max-concurrent moet minimaal 1 zijn");
+        }
+        this.exportRepository = exportRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.slots = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Reserves a slot for one export, before the response starts; close it when the export is written.
+     *
+     * @throws ResponseStatusException 503 when {@code app.export.max-concurrent} exports are already running
+     */
+    public Slot reserve() {
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Er lopen al te veel exports tegelijk; probeer het later opnieuw");
+        }
+        return new Slot();
+    }
+
+    /**
+     * Checks the range before the response starts, while an error can still be answered with 400.
+     */
+    public void validateRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Begindatum mag niet na de einddatum liggen");
+        }
+    }
+
+    /**
+     * @return the number of rows written
+     */
+    public long export(Dataset dataset, Format format, LocalDate from, LocalDate to, OutputStream out)
+            throws IOException {
+        validateRange(from, to);
+        long started = System.nanoTime();
+        RowWriter writer = format == Format.CSV ? csvWriter(dataset.columns(), out) : ndjsonWriter(dataset.columns(), out);
+        try {
+            Long rows = transactionTemplate.execute(status -> {
+                long count = 0;
+                try (Stream<Object[]> stream = exportRepository.stream(dataset, from, to, fetchSize)) {
+                    Iterator<Object[]> it = stream.iterator();
+                    while (it.hasNext()) {
+                        writer.write(it.next());
+                        count++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+            writer.finish();
+            log.info("Export {} ({}) written: {} rows in {} ms (from={}, to={})", dataset, format, rows,
+                    (System.nanoTime() - started) / 1_000_000, from, to);
+            return rows == null ? 0 : rows;
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; the transaction was rolled back and the cursor closed.
+            log.warn("Export {} ({}) aborted: {}", dataset, format, e.getCause().getMessage());
+            throw e.getCause();
+        }
+    }
+
+    private static RowWriter csvWriter(List<String> columns, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writeCsvLine(writer, columns.toArray());
+        return new RowWriter() {
+            @Override
+            public void write(Object[] row) throws IOException {
+                writeCsvLine(writer, row);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvValue(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * RFC 4180: a value holding a separator, quote or line break is quoted, with quotes doubled.
+     * Text starting with {@code = + - @}, a tab or a carriage return would be read as a formula by a spreadsheet,
+     * so it gets a leading {@code '} and is quoted. Numbers, such as negative amounts, are written as they are.
+     */
+    static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal amount ? amount.toPlainString() : value.toString();
+        if (value instanceof CharSequence && !text.isEmpty() && FORMULA_START.indexOf(text.charAt(0)) >= 0) {
+            return "\"'" + text.replace("\"", "\"\"") + '"';
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + text.replace("\"", "\"\"") + '"';
+            }
+        }
+        return text;
+    }
+
+    /** A reserved export slot; closing it frees the slot, closing it again does nothing. */
+    public final class Slot implements AutoCloseable {
+
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (open.compareAndSet(true, false)) {
+                slots.release();
+            }
+        }
+    }
+
+    private RowWriter ndjsonWriter(List<String> columns, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // One object per line, ended by the newline written after it rather than separated by a space.
+        generator.setRootValueSeparator(null);
+        return new RowWriter() {
+            @Override
+            public void write(Object[] row) throws IOException {
+                generator.writeStartObject();
+                for (int i = 0; i < row.length; i++) {
+                    generator.writeFieldName(columns.get(i));
+                    generator.writeObject(row[i]);
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            public void finish() throws IOException {
+                generator.flush();
+            }
+        };
+    }
+}
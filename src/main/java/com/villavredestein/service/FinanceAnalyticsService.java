@@ -0,0 +1,191 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.FinanceDashboardDTO;
+import com.villavredestein.dto.FinanceMonthDTO;
+import com.villavredestein.dto.FinanceStudentDTO;
+import com.villavredestein.repository.FinanceRollupRepository;
+import com.villavredestein.repository.FinanceRollupRepository.MonthTotal;
+import com.villavredestein.repository.FinanceRollupRepository.StatusTotal;
+import com.villavredestein.repository.FinanceRollupRepository.StudentTotal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The admin's financial dashboard, computed from the {@code finance_rollup} table instead of from every invoice
+ * and payment. A dashboard is cached for {@code app.analytics.cache-ttl}, so figures can lag writes by that long;
+ * concurrent requests for an expired dashboard compute it once.
+ */
+@Service
+public class FinanceAnalyticsService {
+
+    private static final BigDecimal ZERO = BigDecimal.ZERO.setScale(2);
+
+    private record Cached(FinanceDashboardDTO dashboard, Instant expiresAt) {
+    }
+
+    private final FinanceRollupRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration cacheTtl;
+    private final Clock clock;
+    private final Map<Integer, Cached> cache = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Autowired
+    public FinanceAnalyticsService(FinanceRollupRepository repository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.analytics.cache-ttl:30s}") Duration cacheTtl) {
+        this(repository, transactionManager, cacheTtl, Clock.systemDefaultZone());
+    }
+
+    FinanceAnalyticsService(FinanceRollupRepository repository, PlatformTransactionManager transactionManager,
+                            Duration cacheTtl, Clock clock) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.cacheTtl = cacheTtl;
+        this.clock = clock;
+    }
+
+    /**
+     * @param months the number of months in the monthly and per-student figures, this month included;
+     *               the outstanding and overdue totals always cover every month
+     */
+    public FinanceDashboardDTO getDashboard(int months) {
+        if (months < 1) {
+            throw new IllegalArgumentException("Aantal maanden moet minimaal 1 zijn");
+        }
+        lock.lock();
+        try {
+            Instant now = clock.instant();
+            Cached cached = cache.get(months);
+            if (cached != null && now.isBefore(cached.expiresAt())) {
+                return cached.dashboard();
+            }
+            FinanceDashboardDTO dashboard = transactionTemplate.execute(status -> compute(months));
+            cache.put(months, new Cached(dashboard, now.plus(cacheTtl)));
+            return dashboard;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FinanceDashboardDTO compute(int months) {
+        LocalDate thisMonth = LocalDate.now(clock).withDayOfMonth(1);
+        LocalDate from = thisMonth.minusMonths(months - 1L);
+
+        Totals outstanding = new Totals();
+        Totals overdue = new Totals();
+        for (StatusTotal total : repository.totalsByStatus()) {
+            if (total.source().equals("INVOICE") && owed(total.status())) {
+                outstanding.add(total.count(), total.amount());
+            }
+            if (total.source().equals("INVOICE") && total.status().equals("OVERDUE")) {
+                overdue.add(total.count(), total.amount());
+            }
+        }
+
+        Map<LocalDate, Month> byMonth = new TreeMap<>();
+        for (LocalDate period = from; !period.isAfter(thisMonth); period = period.plusMonths(1)) {
+            byMonth.put(period, new Month());
+        }
+        Totals receivedThisMonth = new Totals();
+        for (MonthTotal total : repository.totalsByMonth(from)) {
+            Month month = byMonth.computeIfAbsent(total.period(), period -> new Month());
+            if (total.source().equals("PAYMENT")) {
+                if (total.status().equals("PAID")) {
+                    month.received = month.received.add(total.amount());
+                    if (total.period().equals(thisMonth)) {
+                        receivedThisMonth.add(total.count(), total.amount());
+                    }
+                }
+                continue;
+            }
+            if (!total.status().equals("CANCELLED")) {
+                month.invoiceCount += total.count();
+                month.billed = month.billed.add(total.amount());
+            }
+            if (total.status().equals("PAID")) {
+                month.paid = month.paid.add(total.amount());
+            } else if (owed(total.status())) {
+                month.outstanding = month.outstanding.add(total.amount());
+            }
+        }
+
+        Map<Long, Student> byStudent = new LinkedHashMap<>();
+        for (StudentTotal total : repository.invoiceTotalsByStudent(from)) {
+            Student student = byStudent.computeIfAbsent(total.studentId(),
+                    id -> new Student(total.username(), total.roomName()));
+            if (total.status().equals("PAID")) {
+                student.paid = student.paid.add(total.amount());
+            } else if (owed(total.status())) {
+                student.outstanding = student.outstanding.add(total.amount());
+            }
+            if (total.status().equals("OVERDUE")) {
+                student.overdueCount += total.count();
+            }
+        }
+
+        List<FinanceMonthDTO> monthDTOs = byMonth.entrySet().stream()
+                .map(e -> new FinanceMonthDTO(e.getKey().getYear(), e.getKey().getMonthValue(), e.getValue().invoiceCount,
+                        e.getValue().billed, e.getValue().paid, e.getValue().outstanding, e.getValue().received))
+                .toList();
+        List<FinanceStudentDTO> studentDTOs = byStudent.entrySet().stream()
+                .map(e -> new FinanceStudentDTO(e.getKey(), e.getValue().username, e.getValue().roomName,
+                        e.getValue().paid, e.getValue().outstanding, e.getValue().overdueCount))
+                .toList();
+
+        return new FinanceDashboardDTO(LocalDateTime.now(clock), from, outstanding.amount, outstanding.count,
+                overdue.amount, overdue.count, receivedThisMonth.amount, receivedThisMonth.count, monthDTOs, studentDTOs);
+    }
+
+    private static boolean owed(String status) {
+        return status.equals("OPEN") || status.equals("OVERDUE");
+    }
+
+    private static final class Totals {
+        private long count;
+        private BigDecimal amount = ZERO;
+
+        void add(long count, BigDecimal amount) {
+            this.count += count;
+            this.amount = this.amount.add(amount);
+        }
+    }
+
+    private static final class Month {
+        private long invoiceCount;
+        private BigDecimal billed = ZERO;
+        private BigDecimal paid = ZERO;
+        private BigDecimal outstanding = ZERO;
+        private BigDecimal received = ZERO;
+    }
+
+    private static final class Student {
+        private final String username;
+        private final String roomName;
+        private BigDecimal paid = ZERO;
+        private BigDecimal outstanding = ZERO;
+        private long overdueCount;
+
+        Student(String username, String roomName) {
+            this.username = username;
+            this.roomName = roomName;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.villavredestein.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Google's public signing keys (JWKS), by key id, for verifying ID tokens locally.
+ *
+ * <p>The keys are fetched on first use and kept for the {@code max-age} Google sends in {@code Cache-Control}
+ * (minus {@code Age}). After each fetch a background refresh is scheduled shortly before they expire, so logins
+ * do not wait for Google. A failed refresh keeps the current keys and retries after a minute. A key id that is
+ * not in the set triggers a synchronous refresh, at most once per {@link #MIN_REFETCH_INTERVAL}, because Google
+ * may have rotated its keys before our copy expired.
+ */
+@Component
+public class GoogleJwksCache {
+
+    private static final Logger log = LoggerFactory.getLogger(GoogleJwksCache.class);
+
+    static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    static final Duration MIN_TTL = Duration.ofMinutes(1);
+    static final Duration MAX_TTL = Duration.ofHours(24);
+    static final Duration MIN_REFETCH_INTERVAL = Duration.ofSeconds(30);
+    static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private record KeySet(Map<String, PublicKey> keys, Instant fetchedAt, Instant expiresAt) {
+    }
+
+    private final URI jwksUri;
+    private final OutboundCallMetrics outboundCallMetrics;
+    private final Clock clock;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("google-jwks-refresh").daemon().factory());
+
+    private volatile KeySet keySet;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    @Autowired
+    public GoogleJwksCache(OutboundCallMetrics outboundCallMetrics,
+                           @Value("${google.jwks-url:https://www.googleapis.com/oauth2/v3/certs}") String jwksUrl) {
+        this(outboundCallMetrics, jwksUrl, Clock.systemUTC());
+    }
+
+    GoogleJwksCache(OutboundCallMetrics outboundCallMetrics, String jwksUrl, Clock clock) {
+        this.jwksUri = URI.create(jwksUrl);
+        this.outboundCallMetrics = outboundCallMetrics;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the key Google signs with under this key id; empty when Google does not publish it
+     * @throws IllegalStateException when there are no keys yet and Google cannot be reached
+     */
+    public Optional<PublicKey> find(String kid) {
+        KeySet current = keySet;
+        Instant now = clock.instant();
+        if (current == null || now.isAfter(current.expiresAt())) {
+            current = refresh(current);
+        }
+        PublicKey key = current.keys().get(kid);
+        if (key == null && now.isAfter(current.fetchedAt().plus(MIN_REFETCH_INTERVAL))) {
+            log.info("Google signing key {} is not cached; fetching the key set again", kid);
+            key = refresh(current).keys().get(kid);
+        }
+        return Optional.ofNullable(key);
+    }
+
+    /** When the cached keys expire; null before the first fetch. */
+    Instant expiresAt() {
+        KeySet current = keySet;
+        return current == null ? null : current.expiresAt();
+    }
+
+    /**
+     * Fetches the keys, unless another thread replaced {@code seen} while this one waited for the lock.
+     * When the fetch fails the keys seen so far are kept.
+     */
+    private KeySet refresh(KeySet seen) {
+        fetchLock.lock();
+        try {
+            if (keySet != seen) {
+                return keySet;
+            }
+            try {
+                KeySet fetched = fetch();
+                keySet = fetched;
+                scheduleRefresh(refreshDelay(fetched));
+                return fetched;
+            } catch (IOException | GeneralSecurityException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                if (seen == null) {
+                    throw new IllegalStateException("Google signing keys are unavailable", e);
+                }
+                log.warn("Refreshing Google signing keys failed, keeping the current keys: {}", e.getMessage());
+                scheduleRefresh(RETRY_DELAY);
+                return seen;
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void backgroundRefresh() {
+        try {
+            refresh(keySet);
+        } catch (RuntimeException e) {
+            log.warn("Background refresh of Google signing keys failed: {}", e.getMessage());
+        }
+    }
+
+    /** Refreshes at 90% of the lifetime, so the keys are replaced before they expire. */
+    private Duration refreshDelay(KeySet fetched) {
+        Duration ttl = Duration.between(fetched.fetchedAt(), fetched.expiresAt());
+        return ttl.minus(ttl.dividedBy(10));
+    }
+
+    private void scheduleRefresh(Duration delay) {
+        if (refresher.isShutdown()) {
+            return;
+        }
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = refresher.schedule(this::backgroundRefresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private KeySet fetch() throws IOException, GeneralSecurityException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(jwksUri).timeout(REQUEST_TIMEOUT).GET().build();
+
+        HttpResponse<String> response;
+        OutboundCallMetrics.Call call = outboundCallMetrics.start(OutboundCallMetrics.GOOGLE);
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            call.httpStatus(response.statusCode());
+        } catch (IOException | InterruptedException e) {
+            call.failure(e);
+            throw e;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Google JWKS returned HTTP " + response.statusCode());
+        }
+
+        Map<String, PublicKey> keys = parseKeys(objectMapper.readTree(response.body()));
+        if (keys.isEmpty()) {
+            throw new IOException("Google JWKS contains no RSA signing keys");
+        }
+        Instant now = clock.instant();
+        Duration ttl = ttl(response.headers().firstValue("Cache-Control").orElse(null),
+                response.headers().firstValue("Age").orElse(null));
+        log.info("Fetched {} Google signing keys, valid for {}", keys.size(), ttl);
+        return new KeySet(Map.copyOf(keys), now, now.plus(ttl));
+    }
+
+    private static Map<String, PublicKey> parseKeys(JsonNode jwks) throws GeneralSecurityException {
+        KeyFactory rsa = KeyFactory.getInstance("RSA");
+        Map<String, PublicKey> keys = new HashMap<>();
+        for (JsonNode jwk : jwks.path("keys")) {
+            String kid = jwk.path("kid").asText("");
+            if (kid.isEmpty() || !"RSA".equals(jwk.path("kty").asText()) || "enc".equals(jwk.path("use").asText())) {
+                continue;
+            }
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+            BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+            keys.put(kid, rsa.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+        }
+        return keys;
+    }
+
+    /** The {@code max-age} minus {@code Age}, within {@link #MIN_TTL} and {@link #MAX_TTL}. */
+    static Duration ttl(String cacheControl, String age) {
+        if (cacheControl == null) {
+            return DEFAULT_TTL;
+        }
+        Matcher matcher = MAX_AGE.matcher(cacheControl);
+        if (!matcher.find()) {
+            return DEFAULT_TTL;
+        }
+        long seconds = Long.parseLong(matcher.group(1));
+        if (age != null && age.strip().matches("\\d+")) {
+            seconds -= Long.parseLong(age.strip());
+        }
+        Duration ttl = Duration.ofSeconds(seconds);
+        if (ttl.compareTo(MIN_TTL) < 0) {
+            return MIN_TTL;
+        }
+        return ttl.compareTo(MAX_TTL) > 0 ? MAX_TTL : ttl;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -2,8 +2,18 @@ package com.villavredestein.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -13,7 +23,20 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Set;
 
+/**
+ * Verifies a Google login token and returns its email address.
+ *
+ * <p>ID tokens (signed JWTs) are verified locally against Google's published keys from {@link GoogleJwksCache}:
+ * RS256 signature, issuer, expiry (with a minute of clock skew) and audience, so a login does not call Google.
+ * This needs {@code google.client-id}, otherwise the audience cannot be checked.
+ * Anything else is treated as an OAuth access token and checked with Google's tokeninfo endpoint, as before.
+ */
 @Service
 public class GoogleTokenVerifierService {
 
@@ -21,21 +44,122 @@ public class GoogleTokenVerifierService {
     private static final String TOKENINFO_URL =
             "https://www.googleapis.com/oauth2/v3/tokeninfo?access_token=";
 
-    @Value("${google.client-id:}")
-    private String googleClientId;
+    private static final Set<String> ISSUERS = Set.of("accounts.google.com", "https://accounts.google.com");
+    private static final long ALLOWED_CLOCK_SKEW_SECONDS = 60;
 
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OutboundCallMetrics outboundCallMetrics;
+    private final GoogleJwksCache jwksCache;
+    private final String googleClientId;
+    private final JwtParser idTokenParser;
+
+    @Autowired
+    public GoogleTokenVerifierService(OutboundCallMetrics outboundCallMetrics,
+                                      GoogleJwksCache jwksCache,
+                                      @Value("${google.client-id:}") String googleClientId) {
+        this(outboundCallMetrics, jwksCache, googleClientId, Clock.systemUTC());
+    }
+
+    GoogleTokenVerifierService(OutboundCallMetrics outboundCallMetrics, GoogleJwksCache jwksCache,
+                               String googleClientId, Clock clock) {
+        this.outboundCallMetrics = outboundCallMetrics;
+        this.jwksCache = jwksCache;
+        this.googleClientId = googleClientId == null ? "" : googleClientId;
+        this.idTokenParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declares this with a raw JwsHeader; JwsHeader<?> does not override it
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return signingKey(header);
+                    }
+                })
+                .setClock(() -> Date.from(clock.instant()))
+                .setAllowedClockSkewSeconds(ALLOWED_CLOCK_SKEW_SECONDS)
+                .build();
+    }
+
+    /**
+     * @param token a Google ID token, or an OAuth access token
+     * @return the verified email address
+     */
+    public String verifyAndGetEmail(String token) {
+        if (isJwt(token)) {
+            return verifyIdToken(token);
+        }
+        return verifyAccessToken(token);
+    }
+
+    private static boolean isJwt(String token) {
+        return token.startsWith("eyJ") && token.chars().filter(c -> c == '.').count() == 2;
+    }
+
+    private String verifyIdToken(String idToken) {
+        if (googleClientId.isBlank()) {
+            // Without a client id any app's ID token would be accepted; access tokens still work via tokeninfo
+            log.error("Google ID token received but google.client-id is not configured");
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token is niet voor deze applicatie");
+        }
+        Claims claims;
+        try {
+            claims = idTokenParser.parseClaimsJws(idToken).getBody();
+        } catch (ExpiredJwtException e) {
+            log.warn("Google ID token expired at {}", e.getClaims().getExpiration());
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Google token is verlopen");
+        } catch (JwtException e) {
+            log.warn("Google ID token rejected: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Ongeldig Google token");
+        } catch (IllegalStateException e) {
+            log.error("Google token verificatie mislukt: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Google login is tijdelijk niet beschikbaar");
+        }
+
+        if (!ISSUERS.contains(claims.getIssuer())) {
+            log.warn("Google ID token has an unexpected issuer: {}", claims.getIssuer());
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Ongeldig Google token");
+        }
+        if (claims.getExpiration() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Ongeldig Google token");
+        }
+        checkAudience(String.valueOf(claims.get("azp")), claims.getAudience());
+        return verifiedEmail(String.valueOf(claims.get("email_verified")), claims.get("email", String.class));
+    }
+
+    /** Only RS256 is accepted, with a key id Google publishes. */
+    private Key signingKey(JwsHeader<?> header) {
+        if (!SignatureAlgorithm.RS256.getValue().equals(header.getAlgorithm())) {
+            throw new UnsupportedJwtException("Unexpected algorithm " + header.getAlgorithm());
+        }
+        String kid = header.getKeyId();
+        if (kid == null) {
+            throw new UnsupportedJwtException("Token has no key id");
+        }
+        return jwksCache.find(kid)
+                .orElseThrow(() -> new UnsupportedJwtException("Unknown signing key " + kid));
+    }
 
-    public String verifyAndGetEmail(String accessToken) {
+    private String verifyAccessToken(String accessToken) {
         try {
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(TOKENINFO_URL + accessToken))
+                    .timeout(REQUEST_TIMEOUT)
                     .GET()
                     .build();
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response;
+            OutboundCallMetrics.Call call = outboundCallMetrics.start(OutboundCallMetrics.GOOGLE);
+            try {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                call.httpStatus(response.statusCode());
+            } catch (Exception e) {
+                call.failure(e);
+                throw e;
+            }
 
             if (response.statusCode() != 200) {
                 log.warn("Google tokeninfo returned HTTP {}", response.statusCode());
@@ -43,30 +167,8 @@ public class GoogleTokenVerifierService {
             }
 
             JsonNode json = objectMapper.readTree(response.body());
-
-            if (!googleClientId.isBlank()) {
-                String azp = json.path("azp").asText("");
-                String aud = json.path("aud").asText("");
-                if (!googleClientId.equals(azp) && !googleClientId.equals(aud)) {
-                    log.warn("Google token audience mismatch: azp={} aud={}", azp, aud);
-                    throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
-                            "Token is niet voor deze applicatie");
-                }
-            }
-
-            String emailVerified = json.path("email_verified").asText("false");
-            if (!Boolean.parseBoolean(emailVerified)) {
-                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
-                        "E-mailadres is niet geverifieerd bij Google");
-            }
-
-            String email = json.path("email").asText("");
-            if (email.isBlank()) {
-                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
-                        "Geen e-mailadres ontvangen van Google");
-            }
-
-            return email;
+            checkAudience(json.path("azp").asText(""), json.path("aud").asText(""));
+            return verifiedEmail(json.path("email_verified").asText("false"), json.path("email").asText(""));
 
         } catch (ResponseStatusException e) {
             throw e;
@@ -76,4 +178,24 @@ public class GoogleTokenVerifierService {
                     "Google login is tijdelijk niet beschikbaar");
         }
     }
+
+    private void checkAudience(String azp, String aud) {
+        if (!googleClientId.isBlank() && !googleClientId.equals(azp) && !googleClientId.equals(aud)) {
+            log.warn("Google token audience mismatch: azp={} aud={}", azp, aud);
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                    "Token is niet voor deze applicatie");
+        }
+    }
+
+    private static String verifiedEmail(String emailVerified, String email) {
+        if (!Boolean.parseBoolean(emailVerified)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                    "E-mailadres is niet geverifieerd bij Google");
+        }
+        if (email == null || email.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                    "Geen e-mailadres ontvangen van Google");
+        }
+        return email;
+    }
 }
@@ -0,0 +1,127 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.repository.InvoiceRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Month-end export of all invoice PDFs as a single ZIP.
+ * PDFs are rendered in parallel but written in order through a bounded window,
+ * so memory stays proportional to the number of renderer threads instead of the month size.
+ */
+@Service
+public class InvoiceExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceExportService.class);
+
+    private record PendingPdf(Invoice invoice, Future<byte[]> pdf) {}
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoicePdfService invoicePdfService;
+    private final ExecutorService renderPool;
+    private final int maxInFlight;
+
+    public InvoiceExportService(InvoiceRepository invoiceRepository,
+                                InvoicePdfService invoicePdfService,
+                                @Value("${app.invoice.export.threads:0}") int threads) {
+        this.invoiceRepository = invoiceRepository;
+        this.invoicePdfService = invoicePdfService;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "invoice-export-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = poolSize * 2;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Invoice> findForMonth(int month, int year) {
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("Maand moet tussen 1 en 12 liggen");
+        }
+        return invoiceRepository.findByInvoiceMonthAndInvoiceYearOrderByStudentUsernameAsc(month, year);
+    }
+
+    public void writeZip(List<Invoice> invoices, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        Deque<PendingPdf> window = new ArrayDeque<>(maxInFlight);
+
+        try {
+            for (Invoice invoice : invoices) {
+                window.addLast(new PendingPdf(invoice, renderPool.submit(() -> invoicePdfService.generate(invoice))));
+                if (window.size() >= maxInFlight) {
+                    writeEntry(zip, window.pollFirst());
+                }
+            }
+            while (!window.isEmpty()) {
+                writeEntry(zip, window.pollFirst());
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            window.forEach(pending -> pending.pdf().cancel(true));
+        }
+
+        log.info("Invoice export written ({} invoices, {} ms)",
+                invoices.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void writeEntry(ZipOutputStream zip, PendingPdf pending) throws IOException {
+        byte[] pdf;
+        try {
+            pdf = pending.pdf().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export onderbroken", e);
+        } catch (ExecutionException e) {
+            throw new IOException("PDF generatie mislukt voor factuur " + pending.invoice().getId(), e.getCause());
+        }
+
+        zip.putNextEntry(new ZipEntry(entryName(pending.invoice())));
+        zip.write(pdf);
+        zip.closeEntry();
+    }
+
+    static String entryName(Invoice invoice) {
+        String student = invoice.getStudent() != null ? invoice.getStudent().getUsername() : null;
+        String slug = student == null ? "onbekend" : Normalizer.normalize(student, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("(^-|-$)", "");
+        if (slug.isEmpty()) {
+            slug = "onbekend";
+        }
+        return slug + "-factuur-" + invoice.getId() + ".pdf";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renderPool.shutdownNow();
+    }
+}
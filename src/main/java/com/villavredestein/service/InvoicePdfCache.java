@@ -0,0 +1,128 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of rendered invoice PDFs.
+ * Entries are keyed by invoice id and carry a fingerprint of every rendered field,
+ * so a changed invoice is re-rendered even when nobody invalidated it explicitly.
+ * Guarded by a {@link ReentrantLock} rather than {@code synchronized}, so waiting virtual threads do not pin their carrier.
+ */
+@Component
+public class InvoicePdfCache {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoicePdfCache.class);
+    private static final char FIELD_SEPARATOR = '\u001F';
+
+    public record CachedPdf(String etag, byte[] content) {}
+
+    private final int maxEntries;
+    private final Map<Long, CachedPdf> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public InvoicePdfCache(@Value("${app.invoice.pdf-cache.max-entries:256}") int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedPdf> eldest) {
+                return size() > InvoicePdfCache.this.maxEntries;
+            }
+        };
+    }
+
+    public CachedPdf getOrRender(Invoice invoice, Function<Invoice, byte[]> renderer) {
+        if (invoice == null || invoice.getId() == null) {
+            throw new IllegalArgumentException("Invoice ontbreekt of heeft geen id");
+        }
+
+        String etag = etagFor(invoice);
+
+        lock.lock();
+        try {
+            CachedPdf cached = entries.get(invoice.getId());
+            if (cached != null && cached.etag().equals(etag)) {
+                return cached;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        CachedPdf rendered = new CachedPdf(etag, renderer.apply(invoice));
+
+        lock.lock();
+        try {
+            entries.put(invoice.getId(), rendered);
+        } finally {
+            lock.unlock();
+        }
+
+        log.debug("Invoice PDF rendered and cached (invoiceId={}, etag={})", invoice.getId(), etag);
+        return rendered;
+    }
+
+    public void invalidate(Long invoiceId) {
+        if (invoiceId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            entries.remove(invoiceId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String etagFor(Invoice invoice) {
+        return "\"inv-" + invoice.getId() + "-" + fingerprint(invoice) + "\"";
+    }
+
+    private String fingerprint(Invoice invoice) {
+        StringBuilder sb = new StringBuilder(256)
+                .append(invoice.getId()).append(FIELD_SEPARATOR)
+                .append(invoice.getTitle()).append(FIELD_SEPARATOR)
+                .append(invoice.getDescription()).append(FIELD_SEPARATOR)
+                .append(invoice.getAmount() != null ? invoice.getAmount().toPlainString() : null).append(FIELD_SEPARATOR)
+                .append(invoice.getIssueDate()).append(FIELD_SEPARATOR)
+                .append(invoice.getDueDate()).append(FIELD_SEPARATOR)
+                .append(invoice.getStatus());
+
+        if (invoice.getStudent() != null) {
+            sb.append(FIELD_SEPARATOR).append(invoice.getStudent().getUsername())
+              .append(FIELD_SEPARATOR).append(invoice.getStudent().getEmail());
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 niet beschikbaar", e);
+        }
+    }
+}
@@ -9,22 +9,61 @@ import org.springframework.stereotype.Service;
 
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
+/**
+ * Renders invoice PDFs.
+ * Fonts, colors and cell templates are built once; they are never modified after class init,
+ * so they can be shared by concurrent renders.
+ */
 @Service
 public class InvoicePdfService {
 
     private static final Locale NL = Locale.forLanguageTag("nl-NL");
-    private static final NumberFormat EUR = NumberFormat.getCurrencyInstance(NL);
+    private static final ThreadLocal<NumberFormat> EUR =
+            ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(NL));
     private static final DateTimeFormatter DATE_NL = DateTimeFormatter.ofPattern("d MMMM yyyy", NL);
+
     private static final Color BRAND_COLOR = new Color(30, 64, 100);
 
+    private static final Font TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 22, BRAND_COLOR);
+    private static final Font SUBTITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA, 14, Color.GRAY);
+    private static final Font SUB_FONT = FontFactory.getFont(FontFactory.HELVETICA, 11, Color.DARK_GRAY);
+    private static final Font LABEL_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
+    private static final Font BODY_FONT = FontFactory.getFont(FontFactory.HELVETICA, 11);
+    private static final Font HEADER_CELL_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.WHITE);
+    private static final Font TOTAL_VALUE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, BRAND_COLOR);
+    private static final Font FOOTER_FONT = FontFactory.getFont(FontFactory.HELVETICA, 9, Color.GRAY);
+
+    private static final float[] TABLE_WIDTHS = {4f, 1.5f};
+    private static final String FOOTER_TEXT =
+            "Bedankt voor het op tijd betalen van de huur. Bij vragen kunt u contact opnemen via villavredestein@gmail.com";
+
+    private static final PdfPCell HEADER_CELL = headerCellTemplate();
+    private static final PdfPCell BODY_CELL = bodyCellTemplate();
+    private static final PdfPCell TOTAL_CELL = totalCellTemplate();
+
+    /** Typical invoice PDF is ~2 KB; avoids buffer regrowth for the byte[] variant. */
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+
     public byte[] generate(Invoice invoice) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        generate(invoice, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the PDF straight to {@code out}. The stream is flushed but not closed,
+     * so it can be a servlet response or a ZIP entry.
+     */
+    public void generate(Invoice invoice, OutputStream out) {
+        try {
             Document doc = new Document(PageSize.A4, 50, 50, 60, 60);
-            PdfWriter.getInstance(doc, out);
+            PdfWriter writer = PdfWriter.getInstance(doc, out);
+            writer.setCloseStream(false);
             doc.open();
 
             addHeader(doc, invoice);
@@ -34,91 +73,88 @@ public class InvoicePdfService {
             addFooter(doc);
 
             doc.close();
-            return out.toByteArray();
+            out.flush();
         } catch (Exception e) {
             throw new RuntimeException("PDF generatie mislukt", e);
         }
     }
 
     private void addHeader(Document doc, Invoice invoice) throws DocumentException {
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 22, BRAND_COLOR);
-        Font subFont = FontFactory.getFont(FontFactory.HELVETICA, 11, Color.DARK_GRAY);
-
-        Paragraph title = new Paragraph("Villa Vredestein", titleFont);
+        Paragraph title = new Paragraph("Villa Vredestein", TITLE_FONT);
         title.setAlignment(Element.ALIGN_LEFT);
         doc.add(title);
 
-        doc.add(new Paragraph("Factuur", FontFactory.getFont(FontFactory.HELVETICA, 14, Color.GRAY)));
+        doc.add(new Paragraph("Factuur", SUBTITLE_FONT));
         doc.add(Chunk.NEWLINE);
 
-        doc.add(new Paragraph("Factuurnummer: #" + invoice.getId(), subFont));
-        doc.add(new Paragraph("Factuurdatum:  " + fmt(invoice.getIssueDate()), subFont));
-        doc.add(new Paragraph("Vervaldatum:   " + fmt(invoice.getDueDate()), subFont));
+        doc.add(new Paragraph("Factuurnummer: #" + invoice.getId(), SUB_FONT));
+        doc.add(new Paragraph("Factuurdatum:  " + fmt(invoice.getIssueDate()), SUB_FONT));
+        doc.add(new Paragraph("Vervaldatum:   " + fmt(invoice.getDueDate()), SUB_FONT));
         doc.add(Chunk.NEWLINE);
 
-        doc.add(new Paragraph("Aan:", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
-        doc.add(new Paragraph(invoice.getStudent().getUsername(), subFont));
-        doc.add(new Paragraph(invoice.getStudent().getEmail(), subFont));
+        doc.add(new Paragraph("Aan:", LABEL_FONT));
+        doc.add(new Paragraph(invoice.getStudent().getUsername(), SUB_FONT));
+        doc.add(new Paragraph(invoice.getStudent().getEmail(), SUB_FONT));
     }
 
     private void addInvoiceTable(Document doc, Invoice invoice) throws DocumentException {
-        PdfPTable table = new PdfPTable(new float[]{4f, 1.5f});
+        PdfPTable table = new PdfPTable(TABLE_WIDTHS);
         table.setWidthPercentage(100);
 
-        addHeaderCell(table, "Omschrijving");
-        addHeaderCell(table, "Bedrag");
+        table.addCell(cell(HEADER_CELL, "Omschrijving", HEADER_CELL_FONT));
+        table.addCell(cell(HEADER_CELL, "Bedrag", HEADER_CELL_FONT));
 
         String desc = invoice.getTitle();
         if (invoice.getDescription() != null && !invoice.getDescription().isBlank()) {
             desc += "\n" + invoice.getDescription();
         }
-        addBodyCell(table, desc);
-        addBodyCell(table, EUR.format(invoice.getAmount()));
+        String amount = EUR.get().format(invoice.getAmount());
 
-        PdfPCell totalLabel = new PdfPCell(new Phrase("Totaal",
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
-        totalLabel.setBorder(Rectangle.TOP);
-        totalLabel.setPadding(8);
-        totalLabel.setHorizontalAlignment(Element.ALIGN_RIGHT);
-
-        PdfPCell totalValue = new PdfPCell(new Phrase(EUR.format(invoice.getAmount()),
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, BRAND_COLOR)));
-        totalValue.setBorder(Rectangle.TOP);
-        totalValue.setPadding(8);
-        totalValue.setHorizontalAlignment(Element.ALIGN_RIGHT);
-
-        table.addCell(totalLabel);
-        table.addCell(totalValue);
+        table.addCell(cell(BODY_CELL, desc, BODY_FONT));
+        table.addCell(cell(BODY_CELL, amount, BODY_FONT));
+        table.addCell(cell(TOTAL_CELL, "Totaal", LABEL_FONT));
+        table.addCell(cell(TOTAL_CELL, amount, TOTAL_VALUE_FONT));
 
         doc.add(table);
     }
 
     private void addFooter(Document doc) throws DocumentException {
-        Font footerFont = FontFactory.getFont(FontFactory.HELVETICA, 9, Color.GRAY);
-        Paragraph footer = new Paragraph("Bedankt voor het op tijd betalen van de huur. Bij vragen kunt u contact opnemen via villavredestein@gmail.com", footerFont);
+        Paragraph footer = new Paragraph(FOOTER_TEXT, FOOTER_FONT);
         footer.setAlignment(Element.ALIGN_CENTER);
         doc.add(footer);
     }
 
-    private void addHeaderCell(PdfPTable table, String text) {
-        PdfPCell cell = new PdfPCell(new Phrase(text,
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.WHITE)));
+    private static PdfPCell cell(PdfPCell template, String text, Font font) {
+        PdfPCell cell = new PdfPCell(template);
+        cell.setPhrase(new Phrase(text, font));
+        return cell;
+    }
+
+    private static PdfPCell headerCellTemplate() {
+        PdfPCell cell = new PdfPCell();
         cell.setBackgroundColor(BRAND_COLOR);
         cell.setPadding(8);
         cell.setBorder(Rectangle.NO_BORDER);
-        table.addCell(cell);
+        return cell;
     }
 
-    private void addBodyCell(PdfPTable table, String text) {
-        PdfPCell cell = new PdfPCell(new Phrase(text,
-                FontFactory.getFont(FontFactory.HELVETICA, 11)));
+    private static PdfPCell bodyCellTemplate() {
+        PdfPCell cell = new PdfPCell();
         cell.setPadding(8);
         cell.setBorder(Rectangle.BOTTOM);
         cell.setBorderColor(Color.LIGHT_GRAY);
-        table.addCell(cell);
+        return cell;
+    }
+
+    private static PdfPCell totalCellTemplate() {
+        PdfPCell cell = new PdfPCell();
+        cell.setPadding(8);
+        cell.setBorder(Rectangle.TOP);
+        cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        return cell;
     }
 
     private String fmt(java.time.LocalDate date) {
         return date != null ? date.format(DATE_NL) : "-";
     }
-}
\ No newline at end of file
+}
@@ -4,8 +4,11 @@ import com.villavredestein.dto.InvoiceRequestDTO;
 import com.villavredestein.dto.InvoiceResponseDTO;
 import com.villavredestein.model.Invoice;
 import com.villavredestein.model.Invoice.InvoiceStatus;
+import com.villavredestein.model.Payment;
 import com.villavredestein.model.User;
 import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.InvoiceRepositoryCustom.InsertedInvoice;
+import com.villavredestein.repository.PaymentRepository;
 import com.villavredestein.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
@@ -17,8 +20,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -28,15 +34,24 @@ public class InvoiceService {
     private static final Logger log = LoggerFactory.getLogger(InvoiceService.class);
 
     private final InvoiceRepository invoiceRepository;
+    private final PaymentRepository paymentRepository;
     private final UserRepository userRepository;
     private final InvoicePdfService invoicePdfService;
+    private final InvoicePdfCache invoicePdfCache;
+    private final LedgerService ledgerService;
 
     public InvoiceService(InvoiceRepository invoiceRepository,
+                          PaymentRepository paymentRepository,
                           UserRepository userRepository,
-                          InvoicePdfService invoicePdfService) {
+                          InvoicePdfService invoicePdfService,
+                          InvoicePdfCache invoicePdfCache,
+                          LedgerService ledgerService) {
         this.invoiceRepository = invoiceRepository;
+        this.paymentRepository = paymentRepository;
         this.userRepository = userRepository;
         this.invoicePdfService = invoicePdfService;
+        this.invoicePdfCache = invoicePdfCache;
+        this.ledgerService = ledgerService;
     }
 
 
@@ -60,20 +75,41 @@ public class InvoiceService {
                 student
         );
 
-        if (invoiceRepository.existsByStudentAndInvoiceMonthAndInvoiceYear(student, invoice.getInvoiceMonth(), invoice.getInvoiceYear())) {
+        List<InsertedInvoice> inserted = invoiceRepository.insertIfAbsent(List.of(invoice));
+        if (inserted.isEmpty()) {
             throw new ResponseStatusException(
                     HttpStatus.CONFLICT,
                     "Er bestaat al een factuur voor deze student in " + invoice.getInvoiceMonth() + "-" + invoice.getInvoiceYear()
             );
         }
 
-        Invoice saved = invoiceRepository.save(invoice);
+        Invoice saved = findInvoiceOrThrow(inserted.get(0).id());
+        ledgerService.invoiceCreated(saved);
 
         log.info("📄 Factuur aangemaakt (invoiceId={}, student={}, amount={})", saved.getId(), safe(student.getEmail()), saved.getAmount());
 
         return toDTO(saved);
     }
 
+    /**
+     * Creates the invoices in bulk. Students that already have an invoice for the month are skipped,
+     * also when a concurrent run creates it first, so running this twice never bills twice.
+     *
+     * @return the id of each created invoice by student id
+     */
+    public Map<Long, Long> createInvoicesIfAbsent(List<Invoice> invoices) {
+        if (invoices.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Long> created = new HashMap<>();
+        for (InsertedInvoice inserted : invoiceRepository.insertIfAbsent(invoices)) {
+            created.put(inserted.studentId(), inserted.id());
+        }
+        ledgerService.invoicesCreated(invoices, created);
+        log.info("📄 {} facturen aangemaakt, {} bestonden al", created.size(), invoices.size() - created.size());
+        return created;
+    }
+
 
     public List<InvoiceResponseDTO> getAllInvoices() {
         return invoiceRepository.findAllByOrderByIdDesc()
@@ -110,8 +146,14 @@ public class InvoiceService {
     public InvoiceResponseDTO updateStatus(Long id, InvoiceStatus newStatus) {
 
         Invoice invoice = findInvoiceOrThrow(id);
+        InvoiceStatus previous = invoice.getStatus();
 
         invoice.setStatus(newStatus);
+        if (newStatus == InvoiceStatus.PAID && previous != InvoiceStatus.PAID) {
+            linkRecordedPayment(invoice);
+        }
+        ledgerService.invoiceStatusChanged(invoice, previous);
+        invoicePdfCache.invalidate(id);
 
         log.info("📌 Factuurstatus gewijzigd (invoiceId={}, status={})", id, newStatus);
 
@@ -132,36 +174,78 @@ public class InvoiceService {
 
     public void deleteInvoice(Long id) {
         Invoice invoice = findInvoiceOrThrow(id);
+        ledgerService.invoiceDeleted(invoice);
         invoiceRepository.delete(invoice);
+        invoicePdfCache.invalidate(id);
         log.warn("🗑️ Factuur verwijderd (invoiceId={})", id);
     }
 
 
-    public List<Invoice> getAllOpenInvoices() {
-        return invoiceRepository.findByStatusOrderByIdDesc(InvoiceStatus.OPEN);
+    /**
+     * The invoices the policy says to remind now, with their students loaded, in one query.
+     */
+    public List<Invoice> findReminderCandidates(ReminderPolicy policy, LocalDateTime now) {
+        return invoiceRepository.findAll(policy.toSpecification(now), ReminderPolicy.ORDER);
     }
 
-    public List<Invoice> getUpcomingInvoices() {
-        LocalDate today = LocalDate.now();
-        LocalDate inFourDays = today.plusDays(4);
-        return invoiceRepository.findByStatusAndDueDateBetweenOrderByDueDateAsc(InvoiceStatus.OPEN, today, inFourDays);
+    public InvoicePdfCache.CachedPdf generatePdf(Long id, String callerEmail, boolean isAdmin) {
+        return invoicePdfCache.getOrRender(getInvoiceForPdf(id, callerEmail, isAdmin), invoicePdfService::generate);
     }
 
-    public byte[] generatePdf(Long id, String callerEmail, boolean isAdmin) {
-        Invoice invoice = findInvoiceOrThrow(id);
+    /**
+     * Loads an invoice for PDF rendering outside this transaction, with the student fetched in the same
+     * query; the student is all the renderer reads.
+     */
+    public Invoice getInvoiceForPdf(Long id, String callerEmail, boolean isAdmin) {
+        Invoice invoice = invoiceRepository.findWithStudentById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Factuur niet gevonden: " + id));
         if (!isAdmin && !invoice.getStudent().getEmail().equalsIgnoreCase(callerEmail)) {
             throw new AccessDeniedException("You can only download your own invoices");
         }
-        return invoicePdfService.generate(invoice);
+        return invoice;
     }
 
-    public void saveReminderMeta(Invoice invoice) {
-        if (invoice == null || invoice.getId() == null) {
-            throw new IllegalArgumentException("Invoice ontbreekt of heeft geen id");
-        }
-        invoiceRepository.save(invoice);
+    public boolean isPdfCacheEnabled() {
+        return invoicePdfCache.isEnabled();
     }
 
+    /**
+     * Collects sent reminders and writes them per chunk; close it before the surrounding transaction ends.
+     *
+     * @param markOverdue also move OPEN invoices to OVERDUE
+     */
+    public ReminderStateWriter reminderStateWriter(LocalDateTime sentAt, boolean markOverdue) {
+        return new ReminderStateWriter(invoiceRepository, sentAt, markOverdue);
+    }
+
+    /**
+     * Records one sent reminder, such as a manual one from the admin.
+     *
+     * @return false when the invoice was deleted meanwhile and the reminder was not counted
+     */
+    public boolean recordReminderSent(Invoice invoice, LocalDateTime sentAt) {
+        ReminderStateWriter writer = reminderStateWriter(sentAt, false);
+        writer.sent(invoice);
+        writer.flush();
+        return writer.written() == 1;
+    }
+
+
+    /**
+     * Links the student's newest paid, unlinked payment of the same amount, paid in the invoice's month, to the
+     * invoice: the admin recorded the payment before marking the invoice paid, and it must not count twice.
+     * Payments of other months are left alone; a payment for an earlier month is linked by its invoice id.
+     */
+    private void linkRecordedPayment(Invoice invoice) {
+        LocalDateTime from = LocalDate.of(invoice.getInvoiceYear(), invoice.getInvoiceMonth(), 1).atStartOfDay();
+        paymentRepository.findFirstByStudentAndStatusAndAmountAndInvoiceIsNullAndPaidAtGreaterThanEqualAndPaidAtLessThanOrderByIdDesc(
+                        invoice.getStudent(), Payment.PaymentStatus.PAID, invoice.getAmount(), from, from.plusMonths(1))
+                .ifPresent(payment -> {
+                    payment.setInvoice(invoice);
+                    ledgerService.paymentLinked(payment);
+                    log.info("Payment {} linked to paid invoice {}", payment.getId(), invoice.getId());
+                });
+    }
 
     private Invoice findInvoiceOrThrow(Long id) {
         return invoiceRepository.findById(id)
@@ -173,14 +257,7 @@ public class InvoiceService {
         return findInvoiceOrThrow(id);
     }
 
-    public List<Invoice> getUnpaidForMonth(int month, int year) {
-        return invoiceRepository.findByInvoiceMonthAndInvoiceYearAndStatusNotIn(
-                month, year,
-                List.of(Invoice.InvoiceStatus.PAID, Invoice.InvoiceStatus.CANCELLED)
-        );
-    }
-
-    private InvoiceResponseDTO toDTO(Invoice invoice) {
+    InvoiceResponseDTO toDTO(Invoice invoice) {
         return new InvoiceResponseDTO(
                 invoice.getId(),
                 invoice.getTitle(),
@@ -0,0 +1,199 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.LedgerEntryDTO;
+import com.villavredestein.dto.StudentBalanceDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.Invoice.InvoiceStatus;
+import com.villavredestein.model.Payment;
+import com.villavredestein.model.Payment.PaymentStatus;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.LedgerRepository;
+import com.villavredestein.repository.LedgerRepository.Posting;
+import com.villavredestein.repository.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts every change to what a student owes to the append-only ledger, in the transaction of the change.
+ * <p>
+ * An OPEN or OVERDUE invoice counts as owed; PAID and CANCELLED invoices count for nothing, so marking an invoice
+ * paid posts its amount back. A PAID payment that is not linked to an invoice is a credit; a linked payment is
+ * already covered by its invoice being PAID and posts nothing. When a credited payment is linked afterwards, its
+ * credit is reversed, so paying an invoice and recording the payment never credits the student twice.
+ */
+@Service
+@Transactional
+public class LedgerService {
+
+    public enum EntryType {
+        INVOICE_CHARGED,
+        INVOICE_PAID,
+        INVOICE_CANCELLED,
+        INVOICE_REOPENED,
+        INVOICE_DELETED,
+        PAYMENT_RECEIVED,
+        PAYMENT_REVERSED
+    }
+
+    /** An invoice marked PAID outside JPA, as by the bank reconciliation. */
+    public record PaidInvoice(long invoiceId, long studentId, BigDecimal amount, String description) {
+    }
+
+    /** A PAID payment linked to an invoice outside JPA, as by the bank reconciliation. */
+    public record LinkedPayment(long paymentId, long studentId, BigDecimal amount, String description) {
+    }
+
+    private final LedgerRepository ledgerRepository;
+    private final UserRepository userRepository;
+
+    public LedgerService(LedgerRepository ledgerRepository, UserRepository userRepository) {
+        this.ledgerRepository = ledgerRepository;
+        this.userRepository = userRepository;
+    }
+
+    public void invoiceCreated(Invoice invoice) {
+        if (owed(invoice.getStatus())) {
+            ledgerRepository.post(List.of(invoicePosting(invoice.getId(), invoice, EntryType.INVOICE_CHARGED,
+                    invoice.getAmount())));
+        }
+    }
+
+    /**
+     * @param invoiceIdByStudent the id of each invoice that was actually inserted, by student id
+     */
+    public void invoicesCreated(List<Invoice> invoices, Map<Long, Long> invoiceIdByStudent) {
+        List<Posting> postings = new ArrayList<>(invoiceIdByStudent.size());
+        for (Invoice invoice : invoices) {
+            Long invoiceId = invoiceIdByStudent.get(invoice.getStudent().getId());
+            if (invoiceId != null && owed(invoice.getStatus())) {
+                postings.add(invoicePosting(invoiceId, invoice, EntryType.INVOICE_CHARGED, invoice.getAmount()));
+            }
+        }
+        post(postings);
+    }
+
+    /**
+     * @param invoice  with its new status
+     * @param previous the status it had before
+     */
+    public void invoiceStatusChanged(Invoice invoice, InvoiceStatus previous) {
+        boolean was = owed(previous);
+        boolean is = owed(invoice.getStatus());
+        if (was == is) {
+            return;
+        }
+        EntryType type = is ? EntryType.INVOICE_REOPENED
+                : invoice.getStatus() == InvoiceStatus.PAID ? EntryType.INVOICE_PAID : EntryType.INVOICE_CANCELLED;
+        BigDecimal amount = is ? invoice.getAmount() : invoice.getAmount().negate();
+        ledgerRepository.post(List.of(invoicePosting(invoice.getId(), invoice, type, amount)));
+    }
+
+    public void invoiceDeleted(Invoice invoice) {
+        if (owed(invoice.getStatus())) {
+            ledgerRepository.post(List.of(invoicePosting(invoice.getId(), invoice, EntryType.INVOICE_DELETED,
+                    invoice.getAmount().negate())));
+        }
+    }
+
+    public void invoicesPaid(List<PaidInvoice> paid) {
+        post(paid.stream()
+                .map(p -> new Posting(p.studentId(), EntryType.INVOICE_PAID.name(), p.amount().negate(),
+                        p.invoiceId(), null, p.description()))
+                .toList());
+    }
+
+    /** Reverses the credit of each payment, like {@link #paymentLinked(Payment)}. */
+    public void paymentsLinked(List<LinkedPayment> linked) {
+        post(linked.stream()
+                .map(p -> new Posting(p.studentId(), EntryType.PAYMENT_REVERSED.name(), p.amount(), null,
+                        p.paymentId(), p.description()))
+                .toList());
+    }
+
+    /**
+     * @param payment  with its new status
+     * @param previous the status it had before; {@code null} for a new payment
+     */
+    public void paymentChanged(Payment payment, PaymentStatus previous) {
+        if (payment.getInvoice() != null) {
+            return;
+        }
+        boolean was = previous == PaymentStatus.PAID;
+        boolean is = payment.getStatus() == PaymentStatus.PAID;
+        if (was == is) {
+            return;
+        }
+        ledgerRepository.post(List.of(is
+                ? paymentPosting(payment, EntryType.PAYMENT_RECEIVED, payment.getAmount().negate())
+                : paymentPosting(payment, EntryType.PAYMENT_REVERSED, payment.getAmount())));
+    }
+
+    /**
+     * A PAID payment that was credited on its own now covers an invoice; the invoice being PAID takes its place.
+     */
+    public void paymentLinked(Payment payment) {
+        if (payment.getStatus() == PaymentStatus.PAID) {
+            ledgerRepository.post(List.of(paymentPosting(payment, EntryType.PAYMENT_REVERSED, payment.getAmount())));
+        }
+    }
+
+    public void paymentDeleted(Payment payment) {
+        if (payment.getInvoice() == null && payment.getStatus() == PaymentStatus.PAID) {
+            ledgerRepository.post(List.of(paymentPosting(payment, EntryType.PAYMENT_REVERSED, payment.getAmount())));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public StudentBalanceDTO getBalance(Long studentId, String callerEmail, boolean isAdmin) {
+        User student = findStudentForCaller(studentId, callerEmail, isAdmin);
+        return ledgerRepository.findBalance(student.getId())
+                .map(b -> new StudentBalanceDTO(b.studentId(), b.balance(), b.entryCount(), b.updatedAt()))
+                .orElseGet(() -> new StudentBalanceDTO(student.getId(), BigDecimal.ZERO.setScale(2), 0, null));
+    }
+
+    @Transactional(readOnly = true)
+    public List<LedgerEntryDTO> getEntries(Long studentId, Long beforeId, int limit, String callerEmail, boolean isAdmin) {
+        User student = findStudentForCaller(studentId, callerEmail, isAdmin);
+        return ledgerRepository.findEntries(student.getId(), beforeId, limit)
+                .stream()
+                .map(e -> new LedgerEntryDTO(e.id(), e.type(), e.amount(), e.invoiceId(), e.paymentId(),
+                        e.description(), e.createdAt()))
+                .toList();
+    }
+
+    private User findStudentForCaller(Long studentId, String callerEmail, boolean isAdmin) {
+        User student = userRepository.findById(studentId)
+                .filter(user -> user.getRole() == User.Role.STUDENT)
+                .orElseThrow(() -> new EntityNotFoundException("Student niet gevonden: " + studentId));
+        if (!isAdmin && !student.getEmail().equalsIgnoreCase(callerEmail)) {
+            throw new AccessDeniedException("You can only view your own balance");
+        }
+        return student;
+    }
+
+    private void post(List<Posting> postings) {
+        if (!postings.isEmpty()) {
+            ledgerRepository.post(postings);
+        }
+    }
+
+    private static boolean owed(InvoiceStatus status) {
+        return status == InvoiceStatus.OPEN || status == InvoiceStatus.OVERDUE;
+    }
+
+    private static Posting invoicePosting(Long invoiceId, Invoice invoice, EntryType type, BigDecimal amount) {
+        return new Posting(invoice.getStudent().getId(), type.name(), amount, invoiceId, null, invoice.getTitle());
+    }
+
+    private static Posting paymentPosting(Payment payment, EntryType type, BigDecimal amount) {
+        return new Posting(payment.getStudent().getId(), type.name(), amount, null, payment.getId(),
+                payment.getDescription());
+    }
+}
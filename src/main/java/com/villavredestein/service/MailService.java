@@ -1,27 +1,57 @@
 package com.villavredestein.service;
 
+import com.villavredestein.model.EmailTemplate;
+import com.villavredestein.model.EmailTemplate.TemplateType;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class MailService {
 
     private static final Logger log = LoggerFactory.getLogger(MailService.class);
 
+    /** Below this many recipients per thread a merge is prepared on the calling thread. */
+    private static final int MERGE_MIN_CHUNK = 32;
+
     @Nullable
     private final JavaMailSender mailSender;
     private final boolean mailEnabled;
     private final String from;
     private final String bccAdmin;
+    @Nullable
+    private final EmailTemplateService emailTemplateService;
+    private final OutboundCallMetrics outboundCallMetrics;
+
+    // Rendering and MIME building are CPU-bound; a pool of our own keeps them out of the common pool.
+    private final int mergeThreads = Runtime.getRuntime().availableProcessors();
+    private final ExecutorService mergePool = Executors.newFixedThreadPool(mergeThreads, mergeThreadFactory());
 
     public enum MailCategory {
         CLEANING_TASK,
@@ -30,16 +60,42 @@ public class MailService {
         GENERIC
     }
 
+    public enum MergeStatus {
+        SENT,
+        SKIPPED,
+        INVALID_RECIPIENT,
+        FAILED
+    }
+
+    /** One mail-merge recipient: the address plus the template variables for that mail. */
+    public record MergeRecipient(String to, Map<String, ?> variables) {}
+
+    public record MergeOutcome(String to, MergeStatus status, @Nullable String error) {}
+
+    @Autowired
     public MailService(
             JavaMailSender mailSender,
             @Value("${app.mail.enabled:true}") boolean mailEnabled,
             @Value("${app.mail.from:no-reply@villavredestein.local}") String from,
-            @Value("${app.mail.bcc.admin:}") String bccAdmin
+            @Value("${app.mail.bcc.admin:}") String bccAdmin,
+            EmailTemplateService emailTemplateService,
+            OutboundCallMetrics outboundCallMetrics
     ) {
         this.mailSender = mailSender;
         this.mailEnabled = mailEnabled;
         this.from = from;
         this.bccAdmin = bccAdmin;
+        this.emailTemplateService = emailTemplateService;
+        this.outboundCallMetrics = outboundCallMetrics != null ? outboundCallMetrics : OutboundCallMetrics.noop();
+    }
+
+    public MailService(JavaMailSender mailSender, boolean mailEnabled, String from, String bccAdmin,
+                       EmailTemplateService emailTemplateService) {
+        this(mailSender, mailEnabled, from, bccAdmin, emailTemplateService, null);
+    }
+
+    public MailService(JavaMailSender mailSender, boolean mailEnabled, String from, String bccAdmin) {
+        this(mailSender, mailEnabled, from, bccAdmin, null, null);
     }
 
     protected MailService() {
@@ -47,6 +103,8 @@ public class MailService {
         this.mailEnabled = false;
         this.from = "no-reply@villavredestein.local";
         this.bccAdmin = "";
+        this.emailTemplateService = null;
+        this.outboundCallMetrics = OutboundCallMetrics.noop();
     }
 
     public void sendMailWithRole(String role, String to, String subject, String body, @Nullable String bcc) {
@@ -117,7 +175,7 @@ public class MailService {
             msg.setTo(to);
             msg.setSubject(subject);
             msg.setText(body);
-            mailSender.send(msg);
+            send(msg);
             log.info("Password reset mail sent to {}", maskEmail(to));
         } catch (MailException e) {
             log.error("Failed to send password reset mail to {}: {}", maskEmail(to), e.getMessage());
@@ -183,6 +241,194 @@ public class MailService {
         sendInternal("ADMIN", MailCategory.INVOICE_REMINDER, to, subject, body, null, maskEmail(to));
     }
 
+    /**
+     * Renders {@code type} once per recipient and sends all mails in a single SMTP session.
+     * Rendering and MIME building run in parallel; the returned outcomes are in recipient order.
+     */
+    public List<MergeOutcome> sendMailMerge(TemplateType type, List<MergeRecipient> recipients) {
+        if (type == null) {
+            throw new IllegalArgumentException("Template type is required");
+        }
+        if (recipients == null || recipients.isEmpty()) {
+            return List.of();
+        }
+        if (emailTemplateService == null) {
+            throw new IllegalStateException("Mail merge requires EmailTemplateService");
+        }
+
+        EmailTemplate template = emailTemplateService.getByType(type);
+        int size = recipients.size();
+        MergeOutcome[] outcomes = new MergeOutcome[size];
+
+        if (!mailEnabled || mailSender == null) {
+            for (int i = 0; i < size; i++) {
+                String to = recipients.get(i).to();
+                outcomes[i] = isValidRecipient(to)
+                        ? new MergeOutcome(to, MergeStatus.SKIPPED, mailEnabled ? "No mailSender configured" : "Mail disabled")
+                        : new MergeOutcome(to, MergeStatus.INVALID_RECIPIENT, "Invalid email address");
+            }
+            log.warn("[MAIL {}] mail merge skipped (type={}, recipients={})",
+                    mailEnabled ? "ENABLED, no mailSender" : "DISABLED", type, size);
+            return List.of(outcomes);
+        }
+
+        MimeMessage[] messages = new MimeMessage[size];
+        prepareMerge(template, recipients, messages, outcomes);
+
+        List<MimeMessage> batch = new ArrayList<>(size);
+        Map<MimeMessage, Integer> indexByMessage = new IdentityHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            if (messages[i] != null) {
+                batch.add(messages[i]);
+                indexByMessage.put(messages[i], i);
+            }
+        }
+
+        Map<Object, Exception> failed = Map.of();
+        String batchError = null;
+        if (!batch.isEmpty()) {
+            try {
+                sendBatch(batch.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                failed = e.getFailedMessages();
+                if (failed.isEmpty()) {
+                    batchError = e.getMessage();
+                }
+            } catch (MailException e) {
+                batchError = e.getMessage();
+            }
+        }
+
+        int sent = 0;
+        for (Map.Entry<MimeMessage, Integer> entry : indexByMessage.entrySet()) {
+            int i = entry.getValue();
+            String to = recipients.get(i).to();
+            Exception error = failed.get(entry.getKey());
+            if (batchError != null) {
+                outcomes[i] = new MergeOutcome(to, MergeStatus.FAILED, batchError);
+            } else if (error != null) {
+                outcomes[i] = new MergeOutcome(to, MergeStatus.FAILED, error.getMessage());
+            } else {
+                outcomes[i] = new MergeOutcome(to, MergeStatus.SENT, null);
+                sent++;
+            }
+        }
+
+        if (batchError != null) {
+            log.error("Mail merge failed (type={}, recipients={}): {}", type, size, batchError);
+        }
+        log.info("Mail merge finished (type={}, recipients={}, sent={}, notSent={})", type, size, sent, size - sent);
+        return List.of(outcomes);
+    }
+
+    /** Renders and builds the messages, in chunks over the merge pool when the merge is large enough. */
+    private void prepareMerge(EmailTemplate template, List<MergeRecipient> recipients,
+                              MimeMessage[] messages, MergeOutcome[] outcomes) {
+        int size = recipients.size();
+        int chunk = Math.max(MERGE_MIN_CHUNK, (size + mergeThreads - 1) / mergeThreads);
+        if (chunk >= size) {
+            prepareMerge(template, recipients, messages, outcomes, 0, size);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < size; from += chunk) {
+            int start = from;
+            int end = Math.min(from + chunk, size);
+            tasks.add(() -> {
+                prepareMerge(template, recipients, messages, outcomes, start, end);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> done : mergePool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Mail merge interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Mail merge failed", e.getCause());
+        }
+    }
+
+    private void prepareMerge(EmailTemplate template, List<MergeRecipient> recipients,
+                              MimeMessage[] messages, MergeOutcome[] outcomes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            MergeRecipient recipient = recipients.get(i);
+            if (!isValidRecipient(recipient.to())) {
+                outcomes[i] = new MergeOutcome(recipient.to(), MergeStatus.INVALID_RECIPIENT, "Invalid email address");
+                continue;
+            }
+            try {
+                EmailTemplateService.RenderedEmail rendered = emailTemplateService.render(template, recipient.variables());
+                messages[i] = buildMimeMessage(recipient.to().trim(), rendered.subject(), rendered.body());
+            } catch (MessagingException | RuntimeException e) {
+                outcomes[i] = new MergeOutcome(recipient.to(), MergeStatus.FAILED, e.getMessage());
+            }
+        }
+    }
+
+    private static ThreadFactory mergeThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "mail-merge-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        mergePool.shutdownNow();
+    }
+
+    private void send(SimpleMailMessage message) {
+        OutboundCallMetrics.Call call = outboundCallMetrics.start(OutboundCallMetrics.SMTP);
+        try {
+            mailSender.send(message);
+            call.success();
+        } catch (RuntimeException e) {
+            call.failure(e);
+            throw e;
+        }
+    }
+
+    private void send(MimeMessage message) {
+        OutboundCallMetrics.Call call = outboundCallMetrics.start(OutboundCallMetrics.SMTP);
+        try {
+            mailSender.send(message);
+            call.success();
+        } catch (RuntimeException e) {
+            call.failure(e);
+            throw e;
+        }
+    }
+
+    private void sendBatch(MimeMessage[] messages) {
+        OutboundCallMetrics.Call call = outboundCallMetrics.start(OutboundCallMetrics.SMTP_BATCH);
+        try {
+            mailSender.send(messages);
+            call.success();
+        } catch (RuntimeException e) {
+            call.failure(e);
+            throw e;
+        }
+    }
+
+    private MimeMessage buildMimeMessage(String to, String subject, String body) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, false, StandardCharsets.UTF_8.name());
+        helper.setFrom(from);
+        helper.setTo(to);
+        if (bccAdmin != null && !bccAdmin.isBlank()) {
+            helper.setBcc(bccAdmin);
+        }
+        helper.setSubject(subject);
+        helper.setText(body, false);
+        return message;
+    }
+
     private void sendInternal(
             String normalizedRole,
             MailCategory category,
@@ -227,7 +473,7 @@ public class MailService {
 
             msg.setSubject(subject);
             msg.setText(body);
-            mailSender.send(msg);
+            send(msg);
 
             log.info("Mail sent successfully (role={}, cat={}, to={}, subject={})", normalizedRole, category, safeTo, subject);
 
@@ -236,7 +482,7 @@ public class MailService {
         }
     }
 
-    private MailCategory categorize(String normalizedRole, String subject) {
+    MailCategory categorize(String normalizedRole, String subject) {
         String s = subject.trim().toLowerCase(Locale.ROOT);
 
         MailCategory category = MailCategory.GENERIC;
@@ -271,15 +517,22 @@ public class MailService {
         if (to == null || to.isBlank()) {
             throw new IllegalArgumentException("Recipient email (to) is required");
         }
+        if (!isValidRecipient(to)) {
+            throw new IllegalArgumentException("Invalid email address: " + maskEmail(to.trim()));
+        }
+    }
+
+    private boolean isValidRecipient(String to) {
+        if (to == null || to.isBlank()) {
+            return false;
+        }
         String trimmed = to.trim();
         int at = trimmed.indexOf('@');
         int dot = trimmed.lastIndexOf('.');
-        if (at < 1 || dot < at + 2 || dot == trimmed.length() - 1) {
-            throw new IllegalArgumentException("Invalid email address: " + maskEmail(trimmed));
-        }
+        return at >= 1 && dot >= at + 2 && dot != trimmed.length() - 1;
     }
 
-    private String maskEmail(String email) {
+    String maskEmail(String email) {
         if (email == null || email.isBlank()) return "(no-email)";
         int at = email.indexOf('@');
         if (at <= 1) return "***";
@@ -0,0 +1,143 @@
+package com.villavredestein.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency, in-flight and timeout metrics for blocking calls to external providers
+ * (SMTP, Twilio, Google). A mail-merge batch is timed as provider {@code smtp_batch}.
+ *
+ * <ul>
+ *     <li>{@code outbound.calls} timer per provider and outcome, with a percentile histogram</li>
+ *     <li>{@code outbound.calls.inflight} gauge per provider</li>
+ *     <li>{@code outbound.calls.timeouts} counter per provider</li>
+ * </ul>
+ *
+ * Exemplars (request or job run id) are attached by the Prometheus registry, see
+ * {@link com.villavredestein.config.CorrelationSpanContext}.
+ */
+@Component
+public class OutboundCallMetrics {
+
+    public static final String SMTP = "smtp";
+    /** A whole mail-merge batch in one SMTP session; kept apart so it does not skew single-mail latency. */
+    public static final String SMTP_BATCH = "smtp_batch";
+    public static final String TWILIO = "twilio";
+    public static final String GOOGLE = "google";
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public OutboundCallMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Metrics that are recorded nowhere; for services constructed without Spring. */
+    public static OutboundCallMetrics noop() {
+        return new OutboundCallMetrics(new CompositeMeterRegistry());
+    }
+
+    public Call start(String provider) {
+        return new Call(provider);
+    }
+
+    private AtomicInteger inFlight(String provider) {
+        return inFlight.computeIfAbsent(provider, name -> {
+            AtomicInteger holder = new AtomicInteger();
+            Gauge.builder("outbound.calls.inflight", holder, AtomicInteger::get)
+                    .description("Outbound calls currently waiting for the provider")
+                    .tag("provider", name)
+                    .register(registry);
+            return holder;
+        });
+    }
+
+    static boolean isTimeout(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException
+                    || t instanceof HttpTimeoutException
+                    || t instanceof TimeoutException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /** One outbound call. Exactly one of the completion methods should be called; later calls are ignored. */
+    public final class Call {
+
+        private final String provider;
+        private final Timer.Sample sample;
+        private final AtomicInteger inFlightCounter;
+        private boolean done;
+
+        private Call(String provider) {
+            this.provider = provider;
+            this.inFlightCounter = inFlight(provider);
+            this.inFlightCounter.incrementAndGet();
+            this.sample = Timer.start(registry);
+        }
+
+        public void success() {
+            finish("success");
+        }
+
+        /** Classifies an HTTP status: 2xx success, 4xx client_error, everything else server_error. */
+        public void httpStatus(int status) {
+            if (status >= 200 && status < 300) {
+                finish("success");
+            } else if (status >= 400 && status < 500) {
+                finish("client_error");
+            } else {
+                finish("server_error");
+            }
+        }
+
+        public void failure(Throwable error) {
+            if (isTimeout(error)) {
+                if (finish("timeout")) {
+                    Counter.builder("outbound.calls.timeouts")
+                            .description("Outbound calls that hit a connect or read timeout")
+                            .tag("provider", provider)
+                            .register(registry)
+                            .increment();
+                }
+            } else {
+                finish("error");
+            }
+        }
+
+        private boolean finish(String outcome) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            inFlightCounter.decrementAndGet();
+            sample.stop(Timer.builder("outbound.calls")
+                    .description("Latency of calls to external providers")
+                    .tag("provider", provider)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(5))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+            return true;
+        }
+    }
+}
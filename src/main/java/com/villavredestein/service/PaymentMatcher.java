@@ -0,0 +1,166 @@
+package com.villavredestein.service;
+
+import com.villavredestein.repository.BankStatementRepository.OpenInvoice;
+import com.villavredestein.repository.BankStatementRepository.Student;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches incoming bank entries to open invoices with hash lookups only, so matching a year of statements
+ * costs one pass over the entries. In order:
+ * <ol>
+ *     <li>{@link MatchedBy#REFERENCE}: the description names the invoice number ({@code #123}, {@code factuur 123})
+ *     and the amount is that invoice's amount</li>
+ *     <li>{@link MatchedBy#IBAN}: the counterparty account paid an earlier invoice of exactly one student; the oldest
+ *     open invoice of that student with this amount</li>
+ *     <li>{@link MatchedBy#NAME}: the counterparty name is the full name or username of exactly one student; idem</li>
+ * </ol>
+ * A matched invoice is taken out of the indexes, so it is never paid twice. Not thread-safe.
+ */
+public final class PaymentMatcher {
+
+    public enum MatchedBy { REFERENCE, IBAN, NAME }
+
+    public record Match(long invoiceId, long studentId, MatchedBy matchedBy) {
+    }
+
+    private static final Pattern INVOICE_NUMBER =
+            Pattern.compile("(?:#|factuur\\s*(?:nr\\.?|nummer)?\\s*:?\\s*)(\\d{1,18})", Pattern.CASE_INSENSITIVE);
+
+    /** Marks a key that belongs to more than one student and so identifies none. */
+    private static final long AMBIGUOUS = -1;
+
+    private record StudentAmount(long studentId, long cents) {
+    }
+
+    private final Map<Long, OpenInvoice> byId = new HashMap<>();
+    private final Map<StudentAmount, Deque<OpenInvoice>> byStudentAndAmount = new HashMap<>();
+    private final Map<String, Long> studentByIban = new HashMap<>();
+    private final Map<String, Long> studentByName = new HashMap<>();
+
+    /**
+     * @param knownIbans counterparty accounts of earlier matched payments, with the student they paid for
+     */
+    public PaymentMatcher(Collection<OpenInvoice> invoices, Collection<Student> students, Map<String, Long> knownIbans) {
+        invoices.stream()
+                .sorted(Comparator.comparing(OpenInvoice::dueDate).thenComparingLong(OpenInvoice::id))
+                .forEach(invoice -> {
+                    byId.put(invoice.id(), invoice);
+                    byStudentAndAmount.computeIfAbsent(new StudentAmount(invoice.studentId(), cents(invoice.amount())),
+                            key -> new ArrayDeque<>()).addLast(invoice);
+                });
+        for (Student student : students) {
+            index(studentByName, normalizeName(student.fullName()), student.id());
+            index(studentByName, sortedTokens(student.fullName()), student.id());
+            index(studentByName, normalizeName(student.username()), student.id());
+        }
+        knownIbans.forEach((iban, studentId) -> index(studentByIban, normalizeIban(iban), studentId));
+    }
+
+    public int openInvoices() {
+        return byId.size();
+    }
+
+    public Optional<Match> match(BankStatementReader.Entry entry) {
+        if (!entry.credit()) {
+            return Optional.empty();
+        }
+        long cents = cents(entry.amount());
+
+        Optional<Match> match = byReference(entry.remittance(), cents)
+                .or(() -> byStudent(studentByIban.get(normalizeIban(entry.counterpartyIban())), cents, MatchedBy.IBAN))
+                .or(() -> byStudent(lookupName(entry.counterpartyName()), cents, MatchedBy.NAME));
+
+        match.ifPresent(m -> index(studentByIban, normalizeIban(entry.counterpartyIban()), m.studentId()));
+        return match;
+    }
+
+    private Optional<Match> byReference(String remittance, long cents) {
+        if (remittance == null) {
+            return Optional.empty();
+        }
+        Matcher numbers = INVOICE_NUMBER.matcher(remittance);
+        while (numbers.find()) {
+            OpenInvoice invoice = byId.get(Long.parseLong(numbers.group(1)));
+            if (invoice != null && cents(invoice.amount()) == cents) {
+                take(invoice);
+                return Optional.of(new Match(invoice.id(), invoice.studentId(), MatchedBy.REFERENCE));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Match> byStudent(Long studentId, long cents, MatchedBy matchedBy) {
+        if (studentId == null || studentId == AMBIGUOUS) {
+            return Optional.empty();
+        }
+        Deque<OpenInvoice> open = byStudentAndAmount.get(new StudentAmount(studentId, cents));
+        if (open == null || open.isEmpty()) {
+            return Optional.empty();
+        }
+        OpenInvoice invoice = open.peekFirst();
+        take(invoice);
+        return Optional.of(new Match(invoice.id(), studentId, matchedBy));
+    }
+
+    private Long lookupName(String name) {
+        Long studentId = studentByName.get(normalizeName(name));
+        return studentId != null ? studentId : studentByName.get(sortedTokens(name));
+    }
+
+    private void take(OpenInvoice invoice) {
+        byId.remove(invoice.id());
+        Deque<OpenInvoice> open = byStudentAndAmount.get(new StudentAmount(invoice.studentId(), cents(invoice.amount())));
+        if (open != null) {
+            open.remove(invoice);
+        }
+    }
+
+    private static void index(Map<String, Long> index, String key, long studentId) {
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        index.merge(key, studentId, (existing, added) -> existing.equals(added) ? existing : AMBIGUOUS);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    public static String normalizeIban(String iban) {
+        return iban == null ? null : iban.replace(" ", "").toUpperCase(Locale.ROOT);
+    }
+
+    /** Lower case, without accents and punctuation: {@code "Zoë  van der Berg"} becomes {@code "zoe van der berg"}. */
+    static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String plain = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return plain.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    /** The name's words in alphabetical order, so {@code "Berg, Zoe van der"} matches {@code "Zoe van der Berg"}. */
+    private static String sortedTokens(String name) {
+        String normalized = normalizeName(name);
+        if (normalized == null || normalized.isEmpty()) {
+            return null;
+        }
+        String[] tokens = normalized.split(" ");
+        Arrays.sort(tokens);
+        return "~" + String.join(" ", tokens);
+    }
+}
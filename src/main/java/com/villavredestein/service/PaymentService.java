@@ -2,14 +2,17 @@ package com.villavredestein.service;
 
 import com.villavredestein.dto.PaymentRequestDTO;
 import com.villavredestein.dto.PaymentResponseDTO;
+import com.villavredestein.model.Invoice;
 import com.villavredestein.model.Payment;
 import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
 import com.villavredestein.repository.PaymentRepository;
 import com.villavredestein.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,11 +21,18 @@ import java.util.List;
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
+    private final InvoiceRepository invoiceRepository;
     private final UserRepository userRepository;
+    private final LedgerService ledgerService;
+    private final InvoiceService invoiceService;
 
-    public PaymentService(PaymentRepository paymentRepository, UserRepository userRepository) {
+    public PaymentService(PaymentRepository paymentRepository, InvoiceRepository invoiceRepository,
+                          UserRepository userRepository, LedgerService ledgerService, InvoiceService invoiceService) {
         this.paymentRepository = paymentRepository;
+        this.invoiceRepository = invoiceRepository;
         this.userRepository = userRepository;
+        this.ledgerService = ledgerService;
+        this.invoiceService = invoiceService;
     }
 
     @Transactional(readOnly = true)
@@ -96,13 +106,21 @@ public class PaymentService {
             payment.setPaidAt(dto.getPaidAt());
         }
 
+        if (dto.getInvoiceId() != null) {
+            payment.setInvoice(invoiceToLink(student, dto.getInvoiceId()));
+        } else {
+            linkPaidInvoice(payment);
+        }
         Payment saved = paymentRepository.save(payment);
+        ledgerService.paymentChanged(saved, null);
+        payLinkedInvoice(saved);
         return toResponseDTO(saved);
     }
 
     public PaymentResponseDTO updateStatus(Long paymentId, String newStatus) {
         Payment payment = paymentRepository.findById(requireId(paymentId))
                 .orElseThrow(() -> new EntityNotFoundException("Payment not found: " + paymentId));
+        Payment.PaymentStatus previous = payment.getStatus();
 
         payment.setStatus(newStatus);
 
@@ -114,16 +132,66 @@ public class PaymentService {
             payment.setPaidAt(null);
         }
 
+        if (previous != Payment.PaymentStatus.PAID) {
+            linkPaidInvoice(payment);
+        }
         Payment saved = paymentRepository.save(payment);
+        ledgerService.paymentChanged(saved, previous);
+        if (previous != Payment.PaymentStatus.PAID) {
+            payLinkedInvoice(saved);
+        }
         return toResponseDTO(saved);
     }
 
     public void deletePayment(Long id) {
         Payment payment = paymentRepository.findById(requireId(id))
                 .orElseThrow(() -> new EntityNotFoundException("Payment not found: " + id));
+        ledgerService.paymentDeleted(payment);
         paymentRepository.delete(payment);
     }
 
+    /** The invoice a payment is recorded for: one of the student's, not cancelled and not paid by another payment. */
+    private Invoice invoiceToLink(User student, Long invoiceId) {
+        Invoice invoice = invoiceRepository.findById(requireId(invoiceId))
+                .orElseThrow(() -> new EntityNotFoundException("Invoice not found: " + invoiceId));
+        if (!invoice.getStudent().getId().equals(student.getId())) {
+            throw new IllegalArgumentException("Invoice " + invoiceId + " belongs to another student");
+        }
+        if (invoice.getStatus() == Invoice.InvoiceStatus.CANCELLED) {
+            throw new IllegalStateException("Invoice " + invoiceId + " is cancelled");
+        }
+        if (paymentRepository.existsByInvoice(invoice)) {
+            throw new IllegalStateException("Invoice " + invoiceId + " already has a payment");
+        }
+        return invoice;
+    }
+
+    /**
+     * Links a payment that becomes PAID to the student's paid invoice of the same amount for the month it was paid
+     * in, when no payment covers that invoice yet: the admin marked the invoice paid before recording the payment,
+     * and it must not count twice. Invoices of other months are left alone; those are linked by invoice id.
+     */
+    private void linkPaidInvoice(Payment payment) {
+        if (payment.getStatus() != Payment.PaymentStatus.PAID || payment.getInvoice() != null
+                || payment.getPaidAt() == null) {
+            return;
+        }
+        LocalDate paidOn = payment.getPaidAt().toLocalDate();
+        invoiceRepository.findWithoutPayment(payment.getStudent(), Invoice.InvoiceStatus.PAID, payment.getAmount(),
+                        paidOn.getMonthValue(), paidOn.getYear())
+                .ifPresent(payment::setInvoice);
+    }
+
+    /** A PAID payment pays its open invoice; the invoice being PAID is what credits the student. */
+    private void payLinkedInvoice(Payment payment) {
+        Invoice invoice = payment.getInvoice();
+        if (payment.getStatus() == Payment.PaymentStatus.PAID && invoice != null
+                && (invoice.getStatus() == Invoice.InvoiceStatus.OPEN
+                || invoice.getStatus() == Invoice.InvoiceStatus.OVERDUE)) {
+            invoiceService.updateStatus(invoice.getId(), Invoice.InvoiceStatus.PAID);
+        }
+    }
+
     private Long requireId(Long id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("id is required");
@@ -0,0 +1,250 @@
+package com.villavredestein.service;
+
+import com.villavredestein.repository.BankStatementRepository;
+import com.villavredestein.repository.BankStatementRepository.NewLine;
+import com.villavredestein.repository.BankStatementRepository.RecordedPayment;
+import com.villavredestein.repository.BankStatementRepository.SettledInvoice;
+import com.villavredestein.repository.BankStatementRepository.Settlement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Imports the bank statements in {@code app.reconciliation.directory} and settles the open invoices they pay.
+ * <p>
+ * Files are read one entry at a time and written in chunks of {@code app.reconciliation.chunk-size}: per chunk one
+ * transaction with one insert of the new lines, the matching in memory ({@link PaymentMatcher}) and one statement
+ * that marks the invoices PAID and books their payments, posted to the ledger in the same transaction. A payment
+ * the admin already recorded for a settled invoice is linked to it and its credit reversed, so the student is not
+ * credited twice. The open invoices and students are loaded once per run.
+ * <p>
+ * Incremental runs skip files imported before (same name, size and modification time) and only match lines
+ * that are new. A full run reads every file again and also retries lines that are still unmatched.
+ */
+@Service
+public class ReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    /** What happened to one entry of a statement. */
+    public enum Outcome {
+        /** Paid an open invoice. */
+        MATCHED,
+        /** Stored, but no open invoice matched it; a full run tries it again. */
+        UNMATCHED,
+        /** Matched an invoice that was paid or cancelled in the meantime. */
+        ALREADY_PAID,
+        /** Imported before, from this or an overlapping statement. */
+        ALREADY_IMPORTED,
+        /** An outgoing payment; only incoming payments are imported. */
+        DEBIT
+    }
+
+    public record Result(int files, int skippedFiles, int failedFiles, int entries, int matched, int unmatched) {
+    }
+
+    private final BankStatementRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final InvoicePdfCache pdfCache;
+    private final LedgerService ledgerService;
+    private final String directory;
+    private final int chunkSize;
+
+    public ReconciliationService(BankStatementRepository repository,
+                                 PlatformTransactionManager transactionManager,
+                                 InvoicePdfCache pdfCache,
+                                 LedgerService ledgerService,
+                                 @Value("${app.reconciliation.directory:}") String directory,
+                                 @Value("${app.reconciliation.chunk-size:500}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("app.reconciliation.chunk-size moet minimaal 1 zijn");
+        }
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pdfCache = pdfCache;
+        this.ledgerService = ledgerService;
+        this.directory = directory == null ? "" : directory.trim();
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isConfigured() {
+        return !directory.isEmpty();
+    }
+
+    /**
+     * @param incremental skip files imported before and leave earlier unmatched lines alone
+     * @param progress    called once per entry, after the chunk holding it was committed
+     */
+    public Result reconcile(boolean incremental, Consumer<Outcome> progress) {
+        if (!isConfigured()) {
+            throw new IllegalStateException("Geen map voor bankafschriften ingesteld (app.reconciliation.directory)");
+        }
+        long started = System.nanoTime();
+        List<Path> files = listStatements(Path.of(directory));
+
+        PaymentMatcher matcher = transactionTemplate.execute(status -> new PaymentMatcher(
+                repository.findOpenInvoices(), repository.findStudents(), repository.findKnownIbans()));
+        log.info("Reconciliation started (files={}, openInvoices={}, incremental={})",
+                files.size(), matcher.openInvoices(), incremental);
+
+        Tally tally = new Tally(progress);
+        for (Path file : files) {
+            importFile(file, incremental, matcher, tally);
+        }
+
+        Result result = tally.result();
+        log.info("Reconciliation finished in {} ms: {} files ({} skipped, {} failed), {} entries, {} matched, {} unmatched",
+                (System.nanoTime() - started) / 1_000_000, result.files(), result.skippedFiles(), result.failedFiles(),
+                result.entries(), result.matched(), result.unmatched());
+        return result;
+    }
+
+    private static List<Path> listStatements(Path dir) {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(BankStatementReader::supports)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Map voor bankafschriften kan niet worden gelezen: " + dir, e);
+        }
+    }
+
+    private void importFile(Path file, boolean incremental, PaymentMatcher matcher, Tally tally) {
+        String name = file.getFileName().toString();
+        tally.files++;
+        try {
+            String fingerprint = Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis();
+            if (incremental && Boolean.TRUE.equals(
+                    transactionTemplate.execute(status -> repository.isFileImported(name, fingerprint)))) {
+                tally.skippedFiles++;
+                log.debug("Statement {} imported before, skipped", name);
+                return;
+            }
+
+            Map<String, BankStatementReader.Entry> chunk = new LinkedHashMap<>();
+            int[] entries = {0};
+            BankStatementReader.read(file, entry -> {
+                entries[0]++;
+                if (!entry.credit()) {
+                    tally.report(Outcome.DEBIT);
+                    return;
+                }
+                if (chunk.putIfAbsent(entry.entryRef(), entry) != null) {
+                    tally.report(Outcome.ALREADY_IMPORTED);
+                    return;
+                }
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(List.copyOf(chunk.values()), !incremental, matcher, tally);
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                writeChunk(List.copyOf(chunk.values()), !incremental, matcher, tally);
+            }
+
+            transactionTemplate.executeWithoutResult(status -> repository.recordFile(name, fingerprint, entries[0]));
+            log.info("Statement {} imported ({} entries)", name, entries[0]);
+        } catch (IOException | RuntimeException e) {
+            // Chunks written so far stay; the file is not recorded, so the next run reads it again.
+            tally.failedFiles++;
+            log.error("Statement {} could not be imported: {}", name, e.getMessage());
+        }
+    }
+
+    private void writeChunk(List<BankStatementReader.Entry> chunk, boolean retryUnmatched, PaymentMatcher matcher,
+                            Tally tally) {
+        List<Outcome> outcomes = new ArrayList<>(chunk.size());
+        List<SettledInvoice> paid = transactionTemplate.execute(status -> {
+            Map<String, Long> lineIds = repository.insertLines(chunk.stream().map(ReconciliationService::toLine).toList(),
+                    retryUnmatched);
+
+            List<Settlement> settlements = new ArrayList<>();
+            int unmatched = 0;
+            for (BankStatementReader.Entry entry : chunk) {
+                Long lineId = lineIds.get(entry.entryRef());
+                if (lineId == null) {
+                    outcomes.add(Outcome.ALREADY_IMPORTED);
+                    continue;
+                }
+                Optional<PaymentMatcher.Match> match = matcher.match(entry);
+                if (match.isPresent()) {
+                    settlements.add(new Settlement(lineId, match.get().invoiceId(), match.get().matchedBy().name()));
+                } else {
+                    unmatched++;
+                }
+            }
+            for (int i = 0; i < unmatched; i++) {
+                outcomes.add(Outcome.UNMATCHED);
+            }
+
+            List<SettledInvoice> settled = repository.settle(settlements);
+            ledgerService.invoicesPaid(settled.stream()
+                    .map(s -> new LedgerService.PaidInvoice(s.invoiceId(), s.studentId(), s.amount(), s.title()))
+                    .toList());
+            List<RecordedPayment> recorded = repository.linkRecordedPayments(
+                    settled.stream().map(SettledInvoice::invoiceId).toList());
+            ledgerService.paymentsLinked(recorded.stream()
+                    .map(p -> new LedgerService.LinkedPayment(p.paymentId(), p.studentId(), p.amount(), p.description()))
+                    .toList());
+            if (!recorded.isEmpty()) {
+                log.info("{} recorded payments linked to invoices paid by bank statement", recorded.size());
+            }
+            for (int i = 0; i < settlements.size(); i++) {
+                outcomes.add(i < settled.size() ? Outcome.MATCHED : Outcome.ALREADY_PAID);
+            }
+            return settled;
+        });
+
+        paid.forEach(invoice -> pdfCache.invalidate(invoice.invoiceId()));
+        outcomes.forEach(tally::report);
+    }
+
+    private static NewLine toLine(BankStatementReader.Entry entry) {
+        return new NewLine(entry.entryRef(), entry.bookingDate(), entry.amount(),
+                entry.counterpartyName(), entry.counterpartyIban(), entry.remittance());
+    }
+
+    private static final class Tally {
+        private final Consumer<Outcome> progress;
+        private int files;
+        private int skippedFiles;
+        private int failedFiles;
+        private int entries;
+        private int matched;
+        private int unmatched;
+
+        Tally(Consumer<Outcome> progress) {
+            this.progress = progress;
+        }
+
+        void report(Outcome outcome) {
+            entries++;
+            switch (outcome) {
+                case MATCHED -> matched++;
+                case UNMATCHED -> unmatched++;
+                default -> {
+                }
+            }
+            progress.accept(outcome);
+        }
+
+        Result result() {
+            return new Result(files, skippedFiles, failedFiles, entries, matched, unmatched);
+        }
+    }
+}
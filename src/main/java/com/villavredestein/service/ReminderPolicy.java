@@ -0,0 +1,147 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.Invoice.InvoiceStatus;
+import com.villavredestein.model.User;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Which invoices a reminder job acts on. {@link #toSpecification(LocalDateTime)} compiles the rules into one
+ * predicate on the indexed invoice columns and fetch-joins the student, so a job only loads the invoices it will
+ * actually remind. {@link #matches(Invoice, LocalDateTime)} evaluates the same rules in Java.
+ * A rule that is null does not constrain.
+ *
+ * @param statuses        invoice statuses to remind; at least one
+ * @param dueFromDays     due date on or after today plus this many days
+ * @param dueToDays       due date on or before today plus this many days
+ * @param period          the month the invoice is for
+ * @param maxReminders    only invoices with fewer reminders than this
+ * @param minHoursBetween only invoices whose last reminder is at least this many hours ago
+ * @param contact         the student must have this contact detail filled in
+ */
+public record ReminderPolicy(
+        Set<InvoiceStatus> statuses,
+        Integer dueFromDays,
+        Integer dueToDays,
+        YearMonth period,
+        Integer maxReminders,
+        Integer minHoursBetween,
+        Contact contact
+) {
+
+    public enum Contact { EMAIL, PHONE }
+
+    /** Soonest due first; the id keeps runs over equal due dates in a stable order. */
+    public static final Sort ORDER = Sort.by("dueDate", "id");
+
+    public ReminderPolicy {
+        if (statuses == null || statuses.isEmpty()) {
+            throw new IllegalArgumentException("Een herinneringsbeleid heeft minstens één factuurstatus nodig");
+        }
+        statuses = Set.copyOf(statuses);
+    }
+
+    /** Open invoices due today or within the next {@code daysBeforeDue} days. */
+    public static ReminderPolicy upcoming(int daysBeforeDue, int maxReminders, int minHoursBetween) {
+        return new ReminderPolicy(EnumSet.of(InvoiceStatus.OPEN), 0, daysBeforeDue, null,
+                maxReminders, minHoursBetween, Contact.EMAIL);
+    }
+
+    /** Open or overdue invoices whose due date has passed. */
+    public static ReminderPolicy overdue(int maxReminders, int minHoursBetween) {
+        return new ReminderPolicy(EnumSet.of(InvoiceStatus.OPEN, InvoiceStatus.OVERDUE), null, -1, null,
+                maxReminders, minHoursBetween, Contact.EMAIL);
+    }
+
+    /** Unpaid rent invoices for the month, regardless of earlier reminders. */
+    public static ReminderPolicy unpaidFor(YearMonth period, Contact contact) {
+        return new ReminderPolicy(EnumSet.of(InvoiceStatus.OPEN, InvoiceStatus.OVERDUE), null, null, period,
+                null, null, contact);
+    }
+
+    public boolean matches(Invoice invoice, LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        LocalDate due = invoice.getDueDate();
+
+        if (!statuses.contains(invoice.getStatus())) {
+            return false;
+        }
+        if (dueFromDays != null && (due == null || due.isBefore(today.plusDays(dueFromDays)))) {
+            return false;
+        }
+        if (dueToDays != null && (due == null || due.isAfter(today.plusDays(dueToDays)))) {
+            return false;
+        }
+        if (period != null && (invoice.getInvoiceYear() != period.getYear()
+                || invoice.getInvoiceMonth() != period.getMonthValue())) {
+            return false;
+        }
+        if (maxReminders != null && invoice.getReminderCount() >= maxReminders) {
+            return false;
+        }
+        if (minHoursBetween != null) {
+            LocalDateTime last = invoice.getLastReminderSentAt();
+            if (last != null && last.isAfter(now.minusHours(minHoursBetween))) {
+                return false;
+            }
+        }
+        return contact == null || hasContact(invoice.getStudent());
+    }
+
+    public Specification<Invoice> toSpecification(LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        return (root, query, cb) -> {
+            boolean countQuery = query.getResultType() == Long.class || query.getResultType() == long.class;
+            // Hibernate's fetch is also a join, so the contact rule can use it without joining users twice.
+            Join<Invoice, User> student = countQuery
+                    ? root.join("student")
+                    : (Join<Invoice, User>) root.<Invoice, User>fetch("student");
+
+            List<Predicate> rules = new ArrayList<>();
+            rules.add(root.get("status").in(statuses));
+            if (dueFromDays != null) {
+                rules.add(cb.greaterThanOrEqualTo(root.get("dueDate"), today.plusDays(dueFromDays)));
+            }
+            if (dueToDays != null) {
+                rules.add(cb.lessThanOrEqualTo(root.get("dueDate"), today.plusDays(dueToDays)));
+            }
+            if (period != null) {
+                rules.add(cb.equal(root.get("invoiceYear"), period.getYear()));
+                rules.add(cb.equal(root.get("invoiceMonth"), period.getMonthValue()));
+            }
+            if (maxReminders != null) {
+                rules.add(cb.lessThan(root.get("reminderCount"), maxReminders));
+            }
+            if (minHoursBetween != null) {
+                Path<LocalDateTime> last = root.get("lastReminderSentAt");
+                rules.add(cb.or(cb.isNull(last), cb.lessThanOrEqualTo(last, now.minusHours(minHoursBetween))));
+            }
+            if (contact != null) {
+                Path<String> value = student.get(contact == Contact.EMAIL ? "email" : "phoneNumber");
+                rules.add(cb.isNotNull(value));
+                rules.add(cb.notEqual(cb.trim(value), ""));
+            }
+            return cb.and(rules.toArray(Predicate[]::new));
+        };
+    }
+
+    private boolean hasContact(User student) {
+        if (student == null) {
+            return false;
+        }
+        String value = contact == Contact.EMAIL ? student.getEmail() : student.getPhoneNumber();
+        return value != null && !value.trim().isEmpty();
+    }
+}
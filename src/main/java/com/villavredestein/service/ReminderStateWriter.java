@@ -0,0 +1,86 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.repository.InvoiceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the invoices a reminder went out for and records them with one UPDATE per chunk,
+ * instead of a save per invoice. Each invoice is updated only if it still has the version it was read with.
+ * When it changed in the meantime, for example because the admin sent a manual reminder at the same moment,
+ * the reminder is counted again on top of the other write, without the version check, and the invoice is listed
+ * in {@link #conflicts()}.
+ */
+public final class ReminderStateWriter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReminderStateWriter.class);
+
+    static final int FLUSH_SIZE = 500;
+
+    private final InvoiceRepository invoiceRepository;
+    private final LocalDateTime sentAt;
+    private final boolean markOverdue;
+    private final Map<Long, Long> pending = new LinkedHashMap<>();
+    private final List<Long> conflicts = new ArrayList<>();
+    private int written;
+
+    ReminderStateWriter(InvoiceRepository invoiceRepository, LocalDateTime sentAt, boolean markOverdue) {
+        this.invoiceRepository = invoiceRepository;
+        this.sentAt = sentAt;
+        this.markOverdue = markOverdue;
+    }
+
+    public void sent(Invoice invoice) {
+        if (invoice == null || invoice.getId() == null) {
+            throw new IllegalArgumentException("Invoice ontbreekt of heeft geen id");
+        }
+        pending.put(invoice.getId(), invoice.getVersion());
+        if (pending.size() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Long> updated = invoiceRepository.markRemindersSent(Map.copyOf(pending), sentAt, markOverdue);
+        written += updated.size();
+        if (updated.size() < pending.size()) {
+            Set<Long> done = new HashSet<>(updated);
+            List<Long> changed = pending.keySet().stream().filter(id -> !done.contains(id)).toList();
+            conflicts.addAll(changed);
+            List<Long> recounted = invoiceRepository.addRemindersSent(changed, sentAt, markOverdue);
+            written += recounted.size();
+            log.info("Reminder state recorded again for {} invoices changed concurrently: {}", recounted.size(), changed);
+            if (recounted.size() < changed.size()) {
+                log.warn("Reminder state not recorded for {} invoices deleted concurrently", changed.size() - recounted.size());
+            }
+        }
+        pending.clear();
+    }
+
+    /** Invoices whose reminder state was recorded so far. */
+    public int written() {
+        return written;
+    }
+
+    /** Invoices that changed after they were read; their reminder was counted on top of the other change. */
+    public List<Long> conflicts() {
+        return List.copyOf(conflicts);
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
@@ -0,0 +1,524 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.StudentImportResultDTO;
+import com.villavredestein.dto.StudentImportResultDTO.ImportedStudent;
+import com.villavredestein.dto.StudentImportRowDTO;
+import com.villavredestein.jobs.JobMetrics;
+import com.villavredestein.jobs.JobRunner;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.repository.StudentImportRepository;
+import com.villavredestein.repository.StudentImportRepository.NewStudent;
+import com.villavredestein.repository.StudentImportRepository.RoomState;
+import com.villavredestein.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Onboards a cohort of students at once. Every row is checked before anything is written, so an import with
+ * one bad row writes nothing and reports all bad rows together. Passwords are hashed in parallel; the accounts,
+ * room assignments and first rent invoices are then written in one transaction, a statement per chunk instead
+ * of several per student. The cleaning schedule is reseeded once afterwards and the welcome mails go out in the
+ * background through {@link JobRunner}. The mail run is queued before the transaction and waits for its commit:
+ * the mails carry the initial passwords, so when the queue is full the import is refused rather than written
+ * without them.
+ */
+@Service
+public class StudentImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentImportService.class);
+
+    public static final String WELCOME_MAIL_JOB = "student-welcome-mail";
+
+    private static final DateTimeFormatter MONTH_NL =
+            DateTimeFormatter.ofPattern("MMMM yyyy", Locale.forLanguageTag("nl-NL"));
+
+    /** One problem in one row; {@code row} counts from 1, {@code field} is null for the row as a whole. */
+    public record RowError(int row, String field, String message) {
+    }
+
+    /** Rows that failed the checks; nothing was imported. */
+    public static class InvalidImportException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<RowError> errors;
+
+        InvalidImportException(List<RowError> errors) {
+            super(errors.size() == 1
+                    ? "1 fout in de import; er is niets geïmporteerd"
+                    : errors.size() + " fouten in de import; er is niets geïmporteerd");
+            this.errors = List.copyOf(errors);
+        }
+
+        public List<RowError> getErrors() {
+            return errors;
+        }
+    }
+
+    /** A row with its text trimmed and its email in lower case, as it is checked and stored. */
+    private record Candidate(int row, String username, String email, String password, String room,
+                             BigDecimal rentAmount, boolean sendWelcomeEmail) {
+
+        StudentImportRowDTO toRow() {
+            return new StudentImportRowDTO(username, email, password, room, rentAmount, sendWelcomeEmail);
+        }
+    }
+
+    private record WelcomeMail(String email, String username, String room, String password) {
+    }
+
+    private final StudentImportRepository importRepository;
+    private final UserRepository userRepository;
+    private final InvoiceService invoiceService;
+    private final CleaningScheduleService cleaningScheduleService;
+    private final MailService mailService;
+    private final JobRunner jobRunner;
+    private final JobMetrics jobMetrics;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService hashPool;
+    private final int maxRows;
+    private final String frontendUrl;
+    private final String instagram;
+    private final Clock clock;
+
+    @Autowired
+    public StudentImportService(StudentImportRepository importRepository,
+                                UserRepository userRepository,
+                                InvoiceService invoiceService,
+                                CleaningScheduleService cleaningScheduleService,
+                                MailService mailService,
+                                JobRunner jobRunner,
+                                JobMetrics jobMetrics,
+                                PasswordEncoder passwordEncoder,
+                                Validator validator,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.students.import.max-rows:500}") int maxRows,
+                                @Value("${app.students.import.hash-threads:0}") int hashThreads,
+                                @Value("${app.frontend-url:https://villa-vredestein.netlify.app}") String frontendUrl,
+                                @Value("${app.instagram:@villavredestein}") String instagram) {
+        this(importRepository, userRepository, invoiceService, cleaningScheduleService, mailService, jobRunner,
+                jobMetrics, passwordEncoder, validator, transactionManager, maxRows, hashThreads, frontendUrl,
+                instagram, Clock.systemDefaultZone());
+    }
+
+    StudentImportService(StudentImportRepository importRepository,
+                         UserRepository userRepository,
+                         InvoiceService invoiceService,
+                         CleaningScheduleService cleaningScheduleService,
+                         MailService mailService,
+                         JobRunner jobRunner,
+                         JobMetrics jobMetrics,
+                         PasswordEncoder passwordEncoder,
+                         Validator validator,
+                         PlatformTransactionManager transactionManager,
+                         int maxRows,
+                         int hashThreads,
+                         String frontendUrl,
+                         String instagram,
+                         Clock clock) {
+        if (maxRows < 1) {
+            throw new IllegalArgumentException("app.students.import.max-rows moet minimaal 1 zijn");
+        }
+        this.importRepository = importRepository;
+        this.userRepository = userRepository;
+        this.invoiceService = invoiceService;
+        this.cleaningScheduleService = cleaningScheduleService;
+        this.mailService = mailService;
+        this.jobRunner = jobRunner;
+        this.jobMetrics = jobMetrics;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxRows = maxRows;
+        this.frontendUrl = frontendUrl;
+        this.instagram = instagram;
+        this.clock = clock;
+
+        // BCrypt is CPU-bound: one thread per core is as fast as it gets.
+        int poolSize = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.hashPool = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "student-import-hash-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Reads an import from CSV with a header row. The columns are found by their header, in Dutch or English:
+     * {@code naam}/{@code username}, {@code email}/{@code e-mail}, {@code wachtwoord}/{@code password},
+     * {@code huur}/{@code rentAmount}, and optionally {@code kamer}/{@code room} and
+     * {@code welkomstmail}/{@code sendWelcomeEmail}. The separator ({@code ;} or {@code ,}) follows from the header.
+     */
+    public List<StudentImportRowDTO> parseCsv(String csv) {
+        List<StudentImportRowDTO> rows = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new StringReader(csv == null ? "" : csv))) {
+            String header = in.readLine();
+            if (header == null) {
+                return rows;
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            char separator = header.chars().filter(c -> c == ';').count() > header.chars().filter(c -> c == ',').count() ? ';' : ',';
+            List<String> columns = BankStatementReader.splitCsv(header, separator);
+            int username = requiredColumn(columns, "naam", "username", "name");
+            int email = requiredColumn(columns, "e-mail", "email");
+            int password = requiredColumn(columns, "wachtwoord", "password");
+            int rent = requiredColumn(columns, "huur", "huurbedrag", "rentamount", "rent");
+            int room = column(columns, "kamer", "room");
+            int welcome = column(columns, "welkomstmail", "sendwelcomeemail", "welcome");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = BankStatementReader.splitCsv(line, separator);
+                String welcomeValue = field(fields, welcome);
+                rows.add(new StudentImportRowDTO(
+                        field(fields, username),
+                        field(fields, email),
+                        field(fields, password),
+                        field(fields, room),
+                        parseRent(field(fields, rent)),
+                        welcomeValue == null ? null : parseYesNo(welcomeValue)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private static int requiredColumn(List<String> header, String... names) {
+        int index = column(header, names);
+        if (index < 0) {
+            throw new IllegalArgumentException("CSV mist de kolom '" + names[0] + "': " + header);
+        }
+        return index;
+    }
+
+    private static int column(List<String> header, String... names) {
+        for (String name : names) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /** A rent that cannot be read is left out, so it is reported as missing with the other errors. */
+    private static BigDecimal parseRent(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return BankStatementReader.parseAmount(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean parseYesNo(String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        return !(v.equals("nee") || v.equals("no") || v.equals("false") || v.equals("n") || v.equals("0"));
+    }
+
+    /**
+     * Imports all rows or, when any row is invalid, none.
+     *
+     * @throws InvalidImportException listing every invalid row
+     */
+    public StudentImportResultDTO importStudents(List<StudentImportRowDTO> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("De import bevat geen studenten");
+        }
+        if (rows.size() > maxRows) {
+            throw new IllegalArgumentException("Maximaal " + maxRows + " studenten per import; deze bevat er " + rows.size());
+        }
+        long started = System.nanoTime();
+
+        List<Candidate> candidates = new ArrayList<>(rows.size());
+        List<RowError> errors = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            StudentImportRowDTO row = rows.get(i);
+            if (row == null) {
+                errors.add(new RowError(i + 1, null, "Rij is leeg"));
+                continue;
+            }
+            int rowNumber = i + 1;
+            Candidate candidate = normalize(rowNumber, row);
+            validator.validate(candidate.toRow()).stream()
+                    .map(v -> new RowError(rowNumber, v.getPropertyPath().toString(), v.getMessage()))
+                    .sorted(Comparator.comparing(RowError::field).thenComparing(RowError::message))
+                    .forEach(errors::add);
+            candidates.add(candidate);
+        }
+        Map<String, RoomState> rooms = checkUniqueness(candidates, errors);
+        if (!errors.isEmpty()) {
+            errors.sort(Comparator.comparingInt(RowError::row));
+            log.info("Student import rejected: {} errors in {} rows", errors.size(), rows.size());
+            throw new InvalidImportException(errors);
+        }
+        long validated = System.nanoTime();
+
+        List<String> hashes = hashPasswords(candidates);
+        long hashed = System.nanoTime();
+
+        List<WelcomeMail> mails = new ArrayList<>();
+        for (Candidate c : candidates) {
+            if (c.sendWelcomeEmail()) {
+                RoomState room = c.room() != null ? rooms.get(c.room().toLowerCase(Locale.ROOT)) : null;
+                mails.add(new WelcomeMail(c.email(), c.username(), room != null ? room.name() : "nog toe te wijzen",
+                        c.password()));
+            }
+        }
+        CompletableFuture<Boolean> committed = new CompletableFuture<>();
+        String runId = queueWelcomeMails(mails, committed);
+
+        LocalDate today = LocalDate.now(clock);
+        List<ImportedStudent> imported = new ArrayList<>(candidates.size());
+        int invoices;
+        try {
+            invoices = transactionTemplate.execute(status -> {
+                List<NewStudent> students = new ArrayList<>(candidates.size());
+                for (int i = 0; i < candidates.size(); i++) {
+                    Candidate c = candidates.get(i);
+                    students.add(new NewStudent(c.username(), c.email(), hashes.get(i), c.rentAmount()));
+                }
+                Map<String, Long> ids = importRepository.insertStudents(students);
+
+                Map<Long, Long> studentByRoom = new HashMap<>();
+                List<Invoice> firstInvoices = new ArrayList<>(candidates.size());
+                String month = today.withDayOfMonth(1).format(MONTH_NL);
+                for (Candidate c : candidates) {
+                    Long id = ids.get(c.email());
+                    RoomState room = c.room() != null ? rooms.get(c.room().toLowerCase(Locale.ROOT)) : null;
+                    if (room != null) {
+                        studentByRoom.put(room.id(), id);
+                    }
+                    firstInvoices.add(new Invoice("Huur " + month + " - " + c.username(), "Maandelijkse huur - " + c.username(),
+                            c.rentAmount(), today, today.plusDays(7), today.getMonthValue(), today.getYear(),
+                            Invoice.InvoiceStatus.OPEN, userRepository.getReferenceById(id)));
+                    imported.add(new ImportedStudent(id, c.username(), c.email(), room != null ? room.name() : null));
+                }
+
+                if (importRepository.assignRooms(studentByRoom) != studentByRoom.size()) {
+                    throw new IllegalStateException(
+                            "Een kamer uit de import is in de tussentijd bezet; er is niets geïmporteerd");
+                }
+                return invoiceService.createInvoicesIfAbsent(firstInvoices).size();
+            });
+            committed.complete(true);
+        } finally {
+            committed.complete(false);
+        }
+        long written = System.nanoTime();
+
+        try {
+            cleaningScheduleService.reseedNow();
+        } catch (Exception e) {
+            log.warn("Cleaning reseed failed after student import: {}", e.getMessage());
+        }
+
+        log.info("Student import: {} students, {} invoices (validate {} ms, hash {} ms, write {} ms), {} welcome mails queued",
+                imported.size(), invoices, (validated - started) / 1_000_000, (hashed - validated) / 1_000_000,
+                (written - hashed) / 1_000_000, mails.size());
+        return new StudentImportResultDTO(imported.size(), invoices, mails.size(), runId, imported);
+    }
+
+    private static Candidate normalize(int row, StudentImportRowDTO dto) {
+        String room = dto.room() != null && !dto.room().isBlank() ? dto.room().trim() : null;
+        return new Candidate(row,
+                dto.username() != null ? dto.username().trim() : null,
+                dto.email() != null ? dto.email().trim().toLowerCase(Locale.ROOT) : null,
+                dto.password(),
+                room,
+                dto.rentAmount(),
+                dto.sendWelcomeEmail() == null || dto.sendWelcomeEmail());
+    }
+
+    /**
+     * Emails, usernames and rooms must be unique within the import and free in the database; one query each.
+     *
+     * @return the rooms named in the import, by lower-case name
+     */
+    private Map<String, RoomState> checkUniqueness(List<Candidate> candidates, List<RowError> errors) {
+        Map<String, Integer> emails = new LinkedHashMap<>();
+        Map<String, Integer> usernames = new LinkedHashMap<>();
+        Map<String, Integer> roomNames = new LinkedHashMap<>();
+        for (Candidate c : candidates) {
+            firstOccurrence(emails, c.email(), c.row(), "email", "E-mail", errors);
+            firstOccurrence(usernames, c.username(), c.row(), "username", "Naam", errors);
+            firstOccurrence(roomNames, c.room() != null ? c.room().toLowerCase(Locale.ROOT) : null, c.row(), "room",
+                    "Kamer", errors);
+        }
+
+        Set<String> existingEmails = emails.isEmpty() ? Set.of()
+                : importRepository.findExistingEmails(List.copyOf(emails.keySet()));
+        Set<String> existingUsernames = usernames.isEmpty() ? Set.of()
+                : importRepository.findExistingUsernames(List.copyOf(usernames.keySet()));
+        Map<String, RoomState> rooms = roomNames.isEmpty() ? Map.of()
+                : importRepository.findRooms(List.copyOf(roomNames.keySet()));
+
+        for (Candidate c : candidates) {
+            if (c.email() != null && existingEmails.contains(c.email())) {
+                errors.add(new RowError(c.row(), "email", "Er bestaat al een account met dit e-mailadres"));
+            }
+            if (c.username() != null && existingUsernames.contains(c.username())) {
+                errors.add(new RowError(c.row(), "username", "Deze naam is al in gebruik"));
+            }
+            if (c.room() != null) {
+                RoomState room = rooms.get(c.room().toLowerCase(Locale.ROOT));
+                if (room == null) {
+                    errors.add(new RowError(c.row(), "room", "Kamer '" + c.room() + "' bestaat niet"));
+                } else if (room.occupied()) {
+                    errors.add(new RowError(c.row(), "room", "Kamer '" + room.name() + "' is al bezet"));
+                }
+            }
+        }
+        return rooms;
+    }
+
+    private static void firstOccurrence(Map<String, Integer> seen, String value, int row, String field, String label,
+                                        List<RowError> errors) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        Integer first = seen.putIfAbsent(value, row);
+        if (first != null) {
+            errors.add(new RowError(row, field, label + " staat ook in rij " + first));
+        }
+    }
+
+    private List<String> hashPasswords(List<Candidate> candidates) {
+        List<Callable<String>> tasks = new ArrayList<>(candidates.size());
+        for (Candidate c : candidates) {
+            tasks.add(() -> passwordEncoder.encode(c.password()));
+        }
+        try {
+            List<String> hashes = new ArrayList<>(tasks.size());
+            for (Future<String> hash : hashPool.invokeAll(tasks)) {
+                hashes.add(hash.get());
+            }
+            return hashes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import onderbroken tijdens het versleutelen van de wachtwoorden", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Wachtwoord versleutelen mislukt", e.getCause());
+        }
+    }
+
+    /**
+     * Queues the mails to be sent once {@code committed} completes with true; completed with false, the run is
+     * skipped and nothing is sent.
+     *
+     * @return the run id, or null when there is nothing to send
+     * @throws ResponseStatusException 503 when the job queue is full, before anything is written
+     */
+    private String queueWelcomeMails(List<WelcomeMail> mails, CompletableFuture<Boolean> committed) {
+        if (mails.isEmpty()) {
+            return null;
+        }
+        // A run per import: two imports shortly after each other must not be deduplicated into one.
+        String job = WELCOME_MAIL_JOB + "-" + UUID.randomUUID().toString().substring(0, 8);
+        try {
+            return jobRunner.submit(job, () -> sendWelcomeMails(mails, committed)).run().getId();
+        } catch (ResponseStatusException e) {
+            log.warn("Student import of {} welcome mails refused: {}", mails.size(), e.getReason());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "De welkomstmails kunnen nu niet worden ingepland; er is niets geïmporteerd. Probeer het later opnieuw");
+        }
+    }
+
+    private boolean sendWelcomeMails(List<WelcomeMail> mails, CompletableFuture<Boolean> committed) {
+        try {
+            if (!committed.get()) {
+                log.info("Student import rolled back; {} welcome mails not sent", mails.size());
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+        try (JobMetrics.Run run = jobMetrics.start(WELCOME_MAIL_JOB)) {
+            for (WelcomeMail mail : mails) {
+                run.processed();
+                try {
+                    mailService.sendWelcomeMail(mail.email(), mail.username(), mail.room(), frontendUrl + "/login",
+                            mail.password(), frontendUrl, instagram);
+                    run.sent();
+                } catch (Exception e) {
+                    run.failed();
+                    log.error("Welcome mail failed for {}: {}", maskEmail(mail.email()), e.getMessage());
+                }
+            }
+            run.succeeded();
+        }
+        return true;
+    }
+
+    private static String maskEmail(String email) {
+        int at = email.indexOf('@');
+        if (at <= 1) return "***";
+        return email.charAt(0) + "***" + email.substring(at);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashPool.shutdownNow();
+    }
+}
@@ -484,7 +484,7 @@ public class UserService implements UserDetailsService {
         return trimmed.charAt(0) + "***" + trimmed.substring(atIndex);
     }
 
-    private UserResponseDTO toDTO(User user) {
+    UserResponseDTO toDTO(User user) {
         String roomName = user.getRole() == User.Role.STUDENT
                 ? roomRepository.findByOccupant_Id(user.getId()).map(Room::getName).orElse(null)
                 : null;
@@ -12,6 +12,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.List;
 
@@ -25,6 +26,8 @@ public class WhatsAppService {
 
     private static final Logger log = LoggerFactory.getLogger(WhatsAppService.class);
     private static final String TWILIO_API = "https://api.twilio.com/2010-04-01/Accounts/%s/Messages.json";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
 
     @Value("${twilio.account-sid:}")
     private String accountSid;
@@ -38,7 +41,12 @@ public class WhatsAppService {
     @Value("${twilio.whatsapp.admin-numbers:}")
     private String adminNumbersRaw;
 
-    private final HttpClient http = HttpClient.newHttpClient();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+    private final OutboundCallMetrics outboundCallMetrics;
+
+    public WhatsAppService(OutboundCallMetrics outboundCallMetrics) {
+        this.outboundCallMetrics = outboundCallMetrics;
+    }
 
     public boolean isConfigured() {
         return !accountSid.isBlank() && !authToken.isBlank() && !fromNumber.isBlank();
@@ -65,17 +73,24 @@ public class WhatsAppService {
                 .uri(URI.create(url))
                 .header("Authorization", "Basic " + credentials)
                 .header("Content-Type", "application/x-www-form-urlencoded")
+                .timeout(REQUEST_TIMEOUT)
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
+        OutboundCallMetrics.Call call = outboundCallMetrics.start(OutboundCallMetrics.TWILIO);
         try {
             HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            call.httpStatus(resp.statusCode());
             if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
                 log.info("WhatsApp sent to {}", maskPhone(toNumber));
             } else {
                 log.warn("WhatsApp to {} failed HTTP {}: {}", maskPhone(toNumber), resp.statusCode(), resp.body());
             }
         } catch (IOException | InterruptedException e) {
+            call.failure(e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("WhatsApp send error for {}: {}", maskPhone(toNumber), e.getMessage());
         }
     }
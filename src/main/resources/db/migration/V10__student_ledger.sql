@@ -0,0 +1,74 @@
+-- ==================================================
+-- Student ledger
+-- ledger_entries: append-only; every change to what a student owes adds a row (positive = owed, negative = paid
+-- or written off). Amount, type and student can never be changed, and rows are only removed with their student.
+-- student_balances: the sum of a student's entries, kept up to date in the transaction that posts them,
+-- so reading a balance is one primary-key lookup however long the history is.
+-- Existing invoices and payments are posted once here, in the order they happened.
+-- ==================================================
+
+CREATE TABLE ledger_entries (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    student_id  BIGINT         NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    entry_type  VARCHAR(30)    NOT NULL,
+    amount      NUMERIC(12, 2) NOT NULL,
+    invoice_id  BIGINT REFERENCES invoices (id) ON DELETE SET NULL,
+    payment_id  BIGINT REFERENCES payments (id) ON DELETE SET NULL,
+    description VARCHAR(255),
+    created_at  TIMESTAMP(6)   NOT NULL DEFAULT localtimestamp,
+    CONSTRAINT ck_ledger_entry_type CHECK (entry_type IN ('INVOICE_CHARGED', 'INVOICE_PAID', 'INVOICE_CANCELLED',
+                                                          'INVOICE_REOPENED', 'INVOICE_DELETED',
+                                                          'PAYMENT_RECEIVED', 'PAYMENT_REVERSED'))
+);
+
+CREATE INDEX idx_ledger_student_id ON ledger_entries (student_id, id DESC);
+CREATE INDEX idx_ledger_invoice ON ledger_entries (invoice_id);
+CREATE INDEX idx_ledger_payment ON ledger_entries (payment_id);
+
+CREATE TABLE student_balances (
+    student_id    BIGINT         NOT NULL PRIMARY KEY REFERENCES users (id) ON DELETE CASCADE,
+    balance       NUMERIC(12, 2) NOT NULL,
+    entry_count   BIGINT         NOT NULL,
+    last_entry_id BIGINT         NOT NULL,
+    updated_at    TIMESTAMP(6)   NOT NULL
+);
+
+-- Foreign keys clearing invoice_id/payment_id, and deletes cascading from users, run as nested triggers (depth > 1).
+CREATE FUNCTION ledger_entries_append_only() RETURNS trigger AS $$
+BEGIN
+    IF pg_trigger_depth() > 1 THEN
+        RETURN CASE WHEN TG_OP = 'DELETE' THEN OLD ELSE NEW END;
+    END IF;
+    RAISE EXCEPTION 'ledger_entries is append-only (% not allowed)', TG_OP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_ledger_entries_append_only
+    BEFORE UPDATE OR DELETE ON ledger_entries
+    FOR EACH ROW EXECUTE FUNCTION ledger_entries_append_only();
+
+INSERT INTO ledger_entries (student_id, entry_type, amount, invoice_id, payment_id, description, created_at)
+SELECT student_id, entry_type, amount, invoice_id, payment_id, description, created_at
+FROM (
+    SELECT student_id, 'INVOICE_CHARGED' AS entry_type, amount, id AS invoice_id, NULL::bigint AS payment_id,
+           left(title, 255) AS description, issue_date::timestamp AS created_at, 0 AS step
+    FROM invoices
+    UNION ALL
+    SELECT student_id, 'INVOICE_PAID', -amount, id, NULL, left(title, 255), coalesce(paid_at, issue_date::timestamp), 1
+    FROM invoices
+    WHERE status = 'PAID'
+    UNION ALL
+    SELECT student_id, 'INVOICE_CANCELLED', -amount, id, NULL, left(title, 255), issue_date::timestamp, 1
+    FROM invoices
+    WHERE status = 'CANCELLED'
+    UNION ALL
+    SELECT student_id, 'PAYMENT_RECEIVED', -amount, NULL, id, left(description, 255), coalesce(paid_at, created_at), 1
+    FROM payments
+    WHERE status = 'PAID' AND invoice_id IS NULL
+) history
+ORDER BY created_at, step, invoice_id, payment_id;
+
+INSERT INTO student_balances (student_id, balance, entry_count, last_entry_id, updated_at)
+SELECT student_id, sum(amount), count(*), max(id), localtimestamp
+FROM ledger_entries
+GROUP BY student_id;
@@ -0,0 +1,78 @@
+-- ==================================================
+-- Finance rollup
+-- Count and total of the invoices and payments per month, student and status, for the admin dashboard.
+-- Invoices count in the month they bill (invoice_year/invoice_month); payments in the month they were paid,
+-- or created when not paid. Statement triggers add the difference every insert, update or delete makes, so a
+-- bulk statement updates each affected row once and an update that leaves month, student, status and amount
+-- alone (reminders, links) writes nothing. Rows are kept when their count drops to zero.
+-- ==================================================
+
+CREATE TABLE finance_rollup (
+    source     VARCHAR(10)    NOT NULL CHECK (source IN ('INVOICE', 'PAYMENT')),
+    period     DATE           NOT NULL,
+    student_id BIGINT         NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    status     VARCHAR(20)    NOT NULL,
+    item_count BIGINT         NOT NULL,
+    amount     NUMERIC(14, 2) NOT NULL,
+    PRIMARY KEY (source, period, student_id, status)
+);
+
+CREATE INDEX idx_finance_rollup_student ON finance_rollup (student_id);
+
+-- TG_ARGV[0]: the source; TG_ARGV[1]: the expression giving a row's period.
+-- Dynamic SQL, because the transition tables a statement has depend on the operation.
+CREATE FUNCTION finance_rollup_apply() RETURNS trigger AS $$
+DECLARE
+    added   TEXT := format('SELECT %s AS period, student_id, status, 1 AS n, amount FROM new_rows', TG_ARGV[1]);
+    removed TEXT := format('SELECT %s AS period, student_id, status, -1 AS n, -amount AS amount FROM old_rows',
+                           TG_ARGV[1]);
+BEGIN
+    EXECUTE format($sql$
+        INSERT INTO finance_rollup (source, period, student_id, status, item_count, amount)
+        SELECT %L, period, student_id, status, sum(n), sum(amount)
+        FROM (%s) delta
+        GROUP BY period, student_id, status
+        HAVING sum(n) <> 0 OR sum(amount) <> 0
+        ORDER BY period, student_id, status
+        ON CONFLICT (source, period, student_id, status) DO UPDATE
+        SET item_count = finance_rollup.item_count + EXCLUDED.item_count,
+            amount = finance_rollup.amount + EXCLUDED.amount
+        $sql$,
+        TG_ARGV[0],
+        CASE TG_OP
+            WHEN 'INSERT' THEN added
+            WHEN 'DELETE' THEN removed
+            ELSE added || ' UNION ALL ' || removed
+        END);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_invoices_rollup_insert
+    AFTER INSERT ON invoices REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION finance_rollup_apply('INVOICE', 'make_date(invoice_year, invoice_month, 1)');
+CREATE TRIGGER trg_invoices_rollup_update
+    AFTER UPDATE ON invoices REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION finance_rollup_apply('INVOICE', 'make_date(invoice_year, invoice_month, 1)');
+CREATE TRIGGER trg_invoices_rollup_delete
+    AFTER DELETE ON invoices REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION finance_rollup_apply('INVOICE', 'make_date(invoice_year, invoice_month, 1)');
+
+CREATE TRIGGER trg_payments_rollup_insert
+    AFTER INSERT ON payments REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION finance_rollup_apply('PAYMENT', 'date_trunc(''month'', coalesce(paid_at, created_at))::date');
+CREATE TRIGGER trg_payments_rollup_update
+    AFTER UPDATE ON payments REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION finance_rollup_apply('PAYMENT', 'date_trunc(''month'', coalesce(paid_at, created_at))::date');
+CREATE TRIGGER trg_payments_rollup_delete
+    AFTER DELETE ON payments REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION finance_rollup_apply('PAYMENT', 'date_trunc(''month'', coalesce(paid_at, created_at))::date');
+
+INSERT INTO finance_rollup (source, period, student_id, status, item_count, amount)
+SELECT 'INVOICE', make_date(invoice_year, invoice_month, 1), student_id, status, count(*), sum(amount)
+FROM invoices
+GROUP BY 2, 3, 4
+UNION ALL
+SELECT 'PAYMENT', date_trunc('month', coalesce(paid_at, created_at))::date, student_id, status, count(*), sum(amount)
+FROM payments
+GROUP BY 2, 3, 4;
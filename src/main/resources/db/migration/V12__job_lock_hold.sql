@@ -0,0 +1,8 @@
+-- ==================================================
+-- Job lock hold
+-- A finished run no longer deletes its lock row: it sets released_at and keeps lease_until at least
+-- app.jobs.lock.hold-at-least after locked_at, so an instance firing the same slot late finds the lock held.
+-- A row with released_at NULL and an expired lease_until belongs to a crashed holder.
+-- ==================================================
+
+ALTER TABLE job_locks ADD COLUMN released_at TIMESTAMP(6) WITH TIME ZONE;
@@ -0,0 +1,52 @@
+-- ==================================================
+-- Opening balances: paid invoices and their recorded payments credited once
+-- Before V9 payments had no invoice_id, so V10 posted PAYMENT_RECEIVED for every PAID payment and INVOICE_PAID for
+-- every PAID invoice. Where the admin both recorded the payment and marked the invoice paid, the student was
+-- credited twice. Each such payment is now linked to a paid invoice of the same student and amount that no payment
+-- covers, the first payment to the first invoice in the order they were paid, and its credit is reversed.
+-- Payments left over (a deposit, a payment without an invoice) keep their credit.
+-- ==================================================
+
+WITH credited_payments AS (
+    SELECT p.id, p.student_id, p.amount, p.description,
+           row_number() OVER (PARTITION BY p.student_id, p.amount
+                              ORDER BY coalesce(p.paid_at, p.created_at), p.id) AS n
+    FROM payments p
+    WHERE p.status = 'PAID' AND p.invoice_id IS NULL
+      AND (SELECT sum(e.amount) FROM ledger_entries e WHERE e.payment_id = p.id) < 0
+),
+uncovered_invoices AS (
+    SELECT i.id, i.student_id, i.amount,
+           row_number() OVER (PARTITION BY i.student_id, i.amount
+                              ORDER BY coalesce(i.paid_at, i.issue_date::timestamp), i.id) AS n
+    FROM invoices i
+    WHERE i.status = 'PAID'
+      AND NOT EXISTS (SELECT 1 FROM payments p WHERE p.invoice_id = i.id)
+),
+pairs AS (
+    SELECT p.id AS payment_id, i.id AS invoice_id, p.student_id, p.amount, p.description
+    FROM credited_payments p
+    JOIN uncovered_invoices i ON i.student_id = p.student_id AND i.amount = p.amount AND i.n = p.n
+),
+linked AS (
+    UPDATE payments p
+    SET invoice_id = pairs.invoice_id, version = p.version + 1
+    FROM pairs
+    WHERE p.id = pairs.payment_id
+),
+reversed AS (
+    INSERT INTO ledger_entries (student_id, entry_type, amount, payment_id, description)
+    SELECT student_id, 'PAYMENT_REVERSED', amount, payment_id, left(description, 255)
+    FROM pairs
+    ORDER BY payment_id
+    RETURNING id, student_id, amount
+)
+INSERT INTO student_balances (student_id, balance, entry_count, last_entry_id, updated_at)
+SELECT student_id, sum(amount), count(*), max(id), localtimestamp
+FROM reversed
+GROUP BY student_id
+ON CONFLICT (student_id) DO UPDATE
+    SET balance       = student_balances.balance + excluded.balance,
+        entry_count   = student_balances.entry_count + excluded.entry_count,
+        last_entry_id = greatest(student_balances.last_entry_id, excluded.last_entry_id),
+        updated_at    = excluded.updated_at;
@@ -0,0 +1,168 @@
+-- ==================================================
+-- Villa Vredestein — baseline schema
+-- The schema as Hibernate (ddl-auto=update) created it before Flyway took over.
+-- Existing databases are baselined at version 1 and skip this script.
+-- ==================================================
+
+CREATE TABLE users (
+    id                     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username               VARCHAR(50)  NOT NULL,
+    full_name              VARCHAR(100),
+    email                  VARCHAR(100) NOT NULL,
+    phone_number           VARCHAR(30),
+    emergency_phone_number VARCHAR(30),
+    study_or_work          VARCHAR(100),
+    parents_address        VARCHAR(255),
+    favorite_meal          VARCHAR(100),
+    social_preference      VARCHAR(30) CHECK (social_preference IN ('OPEN_FOR_CONTACT', 'LEUK', 'AF_EN_TOE', 'LIEVER_OP_MEZELF')),
+    meal_preference        VARCHAR(10) CHECK (meal_preference IN ('JA', 'SOMS', 'NEE')),
+    availability_status    VARCHAR(30) CHECK (availability_status IN ('TENTAMENPERIODE', 'DRUK', 'OPEN_VOOR_CHILLEN')),
+    status_toggle          BOOLEAN      NOT NULL,
+    profile_image_path     VARCHAR(255),
+    contract_file          VARCHAR(255),
+    rent_amount            NUMERIC(10, 2),
+    password               VARCHAR(255) NOT NULL,
+    role                   VARCHAR(20)  NOT NULL CHECK (role IN ('ADMIN', 'STUDENT', 'CLEANER')),
+    CONSTRAINT uk_user_email UNIQUE (email),
+    CONSTRAINT uk_user_username UNIQUE (username)
+);
+
+CREATE TABLE rooms (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name        VARCHAR(50) NOT NULL UNIQUE,
+    occupant_id BIGINT UNIQUE REFERENCES users (id)
+);
+
+CREATE TABLE announcements (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title      VARCHAR(120)  NOT NULL,
+    body       VARCHAR(2000) NOT NULL,
+    type       VARCHAR(20)   NOT NULL CHECK (type IN ('mededeling', 'onderhoud', 'evenement')),
+    author     VARCHAR(80),
+    created_at TIMESTAMP(6)  NOT NULL
+);
+
+CREATE TABLE cleaning_tasks (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    week_number     INTEGER      NOT NULL CHECK (week_number >= 1 AND week_number <= 53),
+    name            VARCHAR(120) NOT NULL,
+    description     VARCHAR(1000),
+    completed       BOOLEAN      NOT NULL,
+    comment         VARCHAR(1000),
+    incident_report VARCHAR(1000),
+    deadline        DATE,
+    role_access     VARCHAR(20)  NOT NULL,
+    assigned_to_id  BIGINT REFERENCES users (id)
+);
+
+CREATE TABLE documents (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title          VARCHAR(120) NOT NULL,
+    description    VARCHAR(1000),
+    storage_path   VARCHAR(512) NOT NULL,
+    role_access    VARCHAR(20)  NOT NULL,
+    uploaded_by_id BIGINT       NOT NULL REFERENCES users (id),
+    CONSTRAINT uk_document_storage_path UNIQUE (storage_path)
+);
+
+CREATE TABLE email_templates (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type       VARCHAR(30)  NOT NULL UNIQUE
+        CHECK (type IN ('PAYMENT_NEW', 'PAYMENT_REMINDER_1', 'PAYMENT_REMINDER_2', 'OVERDUE', 'MISSED_CLEANING')),
+    subject    VARCHAR(200) NOT NULL,
+    body       TEXT         NOT NULL,
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE huisregels (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title       VARCHAR(200)                NOT NULL,
+    content     TEXT,
+    order_index INTEGER                     NOT NULL,
+    created_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at  TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE invoices (
+    id                    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title                 VARCHAR(120)   NOT NULL,
+    description           VARCHAR(1000),
+    amount                NUMERIC(10, 2) NOT NULL,
+    issue_date            DATE           NOT NULL,
+    due_date              DATE           NOT NULL,
+    invoice_month         INTEGER        NOT NULL CHECK (invoice_month >= 1 AND invoice_month <= 12),
+    invoice_year          INTEGER        NOT NULL CHECK (invoice_year >= 2000 AND invoice_year <= 2100),
+    last_reminder_sent_at TIMESTAMP(6),
+    reminder_count        INTEGER        NOT NULL CHECK (reminder_count >= 0),
+    status                VARCHAR(20)    NOT NULL CHECK (status IN ('OPEN', 'PAID', 'OVERDUE', 'CANCELLED')),
+    mollie_payment_id     VARCHAR(50),
+    checkout_url          VARCHAR(512),
+    paid_at               TIMESTAMP(6),
+    student_id            BIGINT         NOT NULL REFERENCES users (id)
+);
+
+CREATE TABLE payments (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    amount      NUMERIC(10, 2) NOT NULL,
+    created_at  TIMESTAMP(6)   NOT NULL,
+    paid_at     TIMESTAMP(6),
+    status      VARCHAR(20)    NOT NULL CHECK (status IN ('OPEN', 'PENDING', 'PAID', 'FAILED', 'CANCELLED')),
+    description VARCHAR(500),
+    student_id  BIGINT         NOT NULL REFERENCES users (id)
+);
+
+CREATE TABLE shifts (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    cleaner_id   BIGINT NOT NULL REFERENCES users (id),
+    shift_date   DATE   NOT NULL,
+    check_in_at  TIMESTAMP(6) WITH TIME ZONE,
+    check_out_at TIMESTAMP(6) WITH TIME ZONE,
+    notes        VARCHAR(500)
+);
+
+CREATE TABLE supply_reports (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    item_name      VARCHAR(200)                NOT NULL,
+    notes          VARCHAR(500),
+    urgency        VARCHAR(20)                 NOT NULL CHECK (urgency IN ('LOW', 'MEDIUM', 'HIGH')),
+    status         VARCHAR(20)                 NOT NULL CHECK (status IN ('PENDING', 'ORDERED', 'RECEIVED')),
+    reported_by_id BIGINT                      NOT NULL REFERENCES users (id),
+    reported_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at     TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE task_photos (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    task_id        BIGINT                      NOT NULL REFERENCES cleaning_tasks (id),
+    photo_path     VARCHAR(500)                NOT NULL,
+    uploaded_by_id BIGINT                      NOT NULL REFERENCES users (id),
+    uploaded_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_room_name ON rooms (name);
+CREATE INDEX idx_room_occupant ON rooms (occupant_id);
+CREATE INDEX idx_cleaning_task_week_id ON cleaning_tasks (week_number, id);
+CREATE INDEX idx_cleaning_task_completed ON cleaning_tasks (completed);
+CREATE INDEX idx_cleaning_task_assigned ON cleaning_tasks (assigned_to_id);
+CREATE INDEX idx_document_role_access ON documents (role_access);
+CREATE INDEX idx_document_uploaded_by ON documents (uploaded_by_id);
+CREATE INDEX idx_invoice_student ON invoices (student_id);
+CREATE INDEX idx_invoice_status ON invoices (status);
+CREATE INDEX idx_invoice_due_date ON invoices (due_date);
+CREATE INDEX idx_invoice_year_month ON invoices (invoice_year, invoice_month);
+CREATE INDEX idx_payment_student ON payments (student_id);
+CREATE INDEX idx_payment_status ON payments (status);
+CREATE INDEX idx_payment_paid_at ON payments (paid_at);
+CREATE INDEX idx_shifts_cleaner_date ON shifts (cleaner_id, shift_date);
+CREATE INDEX idx_task_photos_task ON task_photos (task_id);
+
+CREATE OR REPLACE VIEW view_users AS
+SELECT
+  u.id,
+  u.username AS name,
+  u.email,
+  u.role,
+  r.name AS room_name
+FROM users u
+LEFT JOIN rooms r ON r.occupant_id = u.id
+ORDER BY u.role, u.username;
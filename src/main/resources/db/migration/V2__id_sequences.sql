@@ -0,0 +1,31 @@
+-- ==================================================
+-- Id sequences
+-- Invoices, payments, cleaning tasks, shifts and task photos take their ids from a sequence
+-- (allocationSize 50, so Hibernate can batch inserts). Identity columns become sequence defaults,
+-- and each sequence starts past the highest existing id.
+-- ==================================================
+
+CREATE SEQUENCE IF NOT EXISTS invoices_seq INCREMENT BY 50;
+ALTER TABLE invoices ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE invoices ALTER COLUMN id SET DEFAULT nextval('invoices_seq');
+SELECT setval('invoices_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM invoices), (SELECT last_value FROM invoices_seq)));
+
+CREATE SEQUENCE IF NOT EXISTS payments_seq INCREMENT BY 50;
+ALTER TABLE payments ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE payments ALTER COLUMN id SET DEFAULT nextval('payments_seq');
+SELECT setval('payments_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM payments), (SELECT last_value FROM payments_seq)));
+
+CREATE SEQUENCE IF NOT EXISTS cleaning_tasks_seq INCREMENT BY 50;
+ALTER TABLE cleaning_tasks ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE cleaning_tasks ALTER COLUMN id SET DEFAULT nextval('cleaning_tasks_seq');
+SELECT setval('cleaning_tasks_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM cleaning_tasks), (SELECT last_value FROM cleaning_tasks_seq)));
+
+CREATE SEQUENCE IF NOT EXISTS shifts_seq INCREMENT BY 50;
+ALTER TABLE shifts ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE shifts ALTER COLUMN id SET DEFAULT nextval('shifts_seq');
+SELECT setval('shifts_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM shifts), (SELECT last_value FROM shifts_seq)));
+
+CREATE SEQUENCE IF NOT EXISTS task_photos_seq INCREMENT BY 50;
+ALTER TABLE task_photos ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE task_photos ALTER COLUMN id SET DEFAULT nextval('task_photos_seq');
+SELECT setval('task_photos_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM task_photos), (SELECT last_value FROM task_photos_seq)));
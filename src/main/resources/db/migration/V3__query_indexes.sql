@@ -0,0 +1,30 @@
+-- ==================================================
+-- Indexes for the hot queries
+-- ==================================================
+
+-- One rent invoice per student per month. The monthly rent job relied on a read-then-insert check;
+-- the constraint makes a second run (or two instances) unable to create duplicates.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM invoices
+               GROUP BY student_id, invoice_month, invoice_year
+               HAVING COUNT(*) > 1) THEN
+        RAISE EXCEPTION 'Duplicate invoices per student/month/year found; remove them before adding uk_invoice_student_period';
+    END IF;
+END $$;
+
+ALTER TABLE invoices
+    ADD CONSTRAINT uk_invoice_student_period UNIQUE (student_id, invoice_month, invoice_year);
+
+-- Payments of a student by status (open amount, payment history).
+CREATE INDEX idx_payment_student_status ON payments (student_id, status);
+
+-- Open shift of a cleaner: cleaner_id = ? AND check_out_at IS NULL.
+CREATE INDEX idx_shifts_cleaner_checkout ON shifts (cleaner_id, check_out_at);
+
+-- Supply reports are listed newest first.
+CREATE INDEX idx_supply_reports_reported_at ON supply_reports (reported_at);
+
+-- Photos of a task in upload order.
+CREATE INDEX idx_task_photos_task_uploaded ON task_photos (task_id, uploaded_at);
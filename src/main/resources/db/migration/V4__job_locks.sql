@@ -0,0 +1,12 @@
+-- ==================================================
+-- Job locks
+-- One row per scheduled job. An instance runs a job only while it holds an unexpired lease;
+-- the holder extends lease_until with a heartbeat, and a crashed holder's lease simply runs out.
+-- ==================================================
+
+CREATE TABLE job_locks (
+    name        VARCHAR(64)                 PRIMARY KEY,
+    locked_by   VARCHAR(255)                NOT NULL,
+    locked_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    lease_until TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
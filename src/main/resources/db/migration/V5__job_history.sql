@@ -0,0 +1,30 @@
+-- ==================================================
+-- Job history
+-- job_run: one row per job and run key (e.g. the month a reminder is for). A rerun with the same key
+-- resumes that row, so a crashed run continues where it stopped instead of starting over.
+-- job_item: the outcome per invoice within a run. Items already SENT are skipped on resume.
+-- ==================================================
+
+CREATE TABLE job_run (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    job         VARCHAR(64)                 NOT NULL,
+    run_key     VARCHAR(64)                 NOT NULL,
+    status      VARCHAR(20)                 NOT NULL,
+    attempts    INTEGER                     NOT NULL,
+    started_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    finished_at TIMESTAMP(6) WITH TIME ZONE,
+    CONSTRAINT uk_job_run_job_key UNIQUE (job, run_key),
+    CONSTRAINT ck_job_run_status CHECK (status IN ('RUNNING', 'SUCCEEDED', 'FAILED'))
+);
+
+CREATE INDEX idx_job_run_started ON job_run (started_at DESC);
+
+CREATE TABLE job_item (
+    run_id      BIGINT                      NOT NULL REFERENCES job_run (id) ON DELETE CASCADE,
+    item_id     BIGINT                      NOT NULL,
+    outcome     VARCHAR(20)                 NOT NULL,
+    reason      VARCHAR(64),
+    recorded_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (run_id, item_id),
+    CONSTRAINT ck_job_item_outcome CHECK (outcome IN ('SENT', 'SKIPPED', 'FAILED'))
+);
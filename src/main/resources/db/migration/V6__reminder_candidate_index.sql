@@ -0,0 +1,7 @@
+-- ==================================================
+-- Reminder candidates
+-- The reminder jobs select on status IN (...) plus a due-date range (see ReminderPolicy);
+-- one composite index serves both instead of combining idx_invoice_status and idx_invoice_due_date.
+-- ==================================================
+
+CREATE INDEX idx_invoice_status_due_date ON invoices (status, due_date);
@@ -0,0 +1,7 @@
+-- ==================================================
+-- Optimistic locking on invoices
+-- Reminder state is written with bulk UPDATEs that bump the version, so an invoice entity
+-- read before such an update fails on save instead of overwriting reminder_count.
+-- ==================================================
+
+ALTER TABLE invoices ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
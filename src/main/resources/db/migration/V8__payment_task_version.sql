@@ -0,0 +1,7 @@
+-- ==================================================
+-- Optimistic locking on payments and cleaning tasks
+-- A concurrent change makes the later save fail (409 or a retry) instead of silently overwriting the first.
+-- ==================================================
+
+ALTER TABLE payments ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE cleaning_tasks ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,41 @@
+-- ==================================================
+-- Bank reconciliation
+-- bank_statement_file: statement files already imported, by name and fingerprint (size and modification time),
+-- so the incremental import skips them without reading them again.
+-- bank_statement_line: one row per incoming bank entry. entry_ref is the bank's reference or a hash of the entry,
+-- so an entry that appears in overlapping statements is stored once.
+-- payments.invoice_id: the invoice a payment settled; set for payments booked by the reconciliation.
+-- ==================================================
+
+CREATE TABLE bank_statement_file (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_name   VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(64)  NOT NULL,
+    entry_count INTEGER      NOT NULL,
+    imported_at TIMESTAMP(6) NOT NULL DEFAULT now(),
+    CONSTRAINT uk_bank_statement_file UNIQUE (file_name, fingerprint)
+);
+
+CREATE TABLE bank_statement_line (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    entry_ref         VARCHAR(64)    NOT NULL,
+    booking_date      DATE           NOT NULL,
+    amount            NUMERIC(10, 2) NOT NULL,
+    counterparty_name VARCHAR(140),
+    counterparty_iban VARCHAR(34),
+    remittance        VARCHAR(500),
+    status            VARCHAR(20)    NOT NULL,
+    matched_by        VARCHAR(20),
+    invoice_id        BIGINT REFERENCES invoices (id) ON DELETE SET NULL,
+    imported_at       TIMESTAMP(6)   NOT NULL DEFAULT now(),
+    CONSTRAINT uk_bank_statement_line_ref UNIQUE (entry_ref),
+    CONSTRAINT ck_bank_statement_line_status CHECK (status IN ('MATCHED', 'UNMATCHED')),
+    CONSTRAINT ck_bank_statement_line_matched_by CHECK (matched_by IN ('REFERENCE', 'IBAN', 'NAME'))
+);
+
+CREATE INDEX idx_bank_statement_line_status ON bank_statement_line (status);
+CREATE INDEX idx_bank_statement_line_invoice ON bank_statement_line (invoice_id);
+
+ALTER TABLE payments ADD COLUMN invoice_id BIGINT REFERENCES invoices (id) ON DELETE SET NULL;
+
+CREATE INDEX idx_payment_invoice ON payments (invoice_id);
@@ -1,9 +1,9 @@
 -- ==================================================
 -- Villa Vredestein — seed data
+-- Flyway afterMigrate callback: runs after every migrate (prod only) in one transaction,
+-- so every statement must be idempotent.
 -- ==================================================
 
-BEGIN;
-
 -- ==================================================
 -- USERS
 -- ==================================================
@@ -144,6 +144,27 @@ WHERE NOT EXISTS (
     AND invoice_year  = CAST(EXTRACT(YEAR  FROM CURRENT_DATE) AS int)
 );
 
+-- The invoices above bypass the application and are inserted after V10's backfill, so their charge is posted here:
+-- every owed invoice that has no ledger entry yet. Running the seed again posts nothing.
+WITH charged AS (
+  INSERT INTO ledger_entries (student_id, entry_type, amount, invoice_id, description)
+  SELECT i.student_id, 'INVOICE_CHARGED', i.amount, i.id, left(i.title, 255)
+  FROM invoices i
+  WHERE i.status IN ('OPEN', 'OVERDUE')
+    AND NOT EXISTS (SELECT 1 FROM ledger_entries l WHERE l.invoice_id = i.id)
+  ORDER BY i.id
+  RETURNING id, student_id, amount
+)
+INSERT INTO student_balances (student_id, balance, entry_count, last_entry_id, updated_at)
+SELECT student_id, sum(amount), count(*), max(id), localtimestamp
+FROM charged
+GROUP BY student_id
+ON CONFLICT (student_id) DO UPDATE
+SET balance = student_balances.balance + EXCLUDED.balance,
+    entry_count = student_balances.entry_count + EXCLUDED.entry_count,
+    last_entry_id = greatest(student_balances.last_entry_id, EXCLUDED.last_entry_id),
+    updated_at = EXCLUDED.updated_at;
+
 -- ==================================================
 -- CLEANING TASKS
 -- ==================================================
@@ -185,20 +206,3 @@ INSERT INTO cleaning_tasks (week_number, name, description, completed, comment,
   (5, 'Badkamer & toilet',   'Wastafel, douche, spiegel en toilet grondig schoonmaken en droogvegen.', FALSE, NULL, NULL, (SELECT id FROM users WHERE email = 'medocstaal@gmail.com'), 'ALL'),
   (5, 'Vuilnis & was',       'Afval scheiden: gft, plastic/blik, papier, restafval, statiegeld. Was draaien en opvouwen.', FALSE, NULL, NULL, NULL, 'ALL'),
   (5, 'Woonkamer & gang',    'Woonkamer stofzuigen en dweilen. Gang en trap schoonmaken. Eettafel opruimen.', FALSE, NULL, NULL, NULL, 'ALL');
-
--- ==================================================
--- VIEW
--- ==================================================
-
-CREATE OR REPLACE VIEW view_users AS
-SELECT
-  u.id,
-  u.username AS name,
-  u.email,
-  u.role,
-  r.name AS room_name
-FROM users u
-LEFT JOIN rooms r ON r.occupant_id = u.id
-ORDER BY u.role, u.username;
-
-COMMIT;
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.villavredestein.benchmark;
+
+import com.villavredestein.model.EmailTemplate;
+import com.villavredestein.repository.EmailTemplateRepository;
+import com.villavredestein.service.EmailTemplateService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering one PAYMENT_NEW mail: the old five chained {@code String.replace} calls
+ * versus the compiled template cached by {@link EmailTemplateService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+    private static final String BODY = """
+            Beste {{naam}},
+
+            Je factuur voor {{maand}} staat klaar. Het te betalen bedrag is {{bedrag}}.
+
+            Betaal veilig via iDEAL:
+            {{betaalLink}}
+
+            De vervaldatum is {{vervaldatum}}. Betaal op tijd om extra kosten te voorkomen.
+
+            Met vriendelijke groet,
+            Villa Vredestein
+            """;
+
+    private EmailTemplateService emailTemplateService;
+    private EmailTemplate template;
+    private Map<String, String> variables;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emailTemplateService = new EmailTemplateService(Mockito.mock(EmailTemplateRepository.class));
+        template = new EmailTemplate(EmailTemplate.TemplateType.PAYMENT_NEW, "Factuur {{maand}} – Villa Vredestein", BODY);
+        variables = EmailTemplateService.rentVariables("Desmond", "€ 350,00", "juli 2025",
+                "https://bunq.me/villavredestein/350", "8 juli 2025");
+    }
+
+    @Benchmark
+    public EmailTemplateService.RenderedEmail chainedReplace() {
+        return new EmailTemplateService.RenderedEmail(replaceAll(template.getSubject()), replaceAll(template.getBody()));
+    }
+
+    @Benchmark
+    public EmailTemplateService.RenderedEmail compiled() {
+        return emailTemplateService.render(template, variables);
+    }
+
+    private String replaceAll(String text) {
+        return text
+                .replace("{{naam}}", variables.get("naam"))
+                .replace("{{bedrag}}", variables.get("bedrag"))
+                .replace("{{maand}}", variables.get("maand"))
+                .replace("{{betaalLink}}", variables.get("betaalLink"))
+                .replace("{{vervaldatum}}", variables.get("vervaldatum"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailTemplateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
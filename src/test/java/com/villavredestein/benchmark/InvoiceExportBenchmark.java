@@ -0,0 +1,87 @@
+package com.villavredestein.benchmark;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.service.InvoiceExportService;
+import com.villavredestein.service.InvoicePdfService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Month-end ZIP export of 500 invoices, single renderer thread versus all cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceExportBenchmark {
+
+    private static final int INVOICES = 500;
+
+    /** 0 = one renderer thread per available core. */
+    @Param({"1", "0"})
+    public int threads;
+
+    private InvoiceExportService exportService;
+    private List<Invoice> invoices;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        exportService = new InvoiceExportService(null, new InvoicePdfService(), threads);
+
+        invoices = new ArrayList<>(INVOICES);
+        for (int i = 1; i <= INVOICES; i++) {
+            User student = new User("student" + i, "student" + i + "@villavredestein.com", "hash", User.Role.STUDENT);
+            Invoice invoice = new Invoice("Huur juli 2025", "Maandelijkse huur voor juli 2025",
+                    new BigDecimal("350.00"), LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 8),
+                    7, 2025, Invoice.InvoiceStatus.OPEN, student);
+            ReflectionTestUtils.setField(invoice, "id", (long) i);
+            invoices.add(invoice);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(exportService, "shutdown");
+    }
+
+    @Benchmark
+    public long exportMonthZip() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        exportService.writeZip(invoices, out);
+        return out.count;
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoiceExportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
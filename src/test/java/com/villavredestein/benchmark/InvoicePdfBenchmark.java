@@ -0,0 +1,143 @@
+package com.villavredestein.benchmark;
+
+import com.lowagie.text.*;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.service.InvoicePdfService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-invoice latency and allocation of the PDF renderer.
+ * {@code legacy} is the renderer as it was before fonts and cell templates became shared statics;
+ * run with the GC profiler ({@code main} enables it) to compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoicePdfBenchmark {
+
+    private InvoicePdfService invoicePdfService;
+    private Invoice invoice;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        invoicePdfService = new InvoicePdfService();
+
+        User student = new User("Desmond", "desmond@villavredestein.com", "hash", User.Role.STUDENT);
+        invoice = new Invoice("Huur juli 2025", "Maandelijkse huur voor juli 2025",
+                new BigDecimal("350.00"), LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 8),
+                7, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(invoice, "id", 42L);
+    }
+
+    @Benchmark
+    public byte[] legacy() {
+        return LegacyRenderer.generate(invoice);
+    }
+
+    @Benchmark
+    public byte[] bytes() {
+        return invoicePdfService.generate(invoice);
+    }
+
+    @Benchmark
+    public void streaming() {
+        invoicePdfService.generate(invoice, OutputStream.nullOutputStream());
+    }
+
+    /** Condensed copy of the previous InvoicePdfService (fonts and cells built per call), kept as baseline. */
+    static final class LegacyRenderer {
+
+        private static final Locale NL = Locale.forLanguageTag("nl-NL");
+        private static final ThreadLocal<NumberFormat> EUR =
+                ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(NL));
+        private static final DateTimeFormatter DATE_NL = DateTimeFormatter.ofPattern("d MMMM yyyy", NL);
+        private static final Color BRAND_COLOR = new Color(30, 64, 100);
+
+        static byte[] generate(Invoice invoice) {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                Document doc = new Document(PageSize.A4, 50, 50, 60, 60);
+                PdfWriter.getInstance(doc, out);
+                doc.open();
+
+                Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 22, BRAND_COLOR);
+                Font subFont = FontFactory.getFont(FontFactory.HELVETICA, 11, Color.DARK_GRAY);
+                doc.add(new Paragraph("Villa Vredestein", titleFont));
+                doc.add(new Paragraph("Factuur", FontFactory.getFont(FontFactory.HELVETICA, 14, Color.GRAY)));
+                doc.add(Chunk.NEWLINE);
+                doc.add(new Paragraph("Factuurnummer: #" + invoice.getId(), subFont));
+                doc.add(new Paragraph("Factuurdatum:  " + invoice.getIssueDate().format(DATE_NL), subFont));
+                doc.add(new Paragraph("Vervaldatum:   " + invoice.getDueDate().format(DATE_NL), subFont));
+                doc.add(Chunk.NEWLINE);
+                doc.add(new Paragraph("Aan:", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
+                doc.add(new Paragraph(invoice.getStudent().getUsername(), subFont));
+                doc.add(new Paragraph(invoice.getStudent().getEmail(), subFont));
+                doc.add(Chunk.NEWLINE);
+
+                PdfPTable table = new PdfPTable(new float[]{4f, 1.5f});
+                table.setWidthPercentage(100);
+                addCell(table, "Omschrijving", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.WHITE),
+                        BRAND_COLOR, Rectangle.NO_BORDER);
+                addCell(table, "Bedrag", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.WHITE),
+                        BRAND_COLOR, Rectangle.NO_BORDER);
+                addCell(table, invoice.getTitle() + "\n" + invoice.getDescription(),
+                        FontFactory.getFont(FontFactory.HELVETICA, 11), null, Rectangle.BOTTOM);
+                addCell(table, EUR.get().format(invoice.getAmount()),
+                        FontFactory.getFont(FontFactory.HELVETICA, 11), null, Rectangle.BOTTOM);
+                addCell(table, "Totaal", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11), null, Rectangle.TOP);
+                addCell(table, EUR.get().format(invoice.getAmount()),
+                        FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, BRAND_COLOR), null, Rectangle.TOP);
+                doc.add(table);
+                doc.add(Chunk.NEWLINE);
+
+                Paragraph footer = new Paragraph("Bedankt voor het op tijd betalen van de huur. Bij vragen kunt u contact opnemen via villavredestein@gmail.com",
+                        FontFactory.getFont(FontFactory.HELVETICA, 9, Color.GRAY));
+                footer.setAlignment(Element.ALIGN_CENTER);
+                doc.add(footer);
+
+                doc.close();
+                return out.toByteArray();
+            } catch (Exception e) {
+                throw new RuntimeException("PDF generatie mislukt", e);
+            }
+        }
+
+        private static void addCell(PdfPTable table, String text, Font font, Color background, int border) {
+            PdfPCell cell = new PdfPCell(new Phrase(text, font));
+            if (background != null) {
+                cell.setBackgroundColor(background);
+            }
+            cell.setPadding(8);
+            cell.setBorder(border);
+            table.addCell(cell);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoicePdfBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
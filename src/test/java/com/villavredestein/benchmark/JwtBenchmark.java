@@ -0,0 +1,79 @@
+package com.villavredestein.benchmark;
+
+import com.villavredestein.security.JwtAuthenticationFilter;
+import com.villavredestein.security.JwtService;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token handling on every authenticated request: signing a token at login,
+ * validating one, and the full {@link JwtAuthenticationFilter} pass with an in-memory user lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String EMAIL = "desmond@villavredestein.com";
+    private static final FilterChain NOOP_CHAIN = (request, response) -> { };
+
+    private JwtService jwtService;
+    private JwtAuthenticationFilter filter;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", "dmlsbGEtdnJlZGVzdGVpbi1iZW5jaG1hcmstc2VjcmV0LTAxMjM0NTY3ODk=");
+        ReflectionTestUtils.setField(jwtService, "expirationSeconds", 3600L);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        UserDetails user = User.withUsername(EMAIL).password("hash").roles("STUDENT").build();
+        filter = new JwtAuthenticationFilter(jwtService, username -> user);
+        token = jwtService.generateToken(EMAIL, "STUDENT");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(EMAIL, "STUDENT");
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtService.validateToken(token);
+    }
+
+    @Benchmark
+    public Object authenticationFilter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/invoices/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), NOOP_CHAIN);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
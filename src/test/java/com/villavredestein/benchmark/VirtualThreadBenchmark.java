@@ -0,0 +1,87 @@
+package com.villavredestein.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of concurrent requests shaped like our blocking endpoints: a short JDBC call on a pool of 10 connections,
+ * followed by a slow outbound call (SMTP/Twilio) made inside the request.
+ * Compares Tomcat's default platform pool (200 threads) with a thread per request on virtual threads.
+ * The score is the time until the whole burst is answered; with either model the 10 connections stay the floor
+ * ({@code requests x 5 ms / 10}), so virtual threads only help with the time spent outside the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int JDBC_POOL_SIZE = 10;
+    private static final long JDBC_MILLIS = 5;
+    private static final long OUTBOUND_MILLIS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"200", "1000"})
+    public int concurrentRequests;
+
+    private ExecutorService executor;
+    private Semaphore connectionPool;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        connectionPool = new Semaphore(JDBC_POOL_SIZE, true);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<Integer>> responses = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            responses.add(executor.submit(this::handleRequest));
+        }
+        int ok = 0;
+        for (Future<Integer> response : responses) {
+            ok += response.get();
+        }
+        return ok;
+    }
+
+    private int handleRequest() throws InterruptedException {
+        connectionPool.acquire();
+        try {
+            Thread.sleep(JDBC_MILLIS);
+        } finally {
+            connectionPool.release();
+        }
+        Thread.sleep(OUTBOUND_MILLIS);
+        return 1;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VirtualThreadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
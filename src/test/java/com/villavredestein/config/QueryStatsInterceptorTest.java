@@ -0,0 +1,98 @@
+package com.villavredestein.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryStatsInterceptorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryStatsInterceptor interceptor = new QueryStatsInterceptor(registry);
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @AfterEach
+    void tearDown() {
+        QueryStats.end();
+    }
+
+    @Test
+    void request_recordsStatsTaggedByHandler() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new SampleController(), SampleController.class.getMethod("getAllUsers"));
+
+        interceptor.preHandle(request, response, handler);
+        QueryStats.statementExecuted(TimeUnit.MILLISECONDS.toNanos(3));
+        QueryStats.statementExecuted(TimeUnit.MILLISECONDS.toNanos(2));
+        QueryStats.entityLoaded();
+        QueryStats.entityLoaded();
+        QueryStats.entityLoaded();
+        QueryStats.collectionFetched();
+        assertThat(QueryStats.current().toHeaderValue())
+                .isEqualTo("queries=2;entityLoads=3;collectionFetches=1;jdbcMs=5");
+        interceptor.afterCompletion(request, response, handler, null);
+
+        String tag = "SampleController.getAllUsers";
+        assertThat(registry.get("http.server.requests.queries").tag("handler", tag).summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get("http.server.requests.entity.loads").tag("handler", tag).summary().totalAmount())
+                .isEqualTo(3);
+        assertThat(registry.get("http.server.requests.collection.fetches").tag("handler", tag).summary().totalAmount())
+                .isEqualTo(1);
+        assertThat(registry.get("http.server.requests.jdbc").tag("handler", tag).timer().totalTime(TimeUnit.MILLISECONDS))
+                .isEqualTo(5);
+        assertThat(QueryStats.current()).isNull();
+    }
+
+    @Test
+    void asyncHandler_isPublishedAndClearedWhenAsyncHandlingStarts() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new SampleController(), SampleController.class.getMethod("getAllUsers"));
+
+        interceptor.preHandle(request, response, handler);
+        QueryStats.statementExecuted(TimeUnit.MILLISECONDS.toNanos(4));
+        interceptor.afterConcurrentHandlingStarted(request, response, handler);
+
+        assertThat(QueryStats.current()).isNull();
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.preHandle(request, response, handler);
+        QueryStats.statementExecuted(TimeUnit.MILLISECONDS.toNanos(1));
+        interceptor.afterCompletion(request, response, handler, null);
+
+        DistributionSummary queries = registry.get("http.server.requests.queries")
+                .tag("handler", "SampleController.getAllUsers").summary();
+        assertThat(queries.count()).isEqualTo(1);
+        assertThat(queries.totalAmount()).isEqualTo(1);
+        assertThat(QueryStats.current()).isNull();
+    }
+
+    @Test
+    void outsideRequest_nothingIsCollected() {
+        QueryStats.statementExecuted(1_000);
+        QueryStats.entityLoaded();
+
+        assertThat(QueryStats.current()).isNull();
+    }
+
+    @Test
+    void nonControllerHandler_isIgnored() {
+        interceptor.preHandle(request, response, new Object());
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertThat(QueryStats.current()).isNull();
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    static class SampleController {
+        public String getAllUsers() {
+            return "ok";
+        }
+    }
+}
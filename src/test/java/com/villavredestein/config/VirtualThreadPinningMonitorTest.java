@@ -0,0 +1,57 @@
+package com.villavredestein.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(registry, Duration.ofMillis(10));
+    private final Object lock = new Object();
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void sleepingInsideSynchronized_isRecordedWithApplicationFrame() throws Exception {
+        monitor.start();
+
+        Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+        Timer pinned = awaitTimer(Duration.ofSeconds(15));
+        assertThat(pinned).isNotNull();
+        assertThat(pinned.getId().getTag("site")).isEqualTo("VirtualThreadPinningMonitorTest.sleepWhileHoldingMonitor");
+        assertThat(pinned.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(10);
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Timer awaitTimer(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            Timer timer = registry.find("jvm.threads.virtual.pinned").timer();
+            if (timer != null) {
+                return timer;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.villavredestein.integration;
 
+import org.junit.jupiter.api.AfterEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -13,6 +14,9 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Testcontainers(disabledWithoutDocker = true)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
 @AutoConfigureMockMvc(addFilters = true)
@@ -43,4 +47,20 @@ public abstract class BaseIntegrationTest {
 
     protected static final String ADMIN_EMAIL = "admin@villavredestein.com";
     protected static final String ADMIN_USERNAME = "admin";
+
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    /**
+     * Undoes something a test committed, for tests that run outside the rolled-back test transaction.
+     * The steps run after the test in reverse order, so rows go before the rows they reference.
+     */
+    protected void cleanupAfterTest(Runnable step) {
+        cleanup.add(step);
+    }
+
+    @AfterEach
+    void runCleanup() {
+        cleanup.reversed().forEach(Runnable::run);
+        cleanup.clear();
+    }
 }
\ No newline at end of file
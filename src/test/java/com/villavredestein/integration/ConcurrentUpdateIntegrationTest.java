@@ -0,0 +1,143 @@
+package com.villavredestein.integration;
+
+import com.villavredestein.model.CleaningTask;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.CleaningTaskRepository;
+import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.CleaningTaskService;
+import com.villavredestein.service.ConflictRetry;
+import com.villavredestein.service.InvoiceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Many threads write the same rows, each in its own committed transaction; the test cleans up after itself. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConcurrentUpdateIntegrationTest extends BaseIntegrationTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private CleaningTaskService cleaningTaskService;
+
+    @Autowired
+    private CleaningTaskRepository taskRepository;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /** Starts all tasks at the same moment and waits for them; rethrows the first failure. */
+    private <T> List<T> race(List<Callable<T>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentToggles_sameTask_noneAreLost() throws Exception {
+        CleaningTask task = taskRepository.save(new CleaningTask(1, "Keuken " + UUID.randomUUID(), null, null));
+        cleanupAfterTest(() -> taskRepository.deleteById(task.getId()));
+        int togglesPerThread = 25;
+
+        List<Callable<Integer>> togglers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            togglers.add(() -> {
+                for (int i = 0; i < togglesPerThread; i++) {
+                    cleaningTaskService.toggleTask(task.getId());
+                }
+                return togglesPerThread;
+            });
+        }
+        int toggles = race(togglers).stream().mapToInt(Integer::intValue).sum();
+
+        CleaningTask after = taskRepository.findById(task.getId()).orElseThrow();
+        assertThat(after.getVersion()).isEqualTo(toggles);
+        assertThat(after.isCompleted()).isEqualTo(toggles % 2 == 1);
+    }
+
+    @Test
+    void statusUpdatesRacingWithReminders_retryInsteadOfOverwritingReminderCount() throws Exception {
+        User student = userRepository.save(new User("race-" + UUID.randomUUID(), UUID.randomUUID() + "@test.com",
+                "bcrypt-hash", User.Role.STUDENT));
+        Invoice invoice = invoiceRepository.save(new Invoice("Huur", null, new BigDecimal("350.00"),
+                LocalDate.now(), LocalDate.now().plusDays(7), LocalDate.now().getMonthValue(), LocalDate.now().getYear(),
+                Invoice.InvoiceStatus.OPEN, student));
+        cleanupAfterTest(() -> userRepository.delete(student));
+        cleanupAfterTest(() -> invoiceRepository.deleteById(invoice.getId()));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConflictRetry retry = new ConflictRetry(registry, 50, Duration.ofMillis(2));
+        AtomicInteger remindersCounted = new AtomicInteger();
+        int rounds = 40;
+
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS / 2; t++) {
+            String status = t % 2 == 0 ? "OVERDUE" : "OPEN";
+            writers.add(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    retry.run("invoice-status", () -> invoiceService.updateStatus(invoice.getId(), status));
+                }
+                return null;
+            });
+            writers.add(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    Invoice current = invoiceRepository.findById(invoice.getId()).orElseThrow();
+                    if (invoiceService.recordReminderSent(current, LocalDateTime.now())) {
+                        remindersCounted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        race(writers);
+
+        Invoice after = invoiceRepository.findById(invoice.getId()).orElseThrow();
+        assertThat(remindersCounted).hasPositiveValue();
+        assertThat(after.getReminderCount()).isEqualTo(remindersCounted.get());
+        assertThat(registry.find("db.conflicts.retried").counter()).isNotNull();
+        assertThat(registry.find("db.conflicts.exhausted").counter()).isNull();
+    }
+}
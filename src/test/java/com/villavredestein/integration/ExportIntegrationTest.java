@@ -0,0 +1,207 @@
+package com.villavredestein.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.villavredestein.controller.AdminExportController;
+import com.villavredestein.dto.InvoiceRequestDTO;
+import com.villavredestein.dto.InvoiceResponseDTO;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.ExportService;
+import com.villavredestein.service.InvoiceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** The export runs in its own read-only transaction, so the rows it reads must be committed. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExportIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private AdminExportController exportController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user(User.Role role) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(new User("export-" + suffix, "export-" + suffix + "@test.com",
+                passwordEncoder.encode("password-1"), role));
+        cleanupAfterTest(() -> userRepository.deleteById(user.getId()));
+        cleanupAfterTest(() -> {
+            jdbcTemplate.update("DELETE FROM payments WHERE student_id = ?", user.getId());
+            jdbcTemplate.update("DELETE FROM invoices WHERE student_id = ?", user.getId());
+        });
+        return user;
+    }
+
+    private InvoiceResponseDTO invoice(User student, String title, LocalDate issueDate) {
+        InvoiceRequestDTO dto = new InvoiceRequestDTO();
+        dto.setTitle(title);
+        dto.setAmount(new BigDecimal("350.00"));
+        dto.setIssueDate(issueDate);
+        dto.setDueDate(issueDate.plusDays(14));
+        dto.setStudentEmail(student.getEmail());
+        return invoiceService.createInvoice(dto);
+    }
+
+    private String login(User admin) throws Exception {
+        var payload = objectMapper.createObjectNode();
+        payload.put("email", admin.getEmail());
+        payload.put("password", "password-1");
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(body).get("token").asText();
+    }
+
+    private String download(String url, String token) throws Exception {
+        MvcResult started = mockMvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void invoiceExport_csv_onlyRowsInRange() throws Exception {
+        User admin = user(User.Role.ADMIN);
+        User student = user(User.Role.STUDENT);
+        invoice(student, "Huur juni", LocalDate.of(2025, 6, 30));
+        InvoiceResponseDTO july = invoice(student, "Huur juli, met borg", LocalDate.of(2025, 7, 1));
+        invoice(student, "Huur augustus", LocalDate.of(2025, 8, 1));
+        String token = login(admin);
+
+        mockMvc.perform(get("/api/admin/exports/invoices?from=2025-07-01&to=2025-07-31")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"facturen-vanaf-2025-07-01-tot-en-met-2025-07-31.csv\""));
+        String csv = download("/api/admin/exports/invoices?from=2025-07-01&to=2025-07-31", token);
+
+        List<String> studentRows = Arrays.stream(csv.split("\r\n"))
+                .filter(line -> line.endsWith("," + student.getEmail()))
+                .toList();
+        assertThat(csv).startsWith("id,title,amount,");
+        assertThat(studentRows).singleElement().asString()
+                .startsWith(july.getId() + ",\"Huur juli, met borg\",350.00,2025-07-01,");
+    }
+
+    @Test
+    void invoiceExport_ndjson_oneObjectPerLine() throws Exception {
+        User admin = user(User.Role.ADMIN);
+        User student = user(User.Role.STUDENT);
+        invoice(student, "Huur juli", LocalDate.of(2025, 7, 1));
+        String token = login(admin);
+
+        String ndjson = download("/api/admin/exports/invoices?format=ndjson&from=2025-07-01&to=2025-07-01", token);
+
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        assertThat(rows).filteredOn(row -> row.get("studentEmail").asText().equals(student.getEmail()))
+                .singleElement()
+                .satisfies(row -> {
+                    assertThat(row.get("title").asText()).isEqualTo("Huur juli");
+                    assertThat(row.get("issueDate").asText()).isEqualTo("2025-07-01");
+                });
+    }
+
+    @Test
+    void export_invalidRequest_returnsBadRequestBeforeStreaming() throws Exception {
+        String token = login(user(User.Role.ADMIN));
+
+        for (String url : List.of("/api/admin/exports/invoices?from=2025-08-01&to=2025-07-01",
+                "/api/admin/exports/invoices?format=xlsx",
+                "/api/admin/exports/rooms")) {
+            mockMvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(request().asyncNotStarted())
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void export_allSlotsInUse_returnsServiceUnavailableBeforeStreaming() throws Exception {
+        String token = login(user(User.Role.ADMIN));
+
+        try (ExportService.Slot first = exportService.reserve(); ExportService.Slot second = exportService.reserve()) {
+            mockMvc.perform(get("/api/admin/exports/payments").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(request().asyncNotStarted())
+                    .andExpect(status().isServiceUnavailable());
+        }
+        download("/api/admin/exports/payments?from=2025-07-01&to=2025-07-01", token);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void export_bodyNeverRuns_slotIsFreedWhenTheRequestCompletes() throws Exception {
+        // More exports than there are slots: without the completion callback the third one gets a 503.
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/admin/exports/payments");
+            request.setAsyncSupported(true);
+            WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+            asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, new MockHttpServletResponse()));
+            asyncManager.setTaskExecutor(new TaskExecutorAdapter(task -> {
+                throw new RejectedExecutionException("queue full");
+            }));
+
+            exportController.export("payments", "csv", null, null, request);
+            // What Spring does with the returned body; the rejecting executor never runs it.
+            asyncManager.startCallableProcessing(() -> null);
+            request.getAsyncContext().complete();
+        }
+
+        try (ExportService.Slot first = exportService.reserve(); ExportService.Slot second = exportService.reserve()) {
+            assertThat(first).isNotNull();
+            assertThat(second).isNotNull();
+        }
+    }
+}
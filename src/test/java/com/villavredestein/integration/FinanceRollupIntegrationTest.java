@@ -0,0 +1,178 @@
+package com.villavredestein.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.villavredestein.dto.InvoiceRequestDTO;
+import com.villavredestein.dto.InvoiceResponseDTO;
+import com.villavredestein.dto.PaymentRequestDTO;
+import com.villavredestein.dto.PaymentResponseDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.InvoiceService;
+import com.villavredestein.service.PaymentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** Every write commits, as the rollup triggers see it in production; the test cleans up after itself. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FinanceRollupIntegrationTest extends BaseIntegrationTest {
+
+    /** The rollup rows of the given students, recomputed from the invoices and payments themselves. */
+    private static final String EXPECTED = """
+            SELECT source, period, student_id, status, count(*) AS item_count, sum(amount) AS amount
+            FROM (
+                SELECT 'INVOICE' AS source, make_date(invoice_year, invoice_month, 1) AS period, student_id, status, amount
+                FROM invoices
+                UNION ALL
+                SELECT 'PAYMENT', date_trunc('month', coalesce(paid_at, created_at))::date, student_id, status, amount
+                FROM payments
+            ) rows
+            WHERE student_id = ANY (CAST(? AS bigint[]))
+            GROUP BY source, period, student_id, status
+            ORDER BY source, period, student_id, status
+            """;
+
+    private static final String ACTUAL = """
+            SELECT source, period, student_id, status, item_count, amount
+            FROM finance_rollup
+            WHERE student_id = ANY (CAST(? AS bigint[])) AND item_count <> 0
+            ORDER BY source, period, student_id, status
+            """;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user(String password, User.Role role) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(new User("finance-" + suffix, "finance-" + suffix + "@test.com",
+                passwordEncoder.encode(password), role));
+        cleanupAfterTest(() -> userRepository.deleteById(user.getId()));
+        cleanupAfterTest(() -> {
+            jdbcTemplate.update("DELETE FROM payments WHERE student_id = ?", user.getId());
+            jdbcTemplate.update("DELETE FROM invoices WHERE student_id = ?", user.getId());
+        });
+        return user;
+    }
+
+    private InvoiceResponseDTO invoice(User student, String amount, LocalDate issueDate) {
+        InvoiceRequestDTO dto = new InvoiceRequestDTO();
+        dto.setTitle("Huur");
+        dto.setAmount(new BigDecimal(amount));
+        dto.setIssueDate(issueDate);
+        dto.setDueDate(issueDate.plusDays(14));
+        dto.setStudentEmail(student.getEmail());
+        return invoiceService.createInvoice(dto);
+    }
+
+    private PaymentResponseDTO payment(User student, String amount, String status) {
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setAmount(new BigDecimal(amount));
+        dto.setStatus(status);
+        dto.setStudentEmail(student.getEmail());
+        return paymentService.createPayment(dto);
+    }
+
+    private void assertRollupMatches(User... students) {
+        Long[] ids = Arrays.stream(students).map(User::getId).toArray(Long[]::new);
+        List<Map<String, Object>> expected = jdbcTemplate.queryForList(EXPECTED, (Object) ids);
+        List<Map<String, Object>> actual = jdbcTemplate.queryForList(ACTUAL, (Object) ids);
+        assertThat(expected).isNotEmpty();
+        assertThat(actual).usingRecursiveFieldByFieldElementComparator().isEqualTo(expected);
+    }
+
+    @Test
+    void writes_keepRollupEqualToGroupByOverInvoicesAndPayments() {
+        User anna = user("password-1", User.Role.STUDENT);
+        User bram = user("password-1", User.Role.STUDENT);
+        LocalDate june = LocalDate.of(2025, 6, 1);
+        LocalDate july = LocalDate.of(2025, 7, 1);
+
+        InvoiceResponseDTO annaJune = invoice(anna, "350.00", june);
+        InvoiceResponseDTO annaJuly = invoice(anna, "350.00", july);
+        invoice(bram, "400.00", june);
+        invoiceService.createInvoicesIfAbsent(List.of(
+                new Invoice("Huur juli", null, new BigDecimal("400.00"), july, july.plusDays(14), 7, 2025,
+                        Invoice.InvoiceStatus.OPEN, bram),
+                new Invoice("Huur juli", null, new BigDecimal("350.00"), july, july.plusDays(14), 7, 2025,
+                        Invoice.InvoiceStatus.OPEN, anna)));
+        assertRollupMatches(anna, bram);
+
+        invoiceService.updateStatus(annaJune.getId(), "PAID");
+        invoiceService.updateStatus(annaJuly.getId(), "OVERDUE");
+        Invoice reminded = invoiceRepository.findById(annaJuly.getId()).orElseThrow();
+        invoiceService.recordReminderSent(reminded, LocalDateTime.now());
+        PaymentResponseDTO transfer = payment(bram, "400.00", "PAID");
+        payment(bram, "25.00", "OPEN");
+        assertRollupMatches(anna, bram);
+
+        paymentService.updateStatus(transfer.id(), "FAILED");
+        invoiceService.deleteInvoice(annaJuly.getId());
+        paymentService.deletePayment(transfer.id());
+        assertRollupMatches(anna, bram);
+    }
+
+    @Test
+    void dashboardEndpoint_asAdmin_returnsRollupFigures() throws Exception {
+        User admin = user("password-1", User.Role.ADMIN);
+        User student = user("password-1", User.Role.STUDENT);
+        invoice(student, "350.00", LocalDate.now().withDayOfMonth(1));
+
+        var payload = objectMapper.createObjectNode();
+        payload.put("email", admin.getEmail());
+        payload.put("password", "password-1");
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String token = objectMapper.readTree(body).get("token").asText();
+
+        mockMvc.perform(get("/api/admin/finance/dashboard?months=3")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.months.length()").value(3))
+                .andExpect(jsonPath("$.students[?(@.studentId == " + student.getId() + ")].outstanding")
+                        .value(350.0));
+
+        mockMvc.perform(get("/api/admin/finance/dashboard?months=0")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -8,18 +8,29 @@ import com.villavredestein.model.User;
 import com.villavredestein.repository.InvoiceRepository;
 import com.villavredestein.repository.RoomRepository;
 import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.InvoiceService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -34,9 +45,15 @@ class InvoiceIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private RoomRepository roomRepository;
 
+    @Autowired
+    private InvoiceService invoiceService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     private String adminPassword;
 
     @BeforeEach
@@ -235,4 +252,91 @@ class InvoiceIntegrationTest extends BaseIntegrationTest {
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken))
                 .andExpect(status().isForbidden());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getInvoiceForPdf_asAdmin_loadsStudentForRenderingOutsideTheTransaction() {
+        Invoice invoice = saveInvoice(userRepository.save(
+                new User("pdfstudent", "pdfstudent@test.com", "bcrypt-hash", User.Role.STUDENT)));
+        entityManager.flush();
+        entityManager.clear();
+
+        Invoice loaded = invoiceService.getInvoiceForPdf(invoice.getId(), ADMIN_EMAIL, true);
+        entityManager.clear();
+
+        assertThat(Hibernate.isInitialized(loaded.getStudent())).isTrue();
+        assertThat(loaded.getStudent().getUsername()).isEqualTo("pdfstudent");
+    }
+
+    @Test
+    void createInvoicesIfAbsent_secondRunForSameMonth_createsNothing() {
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            User student = userRepository.save(new User("bulk" + i, "bulk" + i + "@test.com", "bcrypt-hash", User.Role.STUDENT));
+            invoices.add(new Invoice("Huur juli", null, new BigDecimal("350.00"), LocalDate.of(2025, 7, 1),
+                    LocalDate.of(2025, 7, 8), 7, 2025, Invoice.InvoiceStatus.OPEN, student));
+        }
+
+        Map<Long, Long> first = invoiceService.createInvoicesIfAbsent(invoices);
+        Map<Long, Long> second = invoiceService.createInvoicesIfAbsent(invoices);
+
+        assertThat(first).hasSize(120);
+        assertThat(first.values()).doesNotHaveDuplicates().allMatch(id -> id > 0);
+        assertThat(second).isEmpty();
+        assertThat(invoiceRepository.findByInvoiceMonthAndInvoiceYearOrderByStudentUsernameAsc(7, 2025)).hasSize(120);
+
+        // Ids handed out by the bulk insert and by Hibernate's pooled generator must not collide.
+        Invoice next = invoiceRepository.saveAndFlush(new Invoice("Huur augustus", null, new BigDecimal("350.00"),
+                LocalDate.of(2025, 8, 1), LocalDate.of(2025, 8, 8), 8, 2025, Invoice.InvoiceStatus.OPEN,
+                invoices.get(0).getStudent()));
+        assertThat(first.values()).doesNotContain(next.getId());
+    }
+
+    @Test
+    void markRemindersSent_updatesOnlyInvoicesThatStillHaveTheirVersion() {
+        Invoice current = saveInvoice(userRepository.save(
+                new User("reminded", "reminded@test.com", "bcrypt-hash", User.Role.STUDENT)));
+        Invoice changed = saveInvoice(userRepository.save(
+                new User("changed", "changed@test.com", "bcrypt-hash", User.Role.STUDENT)));
+        entityManager.flush();
+        LocalDateTime sentAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Long> updated = invoiceRepository.markRemindersSent(
+                Map.of(current.getId(), current.getVersion(), changed.getId(), changed.getVersion() + 1), sentAt, true);
+        entityManager.clear();
+
+        assertThat(updated).containsExactly(current.getId());
+        Invoice reminded = invoiceRepository.findById(current.getId()).orElseThrow();
+        assertThat(reminded.getReminderCount()).isEqualTo(1);
+        assertThat(reminded.getLastReminderSentAt()).isEqualTo(sentAt);
+        assertThat(reminded.getStatus()).isEqualTo(Invoice.InvoiceStatus.OVERDUE);
+        assertThat(reminded.getVersion()).isEqualTo(current.getVersion() + 1);
+        Invoice untouched = invoiceRepository.findById(changed.getId()).orElseThrow();
+        assertThat(untouched.getReminderCount()).isZero();
+        assertThat(untouched.getStatus()).isEqualTo(Invoice.InvoiceStatus.OPEN);
+
+        // An entity read before the bulk update can no longer overwrite the reminder state.
+        current.setStatus(Invoice.InvoiceStatus.PAID);
+        assertThatThrownBy(() -> invoiceRepository.saveAndFlush(current))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void addRemindersSent_countsTheReminderWhateverTheVersion() {
+        Invoice invoice = saveInvoice(userRepository.save(
+                new User("recounted", "recounted@test.com", "bcrypt-hash", User.Role.STUDENT)));
+        entityManager.flush();
+        LocalDateTime earlier = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        invoiceRepository.markRemindersSent(Map.of(invoice.getId(), invoice.getVersion()), earlier, false);
+
+        List<Long> updated = invoiceRepository.addRemindersSent(
+                List.of(invoice.getId(), -1L), earlier.minusHours(1), true);
+        entityManager.clear();
+
+        assertThat(updated).containsExactly(invoice.getId());
+        Invoice recounted = invoiceRepository.findById(invoice.getId()).orElseThrow();
+        assertThat(recounted.getReminderCount()).isEqualTo(2);
+        assertThat(recounted.getLastReminderSentAt()).isEqualTo(earlier);
+        assertThat(recounted.getStatus()).isEqualTo(Invoice.InvoiceStatus.OVERDUE);
+        assertThat(recounted.getVersion()).isEqualTo(invoice.getVersion() + 2);
+    }
+}
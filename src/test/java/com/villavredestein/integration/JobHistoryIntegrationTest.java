@@ -0,0 +1,157 @@
+package com.villavredestein.integration;
+
+import com.villavredestein.dto.JobHistoryRunDTO;
+import com.villavredestein.jobs.BunqPaymentReminderJob;
+import com.villavredestein.jobs.JobHistory;
+import com.villavredestein.jobs.JobMetrics;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** History writes run in their own transactions, so this test commits and cleans up after itself. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobHistoryIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private BunqPaymentReminderJob bunqPaymentReminderJob;
+
+    @Autowired
+    private JobHistory jobHistory;
+
+    private final String job = "test-" + UUID.randomUUID();
+    private User student;
+
+    @AfterEach
+    void cleanup() {
+        jdbcTemplate.update("DELETE FROM job_run WHERE job IN (?, ?)", job, BunqPaymentReminderJob.JOB);
+        jdbcTemplate.update("DELETE FROM job_locks WHERE name = ?", BunqPaymentReminderJob.JOB);
+        if (student != null) {
+            invoiceRepository.deleteAll(invoiceRepository.findByStudentOrderByIdDesc(student));
+            userRepository.delete(student);
+        }
+    }
+
+    private JobHistory history(int batchSize) {
+        return new JobHistory(jdbcTemplate, transactionManager, new JobMetrics(new SimpleMeterRegistry()), batchSize);
+    }
+
+    @Test
+    void runCrashedMidway_isResumedAndSkipsWrittenItems() {
+        JobHistory history = history(2);
+
+        JobHistory.Recording crashed = history.start(job, "2025-07");
+        crashed.sent(1);
+        crashed.sent(2);
+        crashed.sent(3);
+        crashed.failed(4, "send_failed");
+        // no close(): the instance died, the failure of item 4 was still buffered
+
+        try (JobHistory.Recording resumed = history.start(job, "2025-07")) {
+            assertThat(resumed.runId()).isEqualTo(crashed.runId());
+            assertThat(resumed.attempt()).isEqualTo(2);
+            assertThat(resumed.alreadySent(1)).isTrue();
+            assertThat(resumed.alreadySent(2)).isTrue();
+            assertThat(resumed.alreadySent(3)).isTrue();
+            assertThat(resumed.alreadySent(4)).isFalse();
+            resumed.skipped(4, "no_phone");
+            resumed.succeeded();
+        }
+
+        JobHistoryRunDTO run = history.findRun(crashed.runId()).orElseThrow();
+        assertThat(run.status()).isEqualTo("SUCCEEDED");
+        assertThat(run.attempts()).isEqualTo(2);
+        assertThat(run.processed()).isEqualTo(4);
+        assertThat(run.sent()).isEqualTo(3);
+        assertThat(run.skipped()).isEqualTo(1);
+        assertThat(history.findItems(run.id(), JobHistory.Outcome.SKIPPED))
+                .singleElement()
+                .satisfies(item -> assertThat(item.reason()).isEqualTo("no_phone"));
+    }
+
+    @Test
+    void sentItem_isNeverOverwrittenByALaterOutcome() {
+        JobHistory history = history(10);
+        long runId;
+        try (JobHistory.Recording first = history.start(job, "2025-07")) {
+            runId = first.runId();
+            first.sent(7);
+        }
+        try (JobHistory.Recording second = history.start(job, "2025-07")) {
+            second.failed(7, "send_failed");
+        }
+
+        assertThat(history.findItems(runId, null))
+                .singleElement()
+                .satisfies(item -> assertThat(item.outcome()).isEqualTo("SENT"));
+        assertThat(history.findRun(runId).orElseThrow().status()).isEqualTo("FAILED");
+    }
+
+    @Test
+    void otherRunKey_startsANewRun() {
+        JobHistory history = history(10);
+        try (JobHistory.Recording july = history.start(job, "2025-07")) {
+            july.sent(1);
+            july.succeeded();
+        }
+        try (JobHistory.Recording august = history.start(job, "2025-08")) {
+            assertThat(august.attempt()).isEqualTo(1);
+            assertThat(august.alreadySent(1)).isFalse();
+            august.succeeded();
+        }
+
+        assertThat(history.findRuns(job, 10)).extracting(JobHistoryRunDTO::runKey)
+                .containsExactly("2025-08", "2025-07");
+    }
+
+    @Test
+    void bunqReminder_runTwiceInOneMonth_sendsOnce() {
+        LocalDate today = LocalDate.now();
+        student = new User("bunq-" + UUID.randomUUID().toString().substring(0, 8),
+                "bunq-" + UUID.randomUUID() + "@villavredestein.com", "bcrypt-hash", User.Role.STUDENT);
+        student.setPhoneNumber("+31600000000");
+        student = userRepository.save(student);
+        Invoice invoice = invoiceRepository.save(new Invoice("Huur", null, new BigDecimal("350.00"),
+                today.withDayOfMonth(1), today.withDayOfMonth(1).plusDays(7),
+                today.getMonthValue(), today.getYear(), Invoice.InvoiceStatus.OPEN, student));
+
+        assertThat(bunqPaymentReminderJob.sendFirstReminder()).isTrue();
+        // triggered again after the lock's minimum hold
+        jdbcTemplate.update("UPDATE job_locks SET lease_until = now() - INTERVAL '1 second' WHERE name = ?",
+                BunqPaymentReminderJob.JOB);
+        assertThat(bunqPaymentReminderJob.sendFirstReminder()).isTrue();
+
+        JobHistoryRunDTO run = jobHistory.findRuns(BunqPaymentReminderJob.JOB, 1).getFirst();
+        assertThat(run.attempts()).isEqualTo(2);
+        assertThat(jobHistory.findItems(run.id(), JobHistory.Outcome.SENT))
+                .extracting(item -> item.itemId())
+                .contains(invoice.getId());
+        assertThat(jobHistory.findItems(run.id(), JobHistory.Outcome.FAILED)).isEmpty();
+    }
+}
@@ -0,0 +1,165 @@
+package com.villavredestein.integration;
+
+import com.villavredestein.jobs.JobLock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Two {@link JobLock}s with different instance ids play two app instances sharing one database. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobLockIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final String job = "test-" + UUID.randomUUID();
+
+    private JobLock instance(String id, Duration lease) {
+        return instance(id, lease, Duration.ZERO);
+    }
+
+    private JobLock instance(String id, Duration lease, Duration holdAtLeast) {
+        return new JobLock(jdbcTemplate, transactionManager, registry, lease, holdAtLeast, id);
+    }
+
+    private double count(String meter) {
+        var counter = registry.find(meter).tag("job", job).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void lockHeldByOneInstance_isContendedUntilReleased() {
+        JobLock a = instance("a", Duration.ofMinutes(1));
+        JobLock b = instance("b", Duration.ofMinutes(1));
+
+        Optional<JobLock.Lease> lease = a.tryAcquire(job);
+        assertThat(lease).isPresent();
+        assertThat(b.tryAcquire(job)).isEmpty();
+        assertThat(count("jobs.lock.contended")).isEqualTo(1);
+
+        lease.get().close();
+        Optional<JobLock.Lease> next = b.tryAcquire(job);
+        assertThat(next).isPresent();
+        next.get().close();
+
+        assertThat(count("jobs.lock.acquired")).isEqualTo(2);
+        assertThat(count("jobs.lock.handover")).isZero();
+    }
+
+    @Test
+    void releasedLock_isHeldUntilTheMinimumHoldHasPassed() {
+        JobLock a = instance("a", Duration.ofMinutes(1), Duration.ofMinutes(15));
+        JobLock b = instance("b", Duration.ofMinutes(1), Duration.ofMinutes(15));
+        AtomicBoolean ranTwice = new AtomicBoolean();
+
+        assertThat(a.runExclusively(job, () -> { })).isTrue();
+        // b's scheduler fires the same slot a few seconds late
+        assertThat(b.runExclusively(job, () -> ranTwice.set(true))).isFalse();
+        assertThat(ranTwice).isFalse();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT released_at IS NOT NULL FROM job_locks WHERE name = ?", Boolean.class, job)).isTrue();
+
+        // the next slot, after the hold
+        jdbcTemplate.update("UPDATE job_locks SET locked_at = locked_at - INTERVAL '1 day', "
+                + "lease_until = lease_until - INTERVAL '1 day' WHERE name = ?", job);
+        assertThat(b.runExclusively(job, () -> ranTwice.set(true))).isTrue();
+        assertThat(ranTwice).isTrue();
+
+        assertThat(count("jobs.lock.acquired")).isEqualTo(2);
+        assertThat(count("jobs.lock.handover")).isZero();
+    }
+
+    @Test
+    void runExclusively_whileHeldElsewhere_skipsTask() {
+        JobLock a = instance("a", Duration.ofMinutes(1));
+        JobLock b = instance("b", Duration.ofMinutes(1));
+        AtomicBoolean ran = new AtomicBoolean();
+
+        try (JobLock.Lease ignored = a.tryAcquire(job).orElseThrow()) {
+            assertThat(b.runExclusively(job, () -> ran.set(true))).isFalse();
+        }
+        assertThat(ran).isFalse();
+
+        assertThat(b.runExclusively(job, () -> ran.set(true))).isTrue();
+        assertThat(ran).isTrue();
+    }
+
+    @Test
+    void expiredLeaseOfCrashedInstance_isTakenOver() {
+        jdbcTemplate.update("INSERT INTO job_locks (name, locked_by, locked_at, lease_until) "
+                + "VALUES (?, 'crashed#1', now() - INTERVAL '10 minutes', now() - INTERVAL '5 minutes')", job);
+
+        Optional<JobLock.Lease> lease = instance("b", Duration.ofMinutes(1)).tryAcquire(job);
+
+        assertThat(lease).isPresent();
+        assertThat(jdbcTemplate.queryForObject("SELECT locked_by FROM job_locks WHERE name = ?", String.class, job))
+                .isEqualTo(lease.get().owner());
+        assertThat(count("jobs.lock.handover")).isEqualTo(1);
+        lease.get().close();
+    }
+
+    @Test
+    void heartbeat_keepsLeaseAlivePastItsDuration() throws InterruptedException {
+        JobLock a = instance("a", Duration.ofMillis(300));
+        JobLock b = instance("b", Duration.ofMillis(300));
+
+        try (JobLock.Lease lease = a.tryAcquire(job).orElseThrow()) {
+            Thread.sleep(1_000);
+            assertThat(b.tryAcquire(job)).isEmpty();
+            assertThat(lease.isLost()).isFalse();
+        }
+    }
+
+    @Test
+    void leaseTakenOverDuringRun_isReportedLost() throws InterruptedException {
+        JobLock a = instance("a", Duration.ofMillis(300));
+
+        try (JobLock.Lease lease = a.tryAcquire(job).orElseThrow()) {
+            jdbcTemplate.update("UPDATE job_locks SET locked_by = 'other#1' WHERE name = ?", job);
+            Thread.sleep(500);
+
+            assertThat(lease.isLost()).isTrue();
+            assertThat(count("jobs.lock.lost")).isEqualTo(1);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT locked_by FROM job_locks WHERE name = ?", String.class, job))
+                .isEqualTo("other#1");
+    }
+
+    @Test
+    void runExclusively_leaseTakenOverDuringRun_isSeenByTheTask() {
+        JobLock a = instance("a", Duration.ofMillis(300));
+        AtomicBoolean lostBefore = new AtomicBoolean(true);
+        AtomicBoolean lostAfter = new AtomicBoolean();
+
+        assertThat(a.runExclusively(job, () -> {
+            lostBefore.set(a.leaseLost());
+            jdbcTemplate.update("UPDATE job_locks SET locked_by = 'other#1' WHERE name = ?", job);
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lostAfter.set(a.leaseLost());
+        })).isTrue();
+
+        assertThat(lostBefore).isFalse();
+        assertThat(lostAfter).isTrue();
+        assertThat(a.leaseLost()).isFalse();
+    }
+}
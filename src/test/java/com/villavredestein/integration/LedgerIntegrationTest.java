@@ -0,0 +1,335 @@
+package com.villavredestein.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.villavredestein.dto.InvoiceRequestDTO;
+import com.villavredestein.dto.InvoiceResponseDTO;
+import com.villavredestein.dto.LedgerEntryDTO;
+import com.villavredestein.dto.PaymentRequestDTO;
+import com.villavredestein.dto.PaymentResponseDTO;
+import com.villavredestein.dto.StudentBalanceDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.Room;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.RoomRepository;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.InvoiceService;
+import com.villavredestein.service.LedgerService;
+import com.villavredestein.service.PaymentService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** Posts through the invoice and payment services, each call in its own committed transaction. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LedgerIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final Map<Long, String> roomByStudent = new HashMap<>();
+
+    private User student(String rawPassword) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User student = userRepository.save(new User("ledger-" + suffix, "ledger-" + suffix + "@test.com",
+                passwordEncoder.encode(rawPassword), User.Role.STUDENT));
+        Room room = new Room("Kamer " + suffix);
+        room.assignOccupant(student);
+        Room saved = roomRepository.save(room);
+        roomByStudent.put(student.getId(), room.getName());
+        cleanupAfterTest(() -> userRepository.deleteById(student.getId()));
+        cleanupAfterTest(() -> roomRepository.deleteById(saved.getId()));
+        cleanupAfterTest(() -> {
+            // The ledger rows go with the user; the references to its invoices and payments are set to null.
+            jdbcTemplate.update("DELETE FROM payments WHERE student_id = ?", student.getId());
+            jdbcTemplate.update("DELETE FROM invoices WHERE student_id = ?", student.getId());
+        });
+        return student;
+    }
+
+    /** One invoice per student per month, so each gets its own month. */
+    private InvoiceResponseDTO invoice(User student, String amount, int monthsAgo) {
+        LocalDate issueDate = LocalDate.now().minusMonths(monthsAgo);
+        InvoiceRequestDTO dto = new InvoiceRequestDTO();
+        dto.setTitle("Huur");
+        dto.setAmount(new BigDecimal(amount));
+        dto.setIssueDate(issueDate);
+        dto.setDueDate(issueDate.plusDays(14));
+        dto.setStudentEmail(student.getEmail());
+        return invoiceService.createInvoice(dto);
+    }
+
+    private PaymentResponseDTO payment(User student, String amount, String status) {
+        return payment(student, amount, status, null, null);
+    }
+
+    private PaymentResponseDTO payment(User student, String amount, String status, LocalDateTime paidAt, Long invoiceId) {
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setAmount(new BigDecimal(amount));
+        dto.setDescription("Overboeking");
+        dto.setStatus(status);
+        dto.setPaidAt(paidAt);
+        dto.setInvoiceId(invoiceId);
+        dto.setStudentEmail(student.getEmail());
+        return paymentService.createPayment(dto);
+    }
+
+    private Long linkedInvoice(PaymentResponseDTO payment) {
+        return jdbcTemplate.queryForObject("SELECT invoice_id FROM payments WHERE id = ?", Long.class, payment.id());
+    }
+
+    private StudentBalanceDTO balance(User student) {
+        return ledgerService.getBalance(student.getId(), null, true);
+    }
+
+    private String login(User student, String rawPassword) throws Exception {
+        var payload = objectMapper.createObjectNode();
+        payload.put("email", student.getEmail());
+        payload.put("password", rawPassword);
+        payload.put("room", roomByStudent.get(student.getId()));
+
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(body).get("token").asText();
+    }
+
+    @Test
+    void invoiceAndPaymentChanges_keepBalanceEqualToSumOfEntries() {
+        User student = student("password-1");
+
+        InvoiceResponseDTO rent = invoice(student, "350.00", 0);
+        InvoiceResponseDTO fine = invoice(student, "25.00", 1);
+        assertThat(balance(student).balance()).isEqualByComparingTo("375.00");
+
+        invoiceService.updateStatus(rent.getId(), "OVERDUE");
+        invoiceService.updateStatus(rent.getId(), "PAID");
+        invoiceService.updateStatus(fine.getId(), "CANCELLED");
+        assertThat(balance(student).balance()).isEqualByComparingTo("0.00");
+
+        invoiceService.updateStatus(rent.getId(), "OPEN");
+        PaymentResponseDTO transfer = payment(student, "100.00", "PAID");
+        assertThat(balance(student).balance()).isEqualByComparingTo("250.00");
+
+        paymentService.updateStatus(transfer.id(), "OPEN");
+        invoiceService.deleteInvoice(rent.getId());
+
+        StudentBalanceDTO after = balance(student);
+        List<LedgerEntryDTO> entries = ledgerService.getEntries(student.getId(), null, 50, null, true);
+        assertThat(after.balance()).isEqualByComparingTo("0.00");
+        assertThat(after.entryCount()).isEqualTo(entries.size());
+        assertThat(entries).extracting(LedgerEntryDTO::type).containsExactly(
+                "INVOICE_DELETED", "PAYMENT_REVERSED", "PAYMENT_RECEIVED", "INVOICE_REOPENED",
+                "INVOICE_CANCELLED", "INVOICE_PAID", "INVOICE_CHARGED", "INVOICE_CHARGED");
+        assertThat(entries.stream().map(LedgerEntryDTO::amount).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo(after.balance());
+    }
+
+    @Test
+    void invoicePaidAndPaymentRecorded_creditTheStudentOnceInEitherOrder() {
+        User student = student("password-1");
+        InvoiceResponseDTO june = invoice(student, "350.00", 1);
+        InvoiceResponseDTO july = invoice(student, "350.00", 0);
+
+        // payment recorded first, then the invoice marked paid
+        PaymentResponseDTO first = payment(student, "350.00", "PAID", june.getIssueDate().atStartOfDay(), null);
+        invoiceService.updateStatus(june.getId(), "PAID");
+        assertThat(balance(student).balance()).isEqualByComparingTo("350.00");
+
+        // invoice marked paid first, then the payment recorded
+        invoiceService.updateStatus(july.getId(), "PAID");
+        PaymentResponseDTO second = payment(student, "350.00", "PAID");
+        assertThat(balance(student).balance()).isEqualByComparingTo("0.00");
+
+        assertThat(linkedInvoice(first)).isEqualTo(june.getId());
+        assertThat(linkedInvoice(second)).isEqualTo(july.getId());
+        assertThat(ledgerService.getEntries(student.getId(), null, 50, null, true))
+                .extracting(LedgerEntryDTO::type).containsExactly(
+                        "INVOICE_PAID", "INVOICE_PAID", "PAYMENT_REVERSED", "PAYMENT_RECEIVED",
+                        "INVOICE_CHARGED", "INVOICE_CHARGED");
+    }
+
+    @Test
+    void paymentsAndInvoicesOfEarlierMonths_areNotMatchedWithTheCurrentMonth() {
+        User student = student("password-1");
+        // History: an invoice marked paid without a payment, and a payment recorded without an invoice that month.
+        InvoiceResponseDTO lastYear = invoice(student, "350.00", 12);
+        invoiceService.updateStatus(lastYear.getId(), "PAID");
+        PaymentResponseDTO deposit = payment(student, "350.00", "PAID", LocalDateTime.now().minusMonths(13), null);
+        assertThat(balance(student).balance()).isEqualByComparingTo("-350.00");
+
+        InvoiceResponseDTO current = invoice(student, "350.00", 0);
+        PaymentResponseDTO rent = payment(student, "350.00", "PAID");
+        assertThat(linkedInvoice(rent)).isNull();
+        assertThat(balance(student).balance()).isEqualByComparingTo("-350.00");
+
+        invoiceService.updateStatus(current.getId(), "PAID");
+        assertThat(linkedInvoice(rent)).isEqualTo(current.getId());
+        assertThat(linkedInvoice(deposit)).isNull();
+        assertThat(balance(student).balance()).isEqualByComparingTo("-350.00");
+
+        // A payment for an earlier month is linked by its invoice id, which also marks that invoice paid.
+        InvoiceResponseDTO april = invoice(student, "350.00", 2);
+        PaymentResponseDTO late = payment(student, "350.00", "PAID", null, april.getId());
+        assertThat(linkedInvoice(late)).isEqualTo(april.getId());
+        assertThat(invoiceService.getInvoiceById(april.getId()).getStatus()).isEqualTo("PAID");
+        assertThat(balance(student).balance()).isEqualByComparingTo("-350.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM payments WHERE invoice_id = ?", Integer.class,
+                lastYear.getId())).isZero();
+    }
+
+    /** Migrates a schema of its own to V9, adds history the way the admin used to record it, then migrates on. */
+    @Test
+    void migratedHistory_creditsAPaidInvoiceAndItsRecordedPaymentOnce() {
+        String schema = "ledger_history_" + UUID.randomUUID().toString().substring(0, 8);
+        cleanupAfterTest(() -> jdbcTemplate.execute("DROP SCHEMA " + schema + " CASCADE"));
+        Flyway.configure().dataSource(dataSource).schemas(schema).target("9").load().migrate();
+
+        jdbcTemplate.update("INSERT INTO " + schema + ".users (id, username, email, status_toggle, password, role) "
+                + "VALUES (1, 'anna', 'anna@test.com', true, 'hash', 'STUDENT'), "
+                + "(2, 'bram', 'bram@test.com', true, 'hash', 'STUDENT')");
+        jdbcTemplate.update("INSERT INTO " + schema + ".invoices (id, title, amount, issue_date, due_date, invoice_month, "
+                + "invoice_year, reminder_count, status, paid_at, student_id) VALUES "
+                + "(11, 'Huur januari', 350.00, '2025-01-01', '2025-01-08', 1, 2025, 0, 'PAID', '2025-01-09', 1), "
+                + "(12, 'Huur februari', 350.00, '2025-02-01', '2025-02-08', 2, 2025, 0, 'PAID', '2025-02-12', 1), "
+                + "(13, 'Huur maart', 350.00, '2025-03-01', '2025-03-08', 3, 2025, 0, 'OPEN', NULL, 1), "
+                + "(21, 'Huur januari', 400.00, '2025-01-01', '2025-01-08', 1, 2025, 0, 'PAID', '2025-01-05', 2)");
+        // Anna's rent recorded as paid each month, the February one late, plus a deposit; Bram's twice in advance
+        jdbcTemplate.update("INSERT INTO " + schema + ".payments (id, amount, created_at, paid_at, status, description, "
+                + "student_id) VALUES "
+                + "(31, 350.00, '2025-01-08', '2025-01-08', 'PAID', 'Huur januari', 1), "
+                + "(32, 350.00, '2025-03-02', '2025-03-02', 'PAID', 'Huur februari', 1), "
+                + "(33, 100.00, '2024-12-20', '2024-12-20', 'PAID', 'Borg', 1), "
+                + "(41, 200.00, '2024-12-01', '2024-12-01', 'PAID', 'Voorschot', 2), "
+                + "(42, 200.00, '2024-12-15', '2024-12-15', 'PAID', 'Voorschot', 2)");
+
+        Flyway.configure().dataSource(dataSource).schemas(schema).load().migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT student_id, balance FROM " + schema + ".student_balances "
+                + "ORDER BY student_id"))
+                .extracting(row -> ((Number) row.get("student_id")).longValue(),
+                        row -> ((BigDecimal) row.get("balance")).toPlainString())
+                .containsExactly(tuple(1L, "250.00"), tuple(2L, "-400.00"));
+        assertThat(jdbcTemplate.queryForList("SELECT id, invoice_id FROM " + schema + ".payments ORDER BY id"))
+                .extracting(row -> ((Number) row.get("id")).longValue(), row -> row.get("invoice_id"))
+                .containsExactly(tuple(31L, 11L), tuple(32L, 12L), tuple(33L, null), tuple(41L, null),
+                        tuple(42L, null));
+        assertThat(jdbcTemplate.queryForObject("SELECT sum(amount) FROM " + schema + ".ledger_entries "
+                + "WHERE student_id = 1", BigDecimal.class)).isEqualByComparingTo("250.00");
+    }
+
+    @Test
+    void bulkCreatedInvoices_arePostedOnce() {
+        User student = student("password-1");
+        Invoice july = new Invoice("Huur juli", null, new BigDecimal("350.00"), LocalDate.of(2025, 7, 1),
+                LocalDate.of(2025, 7, 14), 7, 2025, Invoice.InvoiceStatus.OPEN, student);
+        Invoice again = new Invoice("Huur juli", null, new BigDecimal("350.00"), LocalDate.of(2025, 7, 1),
+                LocalDate.of(2025, 7, 14), 7, 2025, Invoice.InvoiceStatus.OPEN, student);
+
+        invoiceService.createInvoicesIfAbsent(List.of(july));
+        invoiceService.createInvoicesIfAbsent(List.of(again));
+
+        StudentBalanceDTO balance = balance(student);
+        assertThat(balance.balance()).isEqualByComparingTo("350.00");
+        assertThat(balance.entryCount()).isEqualTo(1);
+    }
+
+    @Test
+    void entriesPage_olderThanGivenId() {
+        User student = student("password-1");
+        for (int i = 0; i < 5; i++) {
+            invoice(student, "10.00", i);
+        }
+
+        List<LedgerEntryDTO> first = ledgerService.getEntries(student.getId(), null, 2, null, true);
+        List<LedgerEntryDTO> second = ledgerService.getEntries(student.getId(), first.get(1).id(), 2, null, true);
+        List<LedgerEntryDTO> last = ledgerService.getEntries(student.getId(), second.get(1).id(), 2, null, true);
+
+        assertThat(first).hasSize(2);
+        assertThat(second).hasSize(2);
+        assertThat(last).hasSize(1);
+        assertThat(second.get(0).id()).isLessThan(first.get(1).id());
+    }
+
+    @Test
+    void entries_cannotBeChangedOrDeleted() {
+        User student = student("password-1");
+        invoice(student, "350.00", 0);
+
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "UPDATE ledger_entries SET amount = 0 WHERE student_id = ?", student.getId()))
+                .hasMessageContaining("append-only");
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "DELETE FROM ledger_entries WHERE student_id = ?", student.getId()))
+                .hasMessageContaining("append-only");
+    }
+
+    @Test
+    void balanceEndpoint_studentSeesOwnBalanceOnly() throws Exception {
+        User student = student("password-1");
+        User other = student("password-2");
+        invoice(student, "350.00", 0);
+        String token = login(student, "password-1");
+
+        mockMvc.perform(get("/api/students/" + student.getId() + "/balance")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(350.00))
+                .andExpect(jsonPath("$.entryCount").value(1));
+
+        mockMvc.perform(get("/api/students/" + student.getId() + "/ledger")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("INVOICE_CHARGED"));
+
+        mockMvc.perform(get("/api/students/" + other.getId() + "/balance")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,239 @@
+package com.villavredestein.integration;
+
+import com.villavredestein.dto.LedgerEntryDTO;
+import com.villavredestein.dto.PaymentRequestDTO;
+import com.villavredestein.dto.PaymentResponseDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.BankStatementRepository;
+import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.InvoicePdfCache;
+import com.villavredestein.service.LedgerService;
+import com.villavredestein.service.PaymentService;
+import com.villavredestein.service.ReconciliationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/** Imports statement files from a temporary directory; every chunk commits, so the test cleans up after itself. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReconciliationIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private BankStatementRepository bankStatementRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private InvoicePdfCache pdfCache;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path statements;
+
+    private ReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        // A small chunk size, so the files are written in several chunks.
+        service = new ReconciliationService(bankStatementRepository, transactionManager, pdfCache,
+                ledgerService, statements.toString(), 2);
+    }
+
+    @AfterEach
+    void deleteStatements() {
+        jdbcTemplate.update("DELETE FROM bank_statement_line");
+        jdbcTemplate.update("DELETE FROM bank_statement_file");
+    }
+
+    private User student(String fullName) {
+        String username = "recon-" + UUID.randomUUID().toString().substring(0, 8);
+        User student = new User(username, username + "@test.com", "bcrypt-hash", User.Role.STUDENT);
+        student.setFullName(fullName);
+        User saved = userRepository.save(student);
+        cleanupAfterTest(() -> {
+            jdbcTemplate.update("DELETE FROM payments WHERE student_id = ?", saved.getId());
+            userRepository.deleteById(saved.getId());
+        });
+        return saved;
+    }
+
+    private Invoice invoice(User student, String amount, int month) {
+        Invoice invoice = invoiceRepository.save(new Invoice("Huur", null, new BigDecimal(amount),
+                LocalDate.of(2025, month, 1), LocalDate.of(2025, month, 10), month, 2025,
+                Invoice.InvoiceStatus.OPEN, student));
+        cleanupAfterTest(() -> invoiceRepository.deleteById(invoice.getId()));
+        return invoice;
+    }
+
+    private static String camtEntry(String ref, String amount, String direction, String name, String iban,
+                                    String remittance) {
+        return """
+                <Ntry>
+                  <Amt Ccy="EUR">%s</Amt><CdtDbtInd>%s</CdtDbtInd>
+                  <BookgDt><Dt>2025-03-04</Dt></BookgDt><AcctSvcrRef>%s</AcctSvcrRef>
+                  <NtryDtls><TxDtls>
+                    <RltdPties><Dbtr><Nm>%s</Nm></Dbtr><DbtrAcct><Id><IBAN>%s</IBAN></Id></DbtrAcct></RltdPties>
+                    <RmtInf><Ustrd>%s</Ustrd></RmtInf>
+                  </TxDtls></NtryDtls>
+                </Ntry>
+                """.formatted(amount, direction, ref, name, iban, remittance);
+    }
+
+    private void writeCamt(String fileName, String... entries) throws IOException {
+        Files.writeString(statements.resolve(fileName),
+                "<Document><BkToCstmrStmt><Stmt>" + String.join("", entries) + "</Stmt></BkToCstmrStmt></Document>");
+    }
+
+    private Map<ReconciliationService.Outcome, Integer> reconcile(boolean incremental) {
+        Map<ReconciliationService.Outcome, Integer> outcomes = new EnumMap<>(ReconciliationService.Outcome.class);
+        service.reconcile(incremental, outcome -> outcomes.merge(outcome, 1, Integer::sum));
+        return outcomes;
+    }
+
+    private Invoice.InvoiceStatus status(Invoice invoice) {
+        return invoiceRepository.findById(invoice.getId()).orElseThrow().getStatus();
+    }
+
+    @Test
+    void reconcile_paysMatchedInvoicesAndBooksLinkedPayments() throws IOException {
+        User zoe = student("Zoë van der Berg");
+        User sam = student("Sam de Vries");
+        Invoice march = invoice(zoe, "350.00", 3);
+        Invoice april = invoice(zoe, "350.00", 4);
+        Invoice samMarch = invoice(sam, "400.00", 3);
+
+        writeCamt("2025-03.xml",
+                camtEntry("R1", "350.00", "CRDT", "Z van der Berg", "NL91ABNA0417164300", "Huur #" + march.getId()),
+                camtEntry("R2", "12.50", "DBIT", "Bank", "NL00BANK0000000001", "Kosten"),
+                camtEntry("R3", "99.00", "CRDT", "Onbekend", "NL00BANK0000000002", "Borg"));
+        Files.writeString(statements.resolve("2025-04.csv"), """
+                Datum;Naam / Omschrijving;Tegenrekening;Af Bij;Bedrag (EUR);Mededelingen
+                20250404;Berg, Zoe van der;NL91ABNA0417164300;Bij;350,00;Huur april
+                20250405;Sam de Vries;NL20INGB0001234567;Bij;400,00;Huur
+                """);
+
+        Map<ReconciliationService.Outcome, Integer> outcomes = reconcile(true);
+
+        assertThat(outcomes).containsEntry(ReconciliationService.Outcome.MATCHED, 3)
+                .containsEntry(ReconciliationService.Outcome.UNMATCHED, 1)
+                .containsEntry(ReconciliationService.Outcome.DEBIT, 1);
+        assertThat(status(march)).isEqualTo(Invoice.InvoiceStatus.PAID);
+        assertThat(status(april)).isEqualTo(Invoice.InvoiceStatus.PAID);
+        assertThat(status(samMarch)).isEqualTo(Invoice.InvoiceStatus.PAID);
+
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT invoice_id FROM payments WHERE status = 'PAID' AND student_id IN (?, ?) ORDER BY invoice_id",
+                Long.class, zoe.getId(), sam.getId()))
+                .containsExactly(march.getId(), april.getId(), samMarch.getId());
+        assertThat(jdbcTemplate.queryForList("SELECT matched_by FROM bank_statement_line WHERE invoice_id = ?",
+                String.class, march.getId())).containsExactly("REFERENCE");
+        assertThat(jdbcTemplate.queryForList("SELECT matched_by FROM bank_statement_line WHERE invoice_id = ?",
+                String.class, april.getId())).containsExactly("IBAN");
+    }
+
+    @Test
+    void reconcile_invoiceWithRecordedPayment_creditsTheStudentOnce() throws IOException {
+        User zoe = student("Zoë van der Berg");
+        Invoice march = invoice(zoe, "350.00", 3);
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setAmount(new BigDecimal("350.00"));
+        dto.setDescription("Contant betaald");
+        dto.setStatus("PAID");
+        dto.setPaidAt(LocalDateTime.of(2025, 3, 2, 12, 0));
+        dto.setStudentEmail(zoe.getEmail());
+        PaymentResponseDTO recorded = paymentService.createPayment(dto);
+        dto.setPaidAt(LocalDateTime.of(2025, 2, 2, 12, 0));
+        PaymentResponseDTO february = paymentService.createPayment(dto);
+        BigDecimal before = ledgerService.getBalance(zoe.getId(), null, true).balance();
+
+        writeCamt("2025-03.xml",
+                camtEntry("R1", "350.00", "CRDT", "Z van der Berg", "NL91ABNA0417164300", "Huur #" + march.getId()));
+        assertThat(reconcile(true)).containsEntry(ReconciliationService.Outcome.MATCHED, 1);
+
+        assertThat(status(march)).isEqualTo(Invoice.InvoiceStatus.PAID);
+        assertThat(jdbcTemplate.queryForObject("SELECT invoice_id FROM payments WHERE id = ?", Long.class,
+                recorded.id())).isEqualTo(march.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT invoice_id FROM payments WHERE id = ?", Long.class,
+                february.id())).isNull();
+        // INVOICE_PAID credits the rent; the recorded payment's own credit is reversed
+        assertThat(ledgerService.getBalance(zoe.getId(), null, true).balance()).isEqualByComparingTo(before);
+        assertThat(ledgerService.getEntries(zoe.getId(), null, 2, null, true))
+                .extracting(LedgerEntryDTO::type, LedgerEntryDTO::paymentId)
+                .containsExactly(tuple("PAYMENT_REVERSED", recorded.id()), tuple("INVOICE_PAID", null));
+    }
+
+    @Test
+    void reconcile_incrementalRunSkipsImportedFilesAndKnownLines() throws IOException {
+        User zoe = student("Zoë van der Berg");
+        Invoice march = invoice(zoe, "350.00", 3);
+        Invoice april = invoice(zoe, "350.00", 4);
+
+        String first = camtEntry("R1", "350.00", "CRDT", "Zoe van der Berg", "NL91ABNA0417164300", "#" + march.getId());
+        writeCamt("2025-03.xml", first);
+        reconcile(true);
+
+        assertThat(reconcile(true)).isEmpty();
+
+        // An overlapping statement: only its new entry is processed.
+        writeCamt("2025-03-04.xml", first,
+                camtEntry("R2", "350.00", "CRDT", "Zoe van der Berg", "NL91ABNA0417164300", "#" + april.getId()));
+        Map<ReconciliationService.Outcome, Integer> outcomes = reconcile(true);
+
+        assertThat(outcomes).containsEntry(ReconciliationService.Outcome.ALREADY_IMPORTED, 1)
+                .containsEntry(ReconciliationService.Outcome.MATCHED, 1);
+        assertThat(status(april)).isEqualTo(Invoice.InvoiceStatus.PAID);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM payments WHERE student_id = ?",
+                Integer.class, zoe.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void reconcile_fullRunRetriesUnmatchedLines() throws IOException {
+        User sam = student("Sam de Vries");
+        writeCamt("2025-03.xml", camtEntry("R1", "275.00", "CRDT", "Sam de Vries", "NL20INGB0001234567", "Huur"));
+
+        assertThat(reconcile(true)).containsEntry(ReconciliationService.Outcome.UNMATCHED, 1);
+
+        Invoice invoice = invoice(sam, "275.00", 3);
+        assertThat(reconcile(true)).isEmpty();
+        assertThat(reconcile(false)).containsEntry(ReconciliationService.Outcome.MATCHED, 1);
+        assertThat(status(invoice)).isEqualTo(Invoice.InvoiceStatus.PAID);
+
+        assertThat(reconcile(false)).containsEntry(ReconciliationService.Outcome.ALREADY_IMPORTED, 1);
+    }
+}
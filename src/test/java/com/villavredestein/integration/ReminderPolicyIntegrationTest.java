@@ -0,0 +1,123 @@
+package com.villavredestein.integration;
+
+import com.villavredestein.config.QueryStats;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.InvoiceService;
+import com.villavredestein.service.ReminderPolicy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The compiled SQL predicate must select exactly the invoices {@link ReminderPolicy#matches} accepts. */
+class ReminderPolicyIntegrationTest extends BaseIntegrationTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Set<Long> seeded;
+
+    @BeforeEach
+    void seedGrid() {
+        LocalDate today = NOW.toLocalDate();
+        List<Invoice> invoices = new ArrayList<>();
+        int n = 0;
+        for (Invoice.InvoiceStatus status : Invoice.InvoiceStatus.values()) {
+            for (int dueOffset : new int[]{-10, -1, 0, 3, 4, 5}) {
+                for (int reminders : new int[]{0, 2, 5}) {
+                    for (Integer hoursAgo : new Integer[]{null, 1, 24, 25}) {
+                        n++;
+                        User student = new User("grid" + n, "grid" + n + "@villavredestein.com", "bcrypt-hash",
+                                User.Role.STUDENT);
+                        student.setPhoneNumber(n % 2 == 0 ? "+3161234" + n : null);
+                        userRepository.save(student);
+
+                        Invoice invoice = new Invoice("Huur", null, new BigDecimal("350.00"), today.withDayOfMonth(1),
+                                today.plusDays(dueOffset), today.getMonthValue(), today.getYear(), status, student);
+                        invoice.setReminderCount(reminders);
+                        invoice.setLastReminderSentAt(hoursAgo == null ? null : NOW.minusHours(hoursAgo));
+                        invoices.add(invoice);
+                    }
+                }
+            }
+        }
+        seeded = invoiceRepository.saveAll(invoices).stream().map(Invoice::getId).collect(Collectors.toSet());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void compiledPredicate_selectsTheSameInvoicesAsTheJavaRules() {
+        List<ReminderPolicy> policies = List.of(
+                ReminderPolicy.upcoming(4, 3, 24),
+                ReminderPolicy.overdue(5, 24),
+                ReminderPolicy.unpaidFor(YearMonth.from(NOW), ReminderPolicy.Contact.EMAIL),
+                ReminderPolicy.unpaidFor(YearMonth.from(NOW), ReminderPolicy.Contact.PHONE));
+
+        List<Invoice> all = invoiceRepository.findAll().stream()
+                .filter(invoice -> seeded.contains(invoice.getId()))
+                .toList();
+        all.forEach(invoice -> Hibernate.initialize(invoice.getStudent()));
+
+        for (ReminderPolicy policy : policies) {
+            Set<Long> expected = all.stream()
+                    .filter(invoice -> policy.matches(invoice, NOW))
+                    .map(Invoice::getId)
+                    .collect(Collectors.toSet());
+            entityManager.clear();
+
+            Set<Long> actual = invoiceService.findReminderCandidates(policy, NOW).stream()
+                    .map(Invoice::getId)
+                    .filter(seeded::contains)
+                    .collect(Collectors.toSet());
+
+            assertThat(expected).as("%s selects something", policy).isNotEmpty();
+            assertThat(actual).as(policy.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void candidates_comeWithTheirStudentInOneStatement() {
+        QueryStats stats = QueryStats.begin();
+        List<Invoice> candidates;
+        try {
+            candidates = invoiceService.findReminderCandidates(ReminderPolicy.overdue(5, 24), NOW);
+            candidates.forEach(invoice -> invoice.getStudent().getEmail());
+        } finally {
+            QueryStats.end();
+        }
+
+        assertThat(candidates).isNotEmpty();
+        assertThat(candidates).allSatisfy(invoice -> assertThat(Hibernate.isInitialized(invoice.getStudent())).isTrue());
+        assertThat(stats.queries()).isEqualTo(1);
+        assertThat(candidates).extracting(Invoice::getDueDate).isSorted();
+    }
+}
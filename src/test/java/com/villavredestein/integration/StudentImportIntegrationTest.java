@@ -0,0 +1,141 @@
+package com.villavredestein.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.villavredestein.model.Room;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.RoomRepository;
+import com.villavredestein.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** The import commits its own transaction; the test cleans up after itself. */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StudentImportIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final String suffix = UUID.randomUUID().toString().substring(0, 8);
+
+    private void deleteUserAfterwards(long id) {
+        cleanupAfterTest(() -> userRepository.deleteById(id));
+        cleanupAfterTest(() -> {
+            jdbcTemplate.update("UPDATE cleaning_tasks SET assigned_to_id = NULL WHERE assigned_to_id = ?", id);
+            jdbcTemplate.update("UPDATE rooms SET occupant_id = NULL WHERE occupant_id = ?", id);
+            jdbcTemplate.update("DELETE FROM payments WHERE student_id = ?", id);
+            jdbcTemplate.update("DELETE FROM invoices WHERE student_id = ?", id);
+        });
+    }
+
+    private Room room(String name) {
+        Room room = roomRepository.save(new Room(name));
+        cleanupAfterTest(() -> roomRepository.deleteById(room.getId()));
+        return room;
+    }
+
+    private String adminToken() throws Exception {
+        User admin = userRepository.save(new User("import-admin-" + suffix, "import-admin-" + suffix + "@test.com",
+                passwordEncoder.encode("password-1"), User.Role.ADMIN));
+        deleteUserAfterwards(admin.getId());
+
+        var payload = objectMapper.createObjectNode();
+        payload.put("email", admin.getEmail());
+        payload.put("password", "password-1");
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(body).get("token").asText();
+    }
+
+    @Test
+    void csvImport_createsStudentsRoomsAndInvoicesInOneGo() throws Exception {
+        String token = adminToken();
+        Room first = room("Import A " + suffix);
+        room("Import B " + suffix);
+
+        String csv = "naam;email;wachtwoord;kamer;huur;welkomstmail\n"
+                + "Anna " + suffix + ";anna-" + suffix + "@test.com;wachtwoord-anna;" + first.getName().toUpperCase() + ";350,00;nee\n"
+                + "Bram " + suffix + ";bram-" + suffix + "@test.com;wachtwoord-bram;;375,50;nee\n";
+
+        String body = mockMvc.perform(post("/api/admin/students/import")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.invoicesCreated").value(2))
+                .andExpect(jsonPath("$.welcomeMailsQueued").value(0))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        JsonNode students = objectMapper.readTree(body).get("students");
+        students.forEach(student -> deleteUserAfterwards(student.get("id").asLong()));
+
+        User anna = userRepository.findByEmailIgnoreCase("anna-" + suffix + "@test.com").orElseThrow();
+        assertThat(anna.getRole()).isEqualTo(User.Role.STUDENT);
+        assertThat(passwordEncoder.matches("wachtwoord-anna", anna.getPassword())).isTrue();
+        assertThat(roomRepository.findById(first.getId()).orElseThrow().getOccupant().getId()).isEqualTo(anna.getId());
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT amount FROM invoices WHERE student_id = ?", BigDecimal.class,
+                students.get(1).get("id").asLong())).isEqualByComparingTo("375.50");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM cleaning_tasks WHERE assigned_to_id = ?",
+                Integer.class, anna.getId())).isPositive();
+    }
+
+    @Test
+    void jsonImport_withInvalidRows_reportsThemAndWritesNothing() throws Exception {
+        String token = adminToken();
+        Room taken = room("Import C " + suffix);
+        String existingEmail = "import-admin-" + suffix + "@test.com";
+        jdbcTemplate.update("UPDATE rooms SET occupant_id = (SELECT id FROM users WHERE email = ?) WHERE id = ?",
+                existingEmail, taken.getId());
+
+        String rows = """
+                [
+                  {"username": "Cas %1$s", "email": "cas-%1$s@test.com", "password": "wachtwoord-cas", "rentAmount": 350},
+                  {"username": "Dirk %1$s", "email": "%2$s", "password": "wachtwoord-dirk", "rentAmount": 350},
+                  {"username": "Eva %1$s", "email": "eva-%1$s@test.com", "password": "wachtwoord-eva", "room": "%3$s", "rentAmount": 350}
+                ]
+                """.formatted(suffix, existingEmail, taken.getName());
+
+        mockMvc.perform(post("/api/admin/students/import")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(rows))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.rowErrors.length()").value(2))
+                .andExpect(jsonPath("$.rowErrors[0].row").value(2))
+                .andExpect(jsonPath("$.rowErrors[0].field").value("email"))
+                .andExpect(jsonPath("$.rowErrors[1].row").value(3))
+                .andExpect(jsonPath("$.rowErrors[1].field").value("room"));
+
+        assertThat(userRepository.findByEmailIgnoreCase("cas-" + suffix + "@test.com")).isEmpty();
+    }
+}
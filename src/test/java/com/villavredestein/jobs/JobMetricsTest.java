@@ -0,0 +1,55 @@
+package com.villavredestein.jobs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobMetricsTest {
+
+    private static final Instant NOW = Instant.parse("2025-07-01T07:00:00Z");
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JobMetrics jobMetrics = new JobMetrics(registry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void successfulRun_recordsTimerCountersAndLastSuccess() {
+        try (JobMetrics.Run run = jobMetrics.start("invoice-reminder")) {
+            run.processed();
+            run.processed();
+            run.processed();
+            run.skipped("max_reminders");
+            run.skipped("outside_due_window");
+            run.skipped("max_reminders");
+            run.sent();
+            run.succeeded();
+        }
+
+        assertThat(registry.get("jobs.run").tags("job", "invoice-reminder", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("jobs.items.processed").tag("job", "invoice-reminder").counter().count()).isEqualTo(3);
+        assertThat(registry.get("jobs.items.skipped").tags("job", "invoice-reminder", "reason", "max_reminders")
+                .counter().count()).isEqualTo(2);
+        assertThat(registry.get("jobs.items.skipped").tags("job", "invoice-reminder", "reason", "outside_due_window")
+                .counter().count()).isEqualTo(1);
+        assertThat(registry.get("jobs.items.sent").tag("job", "invoice-reminder").counter().count()).isEqualTo(1);
+        assertThat(registry.get("jobs.last.success").tag("job", "invoice-reminder").gauge().value())
+                .isEqualTo(NOW.getEpochSecond());
+    }
+
+    @Test
+    void runWithoutSucceeded_recordsFailureAndKeepsLastSuccess() {
+        try (JobMetrics.Run run = jobMetrics.start("overdue-invoice")) {
+            run.failed();
+        }
+
+        assertThat(registry.get("jobs.run").tags("job", "overdue-invoice", "outcome", "failure").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("jobs.items.failed").tag("job", "overdue-invoice").counter().count()).isEqualTo(1);
+        assertThat(registry.get("jobs.last.success").tag("job", "overdue-invoice").gauge().value()).isZero();
+    }
+}
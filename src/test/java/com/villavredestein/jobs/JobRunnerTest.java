@@ -0,0 +1,130 @@
+package com.villavredestein.jobs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JobRunnerTest {
+
+    private final JobMetrics jobMetrics = new JobMetrics(new SimpleMeterRegistry());
+    private final JobRunner runner = new JobRunner(1, 1, 10, Clock.systemUTC());
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    private static JobRun awaitFinished(JobRun run) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!run.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(run.isFinished()).as("run finished").isTrue();
+        return run;
+    }
+
+    private static BooleanSupplier blockUntil(CountDownLatch started, CountDownLatch release) {
+        return () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+    }
+
+    @Test
+    void submit_reportsOutcomesThroughJobMetrics() throws InterruptedException {
+        JobRunner.Submission submission = runner.submit("invoice-reminder", () -> {
+            try (JobMetrics.Run run = jobMetrics.start("invoice-reminder")) {
+                run.processed();
+                run.processed();
+                run.processed();
+                run.sent();
+                run.failed();
+                run.skipped("max_reminders");
+                run.succeeded();
+            }
+            return true;
+        });
+
+        assertThat(submission.deduplicated()).isFalse();
+        JobRun run = awaitFinished(submission.run());
+        assertThat(run.getStatus()).isEqualTo(JobRun.Status.SUCCEEDED);
+        assertThat(run.getProcessed()).isEqualTo(3);
+        assertThat(run.getSent()).isEqualTo(1);
+        assertThat(run.getFailed()).isEqualTo(1);
+        assertThat(run.getSkipped()).isEqualTo(Map.of("max_reminders", 1));
+        assertThat(run.getDuration(run.getFinishedAt())).isNotNull();
+        assertThat(runner.find(run.getId())).contains(run);
+    }
+
+    @Test
+    void submit_whileSameJobRuns_returnsExistingRun() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JobRunner.Submission first = runner.submit("overdue-invoice", blockUntil(started, release));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        JobRunner.Submission second = runner.submit("overdue-invoice", () -> true);
+
+        assertThat(second.deduplicated()).isTrue();
+        assertThat(second.run()).isSameAs(first.run());
+        assertThat(second.run().getStatus()).isEqualTo(JobRun.Status.RUNNING);
+        release.countDown();
+        awaitFinished(first.run());
+
+        JobRunner.Submission third = runner.submit("overdue-invoice", () -> true);
+        assertThat(third.deduplicated()).isFalse();
+        assertThat(third.run()).isNotSameAs(first.run());
+    }
+
+    @Test
+    void taskThatDidNotGetTheLock_isSkipped() throws InterruptedException {
+        JobRun run = awaitFinished(runner.submit("monthly-rent-invoice", () -> false).run());
+
+        assertThat(run.getStatus()).isEqualTo(JobRun.Status.SKIPPED);
+    }
+
+    @Test
+    void throwingTask_isFailedWithError() throws InterruptedException {
+        JobRun run = awaitFinished(runner.submit("missed-cleaning-task", () -> {
+            throw new IllegalStateException("mail server down");
+        }).run());
+
+        assertThat(run.getStatus()).isEqualTo(JobRun.Status.FAILED);
+        assertThat(run.getError()).isEqualTo("mail server down");
+    }
+
+    @Test
+    void fullQueue_rejectsWith503() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        runner.submit("job-a", blockUntil(started, release));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        JobRun queued = runner.submit("job-b", () -> true).run();
+        assertThat(queued.getStatus()).isEqualTo(JobRun.Status.QUEUED);
+
+        assertThatThrownBy(() -> runner.submit("job-c", () -> true))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        release.countDown();
+        awaitFinished(queued);
+        assertThat(runner.submit("job-c", () -> true).deduplicated()).isFalse();
+    }
+}
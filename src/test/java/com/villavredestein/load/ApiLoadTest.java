@@ -0,0 +1,227 @@
+package com.villavredestein.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.villavredestein.security.JwtService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Seeds a production-sized dataset and drives the main read endpoints concurrently over real HTTP,
+ * reporting throughput and p50/p95/p99 per endpoint to stdout and {@code target/load-test-report.json}.
+ *
+ * <p>Not part of {@code mvn test} or {@code mvn verify}; run it with {@code mvn verify -Pload}.
+ * Volumes and concurrency can be tuned with {@code -Dload.students=5000 -Dload.years=5
+ * -Dload.cleaning-tasks=40000 -Dload.concurrency=16 -Dload.requests=400}; add
+ * {@code -Dspring.threads.virtual.enabled=true} to compare against virtual threads.</p>
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ApiLoadTest {
+
+    private static final int STUDENTS = Integer.getInteger("load.students", 5000);
+    private static final int CLEANERS = Integer.getInteger("load.cleaners", 10);
+    private static final int YEARS = Integer.getInteger("load.years", 5);
+    private static final int CLEANING_TASKS = Integer.getInteger("load.cleaning-tasks", 40_000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 400);
+    // Admin "list everything" endpoints return the whole table; fewer requests keep the run bounded.
+    private static final int LIST_ALL_REQUESTS = Integer.getInteger("load.list-all-requests", 20);
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("villavredestein_load")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    private String adminToken;
+    private List<String> studentTokens;
+    private List<String> cleanerTokens;
+
+    @BeforeAll
+    void seed() {
+        new LoadTestDataSeeder(jdbcTemplate).seed(passwordEncoder.encode("load-test"), STUDENTS, CLEANERS, YEARS, CLEANING_TASKS);
+
+        adminToken = jwtService.generateToken(LoadTestDataSeeder.ADMIN_EMAIL, "ADMIN");
+        // Tokens for a sample of students; signing 5k tokens up front would only slow the setup down.
+        studentTokens = new ArrayList<>();
+        for (int i = 1; i <= Math.min(STUDENTS, 200); i++) {
+            studentTokens.add(jwtService.generateToken(LoadTestDataSeeder.studentEmail(i * Math.max(STUDENTS / 200, 1)), "STUDENT"));
+        }
+        cleanerTokens = new ArrayList<>();
+        for (int i = 1; i <= CLEANERS; i++) {
+            cleanerTokens.add(jwtService.generateToken(LoadTestDataSeeder.cleanerEmail(i), "CLEANER"));
+        }
+    }
+
+    @Test
+    void mainEndpoints_underConcurrentLoad() throws Exception {
+        List<EndpointStats> results = new ArrayList<>();
+
+        results.add(run("GET /api/users/me", "/api/users/me", this::randomStudent, REQUESTS));
+        results.add(run("GET /api/invoices/me", "/api/invoices/me", this::randomStudent, REQUESTS));
+        results.add(run("GET /api/payments/me", "/api/payments/me", this::randomStudent, REQUESTS));
+        results.add(run("GET /api/payments/me/open", "/api/payments/me/open", this::randomStudent, REQUESTS));
+        results.add(run("GET /api/cleaning/tasks/me", "/api/cleaning/tasks/me", this::randomStudent, REQUESTS));
+        results.add(run("GET /api/cleaning/tasks?weekNumber", "/api/cleaning/tasks?weekNumber=12", this::randomStudent, REQUESTS));
+        results.add(run("GET /api/shifts/me", "/api/shifts/me", this::randomCleaner, REQUESTS));
+
+        results.add(run("GET /api/users", "/api/users", () -> adminToken, LIST_ALL_REQUESTS));
+        results.add(run("GET /api/invoices", "/api/invoices", () -> adminToken, LIST_ALL_REQUESTS));
+        results.add(run("GET /api/payments", "/api/payments", () -> adminToken, LIST_ALL_REQUESTS));
+        results.add(run("GET /api/shifts", "/api/shifts", () -> adminToken, LIST_ALL_REQUESTS));
+        results.add(run("GET /api/cleaning/tasks", "/api/cleaning/tasks", () -> adminToken, LIST_ALL_REQUESTS));
+
+        report(results);
+
+        assertThat(results).allSatisfy(stats ->
+                assertThat(stats.errors()).as("errors for %s", stats.endpoint()).isZero());
+    }
+
+    private EndpointStats run(String name, String path, Supplier<String> token, int requests) throws Exception {
+        URI uri = URI.create("http://localhost:" + port + path);
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < CONCURRENCY; w++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Authorization", "Bearer " + token.get())
+                                .timeout(Duration.ofSeconds(60))
+                                .GET()
+                                .build();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - sent;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return EndpointStats.of(name, latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private String randomStudent() {
+        return studentTokens.get(ThreadLocalRandom.current().nextInt(studentTokens.size()));
+    }
+
+    private String randomCleaner() {
+        return cleanerTokens.get(ThreadLocalRandom.current().nextInt(cleanerTokens.size()));
+    }
+
+    private void report(List<EndpointStats> results) throws Exception {
+        StringBuilder table = new StringBuilder()
+                .append(String.format("%nLoad test: %d students, %d years, %d cleaning tasks, concurrency %d, %s threads%n",
+                        STUDENTS, YEARS, CLEANING_TASKS, CONCURRENCY, virtualThreads ? "virtual" : "platform"))
+                .append(EndpointStats.tableHeader()).append('\n');
+        List<Map<String, Object>> json = new ArrayList<>();
+        for (EndpointStats stats : results) {
+            table.append(stats.toTableRow()).append('\n');
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", stats.endpoint());
+            row.put("requests", stats.requests());
+            row.put("errors", stats.errors());
+            row.put("throughputPerSecond", stats.throughputPerSecond());
+            row.put("p50Ms", stats.p50Ms());
+            row.put("p95Ms", stats.p95Ms());
+            row.put("p99Ms", stats.p99Ms());
+            row.put("maxMs", stats.maxMs());
+            json.add(row);
+        }
+        System.out.println(table);
+
+        Map<String, Object> dataset = new LinkedHashMap<>();
+        dataset.put("students", STUDENTS);
+        dataset.put("years", YEARS);
+        dataset.put("cleaningTasks", CLEANING_TASKS);
+        dataset.put("concurrency", CONCURRENCY);
+        dataset.put("virtualThreads", virtualThreads);
+
+        Path file = Path.of("target", "load-test-report.json");
+        Files.createDirectories(file.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValue(file.toFile(), Map.of("dataset", dataset, "endpoints", json));
+    }
+}
@@ -0,0 +1,121 @@
+package com.villavredestein.load;
+
+import com.villavredestein.config.QueryStats;
+import com.villavredestein.repository.CleaningTaskRepository;
+import com.villavredestein.service.CleaningScheduleService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Times {@link CleaningScheduleService#reseedNow()} for the largest house the rotation supports, once with JDBC batching switched off
+ * for the session (one round trip per task, like the old IDENTITY ids forced) and once with the configured
+ * {@code hibernate.jdbc.batch_size}. Run with {@code mvn verify -Pload -Dit.test=CleaningScheduleReseedLoadTest}.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CleaningScheduleReseedLoadTest {
+
+    // The rotation has one week per student plus a free week, and week numbers stop at 53.
+    private static final int STUDENTS = Math.min(Integer.getInteger("load.students", 52), 52);
+    private static final int ROUNDS = Integer.getInteger("load.rounds", 20);
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("villavredestein_load")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @Autowired
+    private CleaningScheduleService cleaningScheduleService;
+
+    @Autowired
+    private CleaningTaskRepository cleaningTaskRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @BeforeAll
+    void seed() {
+        new LoadTestDataSeeder(jdbcTemplate).seedStudents("{noop}load-test", STUDENTS);
+    }
+
+    @Test
+    void reseedNow_batchedVersusUnbatched() {
+        Run unbatched = measure(1);
+        Run batched = measure(batchSize);
+
+        System.out.printf("%nreseedNow with %d students (%d tasks), average of %d rounds%n",
+                STUDENTS, cleaningTaskRepository.count(), ROUNDS);
+        System.out.printf("  batch size %3d: %7.1f ms, %6d statements%n", 1, unbatched.millis(), unbatched.statements());
+        System.out.printf("  batch size %3d: %7.1f ms, %6d statements%n", batchSize, batched.millis(), batched.statements());
+        System.out.printf("  speedup: %.1fx%n", unbatched.millis() / batched.millis());
+
+        assertThat(cleaningTaskRepository.count()).isEqualTo((STUDENTS + 1) * 4L);
+        assertThat(batched.statements()).isLessThan(unbatched.statements() / 10);
+    }
+
+    private Run measure(int sessionBatchSize) {
+        reseed(sessionBatchSize); // warm-up
+        long totalNanos = 0;
+        int statements = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            QueryStats stats = QueryStats.begin();
+            long start = System.nanoTime();
+            try {
+                reseed(sessionBatchSize);
+            } finally {
+                QueryStats.end();
+            }
+            totalNanos += System.nanoTime() - start;
+            statements = stats.queries();
+        }
+        return new Run(totalNanos / ROUNDS / 1_000_000.0, statements);
+    }
+
+    private void reseed(int sessionBatchSize) {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(sessionBatchSize);
+            cleaningScheduleService.reseedNow();
+        });
+    }
+
+    private record Run(double millis, int statements) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.villavredestein.load;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of hammering one endpoint: throughput over the wall-clock time of the run
+ * and nearest-rank latency percentiles over all requests (errors included).
+ */
+record EndpointStats(String endpoint, int requests, int errors, long wallNanos,
+                     double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+
+    static EndpointStats of(String endpoint, long[] latencyNanos, int errors, long wallNanos) {
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        return new EndpointStats(endpoint, sorted.length, errors, wallNanos,
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]));
+    }
+
+    double throughputPerSecond() {
+        return wallNanos == 0 ? 0 : requests / (wallNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    String toTableRow() {
+        return String.format("%-34s %7d %6d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                endpoint, requests, errors, throughputPerSecond(), p50Ms, p95Ms, p99Ms, maxMs);
+    }
+
+    static String tableHeader() {
+        return String.format("%-34s %7s %6s %9s %9s %9s %9s %9s",
+                "endpoint", "reqs", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return toMillis(sorted[Math.max(rank, 1) - 1]);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,151 @@
+package com.villavredestein.load;
+
+import com.villavredestein.repository.ExportRepository.Dataset;
+import com.villavredestein.service.ExportService;
+import com.villavredestein.service.ExportService.Format;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports {@code load.payments} synthetic payments (default 1,000,000) as CSV and as JSON lines, and samples the
+ * live heap after a full GC every 250k rows: the export must not hold on to rows it has written. Run with
+ * {@code mvn verify -Pload -Dit.test=ExportLoadTest}; the load profile caps the heap at 128 MB
+ * ({@code -Dload.heap=...}), so an export that buffers its rows fails with an {@link OutOfMemoryError}.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ExportLoadTest {
+
+    private static final int PAYMENTS = Integer.getInteger("load.payments", 1_000_000);
+    private static final int SAMPLE_EVERY = 250_000;
+    private static final long MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("villavredestein_load")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        new LoadTestDataSeeder(jdbcTemplate).seedStudents("{noop}load-test", 200);
+        long start = System.nanoTime();
+        jdbcTemplate.update("""
+                INSERT INTO payments (id, amount, created_at, paid_at, status, description, student_id)
+                SELECT nextval('payments_seq'), 350.00, t, t + interval '2 days', 'PAID',
+                       'Huur, overboeking ' || g, s.id
+                FROM generate_series(1, ?) g
+                CROSS JOIN LATERAL (SELECT timestamp '2020-01-01' + (g % 1800) * interval '1 day' AS t) d
+                JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS rn FROM users WHERE role = 'STUDENT') s
+                  ON s.rn = g % 200
+                """, PAYMENTS);
+        jdbcTemplate.execute("ANALYZE payments");
+        System.out.printf("%nSeeded %d payments in %d ms%n", PAYMENTS, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Counts rows by their line breaks and samples the heap every {@link #SAMPLE_EVERY} rows. */
+    private static final class SamplingOutputStream extends OutputStream {
+        private final long baseline;
+        private long bytes;
+        private long lines;
+        private long maxRetained;
+
+        SamplingOutputStream(long baseline) {
+            this.baseline = baseline;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n' && ++lines % SAMPLE_EVERY == 0) {
+                    maxRetained = Math.max(maxRetained, usedHeapAfterGc() - baseline);
+                }
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private SamplingOutputStream export(Format format) throws IOException {
+        SamplingOutputStream out = new SamplingOutputStream(usedHeapAfterGc());
+        long start = System.nanoTime();
+        long rows = exportService.export(Dataset.PAYMENTS, format, null, null, out);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        System.out.printf("  %-6s: %8d rows, %6.1f MB, %8.1f ms, max retained %5.1f MB%n", format, rows,
+                out.bytes / 1024.0 / 1024, millis, out.maxRetained / 1024.0 / 1024);
+        assertThat(rows).isEqualTo(PAYMENTS);
+        return out;
+    }
+
+    @Test
+    void export_millionPayments_constantMemory() throws IOException {
+        System.out.printf("%nExport of %d payments (heap max %d MB)%n", PAYMENTS,
+                Runtime.getRuntime().maxMemory() / 1024 / 1024);
+
+        SamplingOutputStream csv = export(Format.CSV);
+        SamplingOutputStream ndjson = export(Format.NDJSON);
+
+        assertThat(csv.lines).isEqualTo(PAYMENTS + 1L);
+        assertThat(ndjson.lines).isEqualTo(PAYMENTS);
+        assertThat(csv.maxRetained).isLessThan(MAX_RETAINED_BYTES);
+        assertThat(ndjson.maxRetained).isLessThan(MAX_RETAINED_BYTES);
+    }
+
+    @Test
+    void export_dateRange_usesOnlyMatchingRows() throws IOException {
+        LocalDate from = LocalDate.of(2021, 3, 1);
+        LocalDate to = LocalDate.of(2021, 3, 31);
+        Long expected = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM payments WHERE coalesce(paid_at, created_at) >= ? AND coalesce(paid_at, created_at) < ?",
+                Long.class, from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+
+        long rows = exportService.export(Dataset.PAYMENTS, Format.CSV, from, to, OutputStream.nullOutputStream());
+
+        assertThat(expected).isPositive();
+        assertThat(rows).isEqualTo(expected);
+    }
+}
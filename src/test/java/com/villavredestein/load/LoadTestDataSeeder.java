@@ -0,0 +1,112 @@
+package com.villavredestein.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Seeds production-like volumes straight into Postgres with {@code generate_series}, so seeding 300k invoices
+ * takes seconds instead of minutes of JPA inserts. All seeded accounts share one password hash.
+ */
+class LoadTestDataSeeder {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestDataSeeder.class);
+
+    static final String ADMIN_EMAIL = "loadadmin@load.villavredestein.test";
+    static final String DOMAIN = "@load.villavredestein.test";
+
+    private final JdbcTemplate jdbc;
+
+    LoadTestDataSeeder(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    static String studentEmail(int n) {
+        return "student" + n + DOMAIN;
+    }
+
+    static String cleanerEmail(int n) {
+        return "cleaner" + n + DOMAIN;
+    }
+
+    void seed(String passwordHash, int students, int cleaners, int years, int cleaningTasks) {
+        long start = System.nanoTime();
+
+        jdbc.update("""
+                INSERT INTO users (username, email, password, role, status_toggle, full_name)
+                VALUES ('loadadmin', ?, ?, 'ADMIN', true, 'Load Admin')
+                """, ADMIN_EMAIL, passwordHash);
+        insertUsers("student", "STUDENT", students, passwordHash);
+        insertUsers("cleaner", "CLEANER", cleaners, passwordHash);
+
+        jdbc.update("""
+                INSERT INTO rooms (name, occupant_id)
+                SELECT 'Kamer ' || u.id, u.id FROM users u WHERE u.role = 'STUDENT'
+                """);
+
+        int invoices = jdbc.update("""
+                INSERT INTO invoices (id, title, description, amount, issue_date, due_date, invoice_month, invoice_year,
+                                      reminder_count, status, paid_at, student_id)
+                SELECT nextval('invoices_seq'), 'Huur ' || to_char(m, 'MM-YYYY'), 'Maandelijkse huur', 350.00,
+                       m::date, (m + interval '7 days')::date,
+                       extract(month FROM m)::int, extract(year FROM m)::int,
+                       CASE WHEN s.status = 'OVERDUE' THEN 2 ELSE 0 END,
+                       s.status,
+                       CASE WHEN s.status = 'PAID' THEN m + interval '3 days' END,
+                       u.id
+                FROM users u
+                CROSS JOIN generate_series(date_trunc('month', now()) - make_interval(months => ?),
+                                           date_trunc('month', now()), interval '1 month') m
+                CROSS JOIN LATERAL (SELECT CASE
+                        WHEN m = date_trunc('month', now()) THEN 'OPEN'
+                        WHEN (u.id + extract(month FROM m)::int) % 25 = 0 THEN 'OVERDUE'
+                        ELSE 'PAID' END AS status) s
+                WHERE u.role = 'STUDENT'
+                """, years * 12 - 1);
+
+        int payments = jdbc.update("""
+                INSERT INTO payments (id, amount, created_at, paid_at, status, description, student_id)
+                SELECT nextval('payments_seq'), amount, issue_date + time '09:00', paid_at, 'PAID', title, student_id
+                FROM invoices WHERE status = 'PAID'
+                """);
+
+        int shifts = jdbc.update("""
+                INSERT INTO shifts (id, cleaner_id, shift_date, check_in_at, check_out_at, notes)
+                SELECT nextval('shifts_seq'), c.id, d::date, d::date + time '08:00', d::date + time '12:00', NULL
+                FROM users c
+                CROSS JOIN generate_series(current_date - make_interval(years => ?), (current_date - 1)::timestamp, interval '1 day') d
+                WHERE c.role = 'CLEANER' AND (c.id + extract(doy FROM d)::int) % 3 = 0
+                """, years);
+
+        int tasks = jdbc.update("""
+                WITH s AS (SELECT id, row_number() OVER (ORDER BY id) AS rn, count(*) OVER () AS total
+                           FROM users WHERE role = 'STUDENT')
+                INSERT INTO cleaning_tasks (id, week_number, name, description, completed, deadline, role_access, assigned_to_id)
+                SELECT nextval('cleaning_tasks_seq'), g % 52 + 1, 'Taak ' || g, 'Keuken, gang en badkamer', g % 3 = 0,
+                       current_date + (g % 52) * 7, 'ROLE_ALL', s.id
+                FROM generate_series(1, ?) g
+                JOIN s ON s.rn = g % s.total + 1
+                """, cleaningTasks);
+
+        for (String table : List.of("users", "rooms", "invoices", "payments", "shifts", "cleaning_tasks")) {
+            jdbc.execute("ANALYZE " + table);
+        }
+
+        log.info("Seeded {} students, {} cleaners, {} invoices, {} payments, {} shifts, {} cleaning tasks in {} ms",
+                students, cleaners, invoices, payments, shifts, tasks, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    void seedStudents(String passwordHash, int students) {
+        insertUsers("student", "STUDENT", students, passwordHash);
+    }
+
+    private void insertUsers(String prefix, String role, int count, String passwordHash) {
+        jdbc.update("""
+                INSERT INTO users (username, email, password, role, status_toggle, full_name)
+                SELECT ?::text || g, ?::text || g || ?::text, ?, ?, true, initcap(?::text) || ' ' || g
+                FROM generate_series(1, ?) g
+                """, prefix, prefix, DOMAIN, passwordHash, role, prefix, count);
+    }
+}
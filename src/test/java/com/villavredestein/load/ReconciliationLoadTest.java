@@ -0,0 +1,152 @@
+package com.villavredestein.load;
+
+import com.villavredestein.repository.BankStatementRepository;
+import com.villavredestein.service.InvoicePdfCache;
+import com.villavredestein.service.LedgerService;
+import com.villavredestein.service.ReconciliationService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reconciles a year of bank statements: twelve monthly CSV exports with one rent payment per invoice of
+ * {@code load.students} students (default 2000), plus bank costs and unknown transfers. Run with
+ * {@code mvn verify -Pload -Dit.test=ReconciliationLoadTest}.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReconciliationLoadTest {
+
+    private static final int STUDENTS = Integer.getInteger("load.students", 2000);
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("villavredestein_load")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @Autowired
+    private BankStatementRepository bankStatementRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private InvoicePdfCache pdfCache;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    static Path statements;
+
+    private int invoices;
+
+    @BeforeAll
+    void seed() throws IOException {
+        new LoadTestDataSeeder(jdbcTemplate).seed("{noop}load-test", STUDENTS, 0, 1, 0);
+        // Nothing is paid yet: the statements below pay every invoice.
+        jdbcTemplate.update("DELETE FROM payments");
+        jdbcTemplate.update("UPDATE invoices SET status = 'OPEN', paid_at = NULL");
+        jdbcTemplate.execute("ANALYZE invoices");
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("""
+                SELECT i.id, i.invoice_year, i.invoice_month, u.id AS student_id, u.full_name
+                FROM invoices i JOIN users u ON u.id = i.student_id
+                ORDER BY i.invoice_year, i.invoice_month, i.id
+                """);
+        invoices = rows.size();
+
+        // One file per month; a third of the payments names the invoice number, the rest only the payer.
+        BufferedWriter out = null;
+        String month = null;
+        int line = 0;
+        for (Map<String, Object> row : rows) {
+            String rowMonth = row.get("invoice_year") + "-" + String.format("%02d", (Integer) row.get("invoice_month"));
+            if (!rowMonth.equals(month)) {
+                if (out != null) {
+                    out.close();
+                }
+                month = rowMonth;
+                out = Files.newBufferedWriter(statements.resolve(month + ".csv"));
+                out.write("Datum;Naam / Omschrijving;Tegenrekening;Af Bij;Bedrag (EUR);Mededelingen\n");
+            }
+            long id = ((Number) row.get("id")).longValue();
+            long studentId = ((Number) row.get("student_id")).longValue();
+            String date = month.replace("-", "") + "05";
+            String iban = String.format("NL%02dTEST%010d", studentId % 97, studentId);
+            String remittance = id % 3 == 0 ? "Huur " + month + " factuur " + id : "Huur " + month;
+            out.write(date + ";" + row.get("full_name") + ";" + iban + ";Bij;350,00;" + remittance + "\n");
+            if (++line % 50 == 0) {
+                out.write(date + ";Bank;;Af;12,50;Kosten\n");
+                out.write(date + ";Onbekend " + line + ";NL00ZZZZ0000000000;Bij;25,00;Borg\n");
+            }
+        }
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    @Test
+    void reconcile_aYearOfStatements() {
+        ReconciliationService service = new ReconciliationService(bankStatementRepository, transactionManager,
+                pdfCache, ledgerService, statements.toString(), 500);
+
+        long start = System.nanoTime();
+        ReconciliationService.Result full = service.reconcile(true, outcome -> {
+        });
+        double fullMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        start = System.nanoTime();
+        ReconciliationService.Result again = service.reconcile(true, outcome -> {
+        });
+        double againMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        System.out.printf("%nReconciliation of %d files, %d entries, %d invoices%n", full.files(), full.entries(), invoices);
+        System.out.printf("  first run      : %8.1f ms, %6d matched, %6d unmatched%n",
+                fullMillis, full.matched(), full.unmatched());
+        System.out.printf("  incremental run: %8.1f ms, %6d files skipped%n", againMillis, again.skippedFiles());
+
+        assertThat(full.matched()).isEqualTo(invoices);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM invoices WHERE status = 'PAID'", Integer.class))
+                .isEqualTo(invoices);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM payments WHERE invoice_id IS NOT NULL", Integer.class))
+                .isEqualTo(invoices);
+        assertThat(again.skippedFiles()).isEqualTo(full.files());
+        assertThat(again.entries()).isZero();
+    }
+}
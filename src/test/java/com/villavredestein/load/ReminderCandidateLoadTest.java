@@ -0,0 +1,144 @@
+package com.villavredestein.load;
+
+import com.villavredestein.config.QueryStats;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.service.InvoiceService;
+import com.villavredestein.service.ReminderPolicy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reminder candidates from {@code load.invoices} invoices (default 100k), the way the jobs used to select them
+ * (load every invoice with a matching status, touch its student, filter in Java) versus the compiled
+ * {@link ReminderPolicy} query. Run with {@code mvn verify -Pload -Dit.test=ReminderCandidateLoadTest}.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReminderCandidateLoadTest {
+
+    private static final int INVOICES = Integer.getInteger("load.invoices", 100_000);
+    private static final int ROUNDS = Integer.getInteger("load.rounds", 5);
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("villavredestein_load")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeAll
+    void seed() {
+        // One year of monthly invoices: the current month is open, about 4% of the older ones overdue.
+        new LoadTestDataSeeder(jdbcTemplate).seed("{noop}load-test", (INVOICES + 11) / 12, 0, 1, 0);
+        // As after earlier runs: a third was reminded two hours ago, a seventh has had its last reminder.
+        jdbcTemplate.update("UPDATE invoices SET last_reminder_sent_at = localtimestamp - interval '2 hours' WHERE id % 3 = 0");
+        jdbcTemplate.update("UPDATE invoices SET reminder_count = 5 WHERE id % 7 = 0");
+        jdbcTemplate.execute("ANALYZE invoices");
+    }
+
+    @Test
+    void compiledPolicy_versusLoadAndFilter() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Map.Entry<String, ReminderPolicy>> policies = List.of(
+                Map.entry("overdue", ReminderPolicy.overdue(5, 24)),
+                Map.entry("unpaid this month", ReminderPolicy.unpaidFor(YearMonth.from(now), ReminderPolicy.Contact.EMAIL)));
+
+        System.out.printf("%nReminder candidates from %d invoices, average of %d rounds%n",
+                jdbcTemplate.queryForObject("SELECT count(*) FROM invoices", Long.class), ROUNDS);
+        for (Map.Entry<String, ReminderPolicy> entry : policies) {
+            ReminderPolicy policy = entry.getValue();
+            Run legacy = measure(() -> loadAndFilter(policy, now));
+            Run compiled = measure(() -> invoiceService.findReminderCandidates(policy, now).stream()
+                    .peek(invoice -> invoice.getStudent().getEmail())
+                    .map(Invoice::getId)
+                    .collect(Collectors.toSet()));
+
+            System.out.printf("  %s%n", entry.getKey());
+            System.out.printf("    load + filter: %8.1f ms, %6d statements, %7d entities, %6d candidates%n",
+                    legacy.millis(), legacy.statements(), legacy.entities(), legacy.candidates().size());
+            System.out.printf("    compiled     : %8.1f ms, %6d statements, %7d entities, %6d candidates%n",
+                    compiled.millis(), compiled.statements(), compiled.entities(), compiled.candidates().size());
+
+            assertThat(compiled.candidates()).isEqualTo(legacy.candidates()).isNotEmpty();
+            assertThat(compiled.statements()).isEqualTo(1);
+            assertThat(compiled.entities()).isLessThan(legacy.entities());
+        }
+    }
+
+    /** What the jobs did before: every invoice in the status set, its student loaded on access, filtered in Java. */
+    private Set<Long> loadAndFilter(ReminderPolicy policy, LocalDateTime now) {
+        return entityManager.createQuery("SELECT i FROM Invoice i WHERE i.status IN :statuses", Invoice.class)
+                .setParameter("statuses", policy.statuses())
+                .getResultStream()
+                .filter(invoice -> policy.matches(invoice, now))
+                .map(Invoice::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private Run measure(Supplier<Set<Long>> selection) {
+        transactionTemplate.execute(status -> selection.get()); // warm-up
+        long totalNanos = 0;
+        Run last = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            QueryStats stats = QueryStats.begin();
+            long start = System.nanoTime();
+            Set<Long> candidates;
+            try {
+                candidates = transactionTemplate.execute(status -> selection.get());
+            } finally {
+                QueryStats.end();
+            }
+            totalNanos += System.nanoTime() - start;
+            last = new Run(0, stats.queries(), stats.entityLoads(), candidates);
+        }
+        return new Run(totalNanos / ROUNDS / 1_000_000.0, last.statements(), last.entities(), last.candidates());
+    }
+
+    private record Run(double millis, int statements, int entities, Set<Long> candidates) {
+    }
+}
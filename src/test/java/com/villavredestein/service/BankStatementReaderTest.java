@@ -0,0 +1,164 @@
+package com.villavredestein.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BankStatementReaderTest {
+
+    private static final String CAMT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Document xmlns="urn:iso:std:iso:20022:tech:xsd:camt.053.001.02">
+              <BkToCstmrStmt><Stmt>
+                <Ntry>
+                  <Amt Ccy="EUR">350.00</Amt>
+                  <CdtDbtInd>CRDT</CdtDbtInd>
+                  <BookgDt><Dt>2025-03-04</Dt></BookgDt>
+                  <AcctSvcrRef>BANKREF-1</AcctSvcrRef>
+                  <NtryDtls><TxDtls>
+                    <RltdPties>
+                      <Dbtr><Nm>Zoë van der Berg</Nm></Dbtr>
+                      <DbtrAcct><Id><IBAN>NL91ABNA0417164300</IBAN></Id></DbtrAcct>
+                      <Cdtr><Nm>Villa Vredestein</Nm></Cdtr>
+                    </RltdPties>
+                    <RmtInf><Ustrd>Huur maart factuur #42</Ustrd></RmtInf>
+                  </TxDtls></NtryDtls>
+                </Ntry>
+                <Ntry>
+                  <Amt Ccy="EUR">12.50</Amt>
+                  <CdtDbtInd>DBIT</CdtDbtInd>
+                  <BookgDt><DtTm>2025-03-05T10:15:00</DtTm></BookgDt>
+                  <NtryDtls><TxDtls><RmtInf><Ustrd>Bankkosten</Ustrd></RmtInf></TxDtls></NtryDtls>
+                </Ntry>
+              </Stmt></BkToCstmrStmt>
+            </Document>
+            """;
+
+    private static List<BankStatementReader.Entry> camt(String xml) throws IOException {
+        List<BankStatementReader.Entry> entries = new ArrayList<>();
+        BankStatementReader.readCamt(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), entries::add);
+        return entries;
+    }
+
+    private static List<BankStatementReader.Entry> csv(String text) throws IOException {
+        List<BankStatementReader.Entry> entries = new ArrayList<>();
+        BankStatementReader.readCsv(new BufferedReader(new StringReader(text)), entries::add);
+        return entries;
+    }
+
+    @Test
+    void readCamt_readsCreditAndDebitEntries() throws IOException {
+        List<BankStatementReader.Entry> entries = camt(CAMT);
+
+        assertThat(entries).hasSize(2);
+        BankStatementReader.Entry credit = entries.get(0);
+        assertThat(credit.credit()).isTrue();
+        assertThat(credit.amount()).isEqualByComparingTo("350.00");
+        assertThat(credit.bookingDate()).isEqualTo(LocalDate.of(2025, 3, 4));
+        assertThat(credit.counterpartyName()).isEqualTo("Zoë van der Berg");
+        assertThat(credit.counterpartyIban()).isEqualTo("NL91ABNA0417164300");
+        assertThat(credit.remittance()).isEqualTo("Huur maart factuur #42");
+
+        BankStatementReader.Entry debit = entries.get(1);
+        assertThat(debit.credit()).isFalse();
+        assertThat(debit.bookingDate()).isEqualTo(LocalDate.of(2025, 3, 5));
+        assertThat(debit.counterpartyName()).isNull();
+    }
+
+    @Test
+    void readCamt_refsAreStableAcrossStatements() throws IOException {
+        List<BankStatementReader.Entry> first = camt(CAMT);
+        List<BankStatementReader.Entry> again = camt(CAMT);
+
+        assertThat(again).extracting(BankStatementReader.Entry::entryRef)
+                .containsExactlyElementsOf(first.stream().map(BankStatementReader.Entry::entryRef).toList());
+        assertThat(first.get(0).entryRef()).isNotEqualTo(first.get(1).entryRef()).hasSize(64);
+    }
+
+    @Test
+    void readCamt_rejectsDoctype() {
+        String xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE Document [<!ENTITY x SYSTEM "file:///etc/passwd">]>
+                <Document><Ntry><Amt>1.00</Amt><BookgDt><Dt>2025-01-01</Dt></BookgDt><AddtlNtryInf>&x;</AddtlNtryInf></Ntry></Document>
+                """;
+
+        assertThrows(IOException.class, () -> camt(xml));
+    }
+
+    @Test
+    void readCsv_dutchExportWithDirectionColumn() throws IOException {
+        String text = """
+                ﻿Datum;Naam / Omschrijving;Rekening;Tegenrekening;Af Bij;Bedrag (EUR);Mededelingen
+                20250304;"Berg, Zoe van der";NL00BANK0000000001;NL91ABNA0417164300;Bij;350,00;"Huur; maart #42"
+                20250305;Bankkosten;NL00BANK0000000001;;Af;12,50;
+                """;
+
+        List<BankStatementReader.Entry> entries = csv(text);
+
+        assertThat(entries).hasSize(2);
+        assertThat(entries.get(0).credit()).isTrue();
+        assertThat(entries.get(0).amount()).isEqualByComparingTo("350.00");
+        assertThat(entries.get(0).counterpartyName()).isEqualTo("Berg, Zoe van der");
+        assertThat(entries.get(0).counterpartyIban()).isEqualTo("NL91ABNA0417164300");
+        assertThat(entries.get(0).remittance()).isEqualTo("Huur; maart #42");
+        assertThat(entries.get(1).credit()).isFalse();
+        assertThat(entries.get(1).counterpartyIban()).isNull();
+    }
+
+    @Test
+    void readCsv_signedAmountsWithoutDirectionColumn() throws IOException {
+        String text = """
+                date,amount,name,description
+                2025-03-04,"1,234.56",Zoe,rent
+                2025-03-05,-12.50,Bank,fee
+                """;
+
+        List<BankStatementReader.Entry> entries = csv(text);
+
+        assertThat(entries.get(0).credit()).isTrue();
+        assertThat(entries.get(0).amount()).isEqualByComparingTo("1234.56");
+        assertThat(entries.get(1).credit()).isFalse();
+        assertThat(entries.get(1).amount()).isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    void readCsv_identicalLinesGetDistinctRefs() throws IOException {
+        String line = "2025-03-04,350.00,Zoe,rent\n";
+        List<BankStatementReader.Entry> entries = csv("date,amount,name,description\n" + line + line);
+
+        assertThat(entries.get(0).entryRef()).isNotEqualTo(entries.get(1).entryRef());
+    }
+
+    @Test
+    void readCsv_requiresDateAndAmountColumns() {
+        assertThrows(IllegalArgumentException.class, () -> csv("naam,omschrijving\nZoe,huur\n"));
+    }
+
+    @Test
+    void parseAmount_acceptsDutchAndEnglishNotation() {
+        assertThat(BankStatementReader.parseAmount("1.234,56")).isEqualByComparingTo(new BigDecimal("1234.56"));
+        assertThat(BankStatementReader.parseAmount("€ 350,00")).isEqualByComparingTo(new BigDecimal("350.00"));
+        assertThat(BankStatementReader.parseAmount("-12.50")).isEqualByComparingTo(new BigDecimal("-12.50"));
+    }
+
+    @Test
+    void parseDate_acceptsTheCommonFormats() {
+        LocalDate expected = LocalDate.of(2025, 3, 4);
+        assertThat(BankStatementReader.parseDate("20250304")).isEqualTo(expected);
+        assertThat(BankStatementReader.parseDate("2025-03-04")).isEqualTo(expected);
+        assertThat(BankStatementReader.parseDate("04-03-2025")).isEqualTo(expected);
+        assertThrows(IllegalArgumentException.class, () -> BankStatementReader.parseDate("4 maart"));
+    }
+}
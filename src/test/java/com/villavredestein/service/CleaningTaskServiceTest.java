@@ -231,30 +231,21 @@ class CleaningTaskServiceTest {
 
 
     @Test
-    void toggleTask_completedTrue_setsToFalse() {
+    void toggleTask_flipsInDatabaseAndReturnsReloadedTask() {
         CleaningTask task = makeTask(1L, 1, "Keuken", null);
         task.setCompleted(true);
-        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
-
-        CleaningTaskResponseDTO result = cleaningTaskService.toggleTask(1L);
-
-        assertThat(result.isCompleted()).isFalse();
-    }
-
-    @Test
-    void toggleTask_completedFalse_setsToTrue() {
-        CleaningTask task = makeTask(1L, 1, "Keuken", null);
-        task.setCompleted(false);
+        when(taskRepository.toggleCompleted(1L)).thenReturn(1);
         when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
 
         CleaningTaskResponseDTO result = cleaningTaskService.toggleTask(1L);
 
         assertThat(result.isCompleted()).isTrue();
+        verify(taskRepository, never()).save(any());
     }
 
     @Test
     void toggleTask_notExisting_throwsEntityNotFoundException() {
-        when(taskRepository.findById(99L)).thenReturn(Optional.empty());
+        when(taskRepository.toggleCompleted(99L)).thenReturn(0);
         assertThrows(EntityNotFoundException.class, () -> cleaningTaskService.toggleTask(99L));
     }
 
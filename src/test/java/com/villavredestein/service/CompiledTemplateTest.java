@@ -0,0 +1,60 @@
+package com.villavredestein.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledTemplateTest {
+
+    @Test
+    void render_replacesEveryOccurrence() {
+        CompiledTemplate template = CompiledTemplate.compile("Beste {{naam}}, {{bedrag}} voor {{maand}}. Groet {{naam}}");
+
+        String result = template.render(Map.of("naam", "Desmond", "bedrag", "€ 350,00", "maand", "juli 2025"));
+
+        assertThat(result).isEqualTo("Beste Desmond, € 350,00 voor juli 2025. Groet Desmond");
+        assertThat(template.variableCount()).isEqualTo(4);
+    }
+
+    @Test
+    void render_supportsArbitraryNamesAndTrimsWhitespace() {
+        CompiledTemplate template = CompiledTemplate.compile("Kamer {{ kamer }} - {{taak}}");
+
+        assertThat(template.render(Map.of("kamer", "3B", "taak", "keuken")))
+                .isEqualTo("Kamer 3B - keuken");
+    }
+
+    @Test
+    void render_unknownVariable_isKeptAsWritten() {
+        CompiledTemplate template = CompiledTemplate.compile("Link: {{ betaalLinkk }}! Groet {{naam}}");
+
+        assertThat(template.render(Map.of("naam", "Zoë"))).isEqualTo("Link: {{ betaalLinkk }}! Groet Zoë");
+        assertThat(template.render(null)).isEqualTo("Link: {{ betaalLinkk }}! Groet {{naam}}");
+    }
+
+    @Test
+    void render_nullVariable_rendersEmpty() {
+        CompiledTemplate template = CompiledTemplate.compile("Link: {{betaalLink}}!");
+        Map<String, String> variables = new HashMap<>();
+        variables.put("betaalLink", null);
+
+        assertThat(template.render(variables)).isEqualTo("Link: !");
+    }
+
+    @Test
+    void render_unterminatedPlaceholder_isKeptLiteral() {
+        CompiledTemplate template = CompiledTemplate.compile("Hallo {{naam}}, zie {{link");
+
+        assertThat(template.render(Map.of("naam", "Zoë"))).isEqualTo("Hallo Zoë, zie {{link");
+    }
+
+    @Test
+    void render_nullOrPlainSource() {
+        assertThat(CompiledTemplate.compile(null).render(Map.of())).isEmpty();
+        assertThat(CompiledTemplate.compile("Geen variabelen").render(Map.of("naam", "x")))
+                .isEqualTo("Geen variabelen");
+    }
+}
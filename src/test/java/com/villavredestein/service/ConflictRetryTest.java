@@ -0,0 +1,64 @@
+package com.villavredestein.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConflictRetryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConflictRetry retry = new ConflictRetry(registry, 3, Duration.ZERO);
+
+    private double count(String meter) {
+        var counter = registry.find(meter).tag("operation", "test").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void run_conflictThenSuccess_returnsResultOfRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retry.run("test", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new ObjectOptimisticLockingFailureException("Invoice", 1L);
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(2);
+        assertThat(count("db.conflicts.retried")).isEqualTo(1);
+        assertThat(count("db.conflicts.exhausted")).isZero();
+    }
+
+    @Test
+    void run_keepsConflicting_rethrowsAfterLastAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run("test", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Invoice", 1L);
+        })).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(3);
+        assertThat(count("db.conflicts.exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    void run_otherFailure_isNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run("test", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("Ongeldige status");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.EmailTemplate;
+import com.villavredestein.model.EmailTemplate.TemplateType;
+import com.villavredestein.repository.EmailTemplateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class EmailTemplateServiceTest {
+
+    private final EmailTemplateService service = new EmailTemplateService(mock(EmailTemplateRepository.class));
+
+    @Test
+    void render_rendersSubjectAndBody() {
+        EmailTemplate template = new EmailTemplate(TemplateType.PAYMENT_NEW,
+                "Factuur {{maand}}", "Beste {{naam}}, betaal {{bedrag}} voor {{vervaldatum}}.");
+
+        EmailTemplateService.RenderedEmail rendered = service.render(template,
+                EmailTemplateService.rentVariables("Desmond", "€ 350,00", "juli 2025", "", "8 juli 2025"));
+
+        assertThat(rendered.subject()).isEqualTo("Factuur juli 2025");
+        assertThat(rendered.body()).isEqualTo("Beste Desmond, betaal € 350,00 voor 8 juli 2025.");
+    }
+
+    @Test
+    void render_sameUpdatedAt_reusesCompiledTemplate() {
+        EmailTemplate template = new EmailTemplate(TemplateType.PAYMENT_NEW, "Hoi {{naam}}", "Body");
+        service.render(template, Map.of("naam", "A"));
+
+        // Changed text without a new updatedAt: the cached compilation is still used.
+        template.setSubject("Dag {{naam}}");
+
+        assertThat(service.render(template, Map.of("naam", "B")).subject()).isEqualTo("Hoi B");
+    }
+
+    @Test
+    void render_newUpdatedAt_recompiles() {
+        EmailTemplate template = new EmailTemplate(TemplateType.PAYMENT_NEW, "Hoi {{naam}}", "Body");
+        service.render(template, Map.of("naam", "A"));
+
+        template.setSubject("Dag {{naam}}");
+        ReflectionTestUtils.setField(template, "updatedAt", LocalDateTime.now().plusSeconds(1));
+
+        assertThat(service.render(template, Map.of("naam", "B")).subject()).isEqualTo("Dag B");
+    }
+}
@@ -0,0 +1,165 @@
+package com.villavredestein.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.repository.ExportRepository;
+import com.villavredestein.repository.ExportRepository.Dataset;
+import com.villavredestein.service.ExportService.Format;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    private static final LocalDate JULY_1 = LocalDate.of(2025, 7, 1);
+
+    @Mock ExportRepository exportRepository;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private ExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new ExportService(exportRepository, transactionManager, objectMapper, 500, 2);
+    }
+
+    private static Object[] invoiceRow(long id, String title) {
+        return new Object[]{id, title, new BigDecimal("350.00"), JULY_1, JULY_1.plusDays(7), 7, 2025,
+                Invoice.InvoiceStatus.OPEN, null, 0, 3L, "anna", "anna@test.com"};
+    }
+
+
+    @Test
+    void export_csv_writesHeaderAndQuotesWhereNeeded() throws IOException {
+        when(exportRepository.stream(Dataset.INVOICES, null, null, 500))
+                .thenReturn(Stream.of(invoiceRow(1L, "Huur juli"), invoiceRow(2L, "Huur, \"extra\"")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(Dataset.INVOICES, Format.CSV, null, null, out);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\r\n")).containsExactly(
+                "id,title,amount,issueDate,dueDate,invoiceMonth,invoiceYear,status,paidAt,reminderCount,studentId,studentUsername,studentEmail",
+                "1,Huur juli,350.00,2025-07-01,2025-07-08,7,2025,OPEN,,0,3,anna,anna@test.com",
+                "2,\"Huur, \"\"extra\"\"\",350.00,2025-07-01,2025-07-08,7,2025,OPEN,,0,3,anna,anna@test.com");
+    }
+
+    @Test
+    void export_ndjson_writesOneObjectPerLine() throws IOException {
+        when(exportRepository.stream(Dataset.INVOICES, JULY_1, null, 500))
+                .thenReturn(Stream.of(invoiceRow(1L, "Huur juli"), invoiceRow(2L, "Huur augustus")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(Dataset.INVOICES, Format.NDJSON, JULY_1, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("{\"id\":1,\"title\":\"Huur juli\",\"amount\":350.00,\"issueDate\":\"2025-07-01\"");
+        assertThat(lines[0]).contains("\"status\":\"OPEN\",\"paidAt\":null");
+        assertThat(lines[1]).startsWith("{\"id\":2,");
+        assertThat(lines[2]).isEmpty();
+    }
+
+    @Test
+    void export_closesStreamWhenWritingFails() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(exportRepository.stream(any(), any(), any(), anyInt()))
+                .thenReturn(Stream.<Object[]>of(invoiceRow(1L, "Huur")).onClose(() -> closed.set(true)));
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exportService.export(Dataset.INVOICES, Format.NDJSON, null, null, broken))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    void export_fromAfterTo_throwsBeforeReading() {
+        assertThatThrownBy(() -> exportService.export(Dataset.PAYMENTS, Format.CSV, JULY_1, JULY_1.minusDays(1),
+                new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(exportRepository);
+    }
+
+    @Test
+    void export_emptyDataset_writesOnlyHeader() throws IOException {
+        when(exportRepository.stream(eq(Dataset.SHIFTS), any(), any(), anyInt())).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(Dataset.SHIFTS, Format.CSV, JULY_1, JULY_1, out);
+
+        assertThat(rows).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo("id,shiftDate,checkInAt,checkOutAt,notes,cleanerId,cleanerUsername\r\n");
+    }
+
+    @Test
+    void csvValue_plainValuesUnquoted() {
+        assertThat(ExportService.csvValue(null)).isEmpty();
+        assertThat(ExportService.csvValue(new BigDecimal("1E+3"))).isEqualTo("1000");
+        assertThat(ExportService.csvValue("regel 1\nregel 2")).isEqualTo("\"regel 1\nregel 2\"");
+    }
+
+    @Test
+    void csvValue_textStartingLikeAFormula_isPrefixedAndQuoted() {
+        assertThat(ExportService.csvValue("=HYPERLINK(\"http://x\")")).isEqualTo("\"'=HYPERLINK(\"\"http://x\"\")\"");
+        assertThat(ExportService.csvValue("+31 6 1234")).isEqualTo("\"'+31 6 1234\"");
+        assertThat(ExportService.csvValue("-1+1")).isEqualTo("\"'-1+1\"");
+        assertThat(ExportService.csvValue("@SUM(A1)")).isEqualTo("\"'@SUM(A1)\"");
+        assertThat(ExportService.csvValue("\t=1")).isEqualTo("\"'\t=1\"");
+        assertThat(ExportService.csvValue(new BigDecimal("-350.00"))).isEqualTo("-350.00");
+        assertThat(ExportService.csvValue("a=b")).isEqualTo("a=b");
+    }
+
+    @Test
+    void reserve_allSlotsInUse_refusedWith503UntilOneIsClosed() {
+        ExportService.Slot first = exportService.reserve();
+        ExportService.Slot second = exportService.reserve();
+
+        assertThatThrownBy(exportService::reserve)
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        first.close();
+        first.close();
+        ExportService.Slot third = exportService.reserve();
+        assertThatThrownBy(exportService::reserve).isInstanceOf(ResponseStatusException.class);
+        third.close();
+        second.close();
+    }
+}
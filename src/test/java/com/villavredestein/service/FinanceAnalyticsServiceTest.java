@@ -0,0 +1,172 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.FinanceDashboardDTO;
+import com.villavredestein.dto.FinanceMonthDTO;
+import com.villavredestein.dto.FinanceStudentDTO;
+import com.villavredestein.repository.FinanceRollupRepository;
+import com.villavredestein.repository.FinanceRollupRepository.MonthTotal;
+import com.villavredestein.repository.FinanceRollupRepository.StatusTotal;
+import com.villavredestein.repository.FinanceRollupRepository.StudentTotal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FinanceAnalyticsServiceTest {
+
+    private static final LocalDate JULY = LocalDate.of(2025, 7, 1);
+    private static final LocalDate JUNE = LocalDate.of(2025, 6, 1);
+
+    @Mock FinanceRollupRepository repository;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-07-15T10:00:00Z"));
+    private FinanceAnalyticsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new FinanceAnalyticsService(repository, transactionManager, Duration.ofSeconds(30), clock);
+    }
+
+
+    @Test
+    void getDashboard_combinesRollupRows() {
+        when(repository.totalsByStatus()).thenReturn(List.of(
+                new StatusTotal("INVOICE", "OPEN", 3, new BigDecimal("1050.00")),
+                new StatusTotal("INVOICE", "OVERDUE", 1, new BigDecimal("350.00")),
+                new StatusTotal("INVOICE", "PAID", 10, new BigDecimal("3500.00")),
+                new StatusTotal("PAYMENT", "OPEN", 2, new BigDecimal("80.00"))));
+        when(repository.totalsByMonth(JUNE)).thenReturn(List.of(
+                new MonthTotal("INVOICE", JUNE, "PAID", 2, new BigDecimal("700.00")),
+                new MonthTotal("INVOICE", JUNE, "OVERDUE", 1, new BigDecimal("350.00")),
+                new MonthTotal("INVOICE", JULY, "OPEN", 3, new BigDecimal("1050.00")),
+                new MonthTotal("INVOICE", JULY, "CANCELLED", 1, new BigDecimal("350.00")),
+                new MonthTotal("PAYMENT", JULY, "PAID", 2, new BigDecimal("700.00")),
+                new MonthTotal("PAYMENT", JULY, "OPEN", 1, new BigDecimal("40.00"))));
+        when(repository.invoiceTotalsByStudent(JUNE)).thenReturn(List.of(
+                new StudentTotal(1L, "anna", "Kamer 1", "PAID", 1, new BigDecimal("350.00")),
+                new StudentTotal(1L, "anna", "Kamer 1", "OVERDUE", 1, new BigDecimal("350.00")),
+                new StudentTotal(2L, "bram", null, "OPEN", 1, new BigDecimal("350.00"))));
+
+        FinanceDashboardDTO dashboard = service.getDashboard(2);
+
+        assertThat(dashboard.from()).isEqualTo(JUNE);
+        assertThat(dashboard.outstandingAmount()).isEqualByComparingTo("1400.00");
+        assertThat(dashboard.outstandingCount()).isEqualTo(4);
+        assertThat(dashboard.overdueAmount()).isEqualByComparingTo("350.00");
+        assertThat(dashboard.overdueCount()).isEqualTo(1);
+        assertThat(dashboard.receivedThisMonth()).isEqualByComparingTo("700.00");
+        assertThat(dashboard.paymentsThisMonth()).isEqualTo(2);
+
+        assertThat(dashboard.months()).extracting(FinanceMonthDTO::month).containsExactly(6, 7);
+        FinanceMonthDTO june = dashboard.months().get(0);
+        assertThat(june.invoiceCount()).isEqualTo(3);
+        assertThat(june.billed()).isEqualByComparingTo("1050.00");
+        assertThat(june.paid()).isEqualByComparingTo("700.00");
+        assertThat(june.outstanding()).isEqualByComparingTo("350.00");
+        FinanceMonthDTO july = dashboard.months().get(1);
+        assertThat(july.invoiceCount()).isEqualTo(3);
+        assertThat(july.billed()).isEqualByComparingTo("1050.00");
+        assertThat(july.received()).isEqualByComparingTo("700.00");
+
+        assertThat(dashboard.students()).hasSize(2);
+        FinanceStudentDTO anna = dashboard.students().get(0);
+        assertThat(anna.roomName()).isEqualTo("Kamer 1");
+        assertThat(anna.paid()).isEqualByComparingTo("350.00");
+        assertThat(anna.outstanding()).isEqualByComparingTo("350.00");
+        assertThat(anna.overdueCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getDashboard_noData_listsEveryMonthWithZeros() {
+        when(repository.totalsByStatus()).thenReturn(List.of());
+        when(repository.totalsByMonth(any())).thenReturn(List.of());
+        when(repository.invoiceTotalsByStudent(any())).thenReturn(List.of());
+
+        FinanceDashboardDTO dashboard = service.getDashboard(12);
+
+        assertThat(dashboard.from()).isEqualTo(LocalDate.of(2024, 8, 1));
+        assertThat(dashboard.months()).hasSize(12);
+        assertThat(dashboard.months()).allSatisfy(month -> assertThat(month.billed()).isEqualByComparingTo("0"));
+        assertThat(dashboard.outstandingAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void getDashboard_withinTtl_servedFromCache() {
+        when(repository.totalsByStatus()).thenReturn(List.of());
+        when(repository.totalsByMonth(any())).thenReturn(List.of());
+        when(repository.invoiceTotalsByStudent(any())).thenReturn(List.of());
+
+        FinanceDashboardDTO first = service.getDashboard(12);
+        clock.advance(Duration.ofSeconds(29));
+        FinanceDashboardDTO second = service.getDashboard(12);
+
+        assertThat(second).isSameAs(first);
+        verify(repository, times(1)).totalsByStatus();
+    }
+
+    @Test
+    void getDashboard_afterTtl_recomputes() {
+        when(repository.totalsByStatus()).thenReturn(List.of());
+        when(repository.totalsByMonth(any())).thenReturn(List.of());
+        when(repository.invoiceTotalsByStudent(any())).thenReturn(List.of());
+
+        service.getDashboard(12);
+        clock.advance(Duration.ofSeconds(30));
+        service.getDashboard(12);
+        service.getDashboard(6);
+
+        verify(repository, times(3)).totalsByStatus();
+    }
+
+    @Test
+    void getDashboard_zeroMonths_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> service.getDashboard(0));
+        verifyNoInteractions(repository);
+    }
+
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.villavredestein.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GoogleTokenVerifierServiceTest {
+
+    private static final String CLIENT_ID = "villa-client.apps.googleusercontent.com";
+    private static final KeyPair KEY_1 = rsaKeyPair();
+    private static final KeyPair KEY_2 = rsaKeyPair();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-09-01T08:00:00Z"));
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+    private final Map<String, KeyPair> published = new ConcurrentHashMap<>();
+    private volatile String cacheControl = "public, max-age=21600, must-revalidate, no-transform";
+
+    private HttpServer server;
+    private GoogleJwksCache jwksCache;
+    private GoogleTokenVerifierService verifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        published.put("key-1", KEY_1);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/oauth2/v3/certs", exchange -> {
+            jwksRequests.incrementAndGet();
+            byte[] body = jwks().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+            exchange.getResponseHeaders().add("Age", "600");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/oauth2/v3/certs";
+        jwksCache = new GoogleJwksCache(OutboundCallMetrics.noop(), url, clock);
+        verifier = new GoogleTokenVerifierService(OutboundCallMetrics.noop(), jwksCache, CLIENT_ID, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jwksCache.shutdown();
+        server.stop(0);
+    }
+
+    private String jwks() {
+        return published.entrySet().stream()
+                .map(entry -> {
+                    RSAPublicKey key = (RSAPublicKey) entry.getValue().getPublic();
+                    return """
+                            {"kty": "RSA", "alg": "RS256", "use": "sig", "kid": "%s", "n": "%s", "e": "%s"}"""
+                            .formatted(entry.getKey(), base64Url(key.getModulus()), base64Url(key.getPublicExponent()));
+                })
+                .collect(Collectors.joining(",", "{\"keys\": [", "]}"));
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static KeyPair rsaKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, Object> claims() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("iss", "https://accounts.google.com");
+        claims.put("aud", CLIENT_ID);
+        claims.put("azp", CLIENT_ID);
+        claims.put("sub", "1234567890");
+        claims.put("email", "anna@gmail.com");
+        claims.put("email_verified", true);
+        claims.put("iat", Date.from(clock.instant()));
+        claims.put("exp", Date.from(clock.instant().plus(Duration.ofHours(1))));
+        return claims;
+    }
+
+    private static String sign(Map<String, Object> claims, String kid, KeyPair keyPair) {
+        return Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setClaims(claims)
+                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    private void assertRejected(String token, String message) {
+        assertThatThrownBy(() -> verifier.verifyAndGetEmail(token))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+                    assertThat(e.getReason()).isEqualTo(message);
+                });
+    }
+
+    @Test
+    void verifyAndGetEmail_validIdToken_verifiedLocallyWithCachedKeys() {
+        String token = sign(claims(), "key-1", KEY_1);
+
+        assertThat(verifier.verifyAndGetEmail(token)).isEqualTo("anna@gmail.com");
+        assertThat(verifier.verifyAndGetEmail(token)).isEqualTo("anna@gmail.com");
+
+        assertThat(jwksRequests).hasValue(1);
+        // max-age 21600 minus Age 600
+        assertThat(jwksCache.expiresAt()).isEqualTo(clock.instant().plusSeconds(21000));
+    }
+
+    @Test
+    void verifyAndGetEmail_audienceOrIssuerOfAnotherApp_rejected() {
+        Map<String, Object> otherApp = claims();
+        otherApp.put("aud", "other-client");
+        otherApp.put("azp", "other-client");
+        assertRejected(sign(otherApp, "key-1", KEY_1), "Token is niet voor deze applicatie");
+
+        Map<String, Object> azpOnly = claims();
+        azpOnly.put("aud", "other-client");
+        assertThat(verifier.verifyAndGetEmail(sign(azpOnly, "key-1", KEY_1))).isEqualTo("anna@gmail.com");
+
+        Map<String, Object> otherIssuer = claims();
+        otherIssuer.put("iss", "https://evil.example.com");
+        assertRejected(sign(otherIssuer, "key-1", KEY_1), "Ongeldig Google token");
+    }
+
+    @Test
+    void verifyAndGetEmail_expiredToken_rejectedAfterClockSkew() {
+        String token = sign(claims(), "key-1", KEY_1);
+
+        clock.advance(Duration.ofHours(1).plusSeconds(30));
+        assertThat(verifier.verifyAndGetEmail(token)).isEqualTo("anna@gmail.com");
+
+        clock.advance(Duration.ofSeconds(31));
+        assertRejected(token, "Google token is verlopen");
+    }
+
+    @Test
+    void verifyAndGetEmail_wrongSignatureOrUnverifiedEmail_rejected() {
+        assertRejected(sign(claims(), "key-1", KEY_2), "Ongeldig Google token");
+
+        String[] parts = sign(claims(), "key-1", KEY_1).split("\\.");
+        String tampered = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"iss\":\"accounts.google.com\",\"aud\":\"%s\",\"email\":\"admin@villa.nl\",\"email_verified\":true,\"exp\":%d}"
+                        .formatted(CLIENT_ID, clock.instant().plusSeconds(600).getEpochSecond())
+                        .getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+        assertRejected(tampered, "Ongeldig Google token");
+
+        Map<String, Object> unverified = claims();
+        unverified.put("email_verified", false);
+        assertRejected(sign(unverified, "key-1", KEY_1), "E-mailadres is niet geverifieerd bij Google");
+    }
+
+    @Test
+    void verifyAndGetEmail_rotatedKey_refetchesOnceForUnknownKeyId() {
+        assertThat(verifier.verifyAndGetEmail(sign(claims(), "key-1", KEY_1))).isEqualTo("anna@gmail.com");
+        published.put("key-2", KEY_2);
+        String rotated = sign(claims(), "key-2", KEY_2);
+
+        // Fetched just now: an unknown key id does not hammer Google
+        assertRejected(rotated, "Ongeldig Google token");
+        assertThat(jwksRequests).hasValue(1);
+
+        clock.advance(GoogleJwksCache.MIN_REFETCH_INTERVAL.plusSeconds(1));
+        assertThat(verifier.verifyAndGetEmail(rotated)).isEqualTo("anna@gmail.com");
+        assertThat(jwksRequests).hasValue(2);
+
+        assertRejected(sign(claims(), "key-3", KEY_2), "Ongeldig Google token");
+        assertThat(jwksRequests).hasValue(2);
+    }
+
+    @Test
+    void verifyAndGetEmail_expiredKeySet_fetchedAgainAndUnavailableJwksIsNotAnAuthError() {
+        cacheControl = "no-transform";
+        String token = sign(claims(), "key-1", KEY_1);
+        verifier.verifyAndGetEmail(token);
+        assertThat(jwksCache.expiresAt()).isEqualTo(clock.instant().plus(GoogleJwksCache.DEFAULT_TTL));
+
+        clock.advance(GoogleJwksCache.DEFAULT_TTL.plusSeconds(1));
+        verifier.verifyAndGetEmail(sign(claims(), "key-1", KEY_1));
+        assertThat(jwksRequests).hasValue(2);
+
+        server.stop(0);
+        GoogleJwksCache unreachable = new GoogleJwksCache(OutboundCallMetrics.noop(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/oauth2/v3/certs", clock);
+        GoogleTokenVerifierService offline =
+                new GoogleTokenVerifierService(OutboundCallMetrics.noop(), unreachable, CLIENT_ID, clock);
+        assertThatThrownBy(() -> offline.verifyAndGetEmail(sign(claims(), "key-1", KEY_1)))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR));
+        unreachable.shutdown();
+    }
+
+    @Test
+    void ttl_followsMaxAgeMinusAgeWithinBounds() {
+        assertThat(GoogleJwksCache.ttl("public, max-age=19759, must-revalidate", null)).hasSeconds(19759);
+        assertThat(GoogleJwksCache.ttl("public, max-age=19759", "759")).hasSeconds(19000);
+        assertThat(GoogleJwksCache.ttl("max-age=5", null)).isEqualTo(GoogleJwksCache.MIN_TTL);
+        assertThat(GoogleJwksCache.ttl("max-age=604800", null)).isEqualTo(GoogleJwksCache.MAX_TTL);
+        assertThat(GoogleJwksCache.ttl("no-cache", null)).isEqualTo(GoogleJwksCache.DEFAULT_TTL);
+        assertThat(GoogleJwksCache.ttl(null, "10")).isEqualTo(GoogleJwksCache.DEFAULT_TTL);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
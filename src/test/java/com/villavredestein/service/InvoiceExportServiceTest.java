@@ -0,0 +1,101 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class InvoiceExportServiceTest {
+
+    private InvoiceRepository invoiceRepository;
+    private InvoicePdfService invoicePdfService;
+    private InvoiceExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        invoicePdfService = mock(InvoicePdfService.class);
+        exportService = new InvoiceExportService(invoiceRepository, invoicePdfService, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportService.shutdown();
+    }
+
+    private Invoice makeInvoice(long id, String username) {
+        User student = new User(username, username.toLowerCase() + "@villavredestein.com", "hash", User.Role.STUDENT);
+        Invoice invoice = new Invoice("Huur juli", null, new BigDecimal("350.00"),
+                LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 8), 7, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(invoice, "id", id);
+        return invoice;
+    }
+
+
+    @Test
+    void writeZip_writesOneEntryPerInvoiceInInputOrder() throws IOException {
+        List<Invoice> invoices = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            invoices.add(makeInvoice(i, "Student" + i));
+        }
+        when(invoicePdfService.generate(any(Invoice.class)))
+                .thenAnswer(inv -> ("pdf-" + ((Invoice) inv.getArgument(0)).getId()).getBytes());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeZip(invoices, out);
+
+        List<String> names = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                contents.add(new String(zip.readAllBytes()));
+            }
+        }
+
+        assertThat(names).hasSize(20);
+        assertThat(names.get(0)).isEqualTo("student1-factuur-1.pdf");
+        assertThat(names.get(19)).isEqualTo("student20-factuur-20.pdf");
+        assertThat(contents.get(7)).isEqualTo("pdf-8");
+        verify(invoicePdfService, times(20)).generate(any(Invoice.class));
+    }
+
+    @Test
+    void writeZip_renderFailure_throwsIOException() {
+        when(invoicePdfService.generate(any(Invoice.class))).thenThrow(new RuntimeException("boom"));
+
+        assertThrows(IOException.class,
+                () -> exportService.writeZip(List.of(makeInvoice(1L, "Desmond")), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void entryName_stripsAccentsAndSpecialCharacters() {
+        assertThat(InvoiceExportService.entryName(makeInvoice(7L, "Zoë van 't Hof")))
+                .isEqualTo("zoe-van-t-hof-factuur-7.pdf");
+    }
+
+    @Test
+    void findForMonth_invalidMonth_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> exportService.findForMonth(13, 2025));
+        verifyNoInteractions(invoiceRepository);
+    }
+}
@@ -0,0 +1,111 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InvoicePdfCacheTest {
+
+    private final AtomicInteger renders = new AtomicInteger();
+    private final Function<Invoice, byte[]> renderer = invoice -> {
+        renders.incrementAndGet();
+        return ("pdf-" + invoice.getId()).getBytes();
+    };
+
+    private Invoice makeInvoice(long id, String amount) {
+        User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
+        Invoice invoice = new Invoice("Huur juli", "Kamer 2", new BigDecimal(amount),
+                LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 8), 7, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(invoice, "id", id);
+        return invoice;
+    }
+
+
+    @Test
+    void getOrRender_sameInvoiceTwice_rendersOnce() {
+        InvoicePdfCache cache = new InvoicePdfCache(10);
+        Invoice invoice = makeInvoice(1L, "350.00");
+
+        InvoicePdfCache.CachedPdf first = cache.getOrRender(invoice, renderer);
+        InvoicePdfCache.CachedPdf second = cache.getOrRender(invoice, renderer);
+
+        assertThat(renders.get()).isEqualTo(1);
+        assertThat(second).isSameAs(first);
+        assertThat(first.etag()).startsWith("\"inv-1-").endsWith("\"");
+    }
+
+    @Test
+    void getOrRender_amountChanged_rendersAgainWithNewEtag() {
+        InvoicePdfCache cache = new InvoicePdfCache(10);
+        Invoice invoice = makeInvoice(1L, "350.00");
+
+        String before = cache.getOrRender(invoice, renderer).etag();
+        invoice.setAmount(new BigDecimal("375.00"));
+        String after = cache.getOrRender(invoice, renderer).etag();
+
+        assertThat(renders.get()).isEqualTo(2);
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    @Test
+    void getOrRender_statusChanged_rendersAgain() {
+        InvoicePdfCache cache = new InvoicePdfCache(10);
+        Invoice invoice = makeInvoice(1L, "350.00");
+
+        cache.getOrRender(invoice, renderer);
+        invoice.setStatus(Invoice.InvoiceStatus.PAID);
+        cache.getOrRender(invoice, renderer);
+
+        assertThat(renders.get()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidate_forcesRerender() {
+        InvoicePdfCache cache = new InvoicePdfCache(10);
+        Invoice invoice = makeInvoice(1L, "350.00");
+
+        cache.getOrRender(invoice, renderer);
+        cache.invalidate(1L);
+        cache.getOrRender(invoice, renderer);
+
+        assertThat(renders.get()).isEqualTo(2);
+    }
+
+    @Test
+    void getOrRender_beyondMaxEntries_evictsLeastRecentlyUsed() {
+        InvoicePdfCache cache = new InvoicePdfCache(2);
+        Invoice one = makeInvoice(1L, "100.00");
+        Invoice two = makeInvoice(2L, "200.00");
+        Invoice three = makeInvoice(3L, "300.00");
+
+        cache.getOrRender(one, renderer);
+        cache.getOrRender(two, renderer);
+        cache.getOrRender(one, renderer);
+        cache.getOrRender(three, renderer);
+
+        assertThat(cache.size()).isEqualTo(2);
+        cache.getOrRender(one, renderer);
+        assertThat(renders.get()).isEqualTo(3);
+        cache.getOrRender(two, renderer);
+        assertThat(renders.get()).isEqualTo(4);
+    }
+
+    @Test
+    void getOrRender_invoiceWithoutId_throwsIllegalArgumentException() {
+        InvoicePdfCache cache = new InvoicePdfCache(10);
+        User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
+        Invoice invoice = new Invoice("Huur", null, new BigDecimal("1.00"),
+                LocalDate.now(), LocalDate.now(), 1, 2025, Invoice.InvoiceStatus.OPEN, student);
+
+        assertThrows(IllegalArgumentException.class, () -> cache.getOrRender(invoice, renderer));
+    }
+}
@@ -0,0 +1,64 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvoicePdfServiceTest {
+
+    private final InvoicePdfService invoicePdfService = new InvoicePdfService();
+
+    private Invoice makeInvoice() {
+        User student = new User("Desmond", "desmond@villavredestein.com", "hash", User.Role.STUDENT);
+        Invoice invoice = new Invoice("Huur juli", "Maandelijkse huur", new BigDecimal("350.00"),
+                LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 8), 7, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(invoice, "id", 1L);
+        return invoice;
+    }
+
+    @Test
+    void generate_returnsPdfDocument() {
+        byte[] pdf = invoicePdfService.generate(makeInvoice());
+
+        assertThat(new String(pdf, 0, 5, StandardCharsets.ISO_8859_1)).isEqualTo("%PDF-");
+    }
+
+    @Test
+    void generate_toStream_writesPdfAndLeavesStreamOpen() {
+        TrackingOutputStream out = new TrackingOutputStream();
+
+        invoicePdfService.generate(makeInvoice(), out);
+
+        assertThat(out.closed).isFalse();
+        assertThat(new String(out.toByteArray(), 0, 5, StandardCharsets.ISO_8859_1)).isEqualTo("%PDF-");
+    }
+
+    @Test
+    void generate_isRepeatableWithSharedStyles() {
+        Invoice invoice = makeInvoice();
+
+        byte[] first = invoicePdfService.generate(invoice);
+        byte[] second = invoicePdfService.generate(invoice);
+
+        assertThat(second.length).isBetween(first.length - 64, first.length + 64);
+    }
+
+    private static final class TrackingOutputStream extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
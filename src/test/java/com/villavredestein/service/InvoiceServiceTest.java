@@ -5,6 +5,8 @@ import com.villavredestein.dto.InvoiceResponseDTO;
 import com.villavredestein.model.Invoice;
 import com.villavredestein.model.User;
 import com.villavredestein.repository.InvoiceRepository;
+import com.villavredestein.repository.InvoiceRepositoryCustom.InsertedInvoice;
+import com.villavredestein.repository.PaymentRepository;
 import com.villavredestein.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Test;
@@ -12,6 +14,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -19,10 +22,13 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
@@ -32,8 +38,11 @@ import static org.mockito.Mockito.*;
 class InvoiceServiceTest {
 
     @Mock InvoiceRepository invoiceRepository;
+    @Mock PaymentRepository paymentRepository;
     @Mock UserRepository userRepository;
     @Mock InvoicePdfService invoicePdfService;
+    @Mock InvoicePdfCache invoicePdfCache;
+    @Mock LedgerService ledgerService;
     @InjectMocks InvoiceService invoiceService;
 
 
@@ -53,7 +62,8 @@ class InvoiceServiceTest {
         Invoice saved = new Invoice(dto.getTitle(), dto.getDescription(), dto.getAmount(),
                 dto.getIssueDate(), dto.getDueDate(), 7, 2025, Invoice.InvoiceStatus.OPEN, student);
         ReflectionTestUtils.setField(saved, "id", 1L);
-        when(invoiceRepository.save(any(Invoice.class))).thenReturn(saved);
+        when(invoiceRepository.insertIfAbsent(anyList())).thenReturn(List.of(new InsertedInvoice(1L, 10L)));
+        when(invoiceRepository.findById(1L)).thenReturn(Optional.of(saved));
 
         InvoiceResponseDTO result = invoiceService.createInvoice(dto);
 
@@ -61,7 +71,8 @@ class InvoiceServiceTest {
         assertThat(result.getTitle()).isEqualTo("Huur juli");
         assertThat(result.getAmount()).isEqualByComparingTo(new BigDecimal("500.00"));
         assertThat(result.getStudentEmail()).isEqualTo("student@villavredestein.com");
-        verify(invoiceRepository).save(any(Invoice.class));
+        verify(invoiceRepository).insertIfAbsent(argThat(invoices -> invoices.size() == 1
+                && invoices.get(0).getInvoiceMonth() == 7 && invoices.get(0).getInvoiceYear() == 2025));
     }
 
     @Test
@@ -76,7 +87,7 @@ class InvoiceServiceTest {
         when(userRepository.findByEmailIgnoreCase("onbekend@villavredestein.com")).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class, () -> invoiceService.createInvoice(dto));
-        verify(invoiceRepository, never()).save(any());
+        verify(invoiceRepository, never()).insertIfAbsent(anyList());
     }
 
     @Test
@@ -90,13 +101,34 @@ class InvoiceServiceTest {
 
         User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
         when(userRepository.findByEmailIgnoreCase("student@villavredestein.com")).thenReturn(Optional.of(student));
-        when(invoiceRepository.existsByStudentAndInvoiceMonthAndInvoiceYear(any(User.class), anyInt(), anyInt()))
-                .thenReturn(true);
+        when(invoiceRepository.insertIfAbsent(anyList())).thenReturn(List.of());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> invoiceService.createInvoice(dto));
         assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
-        verify(invoiceRepository, never()).save(any());
+        verify(invoiceRepository, never()).findById(any());
+    }
+
+    @Test
+    void createInvoicesIfAbsent_returnsInvoiceIdPerCreatedStudent() {
+        User s1 = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
+        User s2 = new User("student2", "student2@villavredestein.com", "hash", User.Role.STUDENT);
+        ReflectionTestUtils.setField(s1, "id", 10L);
+        ReflectionTestUtils.setField(s2, "id", 11L);
+        List<Invoice> invoices = List.of(
+                new Invoice("Huur juli", null, new BigDecimal("350.00"), LocalDate.of(2025, 7, 1),
+                        LocalDate.of(2025, 7, 8), 7, 2025, Invoice.InvoiceStatus.OPEN, s1),
+                new Invoice("Huur juli", null, new BigDecimal("350.00"), LocalDate.of(2025, 7, 1),
+                        LocalDate.of(2025, 7, 8), 7, 2025, Invoice.InvoiceStatus.OPEN, s2));
+        when(invoiceRepository.insertIfAbsent(invoices)).thenReturn(List.of(new InsertedInvoice(101L, 11L)));
+
+        assertThat(invoiceService.createInvoicesIfAbsent(invoices)).containsExactly(entry(11L, 101L));
+    }
+
+    @Test
+    void createInvoicesIfAbsent_emptyList_doesNotHitDatabase() {
+        assertThat(invoiceService.createInvoicesIfAbsent(List.of())).isEmpty();
+        verifyNoInteractions(invoiceRepository);
     }
 
 
@@ -221,6 +253,7 @@ class InvoiceServiceTest {
         InvoiceResponseDTO result = invoiceService.updateStatus(1L, "paid");
 
         assertThat(result.getStatus()).isEqualTo("PAID");
+        verify(invoicePdfCache).invalidate(1L);
     }
 
     @Test
@@ -263,66 +296,74 @@ class InvoiceServiceTest {
 
 
     @Test
-    void saveReminderMeta_validInvoice_saves() {
+    void recordReminderSent_validInvoice_marksItWithItsVersion() {
         User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
         Invoice inv = new Invoice("Factuur 1", null, new BigDecimal("100.00"),
                 LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31), 1, 2025, Invoice.InvoiceStatus.OPEN, student);
         ReflectionTestUtils.setField(inv, "id", 1L);
-        when(invoiceRepository.save(inv)).thenReturn(inv);
+        ReflectionTestUtils.setField(inv, "version", 3L);
+        LocalDateTime sentAt = LocalDateTime.of(2025, 1, 20, 9, 0);
+        when(invoiceRepository.markRemindersSent(Map.of(1L, 3L), sentAt, false)).thenReturn(List.of(1L));
 
-        invoiceService.saveReminderMeta(inv);
+        assertThat(invoiceService.recordReminderSent(inv, sentAt)).isTrue();
 
-        verify(invoiceRepository).save(inv);
+        verify(invoiceRepository, never()).save(any());
     }
 
     @Test
-    void saveReminderMeta_nullInvoice_throwsIllegalArgumentException() {
-        assertThrows(IllegalArgumentException.class, () -> invoiceService.saveReminderMeta(null));
+    void recordReminderSent_invoiceChangedMeanwhile_isStillCounted() {
+        User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
+        Invoice inv = new Invoice("Factuur 1", null, new BigDecimal("100.00"),
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31), 1, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(inv, "id", 1L);
+        when(invoiceRepository.markRemindersSent(any(), any(), anyBoolean())).thenReturn(List.of());
+        when(invoiceRepository.addRemindersSent(any(), any(), anyBoolean())).thenReturn(List.of(1L));
+
+        assertThat(invoiceService.recordReminderSent(inv, LocalDateTime.now())).isTrue();
     }
 
     @Test
-    void saveReminderMeta_invoiceWithoutId_throwsIllegalArgumentException() {
+    void recordReminderSent_invoiceDeletedMeanwhile_returnsFalse() {
         User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
         Invoice inv = new Invoice("Factuur 1", null, new BigDecimal("100.00"),
                 LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31), 1, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(inv, "id", 1L);
+        when(invoiceRepository.markRemindersSent(any(), any(), anyBoolean())).thenReturn(List.of());
+        when(invoiceRepository.addRemindersSent(any(), any(), anyBoolean())).thenReturn(List.of());
 
-        assertThrows(IllegalArgumentException.class, () -> invoiceService.saveReminderMeta(inv));
+        assertThat(invoiceService.recordReminderSent(inv, LocalDateTime.now())).isFalse();
     }
 
+    @Test
+    void recordReminderSent_nullInvoice_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> invoiceService.recordReminderSent(null, LocalDateTime.now()));
+    }
 
     @Test
-    void getAllOpenInvoices_returnsOnlyOpenInvoices() {
+    void recordReminderSent_invoiceWithoutId_throwsIllegalArgumentException() {
         User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
-        Invoice open1 = new Invoice("Inv1", null, new BigDecimal("10.00"),
-                LocalDate.now(), LocalDate.now().plusDays(10),
-                LocalDate.now().getMonthValue(), LocalDate.now().getYear(), Invoice.InvoiceStatus.OPEN, student);
-        Invoice open2 = new Invoice("Inv2", null, new BigDecimal("20.00"),
-                LocalDate.now(), LocalDate.now().plusDays(20),
-                LocalDate.now().getMonthValue(), LocalDate.now().getYear(), Invoice.InvoiceStatus.OPEN, student);
-        when(invoiceRepository.findByStatusOrderByIdDesc(Invoice.InvoiceStatus.OPEN))
-                .thenReturn(List.of(open2, open1));
-
-        List<Invoice> result = invoiceService.getAllOpenInvoices();
+        Invoice inv = new Invoice("Factuur 1", null, new BigDecimal("100.00"),
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31), 1, 2025, Invoice.InvoiceStatus.OPEN, student);
 
-        assertThat(result).allMatch(i -> i.getStatus() == Invoice.InvoiceStatus.OPEN);
-        verify(invoiceRepository).findByStatusOrderByIdDesc(Invoice.InvoiceStatus.OPEN);
+        assertThrows(IllegalArgumentException.class, () -> invoiceService.recordReminderSent(inv, LocalDateTime.now()));
     }
 
 
     @Test
-    void getUpcomingInvoices_returnsUpcomingOpenInvoices() {
+    @SuppressWarnings("unchecked")
+    void findReminderCandidates_runsThePolicyAsOneSpecificationQuery() {
         User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
         Invoice upcoming = new Invoice("Soon", null, new BigDecimal("10.00"),
                 LocalDate.now(), LocalDate.now().plusDays(3),
                 LocalDate.now().getMonthValue(), LocalDate.now().getYear(), Invoice.InvoiceStatus.OPEN, student);
-        when(invoiceRepository.findByStatusAndDueDateBetweenOrderByDueDateAsc(
-                eq(Invoice.InvoiceStatus.OPEN), any(LocalDate.class), any(LocalDate.class)))
+        when(invoiceRepository.findAll(any(Specification.class), eq(ReminderPolicy.ORDER)))
                 .thenReturn(List.of(upcoming));
 
-        List<Invoice> result = invoiceService.getUpcomingInvoices();
+        List<Invoice> result = invoiceService.findReminderCandidates(
+                ReminderPolicy.upcoming(4, 3, 24), LocalDateTime.now());
 
         assertThat(result).containsExactly(upcoming);
-        verify(invoiceRepository).findByStatusAndDueDateBetweenOrderByDueDateAsc(
-                eq(Invoice.InvoiceStatus.OPEN), any(LocalDate.class), any(LocalDate.class));
+        verify(invoiceRepository).findAll(any(Specification.class), eq(ReminderPolicy.ORDER));
+        verifyNoMoreInteractions(invoiceRepository);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,250 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.StudentBalanceDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.Invoice.InvoiceStatus;
+import com.villavredestein.model.Payment;
+import com.villavredestein.model.Payment.PaymentStatus;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.LedgerRepository;
+import com.villavredestein.repository.LedgerRepository.Posting;
+import com.villavredestein.repository.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+
+    @Mock LedgerRepository ledgerRepository;
+    @Mock UserRepository userRepository;
+    @InjectMocks LedgerService ledgerService;
+
+    private final User student = makeStudent(7L, "s@test.com");
+
+
+    @Test
+    void invoiceCreated_open_chargesAmount() {
+        ledgerService.invoiceCreated(makeInvoice(1L, InvoiceStatus.OPEN));
+
+        Posting posting = singlePosting();
+        assertThat(posting.studentId()).isEqualTo(7L);
+        assertThat(posting.type()).isEqualTo("INVOICE_CHARGED");
+        assertThat(posting.amount()).isEqualByComparingTo("350.00");
+        assertThat(posting.invoiceId()).isEqualTo(1L);
+    }
+
+    @Test
+    void invoiceCreated_alreadyPaid_postsNothing() {
+        ledgerService.invoiceCreated(makeInvoice(1L, InvoiceStatus.PAID));
+
+        verifyNoInteractions(ledgerRepository);
+    }
+
+    @Test
+    void invoicesCreated_postsOnlyInsertedInvoices() {
+        User other = makeStudent(8L, "o@test.com");
+        Invoice inserted = makeInvoice(null, InvoiceStatus.OPEN);
+        Invoice skipped = new Invoice("Huur", null, new BigDecimal("350.00"), LocalDate.now(), LocalDate.now(),
+                1, 2025, InvoiceStatus.OPEN, other);
+
+        ledgerService.invoicesCreated(List.of(inserted, skipped), Map.of(7L, 11L));
+
+        Posting posting = singlePosting();
+        assertThat(posting.studentId()).isEqualTo(7L);
+        assertThat(posting.invoiceId()).isEqualTo(11L);
+    }
+
+    @Test
+    void invoicesCreated_nothingInserted_doesNotHitDatabase() {
+        ledgerService.invoicesCreated(List.of(makeInvoice(null, InvoiceStatus.OPEN)), Map.of());
+
+        verifyNoInteractions(ledgerRepository);
+    }
+
+    @Test
+    void invoiceStatusChanged_openToPaid_creditsAmount() {
+        ledgerService.invoiceStatusChanged(makeInvoice(1L, InvoiceStatus.PAID), InvoiceStatus.OPEN);
+
+        Posting posting = singlePosting();
+        assertThat(posting.type()).isEqualTo("INVOICE_PAID");
+        assertThat(posting.amount()).isEqualByComparingTo("-350.00");
+    }
+
+    @Test
+    void invoiceStatusChanged_overdueToCancelled_creditsAmount() {
+        ledgerService.invoiceStatusChanged(makeInvoice(1L, InvoiceStatus.CANCELLED), InvoiceStatus.OVERDUE);
+
+        assertThat(singlePosting().type()).isEqualTo("INVOICE_CANCELLED");
+    }
+
+    @Test
+    void invoiceStatusChanged_paidToOpen_chargesAgain() {
+        ledgerService.invoiceStatusChanged(makeInvoice(1L, InvoiceStatus.OPEN), InvoiceStatus.PAID);
+
+        Posting posting = singlePosting();
+        assertThat(posting.type()).isEqualTo("INVOICE_REOPENED");
+        assertThat(posting.amount()).isEqualByComparingTo("350.00");
+    }
+
+    @Test
+    void invoiceStatusChanged_withinOwedOrSettled_postsNothing() {
+        ledgerService.invoiceStatusChanged(makeInvoice(1L, InvoiceStatus.OVERDUE), InvoiceStatus.OPEN);
+        ledgerService.invoiceStatusChanged(makeInvoice(1L, InvoiceStatus.CANCELLED), InvoiceStatus.PAID);
+
+        verifyNoInteractions(ledgerRepository);
+    }
+
+    @Test
+    void invoiceDeleted_open_reversesCharge() {
+        ledgerService.invoiceDeleted(makeInvoice(1L, InvoiceStatus.OPEN));
+
+        Posting posting = singlePosting();
+        assertThat(posting.type()).isEqualTo("INVOICE_DELETED");
+        assertThat(posting.amount()).isEqualByComparingTo("-350.00");
+    }
+
+    @Test
+    void invoiceDeleted_paid_postsNothing() {
+        ledgerService.invoiceDeleted(makeInvoice(1L, InvoiceStatus.PAID));
+
+        verifyNoInteractions(ledgerRepository);
+    }
+
+
+    @Test
+    void paymentChanged_newUnlinkedPaidPayment_isCredit() {
+        ledgerService.paymentChanged(makePayment(PaymentStatus.PAID, null), null);
+
+        Posting posting = singlePosting();
+        assertThat(posting.type()).isEqualTo("PAYMENT_RECEIVED");
+        assertThat(posting.amount()).isEqualByComparingTo("-100.00");
+        assertThat(posting.paymentId()).isEqualTo(3L);
+    }
+
+    @Test
+    void paymentChanged_paidToOpen_reversesCredit() {
+        ledgerService.paymentChanged(makePayment(PaymentStatus.OPEN, null), PaymentStatus.PAID);
+
+        Posting posting = singlePosting();
+        assertThat(posting.type()).isEqualTo("PAYMENT_REVERSED");
+        assertThat(posting.amount()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void paymentChanged_linkedToInvoice_postsNothing() {
+        ledgerService.paymentChanged(makePayment(PaymentStatus.PAID, makeInvoice(1L, InvoiceStatus.PAID)), null);
+
+        verifyNoInteractions(ledgerRepository);
+    }
+
+    @Test
+    void paymentLinked_creditedPayment_reversesItsCredit() {
+        ledgerService.paymentLinked(makePayment(PaymentStatus.PAID, makeInvoice(1L, InvoiceStatus.PAID)));
+
+        Posting posting = singlePosting();
+        assertThat(posting.type()).isEqualTo("PAYMENT_REVERSED");
+        assertThat(posting.amount()).isEqualByComparingTo("100.00");
+        assertThat(posting.paymentId()).isEqualTo(3L);
+    }
+
+    @Test
+    void paymentDeleted_openPayment_postsNothing() {
+        ledgerService.paymentDeleted(makePayment(PaymentStatus.OPEN, null));
+
+        verifyNoInteractions(ledgerRepository);
+    }
+
+
+    @Test
+    void getBalance_ownBalance_returnsStoredBalance() {
+        LocalDateTime updatedAt = LocalDateTime.of(2025, 7, 1, 12, 0);
+        when(userRepository.findById(7L)).thenReturn(Optional.of(student));
+        when(ledgerRepository.findBalance(7L))
+                .thenReturn(Optional.of(new LedgerRepository.Balance(7L, new BigDecimal("250.00"), 3, updatedAt)));
+
+        StudentBalanceDTO balance = ledgerService.getBalance(7L, "S@test.com", false);
+
+        assertThat(balance.balance()).isEqualByComparingTo("250.00");
+        assertThat(balance.entryCount()).isEqualTo(3);
+        assertThat(balance.updatedAt()).isEqualTo(updatedAt);
+    }
+
+    @Test
+    void getBalance_noEntriesYet_returnsZero() {
+        when(userRepository.findById(7L)).thenReturn(Optional.of(student));
+        when(ledgerRepository.findBalance(7L)).thenReturn(Optional.empty());
+
+        StudentBalanceDTO balance = ledgerService.getBalance(7L, "admin@test.com", true);
+
+        assertThat(balance.balance()).isEqualByComparingTo("0");
+        assertThat(balance.entryCount()).isZero();
+    }
+
+    @Test
+    void getBalance_otherStudent_throwsAccessDenied() {
+        when(userRepository.findById(7L)).thenReturn(Optional.of(student));
+
+        assertThrows(AccessDeniedException.class, () -> ledgerService.getBalance(7L, "other@test.com", false));
+        verify(ledgerRepository, never()).findBalance(anyLong());
+    }
+
+    @Test
+    void getEntries_notAStudent_throwsEntityNotFound() {
+        User admin = new User("admin", "admin@test.com", "hash", User.Role.ADMIN);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(admin));
+
+        assertThrows(EntityNotFoundException.class,
+                () -> ledgerService.getEntries(1L, null, 50, "admin@test.com", true));
+        verify(ledgerRepository, never()).findEntries(anyLong(), any(), anyInt());
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private Posting singlePosting() {
+        ArgumentCaptor<List<Posting>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).post(captor.capture());
+        assertThat(captor.getValue()).hasSize(1);
+        return captor.getValue().get(0);
+    }
+
+    private Invoice makeInvoice(Long id, InvoiceStatus status) {
+        Invoice invoice = new Invoice("Huur", null, new BigDecimal("350.00"), LocalDate.now(), LocalDate.now(),
+                1, 2025, status, student);
+        ReflectionTestUtils.setField(invoice, "id", id);
+        return invoice;
+    }
+
+    private Payment makePayment(PaymentStatus status, Invoice invoice) {
+        Payment payment = new Payment(new BigDecimal("100.00"), null, status, "Overboeking", student);
+        ReflectionTestUtils.setField(payment, "id", 3L);
+        ReflectionTestUtils.setField(payment, "invoice", invoice);
+        return payment;
+    }
+
+    private static User makeStudent(long id, String email) {
+        User user = new User("student" + id, email, "hash", User.Role.STUDENT);
+        ReflectionTestUtils.setField(user, "id", id);
+        return user;
+    }
+}
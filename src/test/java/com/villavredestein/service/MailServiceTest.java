@@ -1,5 +1,11 @@
 package com.villavredestein.service;
 
+import com.villavredestein.model.EmailTemplate;
+import com.villavredestein.model.EmailTemplate.TemplateType;
+import com.villavredestein.repository.EmailTemplateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -8,6 +14,14 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.access.AccessDeniedException;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -238,4 +252,107 @@ class MailServiceTest {
         assertThrows(IllegalArgumentException.class,
                 () -> service.sendInvoiceReminderMail(STUDENT_TO, "Herinnering", null));
     }
-}
\ No newline at end of file
+
+
+    private MailService mergeService(boolean enabled) {
+        EmailTemplateRepository repo = mock(EmailTemplateRepository.class);
+        when(repo.findByType(TemplateType.PAYMENT_NEW)).thenReturn(Optional.of(
+                new EmailTemplate(TemplateType.PAYMENT_NEW, "Factuur {{maand}}", "Beste {{naam}}, betaal {{bedrag}}.")));
+        when(mailSender.createMimeMessage()).thenAnswer(inv -> new MimeMessage(Session.getInstance(new Properties())));
+        return new MailService(mailSender, enabled, FROM_EMAIL, ADMIN_BCC, new EmailTemplateService(repo));
+    }
+
+    @Test
+    void sendMailMerge_sendsAllMessagesInOneCall_withRenderedContent() throws Exception {
+        MailService service = mergeService(true);
+
+        List<MailService.MergeOutcome> outcomes = service.sendMailMerge(TemplateType.PAYMENT_NEW, List.of(
+                new MailService.MergeRecipient("anna@villavredestein.com", Map.of("naam", "Anna", "bedrag", "€ 350,00", "maand", "juli")),
+                new MailService.MergeRecipient("bram@villavredestein.com", Map.of("naam", "Bram", "bedrag", "€ 400,00", "maand", "juli"))));
+
+        ArgumentCaptor<MimeMessage[]> captor = ArgumentCaptor.forClass(MimeMessage[].class);
+        verify(mailSender, times(1)).send(captor.capture());
+        MimeMessage[] sent = captor.getValue();
+        assertThat(sent).hasSize(2);
+        assertThat(sent[1].getSubject()).isEqualTo("Factuur juli");
+        assertThat((String) sent[1].getContent()).isEqualTo("Beste Bram, betaal € 400,00.");
+        assertThat(sent[1].getAllRecipients()).extracting(Object::toString)
+                .containsExactly("bram@villavredestein.com", ADMIN_BCC);
+
+        assertThat(outcomes).extracting(MailService.MergeOutcome::status)
+                .containsExactly(MailService.MergeStatus.SENT, MailService.MergeStatus.SENT);
+    }
+
+    @Test
+    void sendMailMerge_reportsInvalidAndFailedRecipientsIndividually() {
+        MailService service = mergeService(true);
+        doAnswer(inv -> {
+            MimeMessage first = inv.getArgument(0);
+            throw new MailSendException(Map.of(first, new RuntimeException("550 mailbox unavailable")));
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        List<MailService.MergeOutcome> outcomes = service.sendMailMerge(TemplateType.PAYMENT_NEW, List.of(
+                new MailService.MergeRecipient("anna@villavredestein.com", Map.of("naam", "Anna")),
+                new MailService.MergeRecipient("geen-adres", Map.of("naam", "X")),
+                new MailService.MergeRecipient("bram@villavredestein.com", Map.of("naam", "Bram"))));
+
+        assertThat(outcomes).extracting(MailService.MergeOutcome::status).containsExactly(
+                MailService.MergeStatus.FAILED,
+                MailService.MergeStatus.INVALID_RECIPIENT,
+                MailService.MergeStatus.SENT);
+        assertThat(outcomes.get(0).error()).contains("550");
+    }
+
+    @Test
+    void sendMailMerge_largeMerge_preparesOnTheMergePoolInRecipientOrder() {
+        MailService service = mergeService(true);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(mailSender.createMimeMessage()).thenAnswer(inv -> {
+            threads.add(Thread.currentThread().getName());
+            return new MimeMessage(Session.getInstance(new Properties()));
+        });
+        List<MailService.MergeRecipient> recipients = IntStream.range(0, 500)
+                .mapToObj(i -> new MailService.MergeRecipient("student" + i + "@villavredestein.com", Map.of("naam", "S" + i)))
+                .toList();
+
+        List<MailService.MergeOutcome> outcomes = service.sendMailMerge(TemplateType.PAYMENT_NEW, recipients);
+
+        assertThat(outcomes).extracting(MailService.MergeOutcome::to)
+                .containsExactlyElementsOf(recipients.stream().map(MailService.MergeRecipient::to).toList());
+        assertThat(outcomes).allMatch(outcome -> outcome.status() == MailService.MergeStatus.SENT);
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertThat(threads).allMatch(name -> name.startsWith("mail-merge-"));
+        }
+        service.shutdown();
+    }
+
+    @Test
+    void sendMailMerge_timesTheBatchApartFromSingleMails() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmailTemplateRepository repo = mock(EmailTemplateRepository.class);
+        when(repo.findByType(TemplateType.PAYMENT_NEW)).thenReturn(Optional.of(
+                new EmailTemplate(TemplateType.PAYMENT_NEW, "Factuur {{maand}}", "Beste {{naam}}.")));
+        when(mailSender.createMimeMessage()).thenAnswer(inv -> new MimeMessage(Session.getInstance(new Properties())));
+        MailService service = new MailService(mailSender, true, FROM_EMAIL, ADMIN_BCC, new EmailTemplateService(repo),
+                new OutboundCallMetrics(registry));
+
+        service.sendMailMerge(TemplateType.PAYMENT_NEW, List.of(
+                new MailService.MergeRecipient("anna@villavredestein.com", Map.of("naam", "Anna")),
+                new MailService.MergeRecipient("bram@villavredestein.com", Map.of("naam", "Bram"))));
+
+        assertThat(registry.get("outbound.calls").tags("provider", "smtp_batch", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.find("outbound.calls").tag("provider", "smtp").timer()).isNull();
+    }
+
+    @Test
+    void sendMailMerge_mailDisabled_skipsWithoutSending() {
+        MailService service = mergeService(false);
+
+        List<MailService.MergeOutcome> outcomes = service.sendMailMerge(TemplateType.PAYMENT_NEW, List.of(
+                new MailService.MergeRecipient(STUDENT_TO, Map.of("naam", "Anna"))));
+
+        assertThat(outcomes).extracting(MailService.MergeOutcome::status).containsExactly(MailService.MergeStatus.SKIPPED);
+        verify(mailSender, never()).send(any(MimeMessage[].class));
+    }
+}
@@ -0,0 +1,54 @@
+package com.villavredestein.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundCallMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OutboundCallMetrics metrics = new OutboundCallMetrics(registry);
+
+    @Test
+    void call_tracksInFlightUntilFinished() {
+        OutboundCallMetrics.Call call = metrics.start(OutboundCallMetrics.TWILIO);
+
+        assertThat(registry.get("outbound.calls.inflight").tag("provider", "twilio").gauge().value()).isEqualTo(1);
+
+        call.httpStatus(201);
+        call.success();
+
+        assertThat(registry.get("outbound.calls.inflight").tag("provider", "twilio").gauge().value()).isZero();
+        assertThat(registry.get("outbound.calls").tags("provider", "twilio", "outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void httpStatus_classifiesClientAndServerErrors() {
+        metrics.start(OutboundCallMetrics.GOOGLE).httpStatus(401);
+        metrics.start(OutboundCallMetrics.GOOGLE).httpStatus(503);
+
+        assertThat(registry.get("outbound.calls").tags("provider", "google", "outcome", "client_error").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("outbound.calls").tags("provider", "google", "outcome", "server_error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void failure_withNestedTimeout_countsTimeout() {
+        metrics.start(OutboundCallMetrics.SMTP)
+                .failure(new MailSendException("send failed", new SocketTimeoutException("Read timed out")));
+        metrics.start(OutboundCallMetrics.TWILIO).failure(new HttpTimeoutException("request timed out"));
+        metrics.start(OutboundCallMetrics.SMTP).failure(new MailSendException("auth failed"));
+
+        assertThat(registry.get("outbound.calls.timeouts").tag("provider", "smtp").counter().count()).isEqualTo(1);
+        assertThat(registry.get("outbound.calls.timeouts").tag("provider", "twilio").counter().count()).isEqualTo(1);
+        assertThat(registry.get("outbound.calls").tags("provider", "smtp", "outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,111 @@
+package com.villavredestein.service;
+
+import com.villavredestein.repository.BankStatementRepository.OpenInvoice;
+import com.villavredestein.repository.BankStatementRepository.Student;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentMatcherTest {
+
+    private static final LocalDate MARCH = LocalDate.of(2025, 3, 10);
+    private static final LocalDate APRIL = LocalDate.of(2025, 4, 10);
+
+    private static final List<Student> STUDENTS = List.of(
+            new Student(1, "zoe", "Zoë van der Berg"),
+            new Student(2, "sam", "Sam de Vries"),
+            new Student(3, "sam2", "Sam de Vries"));
+
+    private static BankStatementReader.Entry credit(String amount, String name, String iban, String remittance) {
+        return new BankStatementReader.Entry("ref", MARCH, new BigDecimal(amount), true, name, iban, remittance);
+    }
+
+    private static PaymentMatcher matcher(Map<String, Long> knownIbans, OpenInvoice... invoices) {
+        return new PaymentMatcher(List.of(invoices), STUDENTS, knownIbans);
+    }
+
+    @Test
+    void match_byInvoiceNumberAndAmount() {
+        PaymentMatcher matcher = matcher(Map.of(),
+                new OpenInvoice(41, 1, new BigDecimal("350.00"), MARCH),
+                new OpenInvoice(42, 1, new BigDecimal("350.00"), APRIL));
+
+        Optional<PaymentMatcher.Match> match = matcher.match(credit("350", null, null, "Huur april factuur 42"));
+
+        assertThat(match).contains(new PaymentMatcher.Match(42, 1, PaymentMatcher.MatchedBy.REFERENCE));
+        assertThat(matcher.openInvoices()).isEqualTo(1);
+    }
+
+    @Test
+    void match_referenceWithOtherAmountFallsBackToTheStudent() {
+        PaymentMatcher matcher = matcher(Map.of(),
+                new OpenInvoice(41, 1, new BigDecimal("350.00"), MARCH),
+                new OpenInvoice(42, 1, new BigDecimal("400.00"), APRIL));
+
+        Optional<PaymentMatcher.Match> match = matcher.match(credit("350.00", "Zoe van der Berg", null, "#42"));
+
+        assertThat(match).contains(new PaymentMatcher.Match(41, 1, PaymentMatcher.MatchedBy.NAME));
+    }
+
+    @Test
+    void match_byKnownIbanTakesTheOldestInvoiceWithThatAmount() {
+        PaymentMatcher matcher = matcher(Map.of("NL91ABNA0417164300", 1L),
+                new OpenInvoice(42, 1, new BigDecimal("350.00"), APRIL),
+                new OpenInvoice(41, 1, new BigDecimal("350.00"), MARCH));
+
+        BankStatementReader.Entry entry = credit("350.00", "Ouders van Zoë", "nl91 abna 0417 1643 00", null);
+
+        assertThat(matcher.match(entry)).contains(new PaymentMatcher.Match(41, 1, PaymentMatcher.MatchedBy.IBAN));
+        assertThat(matcher.match(entry)).contains(new PaymentMatcher.Match(42, 1, PaymentMatcher.MatchedBy.IBAN));
+        assertThat(matcher.match(entry)).isEmpty();
+    }
+
+    @Test
+    void match_byNameInAnyWordOrder() {
+        PaymentMatcher matcher = matcher(Map.of(), new OpenInvoice(41, 1, new BigDecimal("350.00"), MARCH));
+
+        assertThat(matcher.match(credit("350.00", "BERG, ZOE VAN DER", null, null)))
+                .contains(new PaymentMatcher.Match(41, 1, PaymentMatcher.MatchedBy.NAME));
+    }
+
+    @Test
+    void match_learnsTheIbanOfAMatch() {
+        PaymentMatcher matcher = matcher(Map.of(),
+                new OpenInvoice(41, 1, new BigDecimal("350.00"), MARCH),
+                new OpenInvoice(42, 1, new BigDecimal("350.00"), APRIL));
+
+        matcher.match(credit("350.00", null, "NL91ABNA0417164300", "#41"));
+
+        assertThat(matcher.match(credit("350.00", "Onbekend", "NL91ABNA0417164300", null)))
+                .contains(new PaymentMatcher.Match(42, 1, PaymentMatcher.MatchedBy.IBAN));
+    }
+
+    @Test
+    void match_ambiguousNameMatchesNothing() {
+        PaymentMatcher matcher = matcher(Map.of(),
+                new OpenInvoice(51, 2, new BigDecimal("350.00"), MARCH),
+                new OpenInvoice(52, 3, new BigDecimal("350.00"), MARCH));
+
+        assertThat(matcher.match(credit("350.00", "Sam de Vries", null, null))).isEmpty();
+        assertThat(matcher.match(credit("350.00", "sam2", null, null)))
+                .contains(new PaymentMatcher.Match(52, 3, PaymentMatcher.MatchedBy.NAME));
+    }
+
+    @Test
+    void match_ignoresDebitsAndUnknownAmounts() {
+        PaymentMatcher matcher = matcher(Map.of(), new OpenInvoice(41, 1, new BigDecimal("350.00"), MARCH));
+
+        BankStatementReader.Entry debit =
+                new BankStatementReader.Entry("ref", MARCH, new BigDecimal("350.00"), false, "zoe", null, "#41");
+
+        assertThat(matcher.match(debit)).isEmpty();
+        assertThat(matcher.match(credit("349.99", "zoe", null, "#41"))).isEmpty();
+        assertThat(matcher.openInvoices()).isEqualTo(1);
+    }
+}
@@ -2,8 +2,10 @@ package com.villavredestein.service;
 
 import com.villavredestein.dto.PaymentRequestDTO;
 import com.villavredestein.dto.PaymentResponseDTO;
+import com.villavredestein.model.Invoice;
 import com.villavredestein.model.Payment;
 import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
 import com.villavredestein.repository.PaymentRepository;
 import com.villavredestein.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
@@ -15,6 +17,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -22,13 +25,17 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class PaymentServiceTest {
 
     @Mock PaymentRepository paymentRepository;
+    @Mock InvoiceRepository invoiceRepository;
     @Mock UserRepository userRepository;
+    @Mock LedgerService ledgerService;
+    @Mock InvoiceService invoiceService;
     @InjectMocks PaymentService paymentService;
 
 
@@ -163,6 +170,64 @@ class PaymentServiceTest {
         verify(paymentRepository).save(any(Payment.class));
     }
 
+    @Test
+    void createPayment_paidForInvoice_linksAndPaysIt() {
+        User student = makeStudent(1L, "student", "s@test.com");
+        Invoice invoice = makeInvoice(5L, Invoice.InvoiceStatus.OPEN, student);
+        when(userRepository.findByEmailIgnoreCase("s@test.com")).thenReturn(Optional.of(student));
+        when(invoiceRepository.findById(5L)).thenReturn(Optional.of(invoice));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setAmount(new BigDecimal("350.00"));
+        dto.setStudentEmail("s@test.com");
+        dto.setStatus("PAID");
+        dto.setInvoiceId(5L);
+
+        paymentService.createPayment(dto);
+
+        verify(paymentRepository).save(argThat(payment -> payment.getInvoice() == invoice));
+        verify(invoiceService).updateStatus(5L, Invoice.InvoiceStatus.PAID);
+        verify(invoiceRepository, never()).findWithoutPayment(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void createPayment_invoiceOfAnotherStudent_throwsIllegalArgumentException() {
+        User student = makeStudent(1L, "student", "s@test.com");
+        Invoice invoice = makeInvoice(5L, Invoice.InvoiceStatus.OPEN, makeStudent(2L, "other", "o@test.com"));
+        when(userRepository.findByEmailIgnoreCase("s@test.com")).thenReturn(Optional.of(student));
+        when(invoiceRepository.findById(5L)).thenReturn(Optional.of(invoice));
+
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setAmount(new BigDecimal("350.00"));
+        dto.setStudentEmail("s@test.com");
+        dto.setStatus("PAID");
+        dto.setInvoiceId(5L);
+
+        assertThrows(IllegalArgumentException.class, () -> paymentService.createPayment(dto));
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    void createPayment_paidWithoutInvoice_matchesOnlyTheInvoiceOfTheMonthItWasPaidIn() {
+        User student = makeStudent(1L, "student", "s@test.com");
+        when(userRepository.findByEmailIgnoreCase("s@test.com")).thenReturn(Optional.of(student));
+        when(invoiceRepository.findWithoutPayment(student, Invoice.InvoiceStatus.PAID, new BigDecimal("350.00"), 3, 2025))
+                .thenReturn(Optional.empty());
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setAmount(new BigDecimal("350.00"));
+        dto.setStudentEmail("s@test.com");
+        dto.setStatus("PAID");
+        dto.setPaidAt(LocalDateTime.of(2025, 3, 4, 10, 0));
+
+        paymentService.createPayment(dto);
+
+        verify(paymentRepository).save(argThat(payment -> payment.getInvoice() == null));
+        verifyNoInteractions(invoiceService);
+    }
+
     @Test
     void createPayment_studentNotFound_throwsEntityNotFoundException() {
         when(userRepository.findByEmailIgnoreCase("notfound@test.com")).thenReturn(Optional.empty());
@@ -248,6 +313,13 @@ class PaymentServiceTest {
         return user;
     }
 
+    private Invoice makeInvoice(long id, Invoice.InvoiceStatus status, User student) {
+        Invoice invoice = new Invoice("Huur", null, new BigDecimal("350.00"), LocalDate.of(2025, 3, 1),
+                LocalDate.of(2025, 3, 8), 3, 2025, status, student);
+        ReflectionTestUtils.setField(invoice, "id", id);
+        return invoice;
+    }
+
     private Payment makePayment(long id, BigDecimal amount, Payment.PaymentStatus status, User student) {
         Payment p = new Payment(amount, null, status, "Test payment", student);
         ReflectionTestUtils.setField(p, "id", id);
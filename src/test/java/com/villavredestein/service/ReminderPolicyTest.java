@@ -0,0 +1,105 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReminderPolicyTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 7, 10, 9, 0);
+    private static final LocalDate TODAY = NOW.toLocalDate();
+
+    private static Invoice invoice(Invoice.InvoiceStatus status, LocalDate dueDate) {
+        User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
+        student.setPhoneNumber("+31612345678");
+        return new Invoice("Huur juli", null, new BigDecimal("350.00"), LocalDate.of(2025, 7, 1), dueDate,
+                7, 2025, status, student);
+    }
+
+    @Test
+    void upcoming_matchesOpenInvoicesDueWithinTheWindow() {
+        ReminderPolicy policy = ReminderPolicy.upcoming(4, 3, 24);
+
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OPEN, TODAY), NOW)).isTrue();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OPEN, TODAY.plusDays(4)), NOW)).isTrue();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OPEN, TODAY.plusDays(5)), NOW)).isFalse();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OPEN, TODAY.minusDays(1)), NOW)).isFalse();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OVERDUE, TODAY.plusDays(1)), NOW)).isFalse();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.PAID, TODAY.plusDays(1)), NOW)).isFalse();
+    }
+
+    @Test
+    void overdue_matchesOpenAndOverdueInvoicesPastDueOnly() {
+        ReminderPolicy policy = ReminderPolicy.overdue(5, 24);
+
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OPEN, TODAY.minusDays(1)), NOW)).isTrue();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OVERDUE, TODAY.minusDays(30)), NOW)).isTrue();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.OPEN, TODAY), NOW)).isFalse();
+        assertThat(policy.matches(invoice(Invoice.InvoiceStatus.CANCELLED, TODAY.minusDays(1)), NOW)).isFalse();
+    }
+
+    @Test
+    void maxReminders_excludesInvoicesThatReachedIt() {
+        ReminderPolicy policy = ReminderPolicy.overdue(2, 24);
+        Invoice invoice = invoice(Invoice.InvoiceStatus.OVERDUE, TODAY.minusDays(10));
+
+        invoice.setReminderCount(1);
+        assertThat(policy.matches(invoice, NOW)).isTrue();
+        invoice.setReminderCount(2);
+        assertThat(policy.matches(invoice, NOW)).isFalse();
+    }
+
+    @Test
+    void minHoursBetween_excludesInvoicesRemindedTooRecently() {
+        ReminderPolicy policy = ReminderPolicy.overdue(5, 24);
+        Invoice invoice = invoice(Invoice.InvoiceStatus.OVERDUE, TODAY.minusDays(10));
+
+        invoice.setLastReminderSentAt(NOW.minusHours(23).minusMinutes(59));
+        assertThat(policy.matches(invoice, NOW)).isFalse();
+        invoice.setLastReminderSentAt(NOW.minusHours(24));
+        assertThat(policy.matches(invoice, NOW)).isTrue();
+        invoice.setLastReminderSentAt(null);
+        assertThat(policy.matches(invoice, NOW)).isTrue();
+    }
+
+    @Test
+    void unpaidFor_matchesTheMonthRegardlessOfDueDateOrReminders() {
+        ReminderPolicy july = ReminderPolicy.unpaidFor(YearMonth.of(2025, 7), ReminderPolicy.Contact.EMAIL);
+        Invoice invoice = invoice(Invoice.InvoiceStatus.OPEN, TODAY.plusDays(20));
+        invoice.setReminderCount(10);
+        invoice.setLastReminderSentAt(NOW.minusMinutes(5));
+
+        assertThat(july.matches(invoice, NOW)).isTrue();
+        assertThat(ReminderPolicy.unpaidFor(YearMonth.of(2025, 8), ReminderPolicy.Contact.EMAIL).matches(invoice, NOW))
+                .isFalse();
+        assertThat(july.matches(invoice(Invoice.InvoiceStatus.PAID, TODAY), NOW)).isFalse();
+        assertThat(july.matches(invoice(Invoice.InvoiceStatus.CANCELLED, TODAY), NOW)).isFalse();
+    }
+
+    @Test
+    void phoneContact_excludesStudentsWithoutPhoneNumber() {
+        ReminderPolicy policy = ReminderPolicy.unpaidFor(YearMonth.of(2025, 7), ReminderPolicy.Contact.PHONE);
+        Invoice invoice = invoice(Invoice.InvoiceStatus.OPEN, TODAY);
+
+        assertThat(policy.matches(invoice, NOW)).isTrue();
+        invoice.getStudent().setPhoneNumber("  ");
+        assertThat(policy.matches(invoice, NOW)).isFalse();
+        invoice.getStudent().setPhoneNumber(null);
+        assertThat(policy.matches(invoice, NOW)).isFalse();
+    }
+
+    @Test
+    void policyWithoutStatuses_isRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReminderPolicy(Set.of(), null, null, null, null, null, null));
+    }
+}
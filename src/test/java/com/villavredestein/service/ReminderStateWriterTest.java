@@ -0,0 +1,109 @@
+package com.villavredestein.service;
+
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.InvoiceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReminderStateWriterTest {
+
+    private static final LocalDateTime SENT_AT = LocalDateTime.of(2025, 3, 5, 9, 0);
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    private Invoice invoice(long id, long version) {
+        User student = new User("student", "student@villavredestein.com", "hash", User.Role.STUDENT);
+        Invoice invoice = new Invoice("Huur", null, new BigDecimal("500.00"),
+                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 10), 3, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(invoice, "id", id);
+        ReflectionTestUtils.setField(invoice, "version", version);
+        return invoice;
+    }
+
+    @Test
+    void close_writesBufferedInvoicesInOneCall() {
+        when(invoiceRepository.markRemindersSent(any(), any(), anyBoolean())).thenReturn(List.of(1L, 2L));
+
+        ReminderStateWriter writer = new ReminderStateWriter(invoiceRepository, SENT_AT, true);
+        try (writer) {
+            writer.sent(invoice(1L, 0L));
+            writer.sent(invoice(2L, 4L));
+            verifyNoInteractions(invoiceRepository);
+        }
+
+        verify(invoiceRepository).markRemindersSent(Map.of(1L, 0L, 2L, 4L), SENT_AT, true);
+        assertThat(writer.written()).isEqualTo(2);
+        assertThat(writer.conflicts()).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sent_flushesEveryFullChunk() {
+        when(invoiceRepository.markRemindersSent(any(), any(), anyBoolean()))
+                .thenAnswer(call -> List.copyOf(((Map<Long, Long>) call.getArgument(0)).keySet()));
+
+        ReminderStateWriter writer = new ReminderStateWriter(invoiceRepository, SENT_AT, false);
+        for (long id = 1; id <= ReminderStateWriter.FLUSH_SIZE + 1; id++) {
+            writer.sent(invoice(id, 0L));
+        }
+        verify(invoiceRepository, times(1)).markRemindersSent(any(), any(), anyBoolean());
+
+        writer.close();
+
+        ArgumentCaptor<Map<Long, Long>> chunks = ArgumentCaptor.forClass(Map.class);
+        verify(invoiceRepository, times(2)).markRemindersSent(chunks.capture(), eq(SENT_AT), eq(false));
+        assertThat(chunks.getAllValues()).extracting(Map::size).containsExactly(ReminderStateWriter.FLUSH_SIZE, 1);
+        assertThat(writer.written()).isEqualTo(ReminderStateWriter.FLUSH_SIZE + 1);
+    }
+
+    @Test
+    void flush_invoiceChangedMeanwhile_isCountedAgainWithoutVersionAndReportedAsConflict() {
+        when(invoiceRepository.markRemindersSent(any(), any(), anyBoolean())).thenReturn(List.of(1L));
+        when(invoiceRepository.addRemindersSent(List.of(2L, 3L), SENT_AT, true)).thenReturn(List.of(2L));
+
+        ReminderStateWriter writer = new ReminderStateWriter(invoiceRepository, SENT_AT, true);
+        writer.sent(invoice(1L, 0L));
+        writer.sent(invoice(2L, 0L));
+        writer.sent(invoice(3L, 0L));
+        writer.flush();
+
+        verify(invoiceRepository).addRemindersSent(List.of(2L, 3L), SENT_AT, true);
+        assertThat(writer.written()).isEqualTo(2);
+        assertThat(writer.conflicts()).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void flush_nothingBuffered_doesNotQuery() {
+        new ReminderStateWriter(invoiceRepository, SENT_AT, false).close();
+
+        verifyNoInteractions(invoiceRepository);
+    }
+
+    @Test
+    void sent_invoiceWithoutId_throwsIllegalArgumentException() {
+        ReminderStateWriter writer = new ReminderStateWriter(invoiceRepository, SENT_AT, false);
+        Invoice invoice = invoice(1L, 0L);
+        ReflectionTestUtils.setField(invoice, "id", null);
+
+        assertThrows(IllegalArgumentException.class, () -> writer.sent(invoice));
+        assertThrows(IllegalArgumentException.class, () -> writer.sent(null));
+    }
+}
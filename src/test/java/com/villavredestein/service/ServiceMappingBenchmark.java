@@ -0,0 +1,87 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.InvoiceResponseDTO;
+import com.villavredestein.dto.UserResponseDTO;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.Room;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.*;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Package-private helpers on the request path: the DTO mappers and the mail categorizer/masker.
+ * Lives next to the services (not in {@code benchmark}) because the helpers are not public.
+ * The room lookup in {@link UserService#toDTO} is a Mockito stub, so that number is mapping cost only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceMappingBenchmark {
+
+    private UserService userService;
+    private InvoiceService invoiceService;
+    private MailService mailService;
+    private User student;
+    private Invoice invoice;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RoomRepository roomRepository = Mockito.mock(RoomRepository.class);
+        Mockito.when(roomRepository.findByOccupant_Id(Mockito.anyLong())).thenReturn(Optional.of(new Room("Kamer 3")));
+        userService = new UserService(Mockito.mock(UserRepository.class), null, roomRepository,
+                Mockito.mock(CleaningTaskRepository.class), Mockito.mock(InvoiceRepository.class),
+                Mockito.mock(DocumentRepository.class), Mockito.mock(PaymentRepository.class), null, "uploads");
+        invoiceService = new InvoiceService(Mockito.mock(InvoiceRepository.class), Mockito.mock(PaymentRepository.class),
+                Mockito.mock(UserRepository.class), new InvoicePdfService(), new InvoicePdfCache(0),
+                Mockito.mock(LedgerService.class));
+        mailService = new MailService(null, false, "no-reply@villavredestein.com", "");
+
+        student = new User("Desmond", "desmond@villavredestein.com", "hash", User.Role.STUDENT);
+        ReflectionTestUtils.setField(student, "id", 7L);
+        invoice = new Invoice("Huur juli 2025", "Maandelijkse huur voor juli 2025",
+                new BigDecimal("350.00"), LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 8),
+                7, 2025, Invoice.InvoiceStatus.OPEN, student);
+        ReflectionTestUtils.setField(invoice, "id", 42L);
+    }
+
+    @Benchmark
+    public UserResponseDTO userToDTO() {
+        return userService.toDTO(student);
+    }
+
+    @Benchmark
+    public InvoiceResponseDTO invoiceToDTO() {
+        return invoiceService.toDTO(invoice);
+    }
+
+    @Benchmark
+    public MailService.MailCategory categorize() {
+        return mailService.categorize("CLEANER", "Schoonmaak rooster deze week");
+    }
+
+    @Benchmark
+    public String maskEmail() {
+        return mailService.maskEmail("desmond@villavredestein.com");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ServiceMappingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
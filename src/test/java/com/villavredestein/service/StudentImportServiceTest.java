@@ -0,0 +1,275 @@
+package com.villavredestein.service;
+
+import com.villavredestein.dto.StudentImportResultDTO;
+import com.villavredestein.dto.StudentImportRowDTO;
+import com.villavredestein.jobs.JobMetrics;
+import com.villavredestein.jobs.JobRun;
+import com.villavredestein.jobs.JobRunner;
+import com.villavredestein.model.Invoice;
+import com.villavredestein.model.User;
+import com.villavredestein.repository.StudentImportRepository;
+import com.villavredestein.repository.StudentImportRepository.NewStudent;
+import com.villavredestein.repository.StudentImportRepository.RoomState;
+import com.villavredestein.repository.UserRepository;
+import com.villavredestein.service.StudentImportService.InvalidImportException;
+import com.villavredestein.service.StudentImportService.RowError;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StudentImportServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-09-01T08:00:00Z"), ZoneId.of("Europe/Amsterdam"));
+
+    @Mock StudentImportRepository importRepository;
+    @Mock UserRepository userRepository;
+    @Mock InvoiceService invoiceService;
+    @Mock CleaningScheduleService cleaningScheduleService;
+    @Mock MailService mailService;
+    @Mock PlatformTransactionManager transactionManager;
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private JobRunner jobRunner;
+    private StudentImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        jobRunner = new JobRunner(1, 10, 10);
+        importService = new StudentImportService(importRepository, userRepository, invoiceService,
+                cleaningScheduleService, mailService, jobRunner, new JobMetrics(new SimpleMeterRegistry()),
+                passwordEncoder, Validation.buildDefaultValidatorFactory().getValidator(), transactionManager,
+                5, 2, "https://villa.test", "@villa", CLOCK);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.shutdown();
+        ReflectionTestUtils.invokeMethod(jobRunner, "shutdown");
+    }
+
+    private static StudentImportRowDTO row(String username, String email, String room, Boolean welcome) {
+        return new StudentImportRowDTO(username, email, "welkom-" + username, room, new BigDecimal("350.00"), welcome);
+    }
+
+    private void noConflictsInDatabase() {
+        when(importRepository.findExistingEmails(any())).thenReturn(Set.of());
+        when(importRepository.findExistingUsernames(any())).thenReturn(Set.of());
+    }
+
+    private static User user(long id) {
+        User user = new User("student" + id, "student" + id + "@test.com", "hash", User.Role.STUDENT);
+        ReflectionTestUtils.setField(user, "id", id);
+        return user;
+    }
+
+    private JobRun awaitRun(String runId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            JobRun run = jobRunner.find(runId).orElseThrow();
+            if (run.isFinished()) {
+                return run;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("welcome mail run did not finish");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importStudents_validRows_writesOnceReseedsOnceAndQueuesMails() throws InterruptedException {
+        noConflictsInDatabase();
+        when(importRepository.findRooms(List.of("kamer 1"))).thenReturn(Map.of("kamer 1", new RoomState(7L, "Kamer 1", false)));
+        when(importRepository.insertStudents(any())).thenReturn(Map.of("anna@test.com", 11L, "bram@test.com", 12L,
+                "cas@test.com", 13L));
+        when(importRepository.assignRooms(Map.of(7L, 11L))).thenReturn(1);
+        when(userRepository.getReferenceById(anyLong())).thenAnswer(inv -> user(inv.getArgument(0)));
+        when(invoiceService.createInvoicesIfAbsent(any())).thenAnswer(inv -> {
+            Map<Long, Long> created = new HashMap<>();
+            for (Invoice invoice : (List<Invoice>) inv.getArgument(0)) {
+                created.put(invoice.getStudent().getId(), 100 + invoice.getStudent().getId());
+            }
+            return created;
+        });
+
+        StudentImportResultDTO result = importService.importStudents(List.of(
+                row("Anna", " Anna@Test.com ", " kamer 1 ", null),
+                row("Bram", "bram@test.com", "", true),
+                row("Cas", "cas@test.com", null, false)));
+
+        ArgumentCaptor<List<NewStudent>> students = ArgumentCaptor.forClass(List.class);
+        verify(importRepository).insertStudents(students.capture());
+        assertThat(students.getValue()).extracting(NewStudent::username, NewStudent::email)
+                .containsExactly(tuple("Anna", "anna@test.com"), tuple("Bram", "bram@test.com"), tuple("Cas", "cas@test.com"));
+        assertThat(passwordEncoder.matches("welkom-Bram", students.getValue().get(1).passwordHash())).isTrue();
+
+        ArgumentCaptor<List<Invoice>> invoices = ArgumentCaptor.forClass(List.class);
+        verify(invoiceService).createInvoicesIfAbsent(invoices.capture());
+        assertThat(invoices.getValue()).allSatisfy(invoice -> {
+            assertThat(invoice.getIssueDate()).isEqualTo(LocalDate.of(2025, 9, 1));
+            assertThat(invoice.getTitle()).startsWith("Huur september 2025 - ");
+        });
+        verify(cleaningScheduleService, times(1)).reseedNow();
+
+        assertThat(result.imported()).isEqualTo(3);
+        assertThat(result.invoicesCreated()).isEqualTo(3);
+        assertThat(result.welcomeMailsQueued()).isEqualTo(2);
+        assertThat(result.students()).extracting(StudentImportResultDTO.ImportedStudent::roomName)
+                .containsExactly("Kamer 1", null, null);
+
+        JobRun run = awaitRun(result.welcomeMailRunId());
+        assertThat(run.getStatus()).isEqualTo(JobRun.Status.SUCCEEDED);
+        assertThat(run.getSent()).isEqualTo(2);
+        verify(mailService).sendWelcomeMail("anna@test.com", "Anna", "Kamer 1", "https://villa.test/login",
+                "welkom-Anna", "https://villa.test", "@villa");
+        verify(mailService).sendWelcomeMail(eq("bram@test.com"), eq("Bram"), eq("nog toe te wijzen"), any(), any(),
+                any(), any());
+        verifyNoMoreInteractions(mailService);
+    }
+
+    @Test
+    void importStudents_invalidRows_reportsEveryErrorAndWritesNothing() {
+        when(importRepository.findExistingEmails(any())).thenReturn(Set.of());
+        when(importRepository.findExistingUsernames(any())).thenReturn(Set.of("Dirk"));
+        when(importRepository.findRooms(any())).thenReturn(Map.of("kamer 2", new RoomState(8L, "Kamer 2", true)));
+
+        List<StudentImportRowDTO> rows = new java.util.ArrayList<>();
+        rows.add(row("Anna", "anna@test.com", null, true));
+        rows.add(new StudentImportRowDTO("Bram", "geen-email", "kort", null, new BigDecimal("0.50"), true));
+        rows.add(row("Cas", "ANNA@test.com", "Kamer 2", true));
+        rows.add(row("Dirk", "dirk@test.com", "Kamer 9", true));
+        rows.add(null);
+
+        assertThatThrownBy(() -> importService.importStudents(rows))
+                .isInstanceOfSatisfying(InvalidImportException.class, e -> assertThat(e.getErrors())
+                        .extracting(RowError::row, RowError::field)
+                        .containsExactly(
+                                tuple(2, "email"), tuple(2, "password"), tuple(2, "rentAmount"),
+                                tuple(3, "email"), tuple(3, "room"),
+                                tuple(4, "username"), tuple(4, "room"),
+                                tuple(5, null)))
+                .hasMessage("8 fouten in de import; er is niets geïmporteerd");
+
+        verify(importRepository, never()).insertStudents(any());
+        verifyNoInteractions(cleaningScheduleService, invoiceService, mailService, transactionManager);
+    }
+
+    @Test
+    void importStudents_roomTakenInTheMeantime_rollsBack() {
+        noConflictsInDatabase();
+        when(importRepository.findRooms(any())).thenReturn(Map.of("kamer 1", new RoomState(7L, "Kamer 1", false)));
+        when(importRepository.insertStudents(any())).thenReturn(Map.of("anna@test.com", 11L));
+        when(importRepository.assignRooms(anyMap())).thenReturn(0);
+
+        assertThatThrownBy(() -> importService.importStudents(List.of(row("Anna", "anna@test.com", "Kamer 1", true))))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(cleaningScheduleService, invoiceService, mailService);
+    }
+
+    @Test
+    void importStudents_jobQueueFull_refusedBeforeAnythingIsWritten() {
+        noConflictsInDatabase();
+        JobRunner busy = new JobRunner(1, 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        BooleanSupplier blocked = () -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+        busy.submit("running", blocked);
+        busy.submit("queued", blocked);
+        StudentImportService service = new StudentImportService(importRepository, userRepository, invoiceService,
+                cleaningScheduleService, mailService, busy, new JobMetrics(new SimpleMeterRegistry()),
+                passwordEncoder, Validation.buildDefaultValidatorFactory().getValidator(), transactionManager,
+                5, 2, "https://villa.test", "@villa", CLOCK);
+        try {
+            assertThatThrownBy(() -> service.importStudents(List.of(row("Anna", "anna@test.com", null, true))))
+                    .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                        assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                        assertThat(e.getReason()).contains("er is niets geïmporteerd");
+                    });
+
+            verify(importRepository, never()).insertStudents(any());
+            verifyNoInteractions(transactionManager, invoiceService, cleaningScheduleService, mailService);
+        } finally {
+            release.countDown();
+            service.shutdown();
+            ReflectionTestUtils.invokeMethod(busy, "shutdown");
+        }
+    }
+
+    @Test
+    void importStudents_emptyOrTooLarge_rejected() {
+        assertThatThrownBy(() -> importService.importStudents(List.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("De import bevat geen studenten");
+        List<StudentImportRowDTO> six = java.util.stream.IntStream.range(0, 6)
+                .mapToObj(i -> row("Student" + i, "s" + i + "@test.com", null, true))
+                .toList();
+        assertThatThrownBy(() -> importService.importStudents(six))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Maximaal 5 studenten per import");
+        verifyNoInteractions(importRepository);
+    }
+
+    @Test
+    void parseCsv_dutchHeaderWithSemicolons() {
+        List<StudentImportRowDTO> rows = importService.parseCsv("""
+                \uFEFFNaam;E-mail;Wachtwoord;Kamer;Huur;Welkomstmail
+                Anna;anna@test.com;"geheim;123";Kamer 1;350,00;ja
+
+                Bram;bram@test.com;wachtwoord1;;1.250,50;nee
+                """);
+
+        assertThat(rows).containsExactly(
+                new StudentImportRowDTO("Anna", "anna@test.com", "geheim;123", "Kamer 1", new BigDecimal("350.00"), true),
+                new StudentImportRowDTO("Bram", "bram@test.com", "wachtwoord1", null, new BigDecimal("1250.50"), false));
+    }
+
+    @Test
+    void parseCsv_englishHeaderAndMissingColumn() {
+        assertThat(importService.parseCsv("username,email,password,rentAmount\nAnna,anna@test.com,wachtwoord1,abc\n"))
+                .containsExactly(new StudentImportRowDTO("Anna", "anna@test.com", "wachtwoord1", null, null, null));
+        assertThatThrownBy(() -> importService.parseCsv("naam;email;huur\nAnna;anna@test.com;350"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("CSV mist de kolom 'wachtwoord'");
+    }
+}